@@ -36,7 +36,7 @@ abstract class HubAddon<P> {
     /**
      * Among running services flagged as fallback (own [Service.isFallback] flag or their
      * group's), the one in the highest priority tier with the fewest online players — same
-     * selection rules as [de.polocloud.bridge.FallbackSelector.select]. `null` if none is eligible.
+     * selection rules as [de.polocloud.bridge.FallbackIndex]. `null` if none is eligible.
      */
     private fun bestFallback(excludeServiceName: String?): Service? {
         val fallbackGroups = Polocloud.groupService.findAll()
@@ -8,6 +8,7 @@ import de.polocloud.api.group.GrpcGroupApiClient
 import de.polocloud.api.player.GrpcPlayerApiClient
 import de.polocloud.api.player.PlayerApiClient
 import de.polocloud.api.player.PlayerService
+import de.polocloud.api.replica.ClusterReplica
 import de.polocloud.api.services.GrpcServiceApiClient
 import de.polocloud.api.services.ServiceApiClient
 import de.polocloud.api.services.ServiceService
@@ -31,25 +32,34 @@ object Polocloud {
     private val serviceClient: ServiceApiClient = GrpcServiceApiClient { connection.channel() }
     private val playerClient: PlayerApiClient = GrpcPlayerApiClient { connection.channel() }
 
+    /**
+     * Cluster-wide event bus. Subscribe to cloud events such as
+     * [de.polocloud.shared.event.server.ServiceOnlineEvent].
+     */
+    val eventService = EventService(channelProvider = { connection.channel() })
+
+    /**
+     * The in-memory copy of the cluster's services and groups that [serviceService] and
+     * [groupService] read from, or `null` unless enabled (`-Dpolocloud.api.replica=true`)
+     * — see [ClusterReplica].
+     */
+    val replica: ClusterReplica? =
+        if (ClusterReplica.resolveEnabled()) ClusterReplica(serviceClient, groupClient, eventService) else null
+
     /** Access to the cluster's groups (`findAll`, `find`, …) — see [GroupService] for the blocking/async split. */
-    val groupService = GroupService(groupClient)
+    val groupService = GroupService(groupClient, replica)
 
     /** Access to the cluster's services (`findAll`, `find`, …) — see [ServiceService] for the blocking/async split. */
-    val serviceService = ServiceService(serviceClient)
+    val serviceService = ServiceService(serviceClient, replica)
 
     /** Access to the cluster's connected players (`findAll`, `find`, …) — see [PlayerService] for the blocking/async split. */
     val playerService = PlayerService(playerClient)
 
-    /**
-     * Cluster-wide event bus. Subscribe to cloud events such as
-     * [de.polocloud.shared.event.server.ServiceOnlineEvent].
-     */
-    val eventService = EventService(channelProvider = { connection.channel() })
-
     /**
      * Closes the underlying connection. A subsequent API call re-opens it.
      */
     fun close() {
+        replica?.close()
         eventService.close()
         serviceService.close()
         playerService.close()
@@ -1,6 +1,7 @@
 package de.polocloud.api.event
 
 import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
 import de.polocloud.proto.EventProviderGrpcKt
 import de.polocloud.proto.EventSubscribeRequest
 import de.polocloud.shared.event.Event
@@ -30,6 +31,12 @@ import java.util.function.Consumer
  * shared [EventCodec] and dispatched to the registered listeners. [call] pushes a
  * local event to the node, which re-broadcasts it to every subscriber.
  *
+ * Payloads arrive as JSON unless [binaryPayloads] is set, in which case every stream asks
+ * the node for CBOR instead — cheaper to decode, and smaller, for chatty events such as
+ * player-count updates. A node that predates CBOR ignores the request and keeps sending
+ * JSON, and events it can't transcode still come as JSON, so both are always decoded.
+ * Published events ([call]) are always JSON.
+ *
  * Obtain the shared instance via [de.polocloud.api.Polocloud.eventService].
  *
  * ```kotlin
@@ -43,10 +50,13 @@ class EventService internal constructor(
     /** This process's own service name, e.g. so a bridge plugin can tell whether an
      *  incoming request event is addressed to it. */
     val serviceName: String = resolveServiceName(),
+    /** Ask for CBOR event payloads — `-Dpolocloud.events.binary=true` or `POLOCLOUD_EVENTS_BINARY=true`. */
+    private val binaryPayloads: Boolean = resolveBinaryPayloads(),
 ) {
 
     private val listeners = ConcurrentHashMap<Class<out Event>, CopyOnWriteArrayList<Consumer<out Event>>>()
     private val streams = ConcurrentHashMap<String, Job>()
+    private val interruptionListeners = CopyOnWriteArrayList<() -> Unit>()
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
 
     private fun stub() = EventProviderGrpcKt.EventProviderCoroutineStub(channelProvider())
@@ -85,6 +95,15 @@ class EventService internal constructor(
         if (lastListenerRemoved) closeStream(EventCodec.nameOf(type))
     }
 
+    /**
+     * Registers [listener] to run whenever a stream drops and is about to be re-opened —
+     * events sent in between are lost, so e.g. [de.polocloud.api.replica.ClusterReplica]
+     * resyncs.
+     */
+    internal fun onStreamInterrupted(listener: () -> Unit) {
+        interruptionListeners += listener
+    }
+
     /** Publishes [event] to the node, which broadcasts it to all subscribers. */
     fun <T : Event> call(event: T) {
         val encoded = EventCodec.encode(event)
@@ -105,6 +124,7 @@ class EventService internal constructor(
             val request = EventSubscribeRequest.newBuilder()
                 .setEventName(eventName)
                 .setServiceName(serviceName)
+                .apply { if (binaryPayloads) addAcceptedEncodings(EventEncoding.CBOR) }
                 .build()
 
             while (isActive) {
@@ -114,6 +134,7 @@ class EventService internal constructor(
                     throw cancel
                 } catch (_: Exception) {
                     // Node restart / transient channel failure — back off and retry.
+                    interruptionListeners.forEach { runCatching(it) }
                     delay(RECONNECT_DELAY_MS)
                 }
             }
@@ -144,7 +165,10 @@ class EventService internal constructor(
 
     @Suppress("UNCHECKED_CAST")
     private fun dispatch(context: EventContext) {
-        val event = EventCodec.decode(context.eventName, context.eventData) ?: return
+        val event = when (context.encoding) {
+            EventEncoding.CBOR -> EventCodec.decodeBinary(context.eventName, context.eventPayload.toByteArray())
+            else -> EventCodec.decode(context.eventName, context.eventData)
+        } ?: return
         listeners[event.javaClass]?.forEach { (it as Consumer<Event>).accept(event) }
     }
 
@@ -156,6 +180,10 @@ class EventService internal constructor(
             System.getProperty("polocloud.service.name")
                 ?: System.getenv("POLOCLOUD_SERVICE_NAME")
                 ?: ""
+
+        fun resolveBinaryPayloads(): Boolean =
+            (System.getProperty("polocloud.events.binary") ?: System.getenv("POLOCLOUD_EVENTS_BINARY"))
+                ?.toBooleanStrictOrNull() ?: false
     }
 }
 
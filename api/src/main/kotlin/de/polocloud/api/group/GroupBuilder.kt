@@ -59,6 +59,13 @@ class GroupBuilder internal constructor(
             this.properties.set(Properties.FALLBACK_PRIORITY, priority.toString())
         }
 
+    /**
+     * Keeps [count] fully booted instances of this group warm on every eligible node, so
+     * a scale-up promotes one instead of cold-starting a service (`standby-count`).
+     */
+    fun standbyCount(count: Int): GroupBuilder =
+        apply { this.properties.set(Properties.STANDBY_COUNT, count.toString()) }
+
     /**
      * Appends a template (by name) to the ordered list applied to a service of this group
      * on start. Templates are copied in this order, so a later entry's files win over an
@@ -1,5 +1,6 @@
 package de.polocloud.api.group
 
+import de.polocloud.api.replica.ClusterReplica
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
@@ -7,6 +8,7 @@ import kotlinx.coroutines.cancel
 import kotlinx.coroutines.future.future
 import kotlinx.coroutines.runBlocking
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletableFuture.completedFuture
 import java.util.function.Consumer
 
 /**
@@ -19,50 +21,63 @@ import java.util.function.Consumer
  * see [de.polocloud.api.services.ServiceService]'s class doc for when to prefer it. `create`
  * and `edit` don't (yet): both go through [GroupBuilder.submit], whose blocking call would
  * need its own async counterpart first.
+ *
+ * With a [ClusterReplica] enabled, the reads (`find*`, `count`) are answered from it
+ * while it is fresh. Changes made through this service invalidate it until it has
+ * reconciled with the node again, so they are visible to the next read right away.
  */
 class GroupService internal constructor(
     private val client: GroupApiClient,
+    private val replica: ClusterReplica? = null,
 ) {
 
     // Backs every `*Async` method's future.
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
 
     fun findAll(): List<Group> =
-        runBlocking(Dispatchers.IO) { client.findGroups(null, null) }.map(GroupMapper::toApi)
+        cached() ?: runBlocking(Dispatchers.IO) { client.findGroups(null, null) }.map(GroupMapper::toApi)
 
     /** Non-blocking form of [findAll]. */
     fun findAllAsync(): CompletableFuture<List<Group>> =
-        scope.future { client.findGroups(null, null).map(GroupMapper::toApi) }
+        cached()?.let(::completedFuture) ?: scope.future { client.findGroups(null, null).map(GroupMapper::toApi) }
 
-    fun find(name: String): Group? =
-        runBlocking(Dispatchers.IO) { client.findGroups(name, null) }
+    fun find(name: String): Group? {
+        replica?.snapshot()?.let { return it.groups[name.lowercase()] }
+        return runBlocking(Dispatchers.IO) { client.findGroups(name, null) }
             .map(GroupMapper::toApi)
             .firstOrNull { it.name.equals(name, ignoreCase = true) }
+    }
 
     /** Non-blocking form of [find]. */
-    fun findAsync(name: String): CompletableFuture<Group?> =
-        scope.future {
+    fun findAsync(name: String): CompletableFuture<Group?> {
+        replica?.snapshot()?.let { return completedFuture(it.groups[name.lowercase()]) }
+        return scope.future {
             client.findGroups(name, null).map(GroupMapper::toApi).firstOrNull { it.name.equals(name, ignoreCase = true) }
         }
+    }
 
     fun find(type: GroupFilterType): List<Group> =
         findAll().filter { type.matches(it.platform) }
 
     /** Non-blocking form of [find]. */
     fun findAsync(type: GroupFilterType): CompletableFuture<List<Group>> =
-        scope.future { client.findGroups(null, null).map(GroupMapper::toApi).filter { type.matches(it.platform) } }
+        cached()?.let { completedFuture(it.filter { group -> type.matches(group.platform) }) }
+            ?: scope.future { client.findGroups(null, null).map(GroupMapper::toApi).filter { type.matches(it.platform) } }
 
     fun count(): Int = findAll().size
 
     /** Non-blocking form of [count]. */
-    fun countAsync(): CompletableFuture<Int> = scope.future { client.findGroups(null, null).size }
+    fun countAsync(): CompletableFuture<Int> =
+        cached()?.let { completedFuture(it.size) } ?: scope.future { client.findGroups(null, null).size }
 
     fun delete(name: String) {
         runBlocking(Dispatchers.IO) { client.deleteGroup(name) }
+        replica?.invalidate()
     }
 
     /** Non-blocking form of [delete]. */
-    fun deleteAsync(name: String): CompletableFuture<Void?> = scope.future { client.deleteGroup(name); null }
+    fun deleteAsync(name: String): CompletableFuture<Void?> =
+        scope.future { client.deleteGroup(name); replica?.invalidate(); null }
 
     fun delete(group: Group) = delete(group.name)
 
@@ -82,9 +97,13 @@ class GroupService internal constructor(
      * @throws NoSuchElementException if no group named [name] exists.
      */
     fun edit(name: String, editor: Consumer<GroupBuilder>) {
-        val current = find(name) ?: throw NoSuchElementException("No group named '$name' exists")
+        // Always from the node: a replica lagging behind would resubmit outdated fields.
+        val current = runBlocking(Dispatchers.IO) { client.findGroups(name, null) }
+            .map(GroupMapper::toApi)
+            .firstOrNull { it.name.equals(name, ignoreCase = true) }
+            ?: throw NoSuchElementException("No group named '$name' exists")
         val builder = GroupBuilder(current) { group ->
-            GroupMapper.toApi(runBlocking { client.updateGroup(GroupMapper.toProto(group)) })
+            GroupMapper.toApi(runBlocking { client.updateGroup(GroupMapper.toProto(group)) }).also { replica?.invalidate() }
         }
         editor.accept(builder)
         builder.submit()
@@ -92,6 +111,6 @@ class GroupService internal constructor(
 
     fun create(name: String): GroupBuilder =
         GroupBuilder { group ->
-            GroupMapper.toApi(runBlocking { client.createGroup(GroupMapper.toProto(group)) })
+            GroupMapper.toApi(runBlocking { client.createGroup(GroupMapper.toProto(group)) }).also { replica?.invalidate() }
         }.name(name)
 }
@@ -1,22 +1,27 @@
 package de.polocloud.api.player
 
 import de.polocloud.proto.FindPlayerRequest
+import de.polocloud.proto.ListPlayersPageRequest
 import de.polocloud.proto.ListPlayersRequest
 import de.polocloud.proto.PlayerApiServiceGrpcKt
 import de.polocloud.proto.PlayerData
+import de.polocloud.proto.PlayerFilter as PlayerFilterData
 import de.polocloud.proto.RegisterPlayerRequest
+import de.polocloud.proto.StreamPlayersRequest
 import de.polocloud.proto.UnregisterPlayerRequest
 import de.polocloud.proto.UpdatePlayerServerRequest
 import de.polocloud.shared.player.CloudPlayer
 import de.polocloud.shared.property.Properties
 import io.grpc.ManagedChannel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.map
 import java.util.concurrent.TimeUnit
 
 /**
  * gRPC-backed [PlayerApiClient] that talks to the node's `PlayerApiService`.
  *
  * Mirrors [de.polocloud.api.services.GrpcServiceApiClient] (lazy channel, deadline
- * on every call).
+ * on every unary call).
  */
 class GrpcPlayerApiClient(
     private val channelProvider: () -> ManagedChannel,
@@ -61,6 +66,30 @@ class GrpcPlayerApiClient(
         return response.playersList.map(::toShared)
     }
 
+    override suspend fun listPlayersPage(filter: PlayerFilter, pageSize: Int, pageToken: String?): PlayerPage {
+        val request = ListPlayersPageRequest.newBuilder()
+            .setFilter(toProto(filter))
+            .setPageSize(pageSize)
+            .setPageToken(pageToken ?: "")
+            .build()
+        val response = stub().listPlayersPage(request)
+        return PlayerPage(response.playersList.map(::toShared), response.nextPageToken.ifBlank { null })
+    }
+
+    // No deadline: the stream ends by itself, but on a large network it may well take
+    // longer than a unary call is allowed to.
+    override fun streamPlayers(filter: PlayerFilter): Flow<CloudPlayer> {
+        val request = StreamPlayersRequest.newBuilder().setFilter(toProto(filter)).build()
+        val stub = PlayerApiServiceGrpcKt.PlayerApiServiceCoroutineStub(channelProvider())
+        return stub.streamPlayers(request).map(::toShared)
+    }
+
+    private fun toProto(filter: PlayerFilter): PlayerFilterData = PlayerFilterData.newBuilder()
+        .setProxy(filter.proxy ?: "")
+        .setServer(filter.server ?: "")
+        .setNamePrefix(filter.namePrefix ?: "")
+        .build()
+
     private fun toProto(player: CloudPlayer): PlayerData = PlayerData.newBuilder()
         .setId(player.id)
         .setName(player.name)
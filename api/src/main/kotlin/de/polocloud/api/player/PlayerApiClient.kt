@@ -1,6 +1,7 @@
 package de.polocloud.api.player
 
 import de.polocloud.shared.player.CloudPlayer
+import kotlinx.coroutines.flow.Flow
 
 /**
  * Transport-agnostic gateway to the node's player API.
@@ -25,9 +26,38 @@ interface PlayerApiClient {
     /** The player matching [playerId] or [name] (whichever is non-null; id checked first), or `null`. */
     suspend fun findPlayer(playerId: String? = null, name: String? = null): CloudPlayer?
 
-    /** Every player currently known to the connected node. */
+    /** Every player currently known to the connected node — refused by the node on large networks. */
     suspend fun listPlayers(): List<CloudPlayer>
+
+    /** Up to [pageSize] players matching [filter], continuing after [pageToken] (`null` for the first page). */
+    suspend fun listPlayersPage(filter: PlayerFilter, pageSize: Int, pageToken: String?): PlayerPage
+
+    /** Every player matching [filter], streamed one at a time. */
+    fun streamPlayers(filter: PlayerFilter): Flow<CloudPlayer>
 }
 
 /** Outcome of a [PlayerApiClient] write call. */
 data class PlayerCommandResult(val success: Boolean, val message: String)
+
+/**
+ * Server-side filter of a player listing; `null` criteria match every player.
+ *
+ * @param namePrefix matched case-insensitively.
+ */
+data class PlayerFilter(
+    val proxy: String? = null,
+    val server: String? = null,
+    val namePrefix: String? = null,
+) {
+    companion object {
+        @JvmField
+        val ALL = PlayerFilter()
+    }
+}
+
+/**
+ * One page of a player listing, ordered by id.
+ *
+ * @param nextPageToken passed back to fetch the following page; `null` on the last one.
+ */
+data class PlayerPage(val players: List<CloudPlayer>, val nextPageToken: String?)
@@ -5,6 +5,8 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.future.future
 import kotlinx.coroutines.runBlocking
 import java.util.concurrent.CompletableFuture
@@ -67,12 +69,36 @@ class PlayerService internal constructor(
     /** Non-blocking form of [findByName]. */
     fun findByNameAsync(name: String): CompletableFuture<CloudPlayer?> = scope.future { client.findPlayer(name = name) }
 
-    /** Every player currently known to the connected node. */
-    fun findAll(): List<CloudPlayer> = runBlocking(Dispatchers.IO) { client.listPlayers() }
+    /**
+     * Every player currently known to the connected node. Streamed rather than fetched
+     * in one response, so it works on any network size — but still holds them all in
+     * the returned list; prefer [findPage] or [stream] when that's a lot.
+     */
+    fun findAll(): List<CloudPlayer> = runBlocking(Dispatchers.IO) { client.streamPlayers(PlayerFilter.ALL).toList() }
 
     /** Non-blocking form of [findAll]. */
-    fun findAllAsync(): CompletableFuture<List<CloudPlayer>> = scope.future { client.listPlayers() }
+    fun findAllAsync(): CompletableFuture<List<CloudPlayer>> = scope.future { client.streamPlayers(PlayerFilter.ALL).toList() }
+
+    /**
+     * Up to [pageSize] (at most 1000) players matching [filter], ordered by id. Pass the
+     * page's [PlayerPage.nextPageToken] as [pageToken] for the next one.
+     */
+    @JvmOverloads
+    fun findPage(filter: PlayerFilter = PlayerFilter.ALL, pageSize: Int = DEFAULT_PAGE_SIZE, pageToken: String? = null): PlayerPage =
+        runBlocking(Dispatchers.IO) { client.listPlayersPage(filter, pageSize, pageToken) }
+
+    /** Non-blocking form of [findPage]. */
+    @JvmOverloads
+    fun findPageAsync(filter: PlayerFilter = PlayerFilter.ALL, pageSize: Int = DEFAULT_PAGE_SIZE, pageToken: String? = null): CompletableFuture<PlayerPage> =
+        scope.future { client.listPlayersPage(filter, pageSize, pageToken) }
+
+    /** Every player matching [filter], one at a time as they arrive from the node. */
+    fun stream(filter: PlayerFilter = PlayerFilter.ALL): Flow<CloudPlayer> = client.streamPlayers(filter)
 
     /** Releases background resources backing the `*Async` methods. */
     fun close() = scope.cancel()
+
+    private companion object {
+        const val DEFAULT_PAGE_SIZE = 500
+    }
 }
@@ -0,0 +1,279 @@
+package de.polocloud.api.replica
+
+import de.polocloud.api.event.EventService
+import de.polocloud.api.group.Group
+import de.polocloud.api.group.GroupApiClient
+import de.polocloud.api.group.GroupMapper
+import de.polocloud.api.services.ServiceApiClient
+import de.polocloud.api.services.ServiceMapper
+import de.polocloud.shared.event.Event
+import de.polocloud.shared.event.group.GroupUpdatedEvent
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.event.server.ServerStartEvent
+import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
+import de.polocloud.shared.service.Service
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Opt-in, event-fed copy of the cluster's services and groups, so that
+ * [de.polocloud.api.services.ServiceService] and [de.polocloud.api.group.GroupService]
+ * reads are in-memory lookups instead of a blocking gRPC round trip each — a sign or
+ * tab-list plugin asking for a group's services every tick would otherwise hold its
+ * main thread on the node for every call.
+ *
+ * Seeded once with a full [reconcile], then kept current from the lifecycle events the
+ * [EventService] streams anyway ([ServerStartEvent], [ServiceOnlineEvent],
+ * [PlayerCountChangedEvent], [ServerStoppedEvent], [GroupUpdatedEvent]). Events of
+ * different types arrive on different streams, so their relative order isn't guaranteed:
+ * a stopped service's id is remembered, and a late start/online/player-count event for
+ * it is ignored. What no event carries — created or deleted groups, group fields other
+ * than properties — catches up on the periodic [reconcile] every [reconcileInterval].
+ *
+ * Reads never take a lock: every change swaps in a new immutable [ReplicaSnapshot].
+ * [snapshot] only hands one out while the last successful reconcile is at most
+ * [maxStaleness] old, and not while an event stream is reconnecting (events may have
+ * been missed); otherwise the caller falls back to the node, counted as a miss in
+ * [stats].
+ *
+ * Enabled with `-Dpolocloud.api.replica=true` or `POLOCLOUD_API_REPLICA=true` and
+ * reachable via [de.polocloud.api.Polocloud.replica]. Nothing is fetched or subscribed
+ * until the first read, so the connection stays as lazy as without a replica.
+ *
+ * @param events the event bus feeding the replica. `null` runs nothing in the
+ *               background — the caller drives [reconcile] and [apply] itself.
+ * @param clock  epoch millis — injectable for testing.
+ */
+class ClusterReplica internal constructor(
+    private val serviceClient: ServiceApiClient,
+    private val groupClient: GroupApiClient,
+    private val events: EventService?,
+    val reconcileInterval: Long = DEFAULT_RECONCILE_INTERVAL_MS,
+    val maxStaleness: Long = DEFAULT_MAX_STALENESS_MS,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+
+    @Volatile
+    private var current = ReplicaSnapshot(emptyMap(), emptyMap())
+
+    // Epoch millis of the last successful reconcile; null = not seeded, or invalidated.
+    @Volatile
+    private var syncedAt: Long? = null
+
+    // Bumped by invalidate(), so a reconcile already in flight doesn't re-validate the replica.
+    private val generation = AtomicLong()
+
+    // Guards every write below and to [current]; reads go through [current] alone.
+    private val lock = Any()
+    private var syncing = false
+    private val missedWhileSyncing = mutableListOf<Event>()
+    private val stoppedIds = object : LinkedHashSet<String>() {
+        override fun add(element: String): Boolean {
+            val added = super.add(element)
+            if (size > STOPPED_IDS_LIMIT) remove(first())
+            return added
+        }
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val appliedEvents = AtomicLong()
+    private val reconciles = AtomicLong()
+
+    private val started = AtomicBoolean()
+    private val wakeups = Channel<Unit>(Channel.CONFLATED)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    /**
+     * The current services and groups, or `null` if they can't be trusted right now (not
+     * seeded yet, older than [maxStaleness], or an event stream dropped since the last
+     * reconcile). Counted as a hit or a miss either way. The first call starts the
+     * replica.
+     */
+    internal fun snapshot(): ReplicaSnapshot? {
+        start()
+        val synced = syncedAt
+        if (synced == null || clock() - synced > maxStaleness) {
+            misses.incrementAndGet()
+            return null
+        }
+        hits.incrementAndGet()
+        return current
+    }
+
+    /**
+     * Stops serving reads until the next [reconcile] and schedules one right away — for a
+     * change this process made itself (e.g. a group edit) that no event will report.
+     */
+    fun invalidate() {
+        generation.incrementAndGet()
+        syncedAt = null
+        wakeups.trySend(Unit)
+    }
+
+    /** Read and update counters, and how old the replica currently is. */
+    fun stats(): ReplicaStats {
+        val snapshot = current
+        return ReplicaStats(
+            hits = hits.get(),
+            misses = misses.get(),
+            services = snapshot.services.size,
+            groups = snapshot.groups.size,
+            appliedEvents = appliedEvents.get(),
+            reconciles = reconciles.get(),
+            ageMillis = syncedAt?.let { clock() - it },
+        )
+    }
+
+    /** Stops the reconcile loop. Subscriptions end with the [EventService] itself. */
+    fun close() = scope.cancel()
+
+    private fun start() {
+        if (events == null || !started.compareAndSet(false, true)) return
+        events.subscribe(ServerStartEvent::class.java) { apply(it) }
+        events.subscribe(ServiceOnlineEvent::class.java) { apply(it) }
+        events.subscribe(PlayerCountChangedEvent::class.java) { apply(it) }
+        events.subscribe(ServerStoppedEvent::class.java) { apply(it) }
+        events.subscribe(GroupUpdatedEvent::class.java) { apply(it) }
+        events.onStreamInterrupted(::invalidate)
+
+        scope.launch {
+            while (isActive) {
+                try {
+                    reconcile()
+                } catch (cancel: CancellationException) {
+                    throw cancel
+                } catch (_: Exception) {
+                    // Node unreachable — reads fall back to it (and fail) until the next try.
+                }
+                withTimeoutOrNull(reconcileInterval) { wakeups.receive() }
+            }
+        }
+    }
+
+    /**
+     * Replaces the replica with a fresh full listing from the node. Events arriving while
+     * the listing is in flight are applied on top of it afterwards, so a service stopped
+     * mid-fetch doesn't reappear.
+     */
+    internal suspend fun reconcile() {
+        synchronized(lock) {
+            syncing = true
+            missedWhileSyncing.clear()
+        }
+        try {
+            val startedAt = clock()
+            val generationAtStart = generation.get()
+            val services = serviceClient.findServices(null, null).map(ServiceMapper::toApi)
+            val groups = groupClient.findGroups(null, null).map(GroupMapper::toApi)
+            synchronized(lock) {
+                current = ReplicaSnapshot(
+                    services.filter { it.id !in stoppedIds }.associateBy { it.name().lowercase() },
+                    groups.associateBy { it.name.lowercase() },
+                )
+                missedWhileSyncing.forEach(::applyLocked)
+                // Measured from the request, not the answer: the listing is at least this old.
+                if (generation.get() == generationAtStart) syncedAt = startedAt
+            }
+            reconciles.incrementAndGet()
+        } finally {
+            synchronized(lock) {
+                syncing = false
+                missedWhileSyncing.clear()
+            }
+        }
+    }
+
+    /** Folds a lifecycle event into the replica; other events are ignored. */
+    internal fun apply(event: Event) {
+        synchronized(lock) {
+            if (syncing) missedWhileSyncing += event
+            applyLocked(event)
+        }
+        appliedEvents.incrementAndGet()
+    }
+
+    private fun applyLocked(event: Event) {
+        val snapshot = current
+        current = when (event) {
+            is ServerStartEvent -> snapshot.put(event.service)
+            is ServiceOnlineEvent -> snapshot.put(event.service)
+            is PlayerCountChangedEvent -> {
+                // Only an update: a service this replica doesn't know yet comes with its start event.
+                val known = snapshot.services[event.service.name().lowercase()]
+                if (known?.id == event.service.id) snapshot.put(event.service) else snapshot
+            }
+            is ServerStoppedEvent -> {
+                stoppedIds += event.service.id
+                val key = event.service.name().lowercase()
+                if (snapshot.services[key]?.id == event.service.id) {
+                    snapshot.copy(services = snapshot.services - key)
+                } else {
+                    snapshot
+                }
+            }
+            is GroupUpdatedEvent -> {
+                val key = event.name.lowercase()
+                val group = snapshot.groups[key] ?: return
+                snapshot.copy(groups = snapshot.groups + (key to group.copy(properties = event.properties)))
+            }
+            else -> snapshot
+        }
+    }
+
+    private fun ReplicaSnapshot.put(service: Service): ReplicaSnapshot =
+        if (service.id in stoppedIds) this else copy(services = services + (service.name().lowercase() to service))
+
+    internal companion object {
+        const val DEFAULT_RECONCILE_INTERVAL_MS = 30_000L
+        const val DEFAULT_MAX_STALENESS_MS = 90_000L
+
+        // Enough for every service stopped between two reconciles on any sane cluster.
+        private const val STOPPED_IDS_LIMIT = 4_096
+
+        fun resolveEnabled(): Boolean =
+            (System.getProperty("polocloud.api.replica") ?: System.getenv("POLOCLOUD_API_REPLICA"))
+                ?.toBooleanStrictOrNull() ?: false
+    }
+}
+
+/**
+ * One immutable state of a [ClusterReplica], keyed by lower-cased service/group name.
+ */
+internal data class ReplicaSnapshot(
+    val services: Map<String, Service>,
+    val groups: Map<String, Group>,
+)
+
+/**
+ * Counters of a [ClusterReplica].
+ *
+ * @param hits          reads served from the replica.
+ * @param misses        reads that went to the node because the replica was stale or not seeded.
+ * @param appliedEvents lifecycle events folded in since startup.
+ * @param reconciles    successful full reconciles since startup.
+ * @param ageMillis     time since the last successful reconcile, `null` while not seeded.
+ */
+data class ReplicaStats(
+    val hits: Long,
+    val misses: Long,
+    val services: Int,
+    val groups: Int,
+    val appliedEvents: Long,
+    val reconciles: Long,
+    val ageMillis: Long?,
+) {
+    /** Share of reads served from the replica, `0.0` before the first one. */
+    val hitRate: Double
+        get() = if (hits + misses > 0) hits.toDouble() / (hits + misses) else 0.0
+}
@@ -6,8 +6,10 @@ import de.polocloud.proto.ServiceApiServiceGrpcKt
 import de.polocloud.proto.ServiceCountRequest
 import de.polocloud.proto.ServiceData
 import de.polocloud.proto.ServiceListRequest
+import de.polocloud.proto.ServiceWatchEvent
 import de.polocloud.proto.StopServiceRequest
 import de.polocloud.proto.StreamServiceLogsRequest
+import de.polocloud.proto.WatchServicesRequest
 import io.grpc.ManagedChannel
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.map
@@ -25,7 +27,7 @@ class GrpcServiceApiClient(
 
     // Every unary call carries a deadline so a misconfigured node surfaces as a clear
     // DEADLINE_EXCEEDED error instead of blocking the caller indefinitely. Not applied to
-    // streamServiceLogs — that call is meant to run indefinitely.
+    // streamServiceLogs/watchServices — those calls are meant to run indefinitely.
     private fun stub() = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(channelProvider())
         .withDeadlineAfter(DEADLINE_SECONDS, TimeUnit.SECONDS)
 
@@ -71,6 +73,16 @@ class GrpcServiceApiClient(
         return stub.streamServiceLogs(request).map { it.line }
     }
 
+    override fun watchServices(epoch: String, fromVersion: Long, groupFilter: String?): Flow<ServiceWatchEvent> {
+        val request = WatchServicesRequest.newBuilder().apply {
+            setEpoch(epoch)
+            setFromVersion(fromVersion)
+            groupFilter?.let { setGroupFilter(it) }
+        }.build()
+        val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(channelProvider())
+        return stub.watchServices(request)
+    }
+
     private companion object {
         const val DEADLINE_SECONDS = 10L
     }
@@ -1,6 +1,7 @@
 package de.polocloud.api.services
 
 import de.polocloud.proto.ServiceData
+import de.polocloud.proto.ServiceWatchEvent
 import kotlinx.coroutines.flow.Flow
 
 /**
@@ -27,6 +28,12 @@ interface ServiceApiClient {
 
     /** The buffered recent log lines of the running service named [name], followed by its live output. */
     fun streamServiceLogs(name: String): Flow<String>
+
+    /**
+     * The node's service watch log from [epoch]/[fromVersion] on — or from a snapshot if
+     * [epoch] is empty or can't be resumed — narrowed to [groupFilter] if given.
+     */
+    fun watchServices(epoch: String, fromVersion: Long, groupFilter: String?): Flow<ServiceWatchEvent>
 }
 
 /** Outcome of a [ServiceApiClient.stopService]/[ServiceApiClient.executeServiceCommand] call. */
@@ -1,6 +1,7 @@
 package de.polocloud.api.services
 
 import de.polocloud.api.Polocloud
+import de.polocloud.api.replica.ClusterReplica
 import de.polocloud.shared.service.Service
 import de.polocloud.shared.service.ServiceState
 import kotlinx.coroutines.CoroutineScope
@@ -12,6 +13,7 @@ import kotlinx.coroutines.future.future
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletableFuture.completedFuture
 import java.util.function.Consumer
 
 /**
@@ -34,57 +36,77 @@ import java.util.function.Consumer
  *   the work itself still running on [Dispatchers.IO] — use this from a thread that must
  *   not block (like a platform's main thread) and handle the result via
  *   [CompletableFuture.thenAccept] or similar.
+ *
+ * With a [ClusterReplica] enabled, the reads (`find*`, `count`) are answered from it
+ * without any round trip while it is fresh, both forms alike — the `*Async` one with an
+ * already completed future.
  */
 class ServiceService internal constructor(
     private val client: ServiceApiClient,
+    private val replica: ClusterReplica? = null,
 ) {
 
-    // Backs streamLogs' background subscriptions and every `*Async` method's future.
+    // Backs streamLogs' and watch's background streams and every `*Async` method's future.
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
 
     /** All services currently known to the connected node. */
     fun findAll(): List<Service> =
-        runBlocking(Dispatchers.IO) { client.findServices(null, null) }.map(ServiceMapper::toApi)
+        cached(null, null) ?: runBlocking(Dispatchers.IO) { client.findServices(null, null) }.map(ServiceMapper::toApi)
 
     /** Non-blocking form of [findAll]. */
     fun findAllAsync(): CompletableFuture<List<Service>> =
-        scope.future { client.findServices(null, null).map(ServiceMapper::toApi) }
+        cached(null, null)?.let(::completedFuture) ?: scope.future { client.findServices(null, null).map(ServiceMapper::toApi) }
 
     /** The service with the given `group-index` [name], or `null` if none matches. */
-    fun find(name: String): Service? =
-        findAll().firstOrNull { it.name().equals(name, ignoreCase = true) }
+    fun find(name: String): Service? {
+        replica?.snapshot()?.let { return it.services[name.lowercase()] }
+        return findAll().firstOrNull { it.name().equals(name, ignoreCase = true) }
+    }
 
     /** Non-blocking form of [find]. */
-    fun findAsync(name: String): CompletableFuture<Service?> =
-        scope.future { client.findServices(null, null).map(ServiceMapper::toApi).firstOrNull { it.name().equals(name, ignoreCase = true) } }
+    fun findAsync(name: String): CompletableFuture<Service?> {
+        replica?.snapshot()?.let { return completedFuture(it.services[name.lowercase()]) }
+        return scope.future { client.findServices(null, null).map(ServiceMapper::toApi).firstOrNull { it.name().equals(name, ignoreCase = true) } }
+    }
 
     /** All services belonging to [group]. */
     fun findByGroup(group: String): List<Service> =
-        runBlocking(Dispatchers.IO) { client.findServices(group, null) }.map(ServiceMapper::toApi)
+        cached(group, null) ?: runBlocking(Dispatchers.IO) { client.findServices(group, null) }.map(ServiceMapper::toApi)
 
     /** Non-blocking form of [findByGroup]. */
     fun findByGroupAsync(group: String): CompletableFuture<List<Service>> =
-        scope.future { client.findServices(group, null).map(ServiceMapper::toApi) }
+        cached(group, null)?.let(::completedFuture) ?: scope.future { client.findServices(group, null).map(ServiceMapper::toApi) }
 
     /** All services currently in [state] (e.g. [ServiceState.RUNNING]). */
     fun findByState(state: ServiceState): List<Service> =
-        runBlocking(Dispatchers.IO) { client.findServices(null, state.name) }.map(ServiceMapper::toApi)
+        cached(null, state) ?: runBlocking(Dispatchers.IO) { client.findServices(null, state.name) }.map(ServiceMapper::toApi)
 
     /** Non-blocking form of [findByState]. */
     fun findByStateAsync(state: ServiceState): CompletableFuture<List<Service>> =
-        scope.future { client.findServices(null, state.name).map(ServiceMapper::toApi) }
+        cached(null, state)?.let(::completedFuture) ?: scope.future { client.findServices(null, state.name).map(ServiceMapper::toApi) }
 
     /** Number of services currently known to the connected node. */
-    fun count(): Int = runBlocking(Dispatchers.IO) { client.countServices(null, null) }
+    fun count(): Int = cached(null, null)?.size ?: runBlocking(Dispatchers.IO) { client.countServices(null, null) }
 
     /** Non-blocking form of [count]. */
-    fun countAsync(): CompletableFuture<Int> = scope.future { client.countServices(null, null) }
+    fun countAsync(): CompletableFuture<Int> =
+        cached(null, null)?.let { completedFuture(it.size) } ?: scope.future { client.countServices(null, null) }
 
     /** Number of services belonging to [group]. */
-    fun count(group: String): Int = runBlocking(Dispatchers.IO) { client.countServices(group, null) }
+    fun count(group: String): Int = cached(group, null)?.size ?: runBlocking(Dispatchers.IO) { client.countServices(group, null) }
 
     /** Non-blocking form of [count]. */
-    fun countAsync(group: String): CompletableFuture<Int> = scope.future { client.countServices(group, null) }
+    fun countAsync(group: String): CompletableFuture<Int> =
+        cached(group, null)?.let { completedFuture(it.size) } ?: scope.future { client.countServices(group, null) }
+
+    /**
+     * The replica's services matching the filters — the same ones the node's
+     * `FindServices` applies — or `null` if there is no fresh replica to ask.
+     */
+    private fun cached(group: String?, state: ServiceState?): List<Service>? =
+        replica?.snapshot()?.services?.values?.filter { service ->
+            (group == null || service.group.equals(group, ignoreCase = true)) && (state == null || service.state == state)
+        }
 
     /**
      * Stops the running service named [name], regardless of which node it's running on.
@@ -144,7 +166,19 @@ class ServiceService internal constructor(
         return AutoCloseable { job.cancel() }
     }
 
-    /** Ends every active [streamLogs] subscription and releases background resources. */
+    /**
+     * Opens a live view of the cluster's services — or only [group]'s — and tells
+     * [listener] about every service already running, then about every change as it
+     * happens. See [ServiceWatch].
+     *
+     * @return the view; close it to end the watch. Otherwise it keeps running for as long
+     * as this [ServiceService] (i.e. [de.polocloud.api.Polocloud]) is open.
+     */
+    @JvmOverloads
+    fun watch(group: String? = null, listener: Consumer<ServiceChange>): ServiceWatch =
+        ServiceWatch(client, group, listener, scope)
+
+    /** Ends every active [streamLogs] subscription and [watch] and releases background resources. */
     fun close() = scope.cancel()
 }
 
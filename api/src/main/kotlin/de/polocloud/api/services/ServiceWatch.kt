@@ -0,0 +1,121 @@
+package de.polocloud.api.services
+
+import de.polocloud.proto.ServiceWatchDelta
+import de.polocloud.proto.ServiceWatchEvent
+import de.polocloud.shared.service.Service
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import java.util.function.Consumer
+
+/**
+ * One change to a [ServiceWatch]'s view, handed to its listener in the order the node
+ * logged them.
+ *
+ * @param service the service after the change; as last known for [Type.REMOVED].
+ */
+data class ServiceChange(val type: Type, val service: Service) {
+    enum class Type { ADDED, UPDATED, REMOVED }
+}
+
+/**
+ * A live view of the cluster's services, obtained from [ServiceService.watch]: one
+ * `WatchServices` stream that starts with a snapshot and then delivers every start, stop
+ * and player-count change as an ordered delta — instead of a `findAll()` snapshot plus
+ * separate event subscriptions, which loses whatever happens between the two.
+ *
+ * After a dropped connection it reconnects with the last version it applied and only
+ * receives what it missed. Should the node no longer have that (it restarted, or the
+ * client was gone too long), it gets a fresh snapshot instead, and the listener is still
+ * only told what actually changed — so the listener sees one consistent sequence of
+ * changes for the watch's whole lifetime.
+ *
+ * The listener runs on a background thread, one change at a time.
+ */
+class ServiceWatch internal constructor(
+    private val client: ServiceApiClient,
+    private val groupFilter: String?,
+    private val listener: Consumer<ServiceChange>,
+    scope: CoroutineScope,
+    private val reconnectDelayMs: Long = RECONNECT_DELAY_MS,
+) : AutoCloseable {
+
+    // Keyed by service id. Replaced, never mutated, so readers need no lock.
+    @Volatile
+    private var view: Map<String, Service> = emptyMap()
+
+    // Where to resume from; only touched by the collecting coroutine.
+    private var epoch = ""
+    private var version = 0L
+
+    private val job = scope.launch {
+        while (isActive) {
+            try {
+                client.watchServices(epoch, version, groupFilter).collect(::apply)
+            } catch (cancel: CancellationException) {
+                throw cancel
+            } catch (_: Exception) {
+                // Node restart / transient channel failure — resumed below.
+            }
+            // Also after a stream the node ended itself, e.g. because this client fell too far behind.
+            delay(reconnectDelayMs)
+        }
+    }
+
+    /** Every service currently in view. */
+    fun services(): List<Service> = view.values.toList()
+
+    /** The service with the given `group-index` [name], or `null` if it isn't in view. */
+    fun find(name: String): Service? = view.values.firstOrNull { it.name().equals(name, ignoreCase = true) }
+
+    /** Ends the stream; the listener is not called anymore. */
+    override fun close() = job.cancel()
+
+    private fun apply(event: ServiceWatchEvent) {
+        if (event.hasSnapshot()) {
+            val previous = view
+            val current = event.snapshot.servicesList.map(ServiceMapper::toApi).associateBy { it.id }
+            view = current
+            previous.values.filter { it.id !in current }.forEach { notify(ServiceChange.Type.REMOVED, it) }
+            current.values.forEach { service ->
+                val known = previous[service.id]
+                when {
+                    known == null -> notify(ServiceChange.Type.ADDED, service)
+                    known != service -> notify(ServiceChange.Type.UPDATED, service)
+                }
+            }
+        } else if (event.hasDelta()) {
+            val service = ServiceMapper.toApi(event.delta.service)
+            when (event.delta.type) {
+                ServiceWatchDelta.Type.ADDED -> {
+                    view = view + (service.id to service)
+                    notify(ServiceChange.Type.ADDED, service)
+                }
+                ServiceWatchDelta.Type.UPDATED -> {
+                    view = view + (service.id to service)
+                    notify(ServiceChange.Type.UPDATED, service)
+                }
+                ServiceWatchDelta.Type.REMOVED -> {
+                    view = view - service.id
+                    notify(ServiceChange.Type.REMOVED, service)
+                }
+                // A delta type newer than this client — the next snapshot sets it right.
+                else -> return
+            }
+        }
+        epoch = event.epoch
+        version = event.version
+    }
+
+    private fun notify(type: ServiceChange.Type, service: Service) {
+        // A throwing listener must not end the watch.
+        runCatching { listener.accept(ServiceChange(type, service)) }
+    }
+
+    private companion object {
+        const val RECONNECT_DELAY_MS = 3_000L
+    }
+}
@@ -0,0 +1,169 @@
+package de.polocloud.api.replica
+
+import de.polocloud.api.group.GroupApiClient
+import de.polocloud.api.group.GroupService
+import de.polocloud.api.services.ServiceApiClient
+import de.polocloud.api.services.ServiceCommandResult
+import de.polocloud.api.services.ServiceService
+import de.polocloud.proto.GroupData
+import de.polocloud.proto.ServiceData
+import de.polocloud.proto.ServiceWatchEvent
+import de.polocloud.shared.event.group.GroupUpdatedEvent
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
+import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+/** Counts list calls, so a test can tell a replica read from a round trip. */
+private class FakeServiceApiClient(var services: List<ServiceData> = emptyList()) : ServiceApiClient {
+
+    var calls = 0
+
+    // Completed by a test to hold a listing in flight.
+    var gate: CompletableDeferred<Unit>? = null
+
+    override suspend fun findServices(groupFilter: String?, stateFilter: String?): List<ServiceData> {
+        calls++
+        val listing = services
+        gate?.await()
+        return listing.filter { groupFilter == null || it.group.equals(groupFilter, ignoreCase = true) }
+    }
+
+    override suspend fun countServices(groupFilter: String?, stateFilter: String?): Int =
+        findServices(groupFilter, stateFilter).size
+
+    override suspend fun stopService(name: String) = ServiceCommandResult(true, "")
+    override suspend fun executeServiceCommand(name: String, command: String) = ServiceCommandResult(true, "")
+    override suspend fun copyTemplate(name: String, templateName: String) = ServiceCommandResult(true, "")
+    override fun streamServiceLogs(name: String): Flow<String> = emptyFlow()
+    override fun watchServices(epoch: String, fromVersion: Long, groupFilter: String?): Flow<ServiceWatchEvent> = emptyFlow()
+}
+
+private class FakeGroupApiClient(var groups: List<GroupData> = emptyList()) : GroupApiClient {
+
+    var calls = 0
+
+    override suspend fun findGroups(nameFilter: String?, typeFilter: String?): List<GroupData> {
+        calls++
+        return groups.filter { nameFilter == null || it.name.contains(nameFilter, ignoreCase = true) }
+    }
+
+    override suspend fun createGroup(data: GroupData): GroupData = data
+    override suspend fun updateGroup(data: GroupData): GroupData = data.also { groups = groups.filter { g -> g.name != it.name } + it }
+    override suspend fun deleteGroup(name: String): Boolean = true
+}
+
+class ClusterReplicaTest {
+
+    private var now = 1_000L
+    private val serviceClient = FakeServiceApiClient(listOf(serviceData("lobby", 1, "id-1"), serviceData("survival", 1, "id-2")))
+    private val groupClient = FakeGroupApiClient(listOf(groupData("lobby"), groupData("survival")))
+    private val replica = ClusterReplica(serviceClient, groupClient, events = null, maxStaleness = 5_000, clock = { now })
+
+    private fun serviceData(group: String, index: Int, id: String) = ServiceData.newBuilder()
+        .setId(id)
+        .setIndex(index)
+        .setGroup(group)
+        .setState("RUNNING")
+        .build()
+
+    private fun groupData(name: String) = GroupData.newBuilder()
+        .setName(name)
+        .setMemory(512)
+        .setPlatform("paper")
+        .setVersion("1.21")
+        .build()
+
+    private fun service(group: String, index: Int, id: String, players: Int = 0) =
+        Service(id = id, index = index, group = group, state = ServiceState.RUNNING, port = 0, host = "", pid = 0, onlinePlayers = players)
+
+    @Test
+    fun `reads are served from the replica once seeded`() {
+        val services = ServiceService(serviceClient, replica)
+        runBlocking { replica.reconcile() }
+        serviceClient.calls = 0
+
+        assertEquals(listOf("lobby-1"), services.findByGroup("LOBBY").map { it.name() })
+        assertEquals("survival-1", services.find("survival-1")?.name())
+        assertEquals(2, services.count())
+        assertEquals(0, serviceClient.calls)
+        assertEquals(3, replica.stats().hits)
+    }
+
+    @Test
+    fun `a stale or unseeded replica falls back to the node`() {
+        val services = ServiceService(serviceClient, replica)
+
+        assertEquals(2, services.findAll().size)
+        runBlocking { replica.reconcile() }
+        now += 5_001
+        serviceClient.calls = 0
+        assertEquals(2, services.findAll().size)
+
+        assertEquals(1, serviceClient.calls)
+        assertEquals(2, replica.stats().misses)
+    }
+
+    @Test
+    fun `lifecycle events keep the replica current`() {
+        runBlocking { replica.reconcile() }
+
+        replica.apply(ServiceOnlineEvent(service("lobby", 2, "id-3")))
+        replica.apply(PlayerCountChangedEvent(service("lobby", 1, "id-1", players = 7)))
+        replica.apply(ServerStoppedEvent(service("survival", 1, "id-2")))
+        replica.apply(GroupUpdatedEvent("lobby", Properties.of(mapOf(Properties.FALLBACK to "true"))))
+
+        val snapshot = replica.snapshot()!!
+        assertEquals(setOf("lobby-1", "lobby-2"), snapshot.services.keys)
+        assertEquals(7, snapshot.services["lobby-1"]!!.onlinePlayers)
+        assertEquals("true", snapshot.groups["lobby"]!!.properties[Properties.FALLBACK])
+    }
+
+    @Test
+    fun `a late event for a stopped service does not bring it back`() {
+        runBlocking { replica.reconcile() }
+
+        replica.apply(ServerStoppedEvent(service("lobby", 1, "id-1")))
+        replica.apply(PlayerCountChangedEvent(service("lobby", 1, "id-1", players = 3)))
+        replica.apply(ServiceOnlineEvent(service("lobby", 1, "id-1")))
+
+        assertNull(replica.snapshot()!!.services["lobby-1"])
+    }
+
+    @Test
+    fun `a stop arriving while a reconcile is in flight survives it`() = runBlocking {
+        val gate = CompletableDeferred<Unit>()
+        serviceClient.gate = gate
+        val reconcile = async { replica.reconcile() }
+        while (serviceClient.calls == 0) yield()
+
+        replica.apply(ServerStoppedEvent(service("lobby", 1, "id-1")))
+        gate.complete(Unit)
+        reconcile.await()
+
+        assertEquals(setOf("survival-1"), replica.snapshot()!!.services.keys)
+    }
+
+    @Test
+    fun `editing a group reads it from the node and invalidates the replica`() {
+        val groups = GroupService(groupClient, replica)
+        runBlocking { replica.reconcile() }
+
+        groups.edit("lobby") { it.memory(2048) }
+
+        assertNull(replica.snapshot())
+        runBlocking { replica.reconcile() }
+        assertEquals(2048, groups.find("lobby")?.memory)
+    }
+}
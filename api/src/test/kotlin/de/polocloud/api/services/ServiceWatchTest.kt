@@ -0,0 +1,126 @@
+package de.polocloud.api.services
+
+import de.polocloud.proto.ServiceData
+import de.polocloud.proto.ServiceWatchDelta
+import de.polocloud.proto.ServiceWatchEvent
+import de.polocloud.proto.ServiceWatchSnapshot
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.flow
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/** Serves one scripted stream per `watchServices` call and records how each was resumed. */
+private class ScriptedServiceApiClient(private val streams: List<List<ServiceWatchEvent>>) : ServiceApiClient {
+
+    val requests = CopyOnWriteArrayList<Pair<String, Long>>()
+
+    override fun watchServices(epoch: String, fromVersion: Long, groupFilter: String?): Flow<ServiceWatchEvent> = flow {
+        val call = requests.size
+        requests += epoch to fromVersion
+        val script = streams.getOrNull(call) ?: awaitCancellation()
+        script.forEach { emit(it) }
+        // Every scripted stream but the last drops, like a node restart would.
+        throw IllegalStateException("stream lost")
+    }
+
+    override suspend fun findServices(groupFilter: String?, stateFilter: String?): List<ServiceData> = emptyList()
+    override suspend fun countServices(groupFilter: String?, stateFilter: String?): Int = 0
+    override suspend fun stopService(name: String) = ServiceCommandResult(true, "")
+    override suspend fun executeServiceCommand(name: String, command: String) = ServiceCommandResult(true, "")
+    override suspend fun copyTemplate(name: String, templateName: String) = ServiceCommandResult(true, "")
+    override fun streamServiceLogs(name: String): Flow<String> = emptyFlow()
+}
+
+class ServiceWatchTest {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    @AfterEach
+    fun close() = scope.cancel()
+
+    private fun data(id: String, index: Int, players: Int = 0) =
+        ServiceData.newBuilder().setId(id).setGroup("lobby").setIndex(index).setState("RUNNING").setOnlinePlayers(players).build()
+
+    private fun snapshot(epoch: String, version: Long, vararg services: ServiceData) = ServiceWatchEvent.newBuilder()
+        .setEpoch(epoch)
+        .setVersion(version)
+        .setSnapshot(ServiceWatchSnapshot.newBuilder().addAllServices(services.toList()))
+        .build()
+
+    private fun delta(epoch: String, version: Long, type: ServiceWatchDelta.Type, service: ServiceData) = ServiceWatchEvent.newBuilder()
+        .setEpoch(epoch)
+        .setVersion(version)
+        .setDelta(ServiceWatchDelta.newBuilder().setType(type).setService(service))
+        .build()
+
+    private fun watch(client: ServiceApiClient, expectedChanges: Int): Pair<ServiceWatch, List<String>> {
+        val changes = CopyOnWriteArrayList<String>()
+        val latch = CountDownLatch(expectedChanges)
+        val watch = ServiceWatch(client, null, { change ->
+            changes += "${change.type} ${change.service.name()}"
+            latch.countDown()
+        }, scope, reconnectDelayMs = 10)
+        latch.await(5, TimeUnit.SECONDS)
+        return watch to changes
+    }
+
+    @Test
+    fun `a snapshot and its deltas become one sequence of changes`() {
+        val client = ScriptedServiceApiClient(
+            listOf(
+                listOf(
+                    snapshot("e1", 4, data("a", 1)),
+                    delta("e1", 5, ServiceWatchDelta.Type.ADDED, data("b", 2)),
+                    delta("e1", 6, ServiceWatchDelta.Type.UPDATED, data("a", 1, players = 3)),
+                    delta("e1", 7, ServiceWatchDelta.Type.REMOVED, data("b", 2)),
+                ),
+            ),
+        )
+
+        val (watch, changes) = watch(client, 4)
+
+        assertEquals(listOf("ADDED lobby-1", "ADDED lobby-2", "UPDATED lobby-1", "REMOVED lobby-2"), changes.toList())
+        assertEquals(3, watch.find("lobby-1")?.onlinePlayers)
+        assertEquals(1, watch.services().size)
+    }
+
+    @Test
+    fun `a reconnect resumes from the last applied version`() {
+        val client = ScriptedServiceApiClient(
+            listOf(
+                listOf(snapshot("e1", 4, data("a", 1))),
+                listOf(delta("e1", 5, ServiceWatchDelta.Type.ADDED, data("b", 2))),
+            ),
+        )
+
+        val (_, changes) = watch(client, 2)
+
+        assertEquals(listOf("ADDED lobby-1", "ADDED lobby-2"), changes.toList())
+        assertEquals(listOf("" to 0L, "e1" to 4L), client.requests.take(2))
+    }
+
+    @Test
+    fun `a fresh snapshot after a reconnect only reports what changed`() {
+        val client = ScriptedServiceApiClient(
+            listOf(
+                listOf(snapshot("e1", 4, data("a", 1), data("b", 2))),
+                listOf(snapshot("e2", 1, data("a", 1), data("c", 3))),
+            ),
+        )
+
+        val (watch, changes) = watch(client, 4)
+
+        assertEquals(listOf("ADDED lobby-1", "ADDED lobby-2", "REMOVED lobby-2", "ADDED lobby-3"), changes.toList())
+        assertEquals(setOf("lobby-1", "lobby-3"), watch.services().map { it.name() }.toSet())
+    }
+}
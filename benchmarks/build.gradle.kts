@@ -0,0 +1,46 @@
+import org.jetbrains.kotlin.gradle.tasks.KotlinCompile
+
+plugins {
+    id("org.jetbrains.kotlin.jvm")
+
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    jmhImplementation(projects.node)
+    jmhImplementation(projects.bridge)
+    jmhImplementation(projects.common)
+    jmhImplementation(projects.proto)
+    jmhImplementation(projects.shared)
+
+    // node resolves its libraries through polocloudRuntime when it launches; the ones the
+    // benchmarked code reaches are declared here so the JMH classpath has them either way.
+    jmhImplementation(libs.kotlinx.coroutines.core)
+    jmhImplementation(libs.polocloud.database)
+    jmhImplementation(libs.polocloud.i18n)
+    jmhImplementation(libs.snakeyaml)
+    jmhImplementation(libs.bundles.tls)
+    jmhImplementation(libs.toml4j)
+    jmhImplementation(libs.bundles.logging.full)
+}
+
+// The placement suite calls ServiceQueue's internal entry points, the way node's own
+// tests do.
+tasks.named<KotlinCompile>("compileJmhKotlin") {
+    friendPaths.from(project(":node").layout.buildDirectory.dir("classes/kotlin/main"))
+}
+
+// `./gradlew :benchmarks:jmh` — src/jmh/kotlin covers the node's hot paths (placement,
+// events, tasks, ports, mapping) and the bridge's fallback selection. Results land in
+// build/results/jmh/results.json, one entry per benchmark and parameter set, so two
+// commits can be compared by diffing or feeding both files to a JMH visualizer.
+jmh {
+    warmupIterations = 2
+    iterations = 5
+    fork = 1
+    resultFormat = "JSON"
+}
+
+kotlin {
+    jvmToolchain(25)
+}
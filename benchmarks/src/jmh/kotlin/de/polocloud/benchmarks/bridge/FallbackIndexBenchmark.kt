@@ -0,0 +1,67 @@
+package de.polocloud.benchmarks.bridge
+
+import de.polocloud.bridge.FallbackIndex
+import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * The proxy's fallback choice on login and kick, over [services] registered services of
+ * which every fourth is a fallback lobby, spread over two priority tiers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class FallbackIndexBenchmark {
+
+    @Param("10", "100", "1000")
+    var services = 0
+
+    private lateinit var index: FallbackIndex
+    private lateinit var excluded: String
+    private val player = UUID.randomUUID()
+
+    @Setup
+    fun setUp() {
+        index = FallbackIndex()
+        (0 until services).forEach { i ->
+            val properties = Properties()
+            if (i % 4 == 0) {
+                properties.set(Properties.FALLBACK, "true").set(Properties.FALLBACK_PRIORITY, if (i % 8 == 0) "10" else "5")
+            }
+            index.update(
+                Service(
+                    id = UUID.randomUUID().toString(), index = i + 1, group = if (i % 4 == 0) "lobby" else "game",
+                    state = ServiceState.RUNNING, port = 30000 + i, host = "10.0.0.12", pid = 1000L + i,
+                    onlinePlayers = i % 50, maxPlayers = 100, motd = "", properties = properties,
+                )
+            )
+        }
+        excluded = index.select()!!.name()
+    }
+
+    @Benchmark
+    fun select() = index.select()
+
+    /** The kick path: the least loaded lobby besides the one the player was kicked from. */
+    @Benchmark
+    fun selectExcluding() = index.select(excluded)
+
+    /** The login path, including the reservation that spreads a join wave. */
+    @Benchmark
+    fun route(): Service? {
+        val service = index.route(player)
+        index.disconnected(player)
+        return service
+    }
+}
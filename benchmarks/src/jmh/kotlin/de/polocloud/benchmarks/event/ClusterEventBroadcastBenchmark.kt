@@ -0,0 +1,79 @@
+package de.polocloud.benchmarks.event
+
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cost on the publishing thread of handing one event to [subscribers] open subscriber
+ * streams — what every service lifecycle or player count change pays on the node. Half of
+ * the subscribers ask for CBOR, so the once-per-event transcode is part of the measurement.
+ *
+ * The subscribers are drained concurrently, as the gRPC streams would, and coalesce: a
+ * slow drain folds repeated counts of the same service instead of growing a backlog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class ClusterEventBroadcastBenchmark {
+
+    @Param("1", "10", "100", "1000")
+    var subscribers = 0
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private lateinit var context: EventContext
+
+    @Setup
+    fun setUp() {
+        val encoded = EventCodec.encode(
+            PlayerCountChangedEvent(
+                Service(
+                    id = "0b7f2c1e-5d1a-4c57-9a43-2f1c7f0f3a11", index = 3, group = "lobby",
+                    state = ServiceState.RUNNING, port = 30003, host = "10.0.0.12", pid = 48213,
+                    cpuUsage = 12.5, usedMemory = 812.0, onlinePlayers = 37, maxPlayers = 100, motd = "",
+                )
+            )
+        )
+        context = EventContext.newBuilder()
+            .setEventName(encoded.name)
+            .setEventData(encoded.data)
+            .setEncoding(EventEncoding.JSON)
+            .build()
+
+        repeat(subscribers) { index ->
+            val encodings = if (index % 2 == 0) listOf(EventEncoding.CBOR) else emptyList()
+            scope.launch { ClusterEventService.subscribe(encoded.name, "bench-$index", encodings).collect {} }
+        }
+        // Subscribers register once their stream is first collected.
+        while (ClusterEventService.subscriberStats().size < subscribers) Thread.sleep(1)
+    }
+
+    @TearDown
+    fun tearDown() {
+        scope.cancel()
+        // So the next parameter set starts from no subscribers at all.
+        while (ClusterEventService.subscriberStats().isNotEmpty()) Thread.sleep(1)
+    }
+
+    @Benchmark
+    fun broadcast() = ClusterEventService.broadcast(context)
+}
@@ -0,0 +1,63 @@
+package de.polocloud.benchmarks.event
+
+import de.polocloud.shared.event.EncodedEvent
+import de.polocloud.shared.event.Event
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+
+/**
+ * JSON vs. CBOR cost of the event relayed most often, [PlayerCountChangedEvent]: encode on
+ * the node, decode in every subscriber. That CBOR is the smaller payload is covered by
+ * `EventSerializationTest`; JMH only reports time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class EventCodecBenchmark {
+
+    private lateinit var event: PlayerCountChangedEvent
+    private lateinit var json: EncodedEvent
+    private lateinit var cbor: ByteArray
+
+    @Setup
+    fun setUp() {
+        event = PlayerCountChangedEvent(
+            Service(
+                id = "0b7f2c1e-5d1a-4c57-9a43-2f1c7f0f3a11", index = 3, group = "lobby",
+                state = ServiceState.RUNNING, port = 30003, host = "10.0.0.12", pid = 48213,
+                cpuUsage = 12.5, usedMemory = 812.0, onlinePlayers = 37, maxPlayers = 100,
+                motd = "A Polocloud Server",
+                properties = Properties().set(Properties.FALLBACK, "true").set(Properties.FALLBACK_PRIORITY, "10"),
+            )
+        )
+        json = EventCodec.encode(event)
+        cbor = EventCodec.encodeBinary(event)
+    }
+
+    @Benchmark
+    fun encodeJson(): EncodedEvent = EventCodec.encode(event)
+
+    @Benchmark
+    fun encodeCbor(): ByteArray = EventCodec.encodeBinary(event)
+
+    @Benchmark
+    fun decodeJson(): Event? = EventCodec.decode(json.name, json.data)
+
+    @Benchmark
+    fun decodeCbor(): Event? = EventCodec.decodeBinary(json.name, cbor)
+
+    /** What the node does once per event for its CBOR subscribers. */
+    @Benchmark
+    fun transcodeJsonToCbor(): ByteArray? = EventCodec.toBinary(json.name, json.data)
+}
@@ -0,0 +1,48 @@
+package de.polocloud.benchmarks.node
+
+import de.polocloud.node.services.factory.PortAllocator
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * Picking the port of a starting service next to [running] services that already hold
+ * the ports right above the start port — the worst case for the lowest-free-port scan.
+ * The bind probe is stubbed out, so this is the allocator's own cost, not the kernel's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class PortAllocatorBenchmark {
+
+    @Param("10", "100", "1000")
+    var running = 0
+
+    private lateinit var allocator: PortAllocator
+    private val starting = UUID.randomUUID()
+
+    @Setup
+    fun setUp() {
+        val seed = (0 until running).associate { UUID.randomUUID() to START_PORT + it }
+        allocator = PortAllocator(seed = { seed }, isBindable = { true })
+    }
+
+    /** Reserves and releases again, so every invocation sees the same allocator state. */
+    @Benchmark
+    fun reserveAndRelease(): Int {
+        val port = allocator.reserve(starting, START_PORT)
+        allocator.release(starting)
+        return port
+    }
+
+    private companion object {
+        const val START_PORT = 30000
+    }
+}
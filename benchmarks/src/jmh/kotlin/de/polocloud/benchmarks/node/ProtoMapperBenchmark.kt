@@ -0,0 +1,75 @@
+package de.polocloud.benchmarks.node
+
+import de.polocloud.node.group.PropertyCodec
+import de.polocloud.node.player.CloudPlayer
+import de.polocloud.node.player.CloudPlayerMapper
+import de.polocloud.node.services.LocalService
+import de.polocloud.node.services.Service
+import de.polocloud.node.services.ServiceProtoMapper
+import de.polocloud.proto.PlayerData
+import de.polocloud.proto.ServiceData
+import de.polocloud.shared.service.ServiceState
+import de.polocloud.shared.service.Service as SharedService
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * Mapping one service and one player to and from their protobuf form — paid per entry of
+ * every listing, stream and page the API serves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class ProtoMapperBenchmark {
+
+    private lateinit var service: LocalService
+    private lateinit var sharedService: SharedService
+    private lateinit var player: CloudPlayer
+    private lateinit var playerData: PlayerData
+
+    @Setup
+    fun setUp() {
+        service = LocalService(
+            Service(UUID.randomUUID(), 3, "lobby", ServiceState.RUNNING, "10.0.0.12", 30003, UUID.randomUUID().toString())
+        ).apply {
+            properties += mapOf("fallback" to "true", "fallback-priority" to "10", "static" to "false")
+            onlinePlayers = 37
+            maxPlayers = 100
+            motd = "A Polocloud Server"
+        }
+        sharedService = SharedService(
+            id = service.id.toString(), index = 3, group = "lobby", state = ServiceState.RUNNING, port = 30003,
+            host = "10.0.0.12", pid = 48213, onlinePlayers = 37, maxPlayers = 100, motd = "A Polocloud Server",
+        )
+        player = CloudPlayer(
+            id = UUID.randomUUID(),
+            name = "Steve",
+            skinValue = "e".repeat(400),
+            skinSignature = "s".repeat(680),
+            propertiesJson = PropertyCodec.encode(mapOf("textures" to "t".repeat(400), "locale" to "en_us")),
+            currentProxy = "proxy-1",
+            currentServer = "lobby-3",
+        )
+        playerData = CloudPlayerMapper.toProto(player)
+    }
+
+    @Benchmark
+    fun serviceToProto(): ServiceData = ServiceProtoMapper.toProto(service)
+
+    @Benchmark
+    fun serviceFromShared(): ServiceData = ServiceProtoMapper.fromShared(sharedService)
+
+    /** The decoded properties are cached per player, so this is the steady-state cost. */
+    @Benchmark
+    fun playerToProto(): PlayerData = CloudPlayerMapper.toProto(player)
+
+    @Benchmark
+    fun playerToDomain(): CloudPlayer = CloudPlayerMapper.toDomain(playerData)
+}
@@ -0,0 +1,93 @@
+package de.polocloud.benchmarks.node
+
+import de.polocloud.node.security.CertificateAuthority
+import de.polocloud.node.security.SanBuilder
+import de.polocloud.node.security.ServiceKeyAlgorithm
+import de.polocloud.node.security.ServiceKeyPool
+import org.bouncycastle.asn1.x500.X500Name
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.math.BigInteger
+import java.security.KeyPair
+import java.security.cert.X509Certificate
+import java.util.Date
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * What a service start pays for its identity on the head: a key pair of [algorithm], its
+ * CSR and the CA's signature — with the key pair generated on the start path, against
+ * taken from a started [ServiceKeyPool].
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ServiceKeyBenchmark {
+
+    @Param("RSA", "EC_P256")
+    var algorithm = ""
+
+    private lateinit var keyAlgorithm: ServiceKeyAlgorithm
+    private lateinit var pool: ServiceKeyPool
+    private lateinit var ca: CertificateAuthority
+    private val serviceId = UUID.randomUUID().toString()
+
+    @Setup
+    fun setUp() {
+        keyAlgorithm = ServiceKeyAlgorithm.valueOf(algorithm)
+        pool = ServiceKeyPool(POOL_SIZE, keyAlgorithm::generate).also { it.start() }
+        // The cluster CA is RSA whatever the services use, see ServiceKeyAlgorithm.
+        val caKeyPair = ServiceKeyAlgorithm.RSA.generate()
+        ca = CertificateAuthority(caKeyPair, selfSigned(caKeyPair))
+    }
+
+    /**
+     * Waits, outside the measurement, until the refill has a key pair ready again — so every
+     * [provisionPooled] is a hit, the case the pool is sized for, not a burst outrunning it.
+     */
+    @Setup(Level.Invocation)
+    fun awaitReadyKey() {
+        while (pool.stats().ready == 0) Thread.sleep(1)
+    }
+
+    @TearDown
+    fun tearDown() {
+        pool.close()
+    }
+
+    @Benchmark
+    fun provisionGenerated(): X509Certificate = sign(keyAlgorithm.generate())
+
+    @Benchmark
+    fun provisionPooled(): X509Certificate = sign(pool.take())
+
+    private fun sign(keyPair: KeyPair): X509Certificate {
+        val csr = JcaPKCS10CertificationRequestBuilder(X500Name("CN=$serviceId"), keyPair.public)
+            .build(JcaContentSignerBuilder(keyAlgorithm.csrSignature).build(keyPair.private))
+        return ca.signCsr(csr, subjectAltNames = SanBuilder.forService(serviceId, "lobby"))
+    }
+
+    private fun selfSigned(keyPair: KeyPair): X509Certificate {
+        val name = X500Name("CN=Polocloud-Root-CA")
+        val now = System.currentTimeMillis()
+        val holder = JcaX509v3CertificateBuilder(name, BigInteger.ONE, Date(now), Date(now + 86_400_000), name, keyPair.public)
+            .build(JcaContentSignerBuilder("SHA256withRSA").build(keyPair.private))
+        return JcaX509CertificateConverter().getCertificate(holder)
+    }
+
+    private companion object {
+        const val POOL_SIZE = 16
+    }
+}
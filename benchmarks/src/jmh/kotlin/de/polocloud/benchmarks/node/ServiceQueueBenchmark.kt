@@ -0,0 +1,94 @@
+package de.polocloud.benchmarks.node
+
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.node.group.Group
+import de.polocloud.node.services.ServiceProvider
+import de.polocloud.node.services.cluster.PeerServiceQuery
+import de.polocloud.node.services.factory.FactoryService
+import de.polocloud.node.services.factory.PlatformService
+import de.polocloud.node.services.queue.NodeLoadProvider
+import de.polocloud.node.services.queue.ServiceQueue
+import de.polocloud.proto.NodeState
+import de.polocloud.proto.ProtoServiceProcessData
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import kotlin.time.Clock
+
+/**
+ * Placement cost of one scaling tick on a synthetic cluster of [nodes] nodes and [groups]
+ * groups, every group unrestricted and already at `minOnline` (one service per peer).
+ *
+ * [enqueueRequired] is the steady-state tick — the one every node runs every two seconds
+ * while nothing needs to start — and so never reaches the database. [assignReplicas] is
+ * the placement itself, spreading ten new replicas over every node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ServiceQueueBenchmark {
+
+    @Param("3", "10", "50")
+    var nodes = 0
+
+    @Param("10", "100")
+    var groups = 0
+
+    private lateinit var queue: ServiceQueue
+    private lateinit var online: List<NodeData>
+    private lateinit var perNodeRunning: Map<String, Int>
+    private lateinit var usedMemoryMb: Map<String, Int>
+
+    @Setup
+    fun setUp() {
+        online = (0 until nodes).map { node(it) }
+        val self = online.first()
+        val peers = online.drop(1)
+        val groupList = (0 until groups).map { index ->
+            Group("group-$index", 512, 0.0, peers.size.toLong().coerceAtLeast(1), 100, "PAPER", "1.21")
+        }
+        // Every peer runs one service of every group, so every group sits at minOnline.
+        val peerServices = peers.associate { peer ->
+            peer.id to groupList.map { group ->
+                ProtoServiceProcessData.newBuilder()
+                    .setUuid(UUID.randomUUID().toString()).setPlan(group.name).setIndex(peer.nodeIndex)
+                    .setState("RUNNING").build()
+            }
+        }
+
+        val provider = ServiceProvider(nodeId = self.id.toString())
+        queue = ServiceQueue(
+            factory = FactoryService(PlatformService(), provider),
+            serviceProvider = provider,
+            groups = { groupList },
+            onlineNodes = { online },
+            peerQuery = PeerServiceQuery { node, _ -> peerServices[node.id].orEmpty() },
+            loadProvider = NodeLoadProvider { node -> (node.nodeIndex % 4) * 25.0 },
+        )
+        perNodeRunning = online.associate { it.name() to groupList.size }
+        usedMemoryMb = online.associate { it.name() to groupList.size * 512 }
+    }
+
+    @Benchmark
+    fun enqueueRequired() = queue.enqueueRequiredForTest()
+
+    @Benchmark
+    fun assignReplicas(): Map<String, Int> =
+        queue.assignReplicas(online, perNodeRunning, usedMemoryMb, groupMemoryMb = 512, count = 10)
+
+    private fun node(index: Int) = NodeData(
+        id = UUID(0, index.toLong() + 1), nodeIndex = index + 1, groupName = "node-$index",
+        hostname = "10.0.0.${index + 1}", port = 4240, state = NodeState.ONLINE,
+        head = index == 0, electedAt = null, term = 0, votedFor = null,
+        version = "3", gitCommitHash = "abc",
+        firstConnection = Clock.System.now(), lastConnection = Clock.System.now(),
+        maxMemory = 0,
+    )
+}
@@ -0,0 +1,91 @@
+package de.polocloud.benchmarks.node
+
+import de.polocloud.node.services.factory.task.TaskDefinition
+import de.polocloud.node.services.factory.task.TaskExecutor
+import de.polocloud.node.services.factory.task.TaskStep
+import de.polocloud.node.services.factory.template.ServiceTask
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+
+/**
+ * One task step against a realistically sized config file of each supported [format] —
+ * read, change one key, write back — which every service start pays once per step.
+ *
+ * The file is left in place between invocations, so after the first one every step
+ * replaces an existing key, as it does for a restarted static service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class TaskExecutorBenchmark {
+
+    @Param("properties", "json", "yml", "toml")
+    var format = ""
+
+    private lateinit var workDir: File
+    private lateinit var tasks: List<ServiceTask>
+    private lateinit var definitions: Map<String, TaskDefinition>
+    private val placeholders = mapOf("server_port" to "30003")
+
+    @Setup
+    fun setUp() {
+        workDir = Files.createTempDirectory("polocloud-task-bench").toFile()
+        val (fileName, key, content) = when (format) {
+            "properties" -> Triple("server.properties", "server-port", properties())
+            "json" -> Triple("config.json", "server.port", json())
+            "yml" -> Triple("config.yml", "server.port", yaml())
+            "toml" -> Triple("velocity.toml", "bind", toml())
+            else -> error("Unknown format $format")
+        }
+        File(workDir, fileName).writeText(content)
+
+        tasks = listOf(ServiceTask(key = "port"))
+        definitions = mapOf(
+            "port" to TaskDefinition(
+                key = "port",
+                steps = listOf(TaskStep(name = "Set port", file = fileName, key = key, value = "%server_port%")),
+            )
+        )
+    }
+
+    @TearDown
+    fun tearDown() {
+        workDir.deleteRecursively()
+    }
+
+    @Benchmark
+    fun apply() = TaskExecutor.apply(workDir, tasks, "1.21.4", definitions, placeholders)
+
+    private fun properties() = buildString {
+        appendLine("#Minecraft server properties")
+        appendLine("server-port=25565")
+        repeat(60) { appendLine("setting-$it=value-$it") }
+    }
+
+    private fun json() = buildString {
+        append("{\"server\":{\"port\":25565},")
+        append((0 until 60).joinToString(",") { "\"setting-$it\":\"value-$it\"" })
+        append("}")
+    }
+
+    private fun yaml() = buildString {
+        appendLine("server:")
+        appendLine("  port: 25565")
+        repeat(60) { appendLine("setting-$it: value-$it") }
+    }
+
+    private fun toml() = buildString {
+        appendLine("bind = \"0.0.0.0:25577\"")
+        repeat(60) { appendLine("setting-$it = \"value-$it\"") }
+    }
+}
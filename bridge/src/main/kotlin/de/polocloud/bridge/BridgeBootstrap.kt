@@ -3,15 +3,13 @@ package de.polocloud.bridge
 import de.polocloud.api.Polocloud
 import de.polocloud.api.event.subscribe
 import de.polocloud.api.group.GroupFilterType
+import de.polocloud.api.services.ServiceChange
 import de.polocloud.shared.event.group.GroupUpdatedEvent
-import de.polocloud.shared.event.server.ServerStoppedEvent
-import de.polocloud.shared.event.server.ServiceOnlineEvent
 import de.polocloud.shared.player.CloudPlayer
 import de.polocloud.shared.property.Properties
 import de.polocloud.shared.service.Service
 import de.polocloud.shared.service.ServiceState
 import java.util.UUID
-import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
 
 /**
@@ -25,13 +23,14 @@ import java.util.concurrent.CopyOnWriteArrayList
  */
 class BridgeBootstrap<T>(private val instance: BridgeInstance<T>) {
 
-    // Names of groups currently flagged as fallback targets, mapped to their priority
-    // (higher tried first). Kept live via GroupUpdatedEvent.
-    private val fallbackGroups: MutableMap<String, Int> = ConcurrentHashMap()
-
-    // Services currently registered on this proxy — used to pick a fallback on connect.
+    // Services currently registered on this proxy. Kept current by the service watch.
     private val registeredServices = CopyOnWriteArrayList<Service>()
 
+    // The registered services that are fallback targets, by priority and live load — used
+    // to pick a fallback on connect and kick. Fed by the service watch (player counts) and
+    // GroupUpdatedEvent (fallback groups).
+    private val fallbacks = FallbackIndex()
+
     /**
      * Boots the bridge on the given [platform].
      *
@@ -47,45 +46,53 @@ class BridgeBootstrap<T>(private val instance: BridgeInstance<T>) {
             .onSuccess { log("Polocloud bridge ready — API linked successfully") }
             .onFailure { log("Polocloud bridge failed to initialise the API: ${it.message}") }
 
-        // Seed the fallback-group set from the current cluster state.
+        // Seed the fallback groups from the current cluster state.
         runCatching {
             Polocloud.groupService.findAll()
                 .filter { it.isFallback() }
-                .forEach { fallbackGroups[it.name.lowercase()] = it.fallbackPriority() }
+                .forEach { fallbacks.updateGroup(it.name, it.fallbackPriority()) }
         }
 
-        // Register everything already running when this proxy boots.
-        Polocloud.serviceService.findAll().forEach(::registerIfEligible)
-
-        // Then keep the registry in sync: the node pushes a lifecycle event whenever a
-        // server starts or stops, so services that come and go after boot are added and
-        // removed on the proxy instead of only reflecting the boot-time snapshot.
-        // ServiceOnlineEvent (not ServerStartEvent, which fires much earlier — before the
-        // service even has a port/host) is what's needed here: registering a service on
-        // the proxy requires a real, reachable address.
-        Polocloud.eventService.subscribe<ServiceOnlineEvent> { event ->
-            log("Server online in cluster: ${event.service.name()} (group: ${event.service.group})")
-            registerIfEligible(event.service)
-        }
-        Polocloud.eventService.subscribe<ServerStoppedEvent> { event ->
-            val service = event.service
-            log("Server stopped in cluster: ${service.name()} (group: ${service.group})")
-            registeredServices.removeIf { it.name().equals(service.name(), ignoreCase = true) }
-            instance.unregisterService(instance.mapService(service), service)
-        }
+        // One watch covers both what's already running when this proxy boots (its
+        // snapshot) and everything after (its deltas), with nothing lost in between — and
+        // keeps each registered service's player count current for fallback selection.
+        Polocloud.serviceService.watch { change -> onServiceChange(change, log) }
 
-        // Keep the fallback-group set current when group properties change at runtime.
+        // Keep the fallback groups current when group properties change at runtime.
         Polocloud.eventService.subscribe<GroupUpdatedEvent> { event ->
             val isFallback = event.properties.getBoolean(Properties.FALLBACK)
-            if (isFallback) {
-                fallbackGroups[event.name.lowercase()] = event.properties.getInt(Properties.FALLBACK_PRIORITY)
-            } else {
-                fallbackGroups -= event.name.lowercase()
-            }
+            fallbacks.updateGroup(event.name, if (isFallback) event.properties.getInt(Properties.FALLBACK_PRIORITY) else null)
             log("Group ${event.name} fallback=${isFallback}")
         }
     }
 
+    /**
+     * Applies one change of the service watch. A service is registered once it is
+     * [ServiceState.RUNNING] — it has answered a ping, so it has a real, reachable address
+     * — and unregistered when it leaves the cluster.
+     */
+    private fun onServiceChange(change: ServiceChange, log: (String) -> Unit) {
+        val service = change.service
+        val registered = registeredServices.any { it.name().equals(service.name(), ignoreCase = true) }
+        when {
+            change.type == ServiceChange.Type.REMOVED -> {
+                if (!registered) return
+                log("Server stopped in cluster: ${service.name()} (group: ${service.group})")
+                registeredServices.removeIf { it.name().equals(service.name(), ignoreCase = true) }
+                fallbacks.remove(service.name())
+                instance.unregisterService(instance.mapService(service), service)
+            }
+            registered -> {
+                registeredServices.replaceAll { if (it.name().equals(service.name(), ignoreCase = true)) service else it }
+                fallbacks.update(service)
+            }
+            service.state == ServiceState.RUNNING -> {
+                log("Server online in cluster: ${service.name()} (group: ${service.group})")
+                registerIfEligible(service)
+            }
+        }
+    }
+
     /**
      * Registers [service] on this proxy, unless it belongs to a proxy group itself —
      * a proxy only ever registers backend (sub-)servers, never other proxies.
@@ -97,20 +104,23 @@ class BridgeBootstrap<T>(private val instance: BridgeInstance<T>) {
         registeredServices.removeIf { it.name().equals(service.name(), ignoreCase = true) }
         registeredServices += service
         instance.registerService(instance.mapService(service), service)
+        fallbacks.update(service)
     }
 
     /**
-     * Picks the best running fallback service to route a player to, or `null` if none
+     * Picks the best running fallback service to route [playerId] to, or `null` if none
      * is available — a proxy must never send a player anywhere else, so a `null`
      * result means the player cannot be connected/redirected at all.
      *
-     * See [FallbackSelector] for the selection rules (priority tiering, least players).
+     * The player counts towards the chosen service's load right away, so a join wave is
+     * spread out even between two pings. See [FallbackIndex] for the selection rules
+     * (priority tiering, least loaded).
      *
      * @param excludeServiceName a service name to skip, e.g. the server a player was
      *   just kicked from, so they are never redirected right back to it.
      */
-    fun bestFallback(excludeServiceName: String? = null): Service? =
-        FallbackSelector.select(registeredServices, fallbackGroups, excludeServiceName)
+    fun bestFallback(playerId: UUID, excludeServiceName: String? = null): Service? =
+        fallbacks.route(playerId, excludeServiceName)
 
     /**
      * Releases the underlying node connection. Called from the platform shutdown hook.
@@ -151,6 +161,7 @@ class BridgeBootstrap<T>(private val instance: BridgeInstance<T>) {
      * `ServerConnectedEvent`, including the player's very first backend connection.
      */
     fun onPlayerServerChanged(playerId: UUID, serverName: String) {
+        fallbacks.connected(playerId, serverName)
         Polocloud.playerService.updateServerAsync(playerId.toString(), serverName)
     }
 
@@ -162,6 +173,7 @@ class BridgeBootstrap<T>(private val instance: BridgeInstance<T>) {
      *   `null` for a plain quit.
      */
     fun onPlayerDisconnected(playerId: UUID, kickReason: String?) {
+        fallbacks.disconnected(playerId)
         if (kickReason != null) {
             Polocloud.playerService.unregisterKickedAsync(playerId.toString(), kickReason)
         } else {
@@ -0,0 +1,191 @@
+package de.polocloud.bridge
+
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import java.util.TreeSet
+import java.util.UUID
+
+/**
+ * Picks the fallback [Service] to route a player to, kept as an index instead of scanning
+ * every registered service on each login and kick.
+ *
+ * Fallback services are held in one tier per priority (higher tried first), each ordered
+ * by load. Load is the service's last reported player count, plus players this proxy has
+ * routed there that haven't arrived yet, plus players that arrived since the last report.
+ * Counting the last two locally is what spreads a join wave: the node reports player
+ * counts once per ping, and without them every player in between would be sent to the
+ * same "empty" lobby.
+ *
+ * Selection walks the few tiers and takes the head of the first non-empty one — O(log n)
+ * in the number of services, without allocating. Every method is thread-safe.
+ *
+ * A service is a fallback target if it carries [de.polocloud.shared.property.Properties.FALLBACK]
+ * itself (then its own priority applies) or its group is a fallback group ([updateGroup]).
+ */
+class FallbackIndex {
+
+    private class Entry(
+        /** Lower-cased `group-index` name. */
+        val name: String,
+        var service: Service,
+    ) {
+        /** `null` if not a fallback target, i.e. not in any tier. */
+        var priority: Int? = null
+        var reported = 0
+        var inFlight = 0
+        var joined = 0
+
+        val load get() = reported + inFlight + joined
+    }
+
+    private class Tier(val priority: Int) {
+        val entries = TreeSet(LOAD_ORDER)
+    }
+
+    // Everything below is guarded by [lock].
+    private val lock = Any()
+    private val entries = HashMap<String, Entry>()
+    private val groupPriorities = HashMap<String, Int>()
+
+    /**
+     * Highest priority first. Rebuilt only when a priority appears, or a group's priority
+     * changes ([updateGroup]): a tier left empty by its last service stopping is kept
+     * (and skipped by selection), so services coming and going never rebuild it.
+     */
+    private var tiers: Array<Tier> = emptyArray()
+
+    /** Where each routed player is headed, until they arrive ([connected]) or leave ([disconnected]). */
+    private val reservations = HashMap<UUID, Entry>()
+
+    /**
+     * Adds or refreshes [service] — e.g. a new player count. Anything but a
+     * [ServiceState.RUNNING] service is dropped from the index.
+     */
+    fun update(service: Service) {
+        synchronized(lock) {
+            val name = service.name().lowercase()
+            if (service.state != ServiceState.RUNNING) {
+                remove(name)
+                return
+            }
+            val entry = entries[name]?.takeIf { it.service.id == service.id }
+                ?: Entry(name, service).also { fresh -> entries.put(name, fresh)?.let(::detach) }
+            detach(entry)
+            entry.service = service
+            entry.reported = service.onlinePlayers
+            // The report now includes whoever had arrived.
+            entry.joined = 0
+            entry.priority = priorityOf(service)
+            attach(entry)
+        }
+    }
+
+    /** Drops the service named [serviceName] (`group-index`). */
+    fun remove(serviceName: String) {
+        synchronized(lock) {
+            entries.remove(serviceName.lowercase())?.let(::detach)
+        }
+    }
+
+    /**
+     * Marks [group] as a fallback group with [priority], or as none if `null`, and
+     * re-tiers its services.
+     */
+    fun updateGroup(group: String, priority: Int?) {
+        synchronized(lock) {
+            val key = group.lowercase()
+            if (priority == null) groupPriorities -= key else groupPriorities[key] = priority
+            entries.values.filter { it.service.group.equals(group, ignoreCase = true) }.forEach { entry ->
+                detach(entry)
+                entry.priority = priorityOf(entry.service)
+                attach(entry)
+            }
+            // Only here can a priority go out of use for good; a service's own one comes back with it.
+            val inUse = groupPriorities.values.toSet()
+            if (tiers.any { it.entries.isEmpty() && it.priority !in inUse }) {
+                tiers = tiers.filter { it.entries.isNotEmpty() || it.priority in inUse }.toTypedArray()
+            }
+        }
+    }
+
+    /**
+     * The least loaded service of the highest priority tier that has one, without
+     * reserving it. [excludeServiceName] is skipped, e.g. the server a player was just
+     * kicked from. `null` if there is no fallback target at all.
+     */
+    fun select(excludeServiceName: String? = null): Service? =
+        synchronized(lock) { selectEntry(excludeServiceName)?.service }
+
+    /**
+     * Like [select], but also counts [player] towards the chosen service's load until they
+     * arrive there ([connected]) or leave ([disconnected]) — so the next player in a join
+     * wave is already routed elsewhere. A previous reservation of [player] is released.
+     */
+    fun route(player: UUID, excludeServiceName: String? = null): Service? {
+        synchronized(lock) {
+            release(player)
+            val entry = selectEntry(excludeServiceName) ?: return null
+            adjust(entry) { inFlight++ }
+            reservations[player] = entry
+            return entry.service
+        }
+    }
+
+    /** [player] arrived on [serviceName]: from now on they count towards its load until its next report. */
+    fun connected(player: UUID, serviceName: String) {
+        synchronized(lock) {
+            release(player)
+            entries[serviceName.lowercase()]?.let { adjust(it) { joined++ } }
+        }
+    }
+
+    /** [player] left the network; a pending reservation of theirs is released. */
+    fun disconnected(player: UUID) {
+        synchronized(lock) { release(player) }
+    }
+
+    private fun release(player: UUID) {
+        val entry = reservations.remove(player) ?: return
+        // Only if it's still indexed: a replaced or removed entry doesn't matter anymore.
+        if (entries[entry.name] === entry) adjust(entry) { inFlight = (inFlight - 1).coerceAtLeast(0) }
+    }
+
+    private fun selectEntry(excludeServiceName: String?): Entry? {
+        for (tier in tiers) {
+            if (tier.entries.isEmpty()) continue
+            val head = tier.entries.first()
+            if (excludeServiceName == null || !head.name.equals(excludeServiceName, ignoreCase = true)) return head
+            return tier.entries.higher(head) ?: continue
+        }
+        return null
+    }
+
+    /** Changes [entry]'s load, re-sorting it within its tier. */
+    private inline fun adjust(entry: Entry, change: Entry.() -> Unit) {
+        detach(entry)
+        entry.change()
+        attach(entry)
+    }
+
+    private fun attach(entry: Entry) {
+        val priority = entry.priority ?: return
+        val tier = tiers.firstOrNull { it.priority == priority }
+            ?: Tier(priority).also { tiers = (tiers + it).sortedByDescending(Tier::priority).toTypedArray() }
+        tier.entries += entry
+    }
+
+    private fun detach(entry: Entry) {
+        val priority = entry.priority ?: return
+        val tier = tiers.firstOrNull { it.priority == priority } ?: return
+        tier.entries -= entry
+    }
+
+    /** A service's own fallback priority, else its group's, else `null` (no fallback target). */
+    private fun priorityOf(service: Service): Int? =
+        if (service.isFallback()) service.fallbackPriority() else groupPriorities[service.group.lowercase()]
+
+    private companion object {
+        /** Least loaded first; by name among equals, so every entry has a distinct position. */
+        val LOAD_ORDER = compareBy<Entry> { it.load }.thenBy { it.name }
+    }
+}
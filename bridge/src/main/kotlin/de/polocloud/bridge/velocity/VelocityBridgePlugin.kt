@@ -116,7 +116,7 @@ class VelocityBridgePlugin @Inject constructor(
         // A player may only join through this proxy if a fallback group has a running
         // service. If none is found, the initial server is left unset and Velocity
         // disconnects the player instead of dropping them onto an arbitrary server.
-        bootstrap.bestFallback()
+        bootstrap.bestFallback(event.player.uniqueId)
             ?.let { service -> server.getServer(service.name()).orElse(null) }
             ?.let { event.setInitialServer(it) }
     }
@@ -125,7 +125,7 @@ class VelocityBridgePlugin @Inject constructor(
     fun onKick(event: KickedFromServerEvent) {
         // Send a kicked player to the emptiest fallback (by priority) instead of just
         // disconnecting them, excluding the server that just kicked them.
-        val target = bootstrap.bestFallback(excludeServiceName = event.server.serverInfo.name)
+        val target = bootstrap.bestFallback(event.player.uniqueId, excludeServiceName = event.server.serverInfo.name)
             ?.let { service -> server.getServer(service.name()).orElse(null) }
 
         if (target == null) {
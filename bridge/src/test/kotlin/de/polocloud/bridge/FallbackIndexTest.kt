@@ -0,0 +1,194 @@
+package de.polocloud.bridge
+
+import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import java.util.UUID
+
+class FallbackIndexTest {
+
+    private fun service(
+        name: String,
+        group: String,
+        onlinePlayers: Int = 0,
+        state: ServiceState = ServiceState.RUNNING,
+        properties: Properties = Properties(),
+    ) = Service(
+        id = name,
+        index = name.substringAfterLast('-').toInt(),
+        group = group,
+        state = state,
+        port = 30000,
+        host = "127.0.0.1",
+        pid = 1,
+        onlinePlayers = onlinePlayers,
+        properties = properties,
+    )
+
+    private fun index(fallbackGroups: Map<String, Int>, vararg services: Service) = FallbackIndex().apply {
+        fallbackGroups.forEach { (group, priority) -> updateGroup(group, priority) }
+        services.forEach(::update)
+    }
+
+    @Test
+    fun `no candidates returns null`() {
+        assertNull(FallbackIndex().select())
+    }
+
+    @Test
+    fun `non-fallback and non-running services are ignored`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("survival-1", "survival"),
+            service("lobby-1", "lobby", state = ServiceState.STARTING),
+        )
+        assertNull(index.select())
+    }
+
+    @Test
+    fun `picks the service with fewest online players among equal priority`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby", onlinePlayers = 12),
+            service("lobby-2", "lobby", onlinePlayers = 3),
+            service("lobby-3", "lobby", onlinePlayers = 7),
+        )
+        assertEquals("lobby-2", index.select()?.name())
+    }
+
+    @Test
+    fun `prefers the higher priority tier even if it has more players`() {
+        val index = index(
+            mapOf("lobby" to 0, "hub" to 5),
+            service("lobby-1", "lobby", onlinePlayers = 1),
+            service("hub-1", "hub", onlinePlayers = 10),
+        )
+        assertEquals("hub-1", index.select()?.name())
+    }
+
+    @Test
+    fun `falls back to a lower priority tier when the top tier has no running service`() {
+        val index = index(
+            mapOf("lobby" to 0, "hub" to 5),
+            service("lobby-1", "lobby", onlinePlayers = 4),
+            service("hub-1", "hub"),
+        )
+        index.update(service("hub-1", "hub", state = ServiceState.STOPPING))
+
+        assertEquals("lobby-1", index.select()?.name())
+    }
+
+    @Test
+    fun `excludes the given service name`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby", onlinePlayers = 1),
+            service("lobby-2", "lobby", onlinePlayers = 9),
+        )
+        assertEquals("lobby-2", index.select(excludeServiceName = "LOBBY-1")?.name())
+    }
+
+    @Test
+    fun `a service-level fallback flag overrides the group priority`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby", onlinePlayers = 5),
+            service(
+                "event-1", "event", onlinePlayers = 5,
+                properties = Properties()
+                    .set(Properties.FALLBACK, "true")
+                    .set(Properties.FALLBACK_PRIORITY, "10"),
+            ),
+        )
+        // "event" is not a known fallback group, but the service itself carries the flag.
+        assertEquals("event-1", index.select()?.name())
+    }
+
+    @Test
+    fun `a new player count re-ranks the service`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby", onlinePlayers = 1),
+            service("lobby-2", "lobby", onlinePlayers = 4),
+        )
+
+        index.update(service("lobby-1", "lobby", onlinePlayers = 9))
+
+        assertEquals("lobby-2", index.select()?.name())
+    }
+
+    @Test
+    fun `a join wave is spread out between two player count reports`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby"),
+            service("lobby-2", "lobby"),
+        )
+
+        val routed = List(6) { index.route(UUID.randomUUID())!!.name() }
+
+        assertEquals(3, routed.count { it == "lobby-1" })
+        assertEquals(3, routed.count { it == "lobby-2" })
+    }
+
+    @Test
+    fun `arrived players count until the next report, dropped ones not at all`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby"),
+            service("lobby-2", "lobby", onlinePlayers = 1),
+        )
+        val arriving = UUID.randomUUID()
+        val leaving = UUID.randomUUID()
+
+        assertEquals("lobby-1", index.route(arriving)?.name())
+        index.connected(arriving, "lobby-1")
+        // lobby-1 and lobby-2 are even now; by name, lobby-1 is next.
+        assertEquals("lobby-1", index.route(leaving)?.name())
+        index.disconnected(leaving)
+        assertEquals("lobby-1", index.select()?.name())
+
+        index.connected(UUID.randomUUID(), "lobby-1")
+        assertEquals("lobby-2", index.select()?.name())
+        // The report includes both arrivals.
+        index.update(service("lobby-1", "lobby", onlinePlayers = 2))
+        assertEquals("lobby-2", index.select()?.name())
+        index.update(service("lobby-1", "lobby", onlinePlayers = 0))
+        assertEquals("lobby-1", index.select()?.name())
+    }
+
+    @Test
+    fun `group updates re-tier already indexed services`() {
+        val index = index(
+            mapOf("lobby" to 0),
+            service("lobby-1", "lobby"),
+            service("hub-1", "hub", onlinePlayers = 20),
+        )
+
+        index.updateGroup("HUB", 5)
+        assertEquals("hub-1", index.select()?.name())
+
+        index.updateGroup("hub", null)
+        index.remove("lobby-1")
+        assertNull(index.select())
+    }
+
+    @Test
+    fun `a tier emptied by its only service is skipped until the service is back`() {
+        val index = index(
+            mapOf("lobby" to 0, "hub" to 5),
+            service("lobby-1", "lobby"),
+            service("hub-1", "hub", onlinePlayers = 20),
+        )
+
+        index.update(service("hub-1", "hub", state = ServiceState.STOPPING))
+        assertEquals("lobby-1", index.route(UUID.randomUUID())?.name())
+
+        index.update(service("hub-1", "hub", onlinePlayers = 20))
+        assertEquals("hub-1", index.route(UUID.randomUUID())?.name())
+        assertEquals("hub-1", index.route(UUID.randomUUID())?.name())
+    }
+}
@@ -27,6 +27,8 @@ dependencies {
     testImplementation(libs.bundles.testing)
     testImplementation(libs.bundles.logging)
     testImplementation(libs.polocloud.i18n)
+    testImplementation(libs.bundles.grpc)
+    testImplementation(libs.kotlinx.coroutines.core)
     testRuntimeOnly(libs.junit.platform.launcher)
 }
 
@@ -73,7 +73,12 @@ class GrpcEndpoint private constructor(
 
         logger.trDebug("grpc", "grpc.start.starting", "address" to address)
 
+        // Pooled client channels (GrpcChannelPool) keep idle connections alive with
+        // keepalive pings; without permitting them the server answers a ping more often
+        // than every 5 minutes with GOAWAY "too_many_pings" and drops the connection.
         val builder = NettyServerBuilder.forAddress(address.toInetSocketAddress())
+            .permitKeepAliveTime(PERMIT_KEEPALIVE_SECONDS, TimeUnit.SECONDS)
+            .permitKeepAliveWithoutCalls(true)
             .addService(healthManager.healthService)
 
         mtlsConfig?.let { cfg ->
@@ -207,6 +212,10 @@ class GrpcEndpoint private constructor(
             shutdownTimeoutSeconds,
         )
     }
+
+    private companion object {
+        const val PERMIT_KEEPALIVE_SECONDS = 10L
+    }
 }
 
 /**
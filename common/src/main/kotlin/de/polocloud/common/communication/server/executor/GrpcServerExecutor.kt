@@ -4,6 +4,7 @@ import de.polocloud.common.communication.server.context.GrpcServerContext
 import de.polocloud.common.communication.server.handler.GrpcServerHandler
 import de.polocloud.common.communication.server.middleware.GrpcServerMiddleware
 import de.polocloud.common.communication.server.registery.GrpcServerHandlerRegistry
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Central execution engine for all requests.
@@ -12,12 +13,19 @@ import de.polocloud.common.communication.server.registery.GrpcServerHandlerRegis
  * - resolving handlers
  * - executing middleware pipeline
  * - invoking handler
+ *
+ * The pipeline of each request type — its handler and the middlewares that
+ * [apply][GrpcServerMiddleware.appliesTo] to it — is built once, on its first request, and
+ * reused after that. A request then costs one [Call] instead of a closure per middleware.
  */
 class GrpcServerExecutor(
     private val registry: GrpcServerHandlerRegistry,
-    private val middlewares: List<GrpcServerMiddleware> = emptyList()
+    middlewares: List<GrpcServerMiddleware> = emptyList()
 ) {
 
+    private val middlewares = middlewares.toTypedArray()
+    private val pipelines = ConcurrentHashMap<Class<*>, Pipeline<*, *>>()
+
     /**
      * Executes a request through the pipeline.
      */
@@ -28,28 +36,53 @@ class GrpcServerExecutor(
 
         val handler = registry.resolve<Request, Response>(request)
 
-        val pipeline = buildPipeline(request, context, handler)
-
-        return pipeline()
+        return pipelineFor(request.javaClass, handler).execute(request, context)
     }
 
     /**
-     * Builds middleware chain around handler.
+     * The cached pipeline of [requestType] — rebuilt if its handler has been replaced
+     * since, so a late [GrpcServerHandlerRegistry.register] still takes effect.
      */
-    private fun <Request : Any, Response : Any> buildPipeline(
-        request: Request,
-        context: GrpcServerContext,
+    @Suppress("UNCHECKED_CAST")
+    private fun <Request : Any, Response : Any> pipelineFor(
+        requestType: Class<Request>,
         handler: GrpcServerHandler<Request, Response>
-    ): suspend () -> Response {
+    ): Pipeline<Request, Response> {
+        val cached = pipelines[requestType] as Pipeline<Request, Response>?
+        if (cached != null && cached.handler === handler) return cached
 
-        val terminal: suspend () -> Response = {
-            handler.handle(request, context)
-        }
+        return Pipeline(handler, middlewares.filter { it.appliesTo(requestType) }.toTypedArray())
+            .also { pipelines[requestType] = it }
+    }
+
+    private class Pipeline<Request : Any, Response : Any>(
+        val handler: GrpcServerHandler<Request, Response>,
+        val middlewares: Array<GrpcServerMiddleware>
+    ) {
+
+        suspend fun execute(request: Request, context: GrpcServerContext): Response =
+            if (middlewares.isEmpty()) handler.handle(request, context)
+            else Call(this, request, context).invoke()
+    }
+
+    /**
+     * One request's way through its [Pipeline]: the `next` every middleware is handed, each
+     * invocation moving on to the following stage.
+     */
+    private class Call<Request : Any, Response : Any>(
+        private val pipeline: Pipeline<Request, Response>,
+        private val request: Request,
+        private val context: GrpcServerContext
+    ) : suspend () -> Response {
+
+        private var stage = 0
 
-        return middlewares.foldRight(terminal) { middleware, next ->
-            suspend {
-                middleware.intercept(request, context, next)
-            }
+        override suspend fun invoke(): Response {
+            val middlewares = pipeline.middlewares
+            val index = stage++
+            if (index < middlewares.size) return middlewares[index].intercept(request, context, this)
+            check(index == middlewares.size) { "next() was invoked more than once" }
+            return pipeline.handler.handle(request, context)
         }
     }
-}
\ No newline at end of file
+}
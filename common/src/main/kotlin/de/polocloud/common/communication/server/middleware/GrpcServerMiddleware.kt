@@ -6,6 +6,8 @@ import de.polocloud.common.communication.server.context.GrpcServerContext
  * Middleware that wraps execution of a request.
  *
  * Works like a pipeline (similar to Ktor / Spring filters / Express middleware).
+ * `next` continues with the following middleware (or the handler) and may be invoked at
+ * most once per request.
  */
 interface GrpcServerMiddleware {
 
@@ -14,4 +16,10 @@ interface GrpcServerMiddleware {
         context: GrpcServerContext,
         next: suspend () -> Response
     ): Response
-}
\ No newline at end of file
+
+    /**
+     * Whether this middleware takes part in the pipeline of [requestType] — asked once per
+     * request type, when that pipeline is built.
+     */
+    fun appliesTo(requestType: Class<*>): Boolean = true
+}
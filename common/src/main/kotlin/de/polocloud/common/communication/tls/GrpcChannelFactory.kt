@@ -6,9 +6,11 @@ import io.grpc.ManagedChannel
 import io.grpc.internal.PickFirstLoadBalancerProvider
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext
 import java.io.FileInputStream
 import java.security.cert.CertificateFactory
 import java.security.cert.X509Certificate
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 
 /**
@@ -88,16 +90,16 @@ object GrpcChannelFactory {
     }
 
     /**
-     * Creates a [ManagedChannel] secured with the TLS material in [config].
-     *
-     * The channel presents [MtlsConfig.certFile] + [MtlsConfig.keyFile] as its
-     * client identity and trusts the CAs listed in [MtlsConfig.caCerts].
-     *
-     * @param address target host and port
-     * @param config  TLS/mTLS material
-     * @return a ready-to-use [ManagedChannel]; the caller owns the lifecycle
+     * Client [SslContext]s keyed by the [MtlsConfig] they were built from, together with
+     * the [MtlsConfig.materialStamp] at build time — reused until one of the files changes,
+     * so opening a channel no longer re-parses the CA and key material every time.
      */
-    fun secured(address: Address, config: MtlsConfig): ManagedChannel {
+    private val sslContexts = ConcurrentHashMap<MtlsConfig, Pair<List<Long>, SslContext>>()
+
+    private fun clientSslContext(config: MtlsConfig): SslContext {
+        val stamp = config.materialStamp()
+        sslContexts[config]?.let { (builtFrom, context) -> if (builtFrom == stamp) return context }
+
         val cf = CertificateFactory.getInstance("X.509")
         val trustedCerts: List<X509Certificate> = config.caCerts.flatMap { file ->
             FileInputStream(file).use { stream ->
@@ -106,10 +108,32 @@ object GrpcChannelFactory {
             }
         }
 
-        val sslContext = GrpcSslContexts.forClient()
+        val context = GrpcSslContexts.forClient()
             .keyManager(config.certFile, config.keyFile)
             .trustManager(trustedCerts)
             .build()
+        sslContexts[config] = stamp to context
+        return context
+    }
+
+    /**
+     * Creates a [ManagedChannel] secured with the TLS material in [config].
+     *
+     * The channel presents [MtlsConfig.certFile] + [MtlsConfig.keyFile] as its
+     * client identity and trusts the CAs listed in [MtlsConfig.caCerts]. The parsed
+     * material is cached per [config] and rebuilt once any of its files changes.
+     *
+     * @param address target host and port
+     * @param config  TLS/mTLS material
+     * @param keepAliveSeconds if set, HTTP/2 keepalive pings are sent after this many
+     *                         seconds without reads — also while no call is active — so
+     *                         a long-lived, mostly idle channel notices a dead peer
+     *                         before the next call does. The server must permit it
+     *                         (see [de.polocloud.common.communication.GrpcEndpoint]).
+     * @return a ready-to-use [ManagedChannel]; the caller owns the lifecycle
+     */
+    fun secured(address: Address, config: MtlsConfig, keepAliveSeconds: Long? = null): ManagedChannel {
+        val sslContext = clientSslContext(config)
 
         // Use the SocketAddress overload (direct-address resolver) instead of the
         // host/port one: the latter relies on the NameResolver registry's default
@@ -123,6 +147,13 @@ object GrpcChannelFactory {
                 .forAddress(address.toInetSocketAddress())
                 .overrideAuthority(address.asString())
                 .sslContext(sslContext)
+                .apply {
+                    if (keepAliveSeconds != null) {
+                        keepAliveTime(keepAliveSeconds, TimeUnit.SECONDS)
+                        keepAliveTimeout(KEEPALIVE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        keepAliveWithoutCalls(true)
+                    }
+                }
                 .build()
         }
     }
@@ -157,4 +188,6 @@ object GrpcChannelFactory {
             channel.shutdownNow()
         }
     }
+
+    private const val KEEPALIVE_TIMEOUT_SECONDS = 10L
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package de.polocloud.common.communication.tls
+
+import de.polocloud.common.Address
+import io.grpc.ConnectivityState
+import io.grpc.ManagedChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Long-lived, shared mTLS channels — one per target [Address].
+ *
+ * A [ManagedChannel] is meant to be reused: it multiplexes any number of concurrent
+ * calls over one HTTP/2 connection and reconnects by itself after a failure. Opening a
+ * fresh channel per call instead costs a full TCP+TLS handshake every time, which is
+ * what this pool avoids for callers that talk to the same targets over and over.
+ *
+ * - **Reuse:** [channel] returns the cached channel for an address, opening one only on
+ *   first use (or after it was shut down).
+ * - **Reconnect:** a cached channel found in `TRANSIENT_FAILURE` gets its reconnect
+ *   backoff reset, so the next call dials right away instead of waiting out the backoff.
+ * - **Certificate rotation:** the TLS material is re-read through [tls] on every
+ *   [channel] call and compared via [MtlsConfig.materialStamp]; once any file changed,
+ *   every cached channel is replaced on its next use and the old one drained.
+ * - **Eviction:** [retainOnly] closes the channels of targets that no longer exist.
+ *
+ * Channels handed out must **not** be shut down by the caller — the pool owns them until
+ * [close].
+ *
+ * ```kotlin
+ * val pool = GrpcChannelPool(tls = { MtlsConfig.mutual(cert, key, caCert) })
+ * val stub = MyServiceGrpcKt.MyServiceCoroutineStub(pool.channel(address))
+ * ```
+ *
+ * @param tls supplies the current TLS material; called on every [channel] call, so it
+ *            must be cheap (building an [MtlsConfig] only checks the files exist).
+ * @param keepAliveSeconds keepalive interval of every pooled channel, see
+ *                         [GrpcChannelFactory.secured].
+ * @param open opens one channel — injectable for testing.
+ */
+class GrpcChannelPool(
+    private val tls: () -> MtlsConfig,
+    keepAliveSeconds: Long = 30,
+    private val open: (Address, MtlsConfig) -> ManagedChannel = { address, config ->
+        GrpcChannelFactory.secured(address, config, keepAliveSeconds)
+    },
+) {
+
+    /**
+     * Counters since the pool was created.
+     *
+     * @property channelsOpened channels built — each one costs a TCP+TLS handshake on first use.
+     * @property handshakes connections that reached `READY`, including automatic reconnects
+     *                      of an already pooled channel.
+     * @property reuses [channel] calls answered with an already open channel.
+     * @property open channels currently pooled.
+     */
+    data class Stats(
+        val channelsOpened: Long,
+        val handshakes: Long,
+        val reuses: Long,
+        val open: Int,
+    )
+
+    private class Entry(val channel: ManagedChannel, val stamp: List<Long>)
+
+    private val entries = ConcurrentHashMap<Address, Entry>()
+    private val channelsOpened = AtomicLong()
+    private val handshakes = AtomicLong()
+    private val reuses = AtomicLong()
+
+    @Volatile
+    private var closed = false
+
+    /** Returns the shared channel to [address], opening (or re-opening) it if needed. */
+    fun channel(address: Address): ManagedChannel {
+        check(!closed) { "GrpcChannelPool is closed" }
+        val config = tls()
+        val stamp = config.materialStamp()
+
+        val cached = entries[address]
+        if (cached != null && cached.stamp == stamp && !cached.channel.isShutdown) {
+            reuses.incrementAndGet()
+            if (cached.channel.getState(false) == ConnectivityState.TRANSIENT_FAILURE) {
+                cached.channel.resetConnectBackoff()
+            }
+            return cached.channel
+        }
+
+        var replaced: Entry? = null
+        val entry = entries.compute(address) { _, current ->
+            if (current != null && current.stamp == stamp && !current.channel.isShutdown) {
+                current
+            } else {
+                replaced = current
+                Entry(open(address, config), stamp).also {
+                    channelsOpened.incrementAndGet()
+                    watchHandshakes(it.channel, ConnectivityState.IDLE)
+                }
+            }
+        }!!
+        // Graceful shutdown: calls still running on the old channel are allowed to finish.
+        replaced?.let { if (it !== entry) it.channel.shutdown() }
+        return entry.channel
+    }
+
+    /**
+     * Counts every transition of [channel] into `READY` as one handshake, re-arming itself
+     * until the channel is shut down. Channels that don't support state notifications
+     * simply aren't counted.
+     */
+    private fun watchHandshakes(channel: ManagedChannel, last: ConnectivityState) {
+        runCatching {
+            channel.notifyWhenStateChanged(last) {
+                val state = channel.getState(false)
+                if (state == ConnectivityState.READY) handshakes.incrementAndGet()
+                if (state != ConnectivityState.SHUTDOWN) watchHandshakes(channel, state)
+            }
+        }
+    }
+
+    /** Closes the pooled channels of every target not in [addresses]. */
+    fun retainOnly(addresses: Set<Address>) {
+        entries.keys.filter { it !in addresses }.forEach { address ->
+            entries.remove(address)?.channel?.shutdown()
+        }
+    }
+
+    /** Snapshot of the pool's counters. */
+    fun stats(): Stats = Stats(
+        channelsOpened = channelsOpened.get(),
+        handshakes = handshakes.get(),
+        reuses = reuses.get(),
+        open = entries.size,
+    )
+
+    /** Shuts down every pooled channel; [channel] fails afterwards. */
+    fun close() {
+        closed = true
+        entries.values.forEach { runCatching { GrpcChannelFactory.shutdown(it.channel) } }
+        entries.clear()
+    }
+}
@@ -66,6 +66,15 @@ data class MtlsConfig(
         require(caCerts.isNotEmpty()) { "At least one CA certificate is required" }
     }
 
+    /**
+     * Modification time and size of every file in this config, in a fixed order.
+     *
+     * Two stamps differ as soon as any certificate, key or CA file is rewritten — used to
+     * notice a certificate rotation without re-reading the files themselves.
+     */
+    fun materialStamp(): List<Long> =
+        (listOf(certFile, keyFile) + caCerts).flatMap { listOf(it.lastModified(), it.length()) }
+
     companion object {
 
         /**
@@ -0,0 +1,21 @@
+package de.polocloud.common.metrics
+
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A monotonically increasing count. Striped ([LongAdder]), so threads incrementing it at
+ * once don't contend on one memory location.
+ */
+class Counter internal constructor() {
+
+    private val adder = LongAdder()
+
+    fun inc() = adder.increment()
+
+    fun inc(amount: Long) {
+        require(amount >= 0) { "A counter only goes up, got $amount" }
+        adder.add(amount)
+    }
+
+    val value: Long get() = adder.sum()
+}
@@ -0,0 +1,78 @@
+package de.polocloud.common.metrics
+
+import java.util.concurrent.atomic.DoubleAdder
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Distribution of observed values over fixed [bounds], Prometheus-style: each bucket
+ * counts the values up to its inclusive upper bound, plus one for everything above the
+ * last. Every bucket and the sum are striped adders, so observing never takes a lock.
+ *
+ * @param bounds inclusive upper bound of each bucket, strictly ascending.
+ */
+class Histogram internal constructor(private val bounds: DoubleArray) {
+
+    init {
+        require(bounds.isNotEmpty()) { "A histogram needs at least one bucket" }
+        require((1 until bounds.size).all { bounds[it] > bounds[it - 1] }) { "Bucket bounds must be strictly ascending" }
+    }
+
+    private val counts = Array(bounds.size + 1) { LongAdder() }
+    private val sum = DoubleAdder()
+
+    fun observe(value: Double) {
+        var bucket = 0
+        while (bucket < bounds.size && value > bounds[bucket]) bucket++
+        counts[bucket].increment()
+        sum.add(value)
+    }
+
+    /** Observes the time since [startedAtNanos] (a [System.nanoTime]), in seconds. */
+    fun observeSince(startedAtNanos: Long) = observe((System.nanoTime() - startedAtNanos) / NANOS_PER_SECOND)
+
+    /** Runs [block] and observes how long it took, in seconds — whether it returned or threw. */
+    inline fun <T> time(block: () -> T): T {
+        val startedAt = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            observeSince(startedAt)
+        }
+    }
+
+    fun snapshot(): Snapshot =
+        Snapshot(bounds.toList(), counts.map { it.sum() }, sum.sum())
+
+    /**
+     * @param counts one per bound, plus the overflow bucket last — not cumulative.
+     */
+    data class Snapshot(val bounds: List<Double>, val counts: List<Long>, val sum: Double) {
+
+        val count: Long get() = counts.sum()
+
+        /**
+         * Upper bound of the bucket the [quantile] (0..1) falls into — `null` if nothing
+         * was observed, [Double.POSITIVE_INFINITY] if it is in the overflow bucket.
+         */
+        fun quantile(quantile: Double): Double? {
+            val total = count
+            if (total == 0L) return null
+            val rank = kotlin.math.ceil(quantile * total).toLong().coerceIn(1, total)
+            var seen = 0L
+            counts.forEachIndexed { bucket, count ->
+                seen += count
+                if (seen >= rank) return bounds.getOrElse(bucket) { Double.POSITIVE_INFINITY }
+            }
+            return Double.POSITIVE_INFINITY
+        }
+    }
+
+    companion object {
+        private const val NANOS_PER_SECOND = 1_000_000_000.0
+
+        /** Half a millisecond to ten seconds — request, database and start-up latencies. */
+        val DEFAULT_SECONDS_BUCKETS = doubleArrayOf(
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0,
+        )
+    }
+}
@@ -0,0 +1,29 @@
+package de.polocloud.common.metrics
+
+/** Prometheus metric types, as written in a family's `# TYPE` line. */
+enum class MetricType {
+    COUNTER,
+    GAUGE,
+    HISTOGRAM,
+    SUMMARY;
+
+    val exposition: String get() = name.lowercase()
+}
+
+/**
+ * One value of a metric at collection time — [name] is the family name, or for
+ * histograms and summaries one of its `_bucket`/`_sum`/`_count` series.
+ */
+data class MetricSample(
+    val name: String,
+    val labels: Map<String, String>,
+    val value: Double,
+)
+
+/** Every series of one metric name, as collected from a [MetricsRegistry]. */
+data class MetricFamily(
+    val name: String,
+    val help: String,
+    val type: MetricType,
+    val samples: List<MetricSample>,
+)
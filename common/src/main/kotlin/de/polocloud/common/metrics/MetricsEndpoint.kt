@@ -0,0 +1,51 @@
+package de.polocloud.common.metrics
+
+import com.sun.net.httpserver.HttpServer
+import de.polocloud.common.Address
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Serves a [MetricsRegistry] as [PrometheusText] on `GET /metrics`, over the JDK's
+ * built-in HTTP server — nothing but a Prometheus server (or `curl`) needed to read it.
+ * Plain HTTP: bind it to loopback or a monitoring network.
+ */
+class MetricsEndpoint(
+    private val registry: MetricsRegistry,
+    private val address: Address,
+) {
+
+    private var server: HttpServer? = null
+    private var executor: ExecutorService? = null
+
+    fun start() {
+        val server = HttpServer.create(address.toInetSocketAddress(), 0)
+        server.createContext("/metrics") { exchange ->
+            exchange.use {
+                if (it.requestMethod != "GET") {
+                    it.sendResponseHeaders(405, -1)
+                    return@use
+                }
+                val body = PrometheusText.write(registry.collect()).toByteArray(Charsets.UTF_8)
+                it.responseHeaders.set("Content-Type", PrometheusText.CONTENT_TYPE)
+                it.sendResponseHeaders(200, body.size.toLong())
+                it.responseBody.write(body)
+            }
+        }
+        // One scrape at a time is plenty, and keeps collection off the caller's threads.
+        val executor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "metrics-endpoint").apply { isDaemon = true }
+        }
+        server.executor = executor
+        server.start()
+        this.server = server
+        this.executor = executor
+    }
+
+    fun close() {
+        server?.stop(0)
+        executor?.shutdownNow()
+        server = null
+        executor = null
+    }
+}
@@ -0,0 +1,114 @@
+package de.polocloud.common.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * In-process metrics: [counter]s and [histogram]s updated where things happen, gauges and
+ * counters read from a callback at collection time — for numbers a component already
+ * keeps, e.g. in its `stats()` — and [MetricsCollector]s for series whose labels are only
+ * known then.
+ *
+ * Asking for a metric that exists already returns it, so call sites may look it up
+ * rather than keep it; a callback registered again replaces the previous one. Names and
+ * label names follow Prometheus' rules, and one name always has one type.
+ *
+ * A callback or collector that throws is reported as `NaN` or left out, so one broken
+ * component never fails a whole collection.
+ */
+class MetricsRegistry {
+
+    private class Family(val name: String, val help: String, val type: MetricType) {
+        val series = ConcurrentHashMap<Map<String, String>, Any>()
+    }
+
+    private class Callback(val value: () -> Number)
+
+    private val families = ConcurrentHashMap<String, Family>()
+    private val collectors = ConcurrentHashMap<String, MetricsCollector>()
+
+    fun counter(name: String, help: String, labels: Map<String, String> = emptyMap()): Counter =
+        series(name, help, MetricType.COUNTER, labels) { Counter() } as? Counter
+            ?: throw IllegalArgumentException("Metric '$name$labels' is registered as a callback")
+
+    /** A counter whose total [value] keeps itself, e.g. an existing `AtomicLong`. */
+    fun counter(name: String, help: String, labels: Map<String, String> = emptyMap(), value: () -> Number) =
+        callback(name, help, MetricType.COUNTER, labels, value)
+
+    fun gauge(name: String, help: String, labels: Map<String, String> = emptyMap(), value: () -> Number) =
+        callback(name, help, MetricType.GAUGE, labels, value)
+
+    fun histogram(
+        name: String,
+        help: String,
+        labels: Map<String, String> = emptyMap(),
+        bounds: DoubleArray = Histogram.DEFAULT_SECONDS_BUCKETS,
+    ): Histogram =
+        series(name, help, MetricType.HISTOGRAM, labels) { Histogram(bounds) } as Histogram
+
+    /** Registers (or replaces) [collector] under [key]. */
+    fun register(key: String, collector: MetricsCollector) {
+        collectors[key] = collector
+    }
+
+    fun unregister(key: String) {
+        collectors.remove(key)
+    }
+
+    /** Every metric's current value, families sorted by name. */
+    fun collect(): List<MetricFamily> {
+        val collected = families.values.map { family ->
+            MetricFamily(
+                family.name,
+                family.help,
+                family.type,
+                family.series.entries.sortedBy { it.key.toString() }.flatMap { (labels, series) -> samples(family.name, labels, series) },
+            )
+        } + collectors.values.flatMap { runCatching { it.collect() }.getOrDefault(emptyList()) }
+        return collected.sortedBy { it.name }
+    }
+
+    private fun callback(name: String, help: String, type: MetricType, labels: Map<String, String>, value: () -> Number) {
+        family(name, help, type, labels).series[labels] = Callback(value)
+    }
+
+    private fun series(name: String, help: String, type: MetricType, labels: Map<String, String>, create: () -> Any): Any {
+        val family = families[name]?.takeIf { it.type == type } ?: family(name, help, type, labels)
+        return family.series[labels] ?: family.series.computeIfAbsent(labels) { create() }
+    }
+
+    private fun family(name: String, help: String, type: MetricType, labels: Map<String, String>): Family {
+        require(NAME.matches(name)) { "Invalid metric name '$name'" }
+        labels.keys.forEach { require(LABEL.matches(it)) { "Invalid label name '$it' of metric '$name'" } }
+        val family = families.computeIfAbsent(name) { Family(name, help, type) }
+        require(family.type == type) { "Metric '$name' is a ${family.type.exposition}, not a ${type.exposition}" }
+        return family
+    }
+
+    private fun samples(name: String, labels: Map<String, String>, series: Any): List<MetricSample> = when (series) {
+        is Counter -> listOf(MetricSample(name, labels, series.value.toDouble()))
+        is Callback -> listOf(MetricSample(name, labels, runCatching { series.value().toDouble() }.getOrDefault(Double.NaN)))
+        is Histogram -> histogramSamples(name, labels, series.snapshot())
+        else -> emptyList()
+    }
+
+    companion object {
+        private val NAME = Regex("[a-zA-Z_:][a-zA-Z0-9_:]*")
+        private val LABEL = Regex("[a-zA-Z_][a-zA-Z0-9_]*")
+
+        /** The `_bucket` (cumulative), `_sum` and `_count` series of one histogram. */
+        fun histogramSamples(name: String, labels: Map<String, String>, snapshot: Histogram.Snapshot): List<MetricSample> {
+            var cumulative = 0L
+            val buckets = snapshot.counts.mapIndexed { bucket, count ->
+                cumulative += count
+                val bound = snapshot.bounds.getOrNull(bucket)?.let(PrometheusText::formatValue) ?: "+Inf"
+                MetricSample("${name}_bucket", labels + ("le" to bound), cumulative.toDouble())
+            }
+            return buckets + MetricSample("${name}_sum", labels, snapshot.sum) + MetricSample("${name}_count", labels, cumulative.toDouble())
+        }
+    }
+}
+
+/** Supplies whole metric families at collection time — for series only known then. */
+fun interface MetricsCollector {
+    fun collect(): List<MetricFamily>
+}
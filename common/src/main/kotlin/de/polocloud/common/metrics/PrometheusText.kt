@@ -0,0 +1,37 @@
+package de.polocloud.common.metrics
+
+/**
+ * The Prometheus text exposition format (version 0.0.4) — what a Prometheus server
+ * scrapes from [MetricsEndpoint].
+ */
+object PrometheusText {
+
+    const val CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8"
+
+    fun write(families: List<MetricFamily>): String = buildString {
+        families.forEach { family ->
+            append("# HELP ").append(family.name).append(' ').append(escapeHelp(family.help)).append('\n')
+            append("# TYPE ").append(family.name).append(' ').append(family.type.exposition).append('\n')
+            family.samples.forEach { sample ->
+                append(sample.name)
+                if (sample.labels.isNotEmpty()) {
+                    sample.labels.entries.joinTo(this, ",", "{", "}") { (key, value) -> "$key=\"${escapeLabel(value)}\"" }
+                }
+                append(' ').append(formatValue(sample.value)).append('\n')
+            }
+        }
+    }
+
+    /** Whole numbers without a fraction, the way Prometheus client libraries print them. */
+    fun formatValue(value: Double): String = when {
+        value.isNaN() -> "NaN"
+        value == Double.POSITIVE_INFINITY -> "+Inf"
+        value == Double.NEGATIVE_INFINITY -> "-Inf"
+        value == Math.rint(value) && kotlin.math.abs(value) < 1e15 -> value.toLong().toString()
+        else -> value.toString()
+    }
+
+    private fun escapeHelp(help: String) = help.replace("\\", "\\\\").replace("\n", "\\n")
+
+    private fun escapeLabel(value: String) = escapeHelp(value).replace("\"", "\\\"")
+}
@@ -0,0 +1,114 @@
+package de.polocloud.common.communication.server.executor
+
+import de.polocloud.common.communication.server.context.GrpcServerContext
+import de.polocloud.common.communication.server.handler.GrpcServerHandler
+import de.polocloud.common.communication.server.middleware.GrpcServerMiddleware
+import de.polocloud.common.communication.server.registery.GrpcServerHandlerRegistry
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class GrpcServerExecutorTest {
+
+    private data class Ping(val value: String)
+    private data class Health(val value: String)
+
+    private val trace = mutableListOf<String>()
+    private val typesAsked = mutableListOf<Class<*>>()
+
+    private inner class Recording(
+        private val name: String,
+        private val only: Class<*>? = null,
+    ) : GrpcServerMiddleware {
+
+        override suspend fun <Request : Any, Response : Any> intercept(
+            request: Request,
+            context: GrpcServerContext,
+            next: suspend () -> Response
+        ): Response {
+            trace += "$name>"
+            return next().also { trace += "<$name" }
+        }
+
+        override fun appliesTo(requestType: Class<*>): Boolean {
+            typesAsked += requestType
+            return only == null || only == requestType
+        }
+    }
+
+    private fun <Request : Any> handler(name: String) = object : GrpcServerHandler<Request, String> {
+        override suspend fun handle(request: Request, context: GrpcServerContext): String {
+            trace += name
+            return "$name:$request"
+        }
+    }
+
+    private fun registry() = GrpcServerHandlerRegistry().apply {
+        register(Ping::class.java, handler("ping"))
+        register(Health::class.java, handler("health"))
+    }
+
+    @Test
+    fun `middlewares wrap the handler in registration order`() = runBlocking {
+        val executor = GrpcServerExecutor(registry(), listOf(Recording("a"), Recording("b")))
+
+        assertEquals("ping:Ping(value=1)", executor.execute<Ping, String>(Ping("1")))
+        assertEquals(listOf("a>", "b>", "ping", "<b", "<a"), trace)
+    }
+
+    @Test
+    fun `the pipeline of a request type is built once`() = runBlocking {
+        val executor = GrpcServerExecutor(registry(), listOf(Recording("a")))
+
+        repeat(100) { executor.execute<Ping, String>(Ping("$it")) }
+        repeat(100) { executor.execute<Health, String>(Health("$it")) }
+
+        assertEquals(listOf(Ping::class.java, Health::class.java), typesAsked)
+        assertEquals(600, trace.size)
+    }
+
+    @Test
+    fun `a middleware only runs for the request types it applies to`() = runBlocking {
+        val executor = GrpcServerExecutor(registry(), listOf(Recording("a"), Recording("pings", only = Ping::class.java)))
+
+        executor.execute<Health, String>(Health("1"))
+        executor.execute<Ping, String>(Ping("1"))
+
+        assertEquals(listOf("a>", "health", "<a", "a>", "pings>", "ping", "<pings", "<a"), trace)
+    }
+
+    @Test
+    fun `a handler registered again replaces the cached pipeline`() = runBlocking {
+        val registry = registry()
+        val executor = GrpcServerExecutor(registry, listOf(Recording("a")))
+        executor.execute<Ping, String>(Ping("1"))
+
+        registry.register(Ping::class.java, handler("pong"))
+
+        assertEquals("pong:Ping(value=2)", executor.execute<Ping, String>(Ping("2")))
+    }
+
+    @Test
+    fun `a middleware may short-circuit the handler`() = runBlocking {
+        val blocking = object : GrpcServerMiddleware {
+            @Suppress("UNCHECKED_CAST")
+            override suspend fun <Request : Any, Response : Any> intercept(
+                request: Request,
+                context: GrpcServerContext,
+                next: suspend () -> Response
+            ): Response = "blocked" as Response
+        }
+        val executor = GrpcServerExecutor(registry(), listOf(blocking, Recording("a")))
+
+        assertEquals("blocked", executor.execute<Ping, String>(Ping("1")))
+        assertEquals(emptyList<String>(), trace)
+    }
+
+    @Test
+    fun `a request type without a handler is rejected`() {
+        val executor = GrpcServerExecutor(GrpcServerHandlerRegistry(), listOf(Recording("a")))
+
+        assertThrows(IllegalStateException::class.java) { runBlocking { executor.execute<Ping, String>(Ping("1")) } }
+    }
+}
@@ -0,0 +1,113 @@
+package de.polocloud.common.communication.tls
+
+import de.polocloud.common.Address
+import io.grpc.CallOptions
+import io.grpc.ClientCall
+import io.grpc.ConnectivityState
+import io.grpc.ManagedChannel
+import io.grpc.MethodDescriptor
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+class GrpcChannelPoolTest {
+
+    private class FakeChannel(var state: ConnectivityState = ConnectivityState.IDLE) : ManagedChannel() {
+        var shutdown = false
+        var backoffResets = 0
+
+        override fun shutdown(): ManagedChannel = apply { shutdown = true }
+        override fun shutdownNow(): ManagedChannel = apply { shutdown = true }
+        override fun isShutdown() = shutdown
+        override fun isTerminated() = shutdown
+        override fun awaitTermination(timeout: Long, unit: TimeUnit) = true
+        override fun getState(requestConnection: Boolean) = state
+        override fun resetConnectBackoff() { backoffResets++ }
+        override fun authority() = "fake"
+        override fun <Req, Resp> newCall(method: MethodDescriptor<Req, Resp>, options: CallOptions): ClientCall<Req, Resp> =
+            throw UnsupportedOperationException()
+    }
+
+    private val first = Address("10.0.0.1", 4240)
+    private val second = Address("10.0.0.2", 4240)
+
+    private fun pool(dir: File, opened: MutableList<FakeChannel> = mutableListOf()): GrpcChannelPool {
+        val cert = File(dir, "certificate.pem").apply { if (!exists()) writeText("cert") }
+        val key = File(dir, "private-key.pem").apply { if (!exists()) writeText("key") }
+        val ca = File(dir, "ca.pem").apply { if (!exists()) writeText("ca") }
+        return GrpcChannelPool(
+            tls = { MtlsConfig.mutual(cert, key, ca) },
+            open = { _, _ -> FakeChannel().also { opened += it } },
+        )
+    }
+
+    @Test
+    fun `repeated calls to the same address share one channel`(@TempDir dir: File) {
+        val opened = mutableListOf<FakeChannel>()
+        val pool = pool(dir, opened)
+
+        val channel = pool.channel(first)
+        repeat(4) { assertSame(channel, pool.channel(first)) }
+        pool.channel(second)
+
+        assertEquals(2, opened.size)
+        assertEquals(GrpcChannelPool.Stats(channelsOpened = 2, handshakes = 0, reuses = 4, open = 2), pool.stats())
+    }
+
+    @Test
+    fun `rewritten certificates replace the pooled channel`(@TempDir dir: File) {
+        val opened = mutableListOf<FakeChannel>()
+        val pool = pool(dir, opened)
+        val before = pool.channel(first)
+
+        File(dir, "certificate.pem").writeText("rotated certificate")
+        val after = pool.channel(first)
+
+        assertNotSame(before, after)
+        assertTrue(opened[0].shutdown)
+        assertFalse(opened[1].shutdown)
+    }
+
+    @Test
+    fun `a channel that was shut down is reopened`(@TempDir dir: File) {
+        val opened = mutableListOf<FakeChannel>()
+        val pool = pool(dir, opened)
+
+        pool.channel(first).shutdown()
+        pool.channel(first)
+
+        assertEquals(2, opened.size)
+    }
+
+    @Test
+    fun `reusing a failed channel resets its reconnect backoff`(@TempDir dir: File) {
+        val opened = mutableListOf<FakeChannel>()
+        val pool = pool(dir, opened)
+        pool.channel(first)
+
+        opened[0].state = ConnectivityState.TRANSIENT_FAILURE
+        pool.channel(first)
+
+        assertEquals(1, opened[0].backoffResets)
+    }
+
+    @Test
+    fun `channels of departed targets are closed`(@TempDir dir: File) {
+        val opened = mutableListOf<FakeChannel>()
+        val pool = pool(dir, opened)
+        pool.channel(first)
+        pool.channel(second)
+
+        pool.retainOnly(setOf(second))
+
+        assertTrue(opened[0].shutdown)
+        assertFalse(opened[1].shutdown)
+        assertEquals(1, pool.stats().open)
+    }
+}
@@ -0,0 +1,97 @@
+package de.polocloud.common.metrics
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MetricsRegistryTest {
+
+    private val registry = MetricsRegistry()
+
+    private fun MetricsRegistry.sample(name: String, labels: Map<String, String> = emptyMap()) =
+        collect().flatMap { it.samples }.single { it.name == name && it.labels == labels }.value
+
+    @Test
+    fun `concurrent increments are all counted`() {
+        val counter = registry.counter("requests_total", "Requests")
+        val histogram = registry.histogram("latency_seconds", "Latency", bounds = doubleArrayOf(1.0))
+        val executor = Executors.newFixedThreadPool(8)
+        repeat(8) {
+            executor.execute {
+                repeat(10_000) {
+                    counter.inc()
+                    histogram.observe(0.5)
+                }
+            }
+        }
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS))
+
+        assertEquals(80_000.0, registry.sample("requests_total"))
+        assertEquals(80_000.0, registry.sample("latency_seconds_count"))
+        assertEquals(40_000.0, registry.sample("latency_seconds_sum"))
+    }
+
+    @Test
+    fun `asking again returns the same metric`() {
+        val labels = mapOf("table" to "nodes")
+
+        assertSame(registry.counter("calls_total", "Calls", labels), registry.counter("calls_total", "Calls", labels))
+        assertSame(registry.histogram("call_seconds", "Calls", labels), registry.histogram("call_seconds", "Calls", labels))
+    }
+
+    @Test
+    fun `histogram buckets are cumulative and end with +Inf`() {
+        val histogram = registry.histogram("start_seconds", "Starts", mapOf("mode" to "cold"), doubleArrayOf(1.0, 5.0))
+        listOf(0.5, 1.0, 3.0, 30.0).forEach(histogram::observe)
+
+        val buckets = registry.collect().single().samples.filter { it.name == "start_seconds_bucket" }
+
+        assertEquals(listOf("1", "5", "+Inf"), buckets.map { it.labels["le"] })
+        assertEquals(listOf(2.0, 3.0, 4.0), buckets.map { it.value })
+        assertEquals(34.5, registry.sample("start_seconds_sum", mapOf("mode" to "cold")))
+        assertEquals(5.0, histogram.snapshot().quantile(0.75))
+        assertEquals(Double.POSITIVE_INFINITY, histogram.snapshot().quantile(1.0))
+    }
+
+    @Test
+    fun `callbacks are read at collection time and a failing one reports NaN`() {
+        var depth = 3
+        registry.gauge("queue_depth", "Depth") { depth }
+        registry.gauge("broken", "Broken") { error("unavailable") }
+
+        depth = 7
+
+        assertEquals(7.0, registry.sample("queue_depth"))
+        assertTrue(registry.sample("broken").isNaN())
+    }
+
+    @Test
+    fun `a failing collector is left out`() {
+        registry.register("broken") { error("unavailable") }
+        registry.register("working") {
+            listOf(MetricFamily("collected", "Collected", MetricType.GAUGE, listOf(MetricSample("collected", emptyMap(), 1.0))))
+        }
+
+        assertEquals(listOf("collected"), registry.collect().map { it.name })
+    }
+
+    @Test
+    fun `one name has one type`() {
+        registry.counter("things", "Things")
+
+        assertThrows(IllegalArgumentException::class.java) { registry.gauge("things", "Things") { 1 } }
+        assertThrows(IllegalArgumentException::class.java) { registry.histogram("things", "Things") }
+    }
+
+    @Test
+    fun `invalid names and negative increments are rejected`() {
+        assertThrows(IllegalArgumentException::class.java) { registry.counter("service-starts", "Starts") }
+        assertThrows(IllegalArgumentException::class.java) { registry.counter("starts", "Starts", mapOf("group-name" to "lobby")) }
+        assertThrows(IllegalArgumentException::class.java) { registry.counter("starts", "Starts").inc(-1) }
+    }
+}
@@ -0,0 +1,63 @@
+package de.polocloud.common.metrics
+
+import de.polocloud.common.Address
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.net.ServerSocket
+import java.net.URI
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+
+class PrometheusTextTest {
+
+    @Test
+    fun `families are written in the text exposition format`() {
+        val registry = MetricsRegistry()
+        registry.counter("polocloud_starts_total", "Service starts", mapOf("group" to "lo\"bby")).inc(2)
+        registry.gauge("polocloud_queue_depth", "Queued\nservices") { 1.5 }
+
+        assertEquals(
+            """
+            # HELP polocloud_queue_depth Queued\nservices
+            # TYPE polocloud_queue_depth gauge
+            polocloud_queue_depth 1.5
+            # HELP polocloud_starts_total Service starts
+            # TYPE polocloud_starts_total counter
+            polocloud_starts_total{group="lo\"bby"} 2
+
+            """.trimIndent(),
+            PrometheusText.write(registry.collect()),
+        )
+    }
+
+    @Test
+    fun `special values are written the way Prometheus reads them`() {
+        assertEquals("NaN", PrometheusText.formatValue(Double.NaN))
+        assertEquals("+Inf", PrometheusText.formatValue(Double.POSITIVE_INFINITY))
+        assertEquals("0.25", PrometheusText.formatValue(0.25))
+        assertEquals("42", PrometheusText.formatValue(42.0))
+    }
+
+    @Test
+    fun `the endpoint serves the registry on GET metrics`() {
+        val registry = MetricsRegistry()
+        registry.counter("polocloud_scrapes_total", "Scrapes").inc()
+        val port = ServerSocket(0).use { it.localPort }
+        val endpoint = MetricsEndpoint(registry, Address("127.0.0.1", port))
+        endpoint.start()
+        try {
+            val response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI("http://127.0.0.1:$port/metrics")).GET().build(),
+                HttpResponse.BodyHandlers.ofString(),
+            )
+
+            assertEquals(200, response.statusCode())
+            assertEquals(PrometheusText.CONTENT_TYPE, response.headers().firstValue("Content-Type").orElse(null))
+            assertTrue(response.body().contains("polocloud_scrapes_total 1\n"), response.body())
+        } finally {
+            endpoint.close()
+        }
+    }
+}
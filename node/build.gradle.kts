@@ -15,6 +15,7 @@ polocloud {
 dependencies {
     //kotlin
     polocloudRuntime(libs.kotlinx.serialization.json)
+    polocloudRuntime(libs.kotlinx.serialization.cbor)
     polocloudRuntime(libs.kotlinx.coroutines.core)
     // Modules pull in `api` (see projects.moduleApi below), whose ServiceService/GroupService
     // *Async methods need kotlinx-coroutines-jdk8 (kotlinx.coroutines.future.future) at
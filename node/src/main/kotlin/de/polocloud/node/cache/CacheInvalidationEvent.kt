@@ -0,0 +1,21 @@
+package de.polocloud.node.cache
+
+import de.polocloud.shared.event.Event
+import kotlinx.serialization.Serializable
+
+/**
+ * Fired by a node after it wrote a row of a cached repository, so every other node drops
+ * its copy — see [RepositoryCaches].
+ *
+ * Defined here rather than in `shared` on purpose: only other `node` processes ever need
+ * to understand it, like [de.polocloud.node.module.ModuleStatusEvent].
+ *
+ * @param cache the [RepositoryCache.name] written to.
+ * @param key   the written row's key, or `null` for the whole table.
+ */
+@Serializable
+data class CacheInvalidationEvent(
+    val nodeId: String,
+    val cache: String,
+    val key: String?,
+) : Event
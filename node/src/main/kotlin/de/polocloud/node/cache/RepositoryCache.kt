@@ -0,0 +1,160 @@
+package de.polocloud.node.cache
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+import kotlin.time.Duration
+
+/**
+ * In-process read cache in front of one repository: single rows by key, and whole query
+ * results (listings, filtered finds) by a query key.
+ *
+ * Written through by the repository on save and delete — the row is replaced or dropped
+ * and every cached query result discarded, since any of them may contain it. Other nodes
+ * writing the same table reach this cache as an invalidation relayed by [RepositoryCaches];
+ * [ttl] bounds how stale anything can get should one be lost. Loads racing a write or an
+ * invalidation are not cached, so a slow read can't put back what was just dropped.
+ *
+ * Inactive — every read goes straight to the database — until [RepositoryCaches.start],
+ * i.e. while the node is still bootstrapping its own identity, and in tests.
+ *
+ * Cached rows are the same instances for every reader, as the database would return them:
+ * change one only to save it.
+ *
+ * @param name     identifies the cache in relayed invalidations and in the `caches` command.
+ * @param ttl      how long a loaded row or query result is served before it is read again.
+ * @param parseKey turns a key relayed by another node back into a [K].
+ */
+class RepositoryCache<K : Any, V : Any>(
+    val name: String,
+    val ttl: Duration,
+    private val parseKey: (String) -> K,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+
+    private class Timed<T>(val value: T, val loadedAt: Long)
+
+    private val rows = ConcurrentHashMap<K, Timed<V>>()
+    private val queries = ConcurrentHashMap<Any, Timed<List<V>>>()
+
+    // Bumped by every write and invalidation; a load only caches its result if it didn't move.
+    private val generation = AtomicLong()
+
+    private val hits = LongAdder()
+    private val loads = LongAdder()
+    private val invalidations = LongAdder()
+
+    private val writeObservers = CopyOnWriteArrayList<(K?) -> Unit>()
+
+    init {
+        RepositoryCaches.register(this)
+    }
+
+    /** The row [key], from the cache or [load]ed. A missing row isn't cached. */
+    fun find(key: K, load: () -> V?): V? {
+        if (!RepositoryCaches.active) return load()
+        rows[key]?.takeIf(::isFresh)?.let {
+            hits.increment()
+            return it.value
+        }
+        loads.increment()
+        val before = generation.get()
+        return load()?.also { if (generation.get() == before) rows[key] = Timed(it, clock()) }
+    }
+
+    /** The result of [query], from the cache or [load]ed. */
+    fun query(query: Any, load: () -> List<V>): List<V> {
+        if (!RepositoryCaches.active) return load()
+        queries[query]?.takeIf(::isFresh)?.let {
+            hits.increment()
+            return it.value
+        }
+        loads.increment()
+        val before = generation.get()
+        return load().also { if (generation.get() == before) queries[query] = Timed(it, clock()) }
+    }
+
+    /** Write-through after [value] was saved as [key]; tells the other nodes to drop theirs. */
+    fun saved(key: K, value: V) {
+        generation.incrementAndGet()
+        queries.clear()
+        if (RepositoryCaches.active) rows[key] = Timed(value, clock())
+        RepositoryCaches.publish(this, key.toString())
+        notifyWritten(key)
+    }
+
+    /**
+     * Write-through after [value] was saved as [key] with a change no query result depends
+     * on — a timestamp, say. Replaces the row if it is cached, but keeps the query results,
+     * tells no other node and no observer: their copies stay as they are, up to [ttl] old.
+     */
+    fun touched(key: K, value: V) {
+        if (RepositoryCaches.active) rows.computeIfPresent(key) { _, _ -> Timed(value, clock()) }
+    }
+
+    /** Write-through after the row [key] was deleted; tells the other nodes to drop theirs. */
+    fun deleted(key: K) {
+        invalidate(key)
+        RepositoryCaches.publish(this, key.toString())
+        notifyWritten(key)
+    }
+
+    /** Drops the row [key] — or every row, if `null` — and every query result. */
+    fun invalidate(key: K?) {
+        generation.incrementAndGet()
+        if (key == null) rows.clear() else rows.remove(key)
+        queries.clear()
+        invalidations.increment()
+    }
+
+    /** [invalidate] for a key as relayed by another node — one that doesn't parse drops every row. */
+    internal fun invalidateRelayed(key: String?) {
+        val parsed = key?.let { runCatching { parseKey(it) }.getOrNull() }
+        invalidate(parsed)
+        notifyWritten(parsed)
+    }
+
+    /**
+     * Registers an [observer] for every row written — saved or deleted here, or relayed
+     * in from another node (only while [RepositoryCaches] run). `null` stands for a write
+     * that can't be narrowed down to one row. Runs on the writing thread, so it must be cheap.
+     *
+     * @return closes the registration.
+     */
+    fun observeWrites(observer: (K?) -> Unit): AutoCloseable {
+        writeObservers += observer
+        return AutoCloseable { writeObservers -= observer }
+    }
+
+    private fun notifyWritten(key: K?) = writeObservers.forEach { runCatching { it(key) } }
+
+    fun stats(): RepositoryCacheStats = RepositoryCacheStats(
+        name = name,
+        ttlMillis = ttl.inWholeMilliseconds,
+        rows = rows.size,
+        queries = queries.size,
+        hits = hits.sum(),
+        loads = loads.sum(),
+        invalidations = invalidations.sum(),
+    )
+
+    private fun isFresh(entry: Timed<*>): Boolean = clock() - entry.loadedAt < ttl.inWholeMilliseconds
+}
+
+/**
+ * @param hits          reads served from the cache — each one a database call saved.
+ * @param loads         reads that went to the database.
+ * @param invalidations rows or query results dropped by a write here or on another node.
+ */
+data class RepositoryCacheStats(
+    val name: String,
+    val ttlMillis: Long,
+    val rows: Int,
+    val queries: Int,
+    val hits: Long,
+    val loads: Long,
+    val invalidations: Long,
+) {
+    val hitRate: Double get() = if (hits + loads == 0L) 0.0 else hits.toDouble() / (hits + loads)
+}
@@ -0,0 +1,64 @@
+package de.polocloud.node.cache
+
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.proto.EventEncoding
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.EventRegistry
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Every [RepositoryCache] of this node, kept coherent across the cluster.
+ *
+ * A write through one of them fires a [CacheInvalidationEvent], relayed to the peers like
+ * any other cluster event; each peer drops the written row and its cached query results
+ * on arrival. Events this node fired itself are skipped — its own cache was written
+ * through already.
+ */
+object RepositoryCaches {
+
+    private val logger = LoggerFactory.getLogger(RepositoryCaches::class.java)
+    private val eventName = EventCodec.nameOf(CacheInvalidationEvent::class.java)
+
+    private val caches = ConcurrentHashMap<String, RepositoryCache<*, *>>()
+
+    @Volatile
+    private var nodeId: String? = null
+    private var observation: AutoCloseable? = null
+
+    /** Whether the caches serve reads at all — only between [start] and [stop]. */
+    val active: Boolean get() = nodeId != null
+
+    internal fun register(cache: RepositoryCache<*, *>) {
+        caches[cache.name] = cache
+    }
+
+    /** Starts caching and applying other nodes' invalidations; [localNodeId] tells those apart. */
+    fun start(localNodeId: String) {
+        if (nodeId != null) return
+        // Peers decode this event before this node ever fired one itself.
+        EventRegistry.register(CacheInvalidationEvent::class.java)
+        observation = ClusterEventService.observe { context ->
+            if (context.encoding != EventEncoding.JSON || context.eventName != eventName) return@observe
+            val event = EventCodec.decode(context.eventName, context.eventData) as? CacheInvalidationEvent ?: return@observe
+            if (event.nodeId != localNodeId) caches[event.cache]?.invalidateRelayed(event.key)
+        }
+        nodeId = localNodeId
+    }
+
+    /** Stops caching; every read goes to the database again. */
+    fun stop() {
+        nodeId = null
+        runCatching { observation?.close() }
+        observation = null
+        caches.values.forEach { it.invalidate(null) }
+    }
+
+    internal fun publish(cache: RepositoryCache<*, *>, key: String?) {
+        val id = nodeId ?: return
+        runCatching { ClusterEventService.call(CacheInvalidationEvent(id, cache.name, key)) }
+            .onFailure { logger.warn("Failed to publish invalidation of cache '{}': {}", cache.name, it.message) }
+    }
+
+    fun stats(): List<RepositoryCacheStats> = caches.values.map { it.stats() }.sortedBy { it.name }
+}
@@ -0,0 +1,145 @@
+package de.polocloud.node.cluster.election
+
+import de.polocloud.node.cluster.node.NodeData
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * The registered nodes as the election sees them — [ElectionState]'s quorum denominator
+ * and heartbeat targets — held in memory, so neither a leader heartbeat round nor an
+ * election ever waits on the database.
+ *
+ * Loaded from [source] on [start] and reloaded in the background whenever a node this
+ * view doesn't know yet is written ([changed] — a join), and every [reconcileInterval]
+ * regardless. A written member is looked up on its own instead, and replaced in the view
+ * if it moved to another address (a restart on a new host or port) or dropped if its row
+ * is gone (pruned) — each background round costs one read at most, however many writes
+ * it covers. Last-contact writes don't reach [changed] at all, see
+ * `NodeRepository.saveLastConnection`. Only a lost write notice leaves a deleted node in
+ * the view until the next reconciliation: that keeps the quorum denominator too large
+ * for a while, never too small, so it may delay an election but can't let a minority
+ * win one.
+ *
+ * @param source every registered node, as stored.
+ * @param lookup one registered node, as stored — `null` if there is none.
+ */
+class ClusterMembership(
+    private val source: () -> List<NodeData>,
+    private val lookup: (UUID) -> NodeData?,
+    private val reconcileInterval: Duration = 30.seconds,
+) {
+
+    private val logger = LoggerFactory.getLogger(ClusterMembership::class.java)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val reloadRequests = Channel<Unit>(Channel.CONFLATED)
+    private val reloadLock = Any()
+
+    // What the next background round has to do: reload outright, or first compare these members' rows.
+    private val reloadPending = AtomicBoolean()
+    private val changedMembers = ConcurrentHashMap.newKeySet<UUID>()
+
+    @Volatile
+    private var view: List<NodeData>? = null
+
+    private val reloads = AtomicLong()
+
+    fun start() {
+        runCatching { reload() }.onFailure { logger.warn("Failed to load the cluster membership: {}", it.message) }
+        scope.launch {
+            for (request in reloadRequests) {
+                try {
+                    refresh()
+                } catch (cancel: CancellationException) {
+                    throw cancel
+                } catch (e: Exception) {
+                    logger.warn("Failed to reload the cluster membership: {}", e.message)
+                }
+            }
+        }
+        scope.launch {
+            while (isActive) {
+                delay(reconcileInterval)
+                requestReload()
+            }
+        }
+    }
+
+    fun stop() {
+        scope.cancel()
+    }
+
+    /** The current view — read from [source] right away only if it was never loaded. */
+    fun members(): List<NodeData> = view ?: reload()
+
+    /** Reads [source] and replaces the view with it. */
+    fun reload(): List<NodeData> = synchronized(reloadLock) {
+        source().also {
+            view = it
+            reloads.incrementAndGet()
+        }
+    }
+
+    /**
+     * The row of [nodeId] — `null` if unknown which — was written. Reloads in the
+     * background unless it is a member already; a member's row is read on its own first,
+     * as its own writes (votes, state) mostly don't change who belongs to
+     * the cluster or where to reach it.
+     */
+    fun changed(nodeId: UUID?) {
+        val current = view
+        if (nodeId != null && current != null && current.any { it.id == nodeId }) {
+            changedMembers += nodeId
+            reloadRequests.trySend(Unit)
+            return
+        }
+        requestReload()
+    }
+
+    private fun requestReload() {
+        reloadPending.set(true)
+        reloadRequests.trySend(Unit)
+    }
+
+    /**
+     * One background round, one read: a pending reload, a reload for several changed
+     * members, or the lookup of a single one — replaced in the view if it moved, dropped
+     * if it is gone.
+     */
+    private fun refresh() {
+        val members = changedMembers.toList()
+        changedMembers.removeAll(members.toSet())
+        if (reloadPending.getAndSet(false) || view == null || members.size > 1) {
+            reload()
+            return
+        }
+        val id = members.singleOrNull() ?: return
+        val stored = lookup(id)
+        synchronized(reloadLock) {
+            val current = view ?: return
+            val known = current.firstOrNull { it.id == id } ?: return
+            view = when {
+                stored == null -> current - known
+                stored.hostname != known.hostname || stored.port != known.port -> current.map { if (it.id == id) stored else it }
+                else -> return
+            }
+        }
+    }
+
+    data class Stats(val members: Int, val reloads: Long)
+
+    fun stats(): Stats = Stats(view?.size ?: 0, reloads.get())
+}
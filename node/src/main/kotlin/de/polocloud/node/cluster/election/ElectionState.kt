@@ -45,6 +45,8 @@ class ElectionState(
      * All registered nodes including self — the quorum denominator and vote targets.
      * Not filtered by online state: a node that's merely unreachable still counts
      * towards the total, so a minority partition can't reach majority on its own.
+     * Asked on every election and leader heartbeat round, so it should answer from
+     * memory — see [ClusterMembership].
      */
     private val members: () -> List<NodeData>,
     private val firstConnection: () -> kotlin.time.Instant,
@@ -54,7 +56,8 @@ class ElectionState(
      * Side effect invoked only when the known leader actually changes (including
      * becoming leader ourselves), never on every repeated heartbeat — wires back into
      * NodeRepository's `head`/`electedAt` columns so existing DB readers keep working
-     * unchanged, without turning every ~1s leader heartbeat into a DB write.
+     * unchanged, without turning every ~1s leader heartbeat into a DB write. Runs on
+     * [dispatcher], so it must hand any database write off rather than wait for it.
      */
     private val onLeaderChanged: (leaderId: UUID, term: Long) -> Unit,
     private val baseTimeout: Duration = 5.seconds,
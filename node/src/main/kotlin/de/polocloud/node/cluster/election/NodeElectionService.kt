@@ -1,14 +1,24 @@
 package de.polocloud.node.cluster.election
 
+import de.polocloud.node.cluster.election.rpc.ElectionRpcClient
 import de.polocloud.node.cluster.election.rpc.GrpcElectionRpcClient
 import de.polocloud.node.cluster.election.rpc.LeaderHeartbeatResult
 import de.polocloud.node.cluster.election.rpc.RequestVoteResult
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
 import de.polocloud.proto.NodeState
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import org.slf4j.LoggerFactory
 import java.util.UUID
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicReference
 import kotlin.time.Clock.System.now
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.seconds
@@ -21,13 +31,49 @@ import kotlin.time.Duration.Companion.seconds
  * consensus protocol replaced the old "whoever notices first writes head=true locally"
  * approach (no locking in NodeRepository meant concurrent local elections could race,
  * and a demoted head had no way to learn it was superseded).
+ *
+ * Nothing on the election's own path waits on the database but vote persistence: the
+ * membership is a [ClusterMembership] view, and the head projection is written in the
+ * background (see [writeLeadership]) — so election and heartbeat timing don't depend on
+ * database latency.
  */
-class NodeElectionService {
+class NodeElectionService(
+    private val store: Store = RepositoryStore,
+    private val rpcClient: () -> ElectionRpcClient = ::GrpcElectionRpcClient,
+    private val membershipReconcileInterval: Duration = 30.seconds,
+) {
+
+    /** Where the election's rows live — the `nodes` table in production. */
+    interface Store {
+        /** Every registered node, read from the table itself. */
+        fun findAll(): List<NodeData>
+
+        fun find(id: UUID): NodeData?
+
+        /** Saves [nodes], changed together. */
+        fun save(nodes: List<NodeData>)
+
+        /** See [NodeRepository.observeWrites]. */
+        fun observeWrites(observer: (UUID?) -> Unit): AutoCloseable
+    }
+
+    private data class Leadership(val leaderId: UUID, val term: Long)
 
     private val logger = LoggerFactory.getLogger(javaClass)
 
     private var localId: UUID? = null
     private var election: ElectionState? = null
+    private var membership: ClusterMembership? = null
+    private var membershipObservation: AutoCloseable? = null
+    private var scope: CoroutineScope? = null
+
+    // Whether this node was head as of the last leader change — only touched on the
+    // election's dispatcher, like everything ElectionState calls back into.
+    private var head = false
+
+    // The newest leadership this node won but hasn't written to the table yet.
+    private val pendingLeadership = AtomicReference<Leadership?>()
+    private val leadershipWrites = Channel<Unit>(Channel.CONFLATED)
 
     // Notified whenever THIS node's own head status flips (true = became head, false =
     // lost it) — e.g. ModuleManager uses this to enable/disable SINGLE_ACTIVE modules on
@@ -45,17 +91,26 @@ class NodeElectionService {
         heartbeatInterval: Duration = 1.seconds,
     ) {
         this.localId = localId
-        val self = NodeRepository.find(localId)
+        val self = store.find(localId)
+
+        val membership = ClusterMembership(store::findAll, store::find, membershipReconcileInterval)
+        membership.start()
+        membershipObservation = store.observeWrites(membership::changed)
+        this.membership = membership
+
+        val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        scope.launch { writeLeadership(heartbeatInterval) }
+        this.scope = scope
 
         val state = ElectionState(
             localId = localId,
             initialTerm = self?.term ?: 0,
             initialVotedFor = self?.votedFor,
-            members = { NodeRepository.findAll() },
-            firstConnection = { NodeRepository.find(localId)?.firstConnection ?: now() },
-            rpcClient = GrpcElectionRpcClient(),
+            members = membership::members,
+            firstConnection = { membership.members().firstOrNull { it.id == localId }?.firstConnection ?: now() },
+            rpcClient = rpcClient(),
             persistVote = { term, votedFor -> persistVote(localId, term, votedFor) },
-            onLeaderChanged = { leaderId, term -> applyLeader(leaderId, term) },
+            onLeaderChanged = { leaderId, term -> onLeaderChanged(leaderId, term) },
             baseTimeout = baseTimeout,
             jitterRangeMillis = jitterRangeMillis,
             heartbeatInterval = heartbeatInterval,
@@ -67,6 +122,12 @@ class NodeElectionService {
     fun stop() {
         election?.stop()
         election = null
+        runCatching { membershipObservation?.close() }
+        membershipObservation = null
+        membership?.stop()
+        membership = null
+        scope?.cancel()
+        scope = null
     }
 
     /** Whether this node currently believes itself to be head — for fencing checks before head-only actions (CA signing, forwarding-secret handoff, ...). */
@@ -86,7 +147,7 @@ class NodeElectionService {
     fun onNodeCrashed(failed: NodeData) {
         if (failed.state != NodeState.CRASHED && failed.state != NodeState.STOPPED) {
             failed.state = NodeState.CRASHED
-            NodeRepository.save(failed)
+            store.save(listOf(failed))
             logger.warn("Node ${failed.name()} marked as CRASHED")
         }
 
@@ -114,25 +175,82 @@ class NodeElectionService {
     suspend fun handleLeaderHeartbeat(term: Long, leaderId: UUID): LeaderHeartbeatResult =
         election?.handleLeaderHeartbeat(term, leaderId) ?: LeaderHeartbeatResult(term, false)
 
+    /** The registered nodes as the election currently sees them, and how often that view was reloaded. */
+    fun membershipStats(): ClusterMembership.Stats? = membership?.stats()
+
+    /** `internal` so tests can drive one election round deterministically — see [ElectionState.startElection]. */
+    internal suspend fun startElection() {
+        election?.startElection()
+    }
+
     private fun persistVote(id: UUID, term: Long, votedFor: UUID?) {
-        val node = NodeRepository.find(id) ?: return
+        val node = store.find(id) ?: return
         node.term = term
         node.votedFor = votedFor
-        NodeRepository.save(node)
+        store.save(listOf(node))
     }
 
-    private fun applyLeader(leaderId: UUID, term: Long) {
-        val nodes = NodeRepository.findAll()
-        nodes.forEach { node ->
-            val shouldBeHead = node.id == leaderId
-            if (node.head == shouldBeHead) return@forEach
-            node.head = shouldBeHead
-            if (shouldBeHead) node.electedAt = now()
-            NodeRepository.save(node)
-            if (node.id == localId) {
-                leadershipListeners.forEach { it(shouldBeHead) }
+    /**
+     * Runs on the election's dispatcher, so it only touches memory: [leadershipListeners]
+     * hear about this node's own flips right away, while the `head`/`electedAt` columns
+     * are written by [writeLeadership] in the background — and only by the head itself, so
+     * a follower hearing of a leader late can't flip the table back to a superseded one.
+     */
+    private fun onLeaderChanged(leaderId: UUID, term: Long) {
+        val head = leaderId == localId
+        if (head != this.head) {
+            this.head = head
+            leadershipListeners.forEach { it(head) }
+        }
+        logger.info("Node {} elected as new head for term {}", membership?.members()?.firstOrNull { it.id == leaderId }?.name() ?: leaderId, term)
+        if (!head) return
+        pendingLeadership.set(Leadership(leaderId, term))
+        leadershipWrites.trySend(Unit)
+    }
+
+    /**
+     * Writes the newest won leadership to the table: one read, then every row whose `head`
+     * flag changes saved in one [Store.save]. Leaderships won while a write is running
+     * collapse into the newest; one already lost again by the time it's written is
+     * skipped, the new head writes its own. A failed write is retried after [retryAfter].
+     */
+    private suspend fun writeLeadership(retryAfter: Duration) {
+        for (signal in leadershipWrites) {
+            val leadership = pendingLeadership.getAndSet(null) ?: continue
+            val state = election
+            if (state == null || state.role != ElectionState.Role.LEADER || state.currentTerm != leadership.term) continue
+            try {
+                val changed = store.findAll().filter { node ->
+                    val shouldBeHead = node.id == leadership.leaderId
+                    if (node.head == shouldBeHead) return@filter false
+                    node.head = shouldBeHead
+                    if (shouldBeHead) node.electedAt = now()
+                    true
+                }
+                if (changed.isNotEmpty()) store.save(changed)
+            } catch (cancel: CancellationException) {
+                throw cancel
+            } catch (e: Exception) {
+                logger.warn("Failed to record the head of term {}: {}", leadership.term, e.message)
+                pendingLeadership.compareAndSet(null, leadership)
+                delay(retryAfter)
+                leadershipWrites.trySend(Unit)
             }
         }
-        logger.info("Node {} elected as new head for term {}", nodes.firstOrNull { it.id == leaderId }?.name() ?: leaderId, term)
+    }
+
+    /**
+     * Cluster coordination reads rows from the table itself, never from [NodeRepository]'s
+     * cache — see its class doc. The database layer has no multi-row write, so
+     * [save] still writes its rows one by one.
+     */
+    private object RepositoryStore : Store {
+        override fun findAll(): List<NodeData> = NodeRepository.findAllStored()
+
+        override fun find(id: UUID): NodeData? = NodeRepository.find(id)
+
+        override fun save(nodes: List<NodeData>) = nodes.forEach(NodeRepository::save)
+
+        override fun observeWrites(observer: (UUID?) -> Unit): AutoCloseable = NodeRepository.observeWrites(observer)
     }
 }
@@ -1,33 +1,27 @@
 package de.polocloud.node.cluster.election.rpc
 
-import de.polocloud.common.Address
-import de.polocloud.common.communication.tls.GrpcChannelFactory
-import de.polocloud.common.communication.tls.MtlsConfig
 import de.polocloud.node.cluster.node.NodeData
-import de.polocloud.node.security.NodeCertificateStorage
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.proto.LeaderHeartbeatRequest
 import de.polocloud.proto.NodeServiceGrpcKt
 import de.polocloud.proto.RequestVoteRequest
-import io.grpc.ManagedChannel
 import kotlinx.coroutines.withTimeout
 import org.slf4j.LoggerFactory
 import java.util.UUID
-import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Real transport for [ElectionRpcClient]: unary calls to a peer's `NodeService`
- * (`RequestVote`/`LeaderHeartbeat`) over a cached mTLS channel — same caching and
- * drop-on-failure behavior as [de.polocloud.node.event.ClusterEventRelay], since
- * elections happen far more often than the TCP+TLS handshake should be repeated.
+ * (`RequestVote`/`LeaderHeartbeat`) over the peer's pooled mTLS channel
+ * ([NodeChannelPool]) — elections happen far more often than the TCP+TLS handshake
+ * should be repeated.
  */
 class GrpcElectionRpcClient : ElectionRpcClient {
 
     private val logger = LoggerFactory.getLogger(GrpcElectionRpcClient::class.java)
-    private val channels = ConcurrentHashMap<UUID, ManagedChannel>()
 
     override suspend fun requestVote(peer: NodeData, term: Long, candidateId: UUID): RequestVoteResult? {
         return runCatching {
-            val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(channelFor(peer))
+            val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(NodeChannelPool.channel(peer))
             val request = RequestVoteRequest.newBuilder()
                 .setTerm(term)
                 .setCandidateId(candidateId.toString())
@@ -39,7 +33,7 @@ class GrpcElectionRpcClient : ElectionRpcClient {
 
     override suspend fun leaderHeartbeat(peer: NodeData, term: Long, leaderId: UUID): LeaderHeartbeatResult? {
         return runCatching {
-            val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(channelFor(peer))
+            val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(NodeChannelPool.channel(peer))
             val request = LeaderHeartbeatRequest.newBuilder()
                 .setTerm(term)
                 .setLeaderId(leaderId.toString())
@@ -49,25 +43,8 @@ class GrpcElectionRpcClient : ElectionRpcClient {
         }.onFailure { onCallFailed(peer, "LeaderHeartbeat", it) }.getOrNull()
     }
 
-    override fun close() {
-        channels.values.forEach { runCatching { GrpcChannelFactory.shutdown(it) } }
-        channels.clear()
-    }
-
     private fun onCallFailed(peer: NodeData, rpc: String, ex: Throwable) {
         logger.warn("Election RPC '{}' to node {} failed: {}", rpc, peer.name(), ex.message)
-        // Drop the cached channel so a stale connection (peer restarted, address
-        // changed, cert rotated, ...) doesn't keep failing forever.
-        channels.remove(peer.id)?.let { channel -> runCatching { GrpcChannelFactory.shutdown(channel) } }
-    }
-
-    private fun channelFor(node: NodeData): ManagedChannel = channels.computeIfAbsent(node.id) {
-        val config = MtlsConfig.mutual(
-            cert = NodeCertificateStorage.certificateFile(),
-            key = NodeCertificateStorage.privateKeyFile(),
-            caCert = NodeCertificateStorage.caCertificateFile(),
-        )
-        GrpcChannelFactory.secured(Address(node.hostname, node.port), config)
     }
 
     private companion object {
@@ -43,6 +43,9 @@ class NodeHeartBeatMonitor(
     internal fun checkAll() {
         val now = now()
         val threshold = now - timeout
+        // One row per node (see NodeLatestHeartBeat), fetched once for the whole tick —
+        // not a scan of each node's whole heartbeat history, which grows with uptime.
+        val latestByNode = NodeHeartBeatRepository.latestByNode()
 
         // Not just ONLINE: a node stuck in STARTING/SYNCING (crashed before finishing
         // startup) or STOPPING (killed mid-shutdown) would otherwise never reach a
@@ -51,12 +54,10 @@ class NodeHeartBeatMonitor(
         // (see ElectionState — quorum is computed against every registered node, not
         // just reachable ones) and the terminal states (CRASHED/STOPPED) themselves are
         // excluded since re-flagging an already-terminal row is a no-op at best.
-        NodeRepository.findAll()
+        NodeRepository.findAllStored()
             .filter { it.state != NodeState.CRASHED && it.state != NodeState.STOPPED }
             .forEach { node ->
-                val latest = NodeHeartBeatRepository
-                    .find(node.id)
-                    .maxByOrNull { it.heartBeatAt }
+                val latest = latestByNode[node.id]
 
                 // A heartbeat older than our last contact with this node doesn't prove
                 // it's dead on its own — e.g. right after a restart, stale heartbeat rows
@@ -70,10 +71,12 @@ class NodeHeartBeatMonitor(
                 // never gets a heartbeat row at all, `latest` stays null forever, and the
                 // old code exempted it from crash detection permanently, leaving it stuck
                 // able to block election and service placement indefinitely.
-                val reference = if (latest != null && latest.heartBeatAt >= node.lastConnection) {
+                // The in-memory last contact is ahead of the table by up to one flush.
+                val lastConnection = maxOf(node.lastConnection, NodeRepository.lastSeen.of(node.id) ?: node.lastConnection)
+                val reference = if (latest != null && latest.heartBeatAt >= lastConnection) {
                     latest.heartBeatAt
                 } else {
-                    node.lastConnection
+                    lastConnection
                 }
 
                 if (reference < threshold) {
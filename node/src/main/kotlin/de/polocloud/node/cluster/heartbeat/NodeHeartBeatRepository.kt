@@ -3,15 +3,58 @@ package de.polocloud.node.cluster.heartbeat
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseKey
 import de.polocloud.database.filtering.Eq
+import de.polocloud.node.metrics.DatabaseCalls
 import java.util.UUID
 
+/**
+ * Heartbeat storage, split in three tables:
+ * - `nodes_heartbeats_latest` ([NodeLatestHeartBeat]): one upserted row per node, what
+ *   [save] writes on every tick and what [latest]/[latestByNode] read.
+ * - `nodes_heartbeats` ([NodeHeartBeat]): the downsampled raw history, appended through
+ *   [appendHistory] and only read by [NodeHeartBeatRetention].
+ * - `nodes_heartbeats_rollups` ([NodeHeartBeatRollup]): min/avg/max buckets the retention
+ *   engine builds from that history — what anything displaying history reads.
+ */
 object NodeHeartBeatRepository {
 
     private val databaseKey = DatabaseKey(NodeHeartBeat::class)
+    private val latestDatabaseKey = DatabaseKey(NodeLatestHeartBeat::class)
+    private val rollupDatabaseKey = DatabaseKey(NodeHeartBeatRollup::class)
+    private val historyCalls = DatabaseCalls("nodes_heartbeats")
+    private val latestCalls = DatabaseCalls("nodes_heartbeats_latest")
+    private val rollupCalls = DatabaseCalls("nodes_heartbeats_rollups")
 
-    fun find(nodeId: UUID) = DatabaseAccess.executor().find(databaseKey, Eq("nodeId", nodeId))
+    /** [nodeId]'s most recent heartbeat, or `null` if it never sent one. */
+    fun latest(nodeId: UUID): NodeHeartBeat? =
+        latestCalls.call("findById") { DatabaseAccess.executor().findById(latestDatabaseKey, nodeId) }?.toHeartBeat()
 
-    fun save(beat: NodeHeartBeat) = DatabaseAccess.executor().save(databaseKey, beat)
+    /** Every node's most recent heartbeat, keyed by node id — one row per node. */
+    fun latestByNode(): Map<UUID, NodeHeartBeat> =
+        latestCalls.call("findAll") { DatabaseAccess.executor().findAll(latestDatabaseKey) }.associate { it.nodeId to it.toHeartBeat() }
 
-    fun delete(beat: NodeHeartBeat) = DatabaseAccess.executor().delete(databaseKey, beat)
-}
\ No newline at end of file
+    /** Records [beat] as its node's most recent heartbeat, replacing the previous one. */
+    fun save(beat: NodeHeartBeat) = latestCalls.call("save") { DatabaseAccess.executor().save(latestDatabaseKey, NodeLatestHeartBeat.of(beat)) }
+
+    fun history(nodeId: UUID) = historyCalls.call("find") { DatabaseAccess.executor().find(databaseKey, Eq("nodeId", nodeId)) }
+
+    fun appendHistory(beat: NodeHeartBeat) = historyCalls.call("save") { DatabaseAccess.executor().save(databaseKey, beat) }
+
+    fun delete(beat: NodeHeartBeat) = historyCalls.call("delete") { DatabaseAccess.executor().delete(databaseKey, beat) }
+
+    /** [nodeId]'s [resolution] buckets, in no particular order. */
+    fun rollups(nodeId: UUID, resolution: HeartBeatResolution) =
+        rollupCalls.call("find") { DatabaseAccess.executor().find(rollupDatabaseKey, Eq("series", NodeHeartBeatRollup.seriesOf(nodeId, resolution))) }
+
+    fun saveRollup(rollup: NodeHeartBeatRollup) = rollupCalls.call("save") { DatabaseAccess.executor().save(rollupDatabaseKey, rollup) }
+
+    fun deleteRollup(rollup: NodeHeartBeatRollup) = rollupCalls.call("delete") { DatabaseAccess.executor().delete(rollupDatabaseKey, rollup) }
+
+    /** Removes everything stored for [nodeId]: its latest heartbeat, its history and its rollups. */
+    fun deleteAll(nodeId: UUID) {
+        latestCalls.call("findById") { DatabaseAccess.executor().findById(latestDatabaseKey, nodeId) }?.let {
+            latestCalls.call("delete") { DatabaseAccess.executor().delete(latestDatabaseKey, it) }
+        }
+        history(nodeId).forEach(::delete)
+        rollupCalls.call("find") { DatabaseAccess.executor().find(rollupDatabaseKey, Eq("nodeId", nodeId)) }.forEach(::deleteRollup)
+    }
+}
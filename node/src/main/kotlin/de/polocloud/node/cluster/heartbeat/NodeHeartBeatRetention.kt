@@ -0,0 +1,111 @@
+package de.polocloud.node.cluster.heartbeat
+
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import kotlin.time.Clock
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.Instant
+
+/**
+ * Rolls a node's raw heartbeat history up into [HeartBeatResolution] buckets and expires
+ * whatever a coarser level already covers. Runs repeatedly (see
+ * [NodeHeartBeatService.startScheduler]), not once per boot, so every pass only has a
+ * bounded window of data to look at:
+ *
+ * - raw rows are kept for [rawRetention] and rolled into 1m buckets once their minute is over,
+ * - 1m buckets are kept for a day, 10m buckets for a week, 1h buckets for 30 days, each
+ *   rolled into the next coarser size once that bucket is over.
+ *
+ * Rows are only ever deleted a whole coarser bucket at a time, so a bucket being
+ * recomputed always still has all of its inputs, and recomputing it yields the same row
+ * (same id, same values) — an unchanged bucket is not written again. The database
+ * offers no range delete, so expired rows are still deleted one by one, but a pass only
+ * ever deletes what aged out since the previous one instead of a node's whole backlog.
+ *
+ * The first pass over a node that has been running without retention has that backlog,
+ * though, so a pass writes and deletes at most [maxChangesPerPass] rows, oldest first,
+ * and leaves the rest to the next ones. Deletes only start once every bucket is written,
+ * and always take a whole coarser bucket's inputs, so a pass cut short never leaves a
+ * bucket without its inputs either.
+ *
+ * @param rawRetention how long raw `nodes_heartbeats` rows are kept.
+ * @param maxChangesPerPass rows one [compact] pass may write and delete, together.
+ * @param clock time source — injectable for testing.
+ */
+class NodeHeartBeatRetention(
+    private val rawRetention: Duration = 1.hours,
+    private val maxChangesPerPass: Int = 5_000,
+    private val clock: () -> Instant = { Clock.System.now() },
+) {
+
+    private val logger = LoggerFactory.getLogger(NodeHeartBeatRetention::class.java)
+
+    /** Outcome of one [compact] pass, for logging and tests. */
+    data class Result(val bucketsWritten: Int, val rowsDeleted: Int)
+
+    fun compact(nodeId: UUID): Result {
+        val now = clock()
+        val raw = NodeHeartBeatRepository.history(nodeId)
+
+        // Once spent, nothing more is written — so no coarser bucket is ever built from a
+        // finer level missing some of its buckets — and nothing deleted.
+        var budget = maxChangesPerPass
+        var written = 0
+        var source: Collection<NodeHeartBeatRollup> = raw.map(NodeHeartBeatRollup::sample)
+        val levels = HeartBeatResolution.entries.map { resolution ->
+            val buckets = NodeHeartBeatRepository.rollups(nodeId, resolution).associateByTo(HashMap()) { it.bucketStart }
+            source.groupBy { NodeHeartBeatRollup.bucketStart(it.bucketStart, resolution.size) }
+                .filterKeys { it + resolution.size <= now }
+                .toSortedMap()
+                .forEach { (start, parts) ->
+                    val rollup = NodeHeartBeatRollup.merge(nodeId, resolution, start, parts)
+                    if (buckets[start] != rollup && budget > 0) {
+                        NodeHeartBeatRepository.saveRollup(rollup)
+                        buckets[start] = rollup
+                        written++
+                        budget--
+                    }
+                }
+            source = buckets.values
+            resolution to buckets.values.toList()
+        }
+
+        var deleted = 0
+        // Whole groups (one coarser bucket's inputs) only, oldest first.
+        fun <T> expire(rows: List<T>, groupOf: (T) -> Any, delete: (T) -> Unit) {
+            for (group in rows.groupBy(groupOf).values) {
+                if (group.size > budget) return
+                group.forEach(delete)
+                deleted += group.size
+                budget -= group.size
+            }
+        }
+
+        val rawCutoff = NodeHeartBeatRollup.bucketStart(now - rawRetention, HeartBeatResolution.MINUTE.size)
+        expire(
+            raw.filter { it.heartBeatAt < rawCutoff }.sortedBy { it.heartBeatAt },
+            { NodeHeartBeatRollup.bucketStart(it.heartBeatAt, HeartBeatResolution.MINUTE.size) },
+            NodeHeartBeatRepository::delete,
+        )
+        levels.forEachIndexed { index, (resolution, buckets) ->
+            // Aligned to the next coarser bucket, so it's never left with part of its inputs.
+            val coarser = levels.getOrNull(index + 1)?.first
+            val cutoff = coarser?.let { NodeHeartBeatRollup.bucketStart(now - resolution.retention, it.size) }
+                ?: (now - resolution.retention)
+            expire(
+                buckets.filter { it.bucketStart < cutoff }.sortedBy { it.bucketStart },
+                { bucket -> coarser?.let { NodeHeartBeatRollup.bucketStart(bucket.bucketStart, it.size) } ?: bucket.bucketStart },
+                NodeHeartBeatRepository::deleteRollup,
+            )
+        }
+        if (budget == 0) {
+            logger.debug("Heartbeat retention for node {} reached its {} row cap, continuing with the next pass", nodeId, maxChangesPerPass)
+        }
+
+        if (deleted > 0 || written > 0) {
+            logger.debug("Heartbeat retention for node {}: {} bucket(s) written, {} row(s) expired", nodeId, written, deleted)
+        }
+        return Result(written, deleted)
+    }
+}
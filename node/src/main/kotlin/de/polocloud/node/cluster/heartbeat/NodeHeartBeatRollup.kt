@@ -0,0 +1,121 @@
+package de.polocloud.node.cluster.heartbeat
+
+import de.polocloud.database.EntryIdentifier
+import de.polocloud.database.EntryRef
+import de.polocloud.database.RepositoryName
+import de.polocloud.node.cluster.node.NodeData
+import java.util.UUID
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.days
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Instant
+
+/**
+ * Bucket sizes of the pre-aggregated heartbeat history, finest first.
+ *
+ * Each resolution is rolled up from the one before it (the finest from the raw
+ * `nodes_heartbeats` rows), and its own buckets are dropped once older than [retention]
+ * — by which point the next coarser resolution already covers them.
+ *
+ * @param label short form used in ids and terminal output.
+ * @param size width of one bucket; a multiple of the previous resolution's.
+ * @param retention how long buckets of this size are kept.
+ */
+enum class HeartBeatResolution(val label: String, val size: Duration, val retention: Duration) {
+    MINUTE("1m", 1.minutes, 24.hours),
+    TEN_MINUTES("10m", 10.minutes, 7.days),
+    HOUR("1h", 1.hours, 30.days),
+}
+
+/**
+ * Min/avg/max of every heartbeat metric over one [resolution]-sized bucket of one node.
+ *
+ * The [id] is derived from node, resolution and [bucketStart], so recomputing a bucket
+ * overwrites it instead of adding a duplicate. [series] (`<nodeId>/<resolution>`) lets a
+ * single equality filter load one resolution of one node.
+ *
+ * @param samples number of raw heartbeats the bucket summarizes — the weight used when
+ *                averaging it into a coarser bucket.
+ */
+@RepositoryName("nodes_heartbeats_rollups")
+data class NodeHeartBeatRollup(
+    @EntryIdentifier val id: String,
+    @EntryRef(clazz = NodeData::class) val nodeId: UUID,
+    val series: String,
+    val resolution: HeartBeatResolution,
+    val bucketStart: Instant,
+    val samples: Int,
+
+    val systemCpuMin: Double,
+    val systemCpuAvg: Double,
+    val systemCpuMax: Double,
+    val systemMemoryMin: Double,
+    val systemMemoryAvg: Double,
+    val systemMemoryMax: Double,
+
+    val applicationCpuMin: Double,
+    val applicationCpuAvg: Double,
+    val applicationCpuMax: Double,
+    val applicationMemoryMin: Double,
+    val applicationMemoryAvg: Double,
+    val applicationMemoryMax: Double,
+) {
+
+    companion object {
+
+        fun seriesOf(nodeId: UUID, resolution: HeartBeatResolution) = "$nodeId/${resolution.label}"
+
+        /** Start of the [size]-wide bucket containing [at], aligned to the epoch. */
+        fun bucketStart(at: Instant, size: Duration): Instant {
+            val width = size.inWholeMilliseconds
+            return Instant.fromEpochMilliseconds(Math.floorDiv(at.toEpochMilliseconds(), width) * width)
+        }
+
+        /**
+         * A single raw [beat] as a one-sample rollup, so raw rows and finer buckets can be
+         * merged the same way. Only ever an input to [merge] — never saved itself.
+         */
+        fun sample(beat: NodeHeartBeat) = NodeHeartBeatRollup(
+            beat.id, beat.nodeId, "", HeartBeatResolution.MINUTE, beat.heartBeatAt, 1,
+            beat.systemCpuUsage, beat.systemCpuUsage, beat.systemCpuUsage,
+            beat.systemMemoryUsage, beat.systemMemoryUsage, beat.systemMemoryUsage,
+            beat.applicationCpuUsage, beat.applicationCpuUsage, beat.applicationCpuUsage,
+            beat.applicationMemoryUsage, beat.applicationMemoryUsage, beat.applicationMemoryUsage,
+        )
+
+        /** Combines [parts] into one [resolution] bucket starting at [bucketStart], averages weighted by [samples]. */
+        fun merge(
+            nodeId: UUID,
+            resolution: HeartBeatResolution,
+            bucketStart: Instant,
+            parts: List<NodeHeartBeatRollup>,
+        ): NodeHeartBeatRollup {
+            require(parts.isNotEmpty()) { "Cannot merge an empty bucket" }
+            val ordered = parts.sortedBy { it.bucketStart }
+            val samples = ordered.sumOf { it.samples }
+            fun avg(value: (NodeHeartBeatRollup) -> Double) = ordered.sumOf { value(it) * it.samples } / samples
+
+            return NodeHeartBeatRollup(
+                id = "${seriesOf(nodeId, resolution)}/${bucketStart.toEpochMilliseconds()}",
+                nodeId = nodeId,
+                series = seriesOf(nodeId, resolution),
+                resolution = resolution,
+                bucketStart = bucketStart,
+                samples = samples,
+                systemCpuMin = ordered.minOf { it.systemCpuMin },
+                systemCpuAvg = avg { it.systemCpuAvg },
+                systemCpuMax = ordered.maxOf { it.systemCpuMax },
+                systemMemoryMin = ordered.minOf { it.systemMemoryMin },
+                systemMemoryAvg = avg { it.systemMemoryAvg },
+                systemMemoryMax = ordered.maxOf { it.systemMemoryMax },
+                applicationCpuMin = ordered.minOf { it.applicationCpuMin },
+                applicationCpuAvg = avg { it.applicationCpuAvg },
+                applicationCpuMax = ordered.maxOf { it.applicationCpuMax },
+                applicationMemoryMin = ordered.minOf { it.applicationMemoryMin },
+                applicationMemoryAvg = avg { it.applicationMemoryAvg },
+                applicationMemoryMax = ordered.maxOf { it.applicationMemoryMax },
+            )
+        }
+    }
+}
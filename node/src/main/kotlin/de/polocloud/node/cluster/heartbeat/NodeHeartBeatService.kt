@@ -1,28 +1,36 @@
 package de.polocloud.node.cluster.heartbeat
 
+import de.polocloud.common.metrics.MetricsRegistry
 import de.polocloud.common.os.ApplicationResources
 import de.polocloud.common.os.ResourceProvider
 import de.polocloud.common.os.SystemResources
-import de.polocloud.i18n.api.TranslationService
 import de.polocloud.i18n.api.trError
 import de.polocloud.node.core.environment.NodeEnvironment
+import de.polocloud.node.metrics.NodeMetrics
 import kotlinx.coroutines.*
 import org.slf4j.LoggerFactory
 import java.util.*
 import kotlin.time.Clock
 import kotlin.time.Duration
-import kotlin.time.Duration.Companion.hours
+import kotlin.time.Duration.Companion.minutes
 import kotlin.time.Duration.Companion.seconds
+import kotlin.time.Instant
 
 /**
  * Service for generating and managing heartbeats for a cluster node.
  *
  * This service collects system metrics like CPU and memory usage and stores this
- * information periodically in the database. Additionally, old heartbeats are cleaned up.
+ * information periodically in the database. Every heartbeat replaces the node's latest
+ * row; only one per history interval is also appended to the history, which
+ * [NodeHeartBeatRetention] periodically rolls up and expires.
  *
- * @property factory The database connection used for saving heartbeats.
+ * @param retention the retention engine run on [startScheduler]'s retention interval.
+ * @param metrics   where heartbeat writes and how far the last one lies back are recorded.
  */
-class NodeHeartBeatService {
+class NodeHeartBeatService(
+    private val retention: NodeHeartBeatRetention = NodeHeartBeatRetention(),
+    metrics: MetricsRegistry = NodeMetrics.registry,
+) {
 
     private val logger = LoggerFactory.getLogger(NodeHeartBeatService::class.java)
     private val systemResources: ResourceProvider = SystemResources
@@ -31,35 +39,66 @@ class NodeHeartBeatService {
     private var schedulerJob: Job? = null
 
     // Tracked (unlike a bare launch{}) so stopScheduler() can wait for it — otherwise a
-    // still-running cleanUp() keeps issuing one DELETE per stale row against a database
-    // that NodeLifecycle.shutdown() has, by that point, already closed, producing a
-    // cascade of "HikariDataSource has been closed" errors instead of a clean shutdown.
-    private var cleanupJob: Job? = null
+    // still-running retention pass keeps issuing DELETEs against a database that
+    // NodeLifecycle.shutdown() has, by that point, already closed, producing a cascade of
+    // "HikariDataSource has been closed" errors instead of a clean shutdown.
+    private var retentionJob: Job? = null
+
+    // When this node's latest heartbeat was written, 0 before the first one.
+    @Volatile
+    private var lastSavedAt = 0L
+
+    private val saveDuration = metrics.histogram("polocloud_heartbeat_save_seconds", "Time to write one heartbeat")
+    private val saveFailures = metrics.counter("polocloud_heartbeat_failures_total", "Heartbeats that failed to be written")
+
+    init {
+        // Grows past the heartbeat interval while writes fail or stall — what peers see
+        // as this node falling silent.
+        metrics.gauge("polocloud_heartbeat_lag_seconds", "Time since this node's latest heartbeat was written") {
+            lastSavedAt.takeIf { it > 0 }?.let { (System.currentTimeMillis() - it) / 1000.0 } ?: Double.NaN
+        }
+    }
 
     /**
      * Starts the heartbeat scheduler.
      *
      * @param interval The interval between heartbeats (default: 1 second).
+     * @param historyInterval The minimum time between two heartbeats appended to the
+     *                        history (default: 10 seconds) — a 1s history would be
+     *                        86,400 rows per node per day that nothing reads at that resolution.
+     * @param retentionInterval how often [NodeHeartBeatRetention.compact] runs (default: 10 minutes).
      */
-    fun startScheduler(interval: Duration = 1.seconds) {
-        // Off the startup critical path: cleanUp() scans this node's entire heartbeat
-        // history, which only grows the longer the node stays up between restarts, and
-        // deletes stale rows one at a time. Blocking startup on it means every restart
-        // gets slower as the node accumulates more uptime — running it in the background
-        // instead means "Node is up" no longer waits on however large that table has
-        // gotten since the last restart.
-        cleanupJob = CoroutineScope(Dispatchers.IO).launch {
-            runCatching { cleanUp() }
-                .onFailure { logger.error("Heartbeat cleanup failed", it) }
-        }
-
+    fun startScheduler(
+        interval: Duration = 1.seconds,
+        historyInterval: Duration = 10.seconds,
+        retentionInterval: Duration = 10.minutes,
+    ) {
         val nodeId = NodeEnvironment.runtime.nodeId.get()
 
+        // Off the startup critical path, and on a schedule rather than once per boot: each
+        // pass only rolls up and expires what accumulated since the previous one, instead
+        // of one huge pass over everything written since the last restart.
+        retentionJob = CoroutineScope(Dispatchers.IO).launch {
+            while (isActive) {
+                runCatching { retention.compact(nodeId) }
+                    .onFailure { logger.error("Heartbeat retention failed", it) }
+                delay(retentionInterval)
+            }
+        }
+
         schedulerJob = CoroutineScope(Dispatchers.Default).launch {
+            var lastHistoryAt: Instant? = null
             while (isActive) {
                 runCatching {
-                    NodeHeartBeatRepository.save(generate())
+                    val beat = generate()
+                    saveDuration.time { NodeHeartBeatRepository.save(beat) }
+                    lastSavedAt = System.currentTimeMillis()
+                    if (lastHistoryAt.let { it == null || beat.heartBeatAt - it >= historyInterval }) {
+                        NodeHeartBeatRepository.appendHistory(beat)
+                        lastHistoryAt = beat.heartBeatAt
+                    }
                 }.onFailure { exception ->
+                    saveFailures.inc()
                     logger.trError("cluster", "cluster.heartbeat.save_failed", exception, "nodeId" to nodeId)
                 }
                 delay(interval)
@@ -69,63 +108,22 @@ class NodeHeartBeatService {
 
     /**
      * Stops the heartbeat scheduler if it is running, and waits for a still-in-flight
-     * [cleanUp] to finish (bounded by [CLEANUP_SHUTDOWN_TIMEOUT]) before returning — see
-     * [cleanupJob]'s doc for why this must happen before the caller closes the database.
+     * retention pass to finish (bounded by [RETENTION_SHUTDOWN_TIMEOUT]) before returning —
+     * see [retentionJob]'s doc for why this must happen before the caller closes the database.
      */
     fun stopScheduler() {
         schedulerJob?.cancel()
         schedulerJob = null
 
-        cleanupJob?.let { job ->
+        retentionJob?.let { job ->
+            job.cancel()
             runBlocking {
-                if (withTimeoutOrNull(CLEANUP_SHUTDOWN_TIMEOUT) { job.join() } == null) {
-                    logger.warn("Heartbeat cleanup did not finish within {} during shutdown — it may still be writing to a closing database.", CLEANUP_SHUTDOWN_TIMEOUT)
+                if (withTimeoutOrNull(RETENTION_SHUTDOWN_TIMEOUT) { job.join() } == null) {
+                    logger.warn("Heartbeat retention did not finish within {} during shutdown — it may still be writing to a closing database.", RETENTION_SHUTDOWN_TIMEOUT)
                 }
             }
         }
-        cleanupJob = null
-    }
-
-    /**
-     * Cleans up old heartbeats in the database.
-     *
-     * Heartbeats younger than 24 hours are kept, as well as at least one heartbeat per 10 minutes
-     * in older data.
-     */
-    fun cleanUp() {
-        val beats = NodeHeartBeatRepository.find(NodeEnvironment.runtime.nodeId.get()).sortedBy { it.heartBeatAt }
-        if (beats.isEmpty()) return
-
-        val now = Clock.System.now()
-        val cutoff = now - 24.hours
-        val toKeep = mutableSetOf<NodeHeartBeat>()
-
-        // Keep at least one heartbeat per 10 minutes for older data
-        beats.filter { it.heartBeatAt < cutoff }
-            .groupBy { it.heartBeatAt.toEpochMilliseconds() / (10 * 60 * 1000) }
-            .forEach { (_, group) ->
-                group.minByOrNull { it.heartBeatAt }?.let { toKeep.add(it) }
-            }
-
-        // Keep all recent heartbeats
-        beats.filter { it.heartBeatAt >= cutoff }.forEach { toKeep.add(it) }
-
-        val toDelete = beats.filter { it !in toKeep }
-
-        logger.info(TranslationService.tr("cluster", "cluster.heartbeat.cleanup"))
-
-        toDelete.forEach { beat ->
-            NodeHeartBeatRepository.delete(beat)
-        }
-
-        logger.info(
-            TranslationService.tr(
-                "cluster",
-                "cluster.heartbeat.cleanup.complete",
-                "deleted" to toDelete.size,
-                "kept" to toKeep.size
-            )
-        )
+        retentionJob = null
     }
 
     /**
@@ -158,6 +156,6 @@ class NodeHeartBeatService {
     }
 
     private companion object {
-        val CLEANUP_SHUTDOWN_TIMEOUT = 15.seconds
+        val RETENTION_SHUTDOWN_TIMEOUT = 15.seconds
     }
 }
\ No newline at end of file
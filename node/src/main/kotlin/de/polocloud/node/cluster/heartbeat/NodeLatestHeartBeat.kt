@@ -0,0 +1,43 @@
+package de.polocloud.node.cluster.heartbeat
+
+import de.polocloud.database.EntryIdentifier
+import de.polocloud.database.RepositoryName
+import java.util.UUID
+import kotlin.time.Instant
+
+/**
+ * The most recent [NodeHeartBeat] of one node — exactly one row per node, overwritten
+ * on every heartbeat tick.
+ *
+ * Liveness checks and "current load" reads only ever need this one sample, so keeping
+ * it apart from the `nodes_heartbeats` history means they cost one row per node instead
+ * of a scan over everything the node ever reported.
+ */
+@RepositoryName("nodes_heartbeats_latest")
+data class NodeLatestHeartBeat(
+    @EntryIdentifier val nodeId: UUID,
+    val heartBeatAt: Instant,
+
+    val systemCpuUsage: Double,
+    val systemMemoryUsage: Double,
+
+    val applicationCpuUsage: Double,
+    val applicationMemoryUsage: Double,
+) {
+
+    fun toHeartBeat() = NodeHeartBeat(
+        nodeId.toString(), nodeId,
+        heartBeatAt,
+        systemCpuUsage, systemMemoryUsage,
+        applicationCpuUsage, applicationMemoryUsage,
+    )
+
+    companion object {
+        fun of(beat: NodeHeartBeat) = NodeLatestHeartBeat(
+            beat.nodeId,
+            beat.heartBeatAt,
+            beat.systemCpuUsage, beat.systemMemoryUsage,
+            beat.applicationCpuUsage, beat.applicationMemoryUsage,
+        )
+    }
+}
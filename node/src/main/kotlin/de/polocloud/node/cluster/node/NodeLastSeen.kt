@@ -0,0 +1,157 @@
+package de.polocloud.node.cluster.node
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.time.Instant
+
+/**
+ * When this node last heard from each peer — the in-memory side of
+ * [NodeData.lastConnection].
+ *
+ * [touch] is called for every RPC a peer makes and only raises a timestamp in memory,
+ * without a lock. A background flusher writes the peers heard from since the previous
+ * flush to the `nodes` table every [flushIntervalMillis] in one [Writer.write] call, so a
+ * busy peer costs one row update per interval instead of one per RPC. [of] is always
+ * current; the table lags by up to one interval.
+ *
+ * Only registered nodes are tracked: services reach the same endpoint with their UUID as
+ * certificate subject too, so an id [isNode] doesn't know is ignored, and a node whose
+ * row is gone (pruned) is dropped with the next flush.
+ *
+ * @param writer persists a batch of new timestamps.
+ * @param isNode whether an id is a registered node — asked at most once per id and flush, not per RPC.
+ * @param clock  current time in epoch millis — injectable for testing.
+ */
+class NodeLastSeen(
+    private val writer: Writer = RepositoryWriter,
+    private val isNode: (UUID) -> Boolean = { id -> NodeRepository.findAll().any { it.id == id } },
+    private val flushIntervalMillis: Long = 5_000,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+
+    /** Where flushed timestamps end up — the `nodes` table in production. */
+    fun interface Writer {
+        /** @return how many rows were written. */
+        fun write(lastSeen: Map<UUID, Instant>): Int
+    }
+
+    private class Entry {
+        val seen = AtomicLong()
+        // The timestamp last handed to the writer.
+        @Volatile
+        var flushed = 0L
+    }
+
+    private val logger = LoggerFactory.getLogger(NodeLastSeen::class.java)
+    private val entries = ConcurrentHashMap<UUID, Entry>()
+
+    // Ids [isNode] rejected since the last flush — forgotten then, in case one has registered.
+    private val strangers = ConcurrentHashMap.newKeySet<UUID>()
+    private val flushLock = Any()
+
+    private val touches = AtomicLong()
+    private val flushes = AtomicLong()
+    private val written = AtomicLong()
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    fun start() {
+        scope.launch {
+            while (isActive) {
+                delay(flushIntervalMillis)
+                try {
+                    flush()
+                } catch (cancel: CancellationException) {
+                    throw cancel
+                } catch (e: Exception) {
+                    logger.warn("Failed to persist node last-seen timestamps: {}", e.message)
+                }
+            }
+        }
+    }
+
+    /** Stops the flusher and writes out what it hasn't yet. */
+    fun close() {
+        scope.cancel()
+        runCatching { flush() }.onFailure { logger.warn("Failed to persist node last-seen timestamps: {}", it.message) }
+    }
+
+    /** Records that [nodeId] was just heard from — if it is a node. */
+    fun touch(nodeId: UUID) {
+        val entry = entries[nodeId] ?: run {
+            if (nodeId in strangers) return
+            if (!runCatching { isNode(nodeId) }.getOrDefault(false)) {
+                strangers += nodeId
+                return
+            }
+            entries.computeIfAbsent(nodeId) { Entry() }
+        }
+        val now = clock()
+        entry.seen.accumulateAndGet(now) { current, new -> maxOf(current, new) }
+        touches.incrementAndGet()
+    }
+
+    /** When [nodeId] was last heard from since this node started, `null` if not at all. */
+    fun of(nodeId: UUID): Instant? =
+        entries[nodeId]?.seen?.get()?.takeIf { it > 0 }?.let(Instant::fromEpochMilliseconds)
+
+    /**
+     * Writes every timestamp that moved since the last flush, in one [Writer.write].
+     *
+     * @return how many rows were written.
+     */
+    fun flush(): Int = synchronized(flushLock) {
+        strangers.clear()
+        // Kept if that can't be told right now: the write would fail just the same.
+        entries.keys.removeIf { id -> runCatching { !isNode(id) }.getOrDefault(false) }
+        val dirty = entries.mapNotNull { (id, entry) ->
+            val seen = entry.seen.get()
+            if (seen > entry.flushed) Triple(id, entry, seen) else null
+        }
+        if (dirty.isEmpty()) return@synchronized 0
+
+        val rows = writer.write(dirty.associate { (id, _, seen) -> id to Instant.fromEpochMilliseconds(seen) })
+        // Only once written: a failed write is retried with the next flush.
+        dirty.forEach { (_, entry, seen) -> entry.flushed = seen }
+        flushes.incrementAndGet()
+        written.addAndGet(rows.toLong())
+        rows
+    }
+
+    /**
+     * @param touches RPCs recorded.
+     * @param written rows the flushes wrote — compare with [touches] for the writes saved.
+     */
+    data class Stats(val nodes: Int, val touches: Long, val flushes: Long, val written: Long)
+
+    fun stats(): Stats = Stats(entries.size, touches.get(), flushes.get(), written.get())
+
+    /**
+     * Reads the table once per flush and saves only the rows whose stored timestamp is
+     * older — each as just read, so no other column is written back from a stale copy —
+     * without invalidating any node's cached `nodes` listings, see [NodeRepository.saveLastConnection].
+     */
+    private object RepositoryWriter : Writer {
+        override fun write(lastSeen: Map<UUID, Instant>): Int {
+            var rows = 0
+            NodeRepository.findAllStored().forEach { node ->
+                val seen = lastSeen[node.id] ?: return@forEach
+                if (seen <= node.lastConnection) return@forEach
+                node.lastConnection = seen
+                NodeRepository.saveLastConnection(node)
+                rows++
+            }
+            return rows
+        }
+    }
+}
@@ -55,13 +55,13 @@ class NodePruneService(
 
     private fun pruneStaleNodes() {
         val cutoff = Clock.System.now() - staleAfter
-        val stale = NodeRepository.findAll().filter {
+        val stale = NodeRepository.findAllStored().filter {
             (it.state == NodeState.CRASHED || it.state == NodeState.STOPPED) && it.lastConnection < cutoff
         }
         if (stale.isEmpty()) return
 
         stale.forEach { node ->
-            NodeHeartBeatRepository.find(node.id).forEach(NodeHeartBeatRepository::delete)
+            NodeHeartBeatRepository.deleteAll(node.id)
             NodeRepository.delete(node)
         }
 
@@ -3,23 +3,63 @@ package de.polocloud.node.cluster.node
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseKey
 import de.polocloud.database.filtering.Eq
+import de.polocloud.node.cache.RepositoryCache
+import de.polocloud.node.metrics.DatabaseCalls
 import de.polocloud.proto.NodeState
 import java.util.UUID
+import kotlin.time.Duration.Companion.seconds
 
+/**
+ * The `nodes` table. Listings ([find] by state, [findAll]) are read through a
+ * [RepositoryCache] — the online nodes are looked up on every event relay and listing.
+ *
+ * Single rows ([find] by id) and [findAllStored] always read the table: cluster
+ * coordination — elections, heartbeats, pruning — reads a row, changes it and saves it
+ * back, and must never save a copy that misses another node's write.
+ */
 object NodeRepository {
 
     private val nodeDatabaseKey = DatabaseKey(NodeData::class)
+    private val calls = DatabaseCalls("nodes")
 
-    fun find(id: UUID) = DatabaseAccess.executor().findById(nodeDatabaseKey, id)
+    private val cache = RepositoryCache<UUID, NodeData>("nodes", ttl = 5.seconds, parseKey = UUID::fromString)
 
-    fun find(state: NodeState) = DatabaseAccess.executor().find(nodeDatabaseKey, Eq("state", state))
+    /** When each peer was last heard from, written to [NodeData.lastConnection] in batches. */
+    val lastSeen = NodeLastSeen()
 
-    fun save(node: NodeData) = DatabaseAccess.executor().save(nodeDatabaseKey, node)
+    fun find(id: UUID) = calls.call("findById") { DatabaseAccess.executor().findById(nodeDatabaseKey, id) }
 
-    fun delete(node: NodeData) = DatabaseAccess.executor().delete(nodeDatabaseKey, node)
+    fun find(state: NodeState) = cache.query(state) { calls.call("find") { DatabaseAccess.executor().find(nodeDatabaseKey, Eq("state", state)) } }
 
-    fun findAll() = DatabaseAccess.executor().findAll(nodeDatabaseKey)
+    fun save(node: NodeData) {
+        calls.call("save") { DatabaseAccess.executor().save(nodeDatabaseKey, node) }
+        cache.saved(node.id, node)
+    }
 
-    fun count() = DatabaseAccess.executor().count(nodeDatabaseKey)
+    /**
+     * [save] for a [node] whose only change is [NodeData.lastConnection] — written every few
+     * seconds per peer by [lastSeen]. Keeps the cached listings and tells neither the other
+     * nodes nor [observeWrites]: their [NodeData.lastConnection] may lag by up to the cache's
+     * ttl, which is why readers take the later of it and [NodeLastSeen.of].
+     */
+    fun saveLastConnection(node: NodeData) {
+        calls.call("save") { DatabaseAccess.executor().save(nodeDatabaseKey, node) }
+        cache.touched(node.id, node)
+    }
 
-}
\ No newline at end of file
+    fun delete(node: NodeData) {
+        calls.call("delete") { DatabaseAccess.executor().delete(nodeDatabaseKey, node) }
+        cache.deleted(node.id)
+    }
+
+    fun findAll() = cache.query("all") { calls.call("findAll") { DatabaseAccess.executor().findAll(nodeDatabaseKey) } }
+
+    /** [findAll], bypassing the cache — see the class doc. */
+    fun findAllStored() = calls.call("findAll") { DatabaseAccess.executor().findAll(nodeDatabaseKey) }
+
+    fun count() = calls.call("count") { DatabaseAccess.executor().count(nodeDatabaseKey) }
+
+    /** See [RepositoryCache.observeWrites] — how the election's membership view learns of joins. */
+    fun observeWrites(observer: (UUID?) -> Unit): AutoCloseable = cache.observeWrites(observer)
+
+}
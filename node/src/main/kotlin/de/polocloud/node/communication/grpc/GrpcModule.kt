@@ -5,6 +5,7 @@ import de.polocloud.common.communication.server.registery.GrpcServerHandlerRegis
 import de.polocloud.node.communication.grpc.middleware.ErrorServerMiddleware
 import de.polocloud.node.communication.grpc.middleware.LoggingServerMiddleware
 import de.polocloud.node.communication.grpc.middleware.NodeLastConnectionMiddleware
+import de.polocloud.node.communication.grpc.middleware.TimingServerMiddleware
 import de.polocloud.node.communication.handler.cluster.CreateTokenServerHandler
 import de.polocloud.node.communication.handler.cluster.ListNodesServerHandler
 import de.polocloud.node.communication.handler.group.CreateGroupServerHandler
@@ -13,6 +14,7 @@ import de.polocloud.node.communication.handler.group.GetGroupInformationServerHa
 import de.polocloud.node.communication.handler.group.UpdateGroupServerHandler
 import de.polocloud.node.communication.handler.node.GetNodeInformationServerHandler
 import de.polocloud.node.communication.handler.player.FindPlayerServerHandler
+import de.polocloud.node.communication.handler.player.ListPlayersPageServerHandler
 import de.polocloud.node.communication.handler.player.ListPlayersServerHandler
 import de.polocloud.node.communication.handler.player.RegisterPlayerServerHandler
 import de.polocloud.node.communication.handler.player.UnregisterPlayerServerHandler
@@ -39,6 +41,7 @@ import de.polocloud.proto.GetServiceResourceUsageRequest
 import de.polocloud.proto.GroupListRequest
 import de.polocloud.proto.FindPlayerRequest
 import de.polocloud.proto.ListNodesRequest
+import de.polocloud.proto.ListPlayersPageRequest
 import de.polocloud.proto.ListPlayersRequest
 import de.polocloud.proto.ListServicesRequest
 import de.polocloud.proto.NodeInformationRequest
@@ -54,6 +57,9 @@ import de.polocloud.proto.UpdatePlayerServerRequest
 
 object GrpcModule {
 
+    /** Per-handler latency and errors of every request the executor runs, see the `rpc` command. */
+    val timing = TimingServerMiddleware()
+
     fun createExecutor(groupService: GroupService, serviceProvider: ServiceProvider): GrpcServerExecutor {
         val registry = GrpcServerHandlerRegistry().apply {
             register(ListNodesRequest::class.java, ListNodesServerHandler())
@@ -78,11 +84,13 @@ object GrpcModule {
             register(UnregisterPlayerRequest::class.java, UnregisterPlayerServerHandler())
             register(FindPlayerRequest::class.java, FindPlayerServerHandler())
             register(ListPlayersRequest::class.java, ListPlayersServerHandler())
+            register(ListPlayersPageRequest::class.java, ListPlayersPageServerHandler())
         }
 
         return GrpcServerExecutor(
             registry,
             listOf(
+                timing,
                 NodeLastConnectionMiddleware(),
                 ErrorServerMiddleware(),
                 LoggingServerMiddleware()
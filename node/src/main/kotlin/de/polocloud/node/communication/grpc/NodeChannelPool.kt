@@ -0,0 +1,76 @@
+package de.polocloud.node.communication.grpc
+
+import de.polocloud.common.Address
+import de.polocloud.common.communication.tls.GrpcChannelPool
+import de.polocloud.common.communication.tls.MtlsConfig
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.node.cluster.node.NodeRepository
+import de.polocloud.node.security.NodeCertificateStorage
+import de.polocloud.proto.NodeState
+import io.grpc.ManagedChannel
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.slf4j.LoggerFactory
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * The one place this node's outbound node-to-node mTLS channels come from.
+ *
+ * Every peer call path — cluster-wide service queries, forwarded service operations,
+ * event relaying, elections, the terminal and [NodeGrpcClient] — shares the channels
+ * pooled here, one per peer address, instead of opening (and handshaking) a channel per
+ * call. See [GrpcChannelPool] for reuse, reconnect and certificate-rotation handling;
+ * the TLS material is always the current content of [NodeCertificateStorage], so the
+ * certificates a joining node saves are picked up on the next call.
+ *
+ * While the node runs, [startEviction] periodically closes the channels of peers that
+ * are no longer [NodeState.ONLINE] in [NodeRepository].
+ */
+object NodeChannelPool {
+
+    private val logger = LoggerFactory.getLogger(NodeChannelPool::class.java)
+
+    private val pool = GrpcChannelPool(
+        tls = {
+            MtlsConfig.mutual(
+                cert = NodeCertificateStorage.certificateFile(),
+                key = NodeCertificateStorage.privateKeyFile(),
+                caCert = NodeCertificateStorage.caCertificateFile(),
+            )
+        },
+    )
+
+    private var evictionJob: Job? = null
+
+    /** The shared channel to [address]. Must not be shut down by the caller. */
+    fun channel(address: Address): ManagedChannel = pool.channel(address)
+
+    /** The shared channel to [node]'s gRPC endpoint. Must not be shut down by the caller. */
+    fun channel(node: NodeData): ManagedChannel = channel(Address(node.hostname, node.port))
+
+    /** Handshake/reuse counters, shown by the `cluster` terminal command. */
+    fun stats(): GrpcChannelPool.Stats = pool.stats()
+
+    /** Starts closing the channels of departed nodes every [interval]. */
+    fun startEviction(interval: Duration = 30.seconds) {
+        evictionJob = CoroutineScope(Dispatchers.Default).launch {
+            while (isActive) {
+                delay(interval)
+                runCatching {
+                    pool.retainOnly(NodeRepository.find(NodeState.ONLINE).mapTo(HashSet()) { Address(it.hostname, it.port) })
+                }.onFailure { logger.warn("Failed to evict pooled node channels: {}", it.message) }
+            }
+        }
+    }
+
+    /** Stops eviction and shuts down every pooled channel. */
+    fun close() {
+        evictionJob?.cancel()
+        pool.close()
+    }
+}
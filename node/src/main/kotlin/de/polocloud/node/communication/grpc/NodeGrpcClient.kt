@@ -1,40 +1,32 @@
 package de.polocloud.node.communication.grpc
 
 import de.polocloud.common.Address
-import de.polocloud.common.communication.tls.GrpcChannelFactory
-import de.polocloud.common.communication.tls.MtlsConfig
-import de.polocloud.node.security.NodeCertificateStorage
 import io.grpc.ManagedChannel
 
 /**
- * Manages the outbound mTLS gRPC channel from this node to another node.
+ * Handle on the outbound mTLS gRPC channel from this node to another node.
  *
- * TLS material is read from [NodeCertificateStorage] — the same certs that
- * the node received during registration are used to authenticate outbound calls.
+ * The channel itself comes from [NodeChannelPool] and is shared with every other caller
+ * talking to the same node — TLS material is read from
+ * [de.polocloud.node.security.NodeCertificateStorage], the same certs that the node
+ * received during registration.
  *
- * The channel is created lazily on [connect] and must be released via [disconnect]
- * when no longer needed (e.g. on node shutdown or cluster topology change).
+ * [connect] borrows the pooled channel and [disconnect] only drops this handle's
+ * reference; the channel stays open for the next caller.
  */
 class NodeGrpcClient {
 
     private var channel: ManagedChannel? = null
 
     /**
-     * Opens a secured mTLS channel to [address].
+     * Borrows the pooled mTLS channel to [address].
      *
      * Calling [connect] while already connected is a no-op — disconnect first
      * if you need to switch target.
      */
     fun connect(address: Address) {
         if (channel != null) return
-
-        val config = MtlsConfig.mutual(
-            cert = NodeCertificateStorage.certificateFile(),
-            key = NodeCertificateStorage.privateKeyFile(),
-            caCert = NodeCertificateStorage.caCertificateFile(),
-        )
-
-        channel = GrpcChannelFactory.secured(address, config)
+        channel = NodeChannelPool.channel(address)
     }
 
     /**
@@ -44,12 +36,9 @@ class NodeGrpcClient {
         channel ?: error("NodeGrpcClient is not connected — call connect() first")
 
     /**
-     * Gracefully shuts down the channel.
+     * Releases this handle. The pooled channel itself is not shut down.
      */
     fun disconnect() {
-        channel?.let {
-            GrpcChannelFactory.shutdown(it)
-            channel = null
-        }
+        channel = null
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package de.polocloud.node.communication.grpc.middleware
 import de.polocloud.common.communication.server.context.GrpcServerContext
 import de.polocloud.common.communication.server.middleware.GrpcServerMiddleware
 import io.grpc.Status
+import io.grpc.StatusRuntimeException
 import org.slf4j.LoggerFactory
 
 class ErrorServerMiddleware : GrpcServerMiddleware {
@@ -16,6 +17,9 @@ class ErrorServerMiddleware : GrpcServerMiddleware {
     ): Response {
         try {
             return next()
+        } catch (ex: StatusRuntimeException) {
+            // Already a deliberate status (e.g. FAILED_PRECONDITION) — passed on as-is.
+            throw ex
         } catch (ex: IllegalStateException) {
             throw Status.UNAUTHENTICATED
                 .withDescription(ex.message)
@@ -15,6 +15,10 @@ class LoggingServerMiddleware : GrpcServerMiddleware {
         context: GrpcServerContext,
         next: suspend () -> Response
     ): Response {
+        // Checked per request, so raising the level at runtime still takes effect — but with
+        // debug off nothing is looked up or formatted.
+        if (!logger.isDebugEnabled) return next()
+
         // "subject" is the certificate CN — a service id (e.g. "proxy-1"), a CLI username, or
         // (for node-to-node traffic, e.g. a peer fetching this node's ServiceListRequest view)
         // a node's UUID — and is far more useful here than the raw IP, so prefer it when
@@ -22,11 +26,11 @@ class LoggingServerMiddleware : GrpcServerMiddleware {
         // node's readable name (e.g. "node-1") the same way ServiceCommand.resolveNodeLabel does.
         val source = context.get<String>("subject")?.let(::resolveSource) ?: context.get<String>("clientIp")
 
-        logger.debug("[->] ${request::class.simpleName} from $source")
+        logger.debug("[->] {} from {}", request::class.simpleName, source)
 
         val result = next()
 
-        logger.debug("[<-] ${result::class.simpleName}")
+        logger.debug("[<-] {}", result::class.simpleName)
 
         return result
     }
@@ -35,4 +39,4 @@ class LoggingServerMiddleware : GrpcServerMiddleware {
         val uuid = runCatching { UUID.fromString(subject) }.getOrNull() ?: return subject
         return NodeRepository.find(uuid)?.name() ?: subject
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,91 @@
+package de.polocloud.node.communication.grpc.middleware
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+
+/**
+ * Latency histogram of one RPC type in microseconds, HDR-style: every power of two is
+ * split into [SUB_BUCKETS] linear buckets, so any value is kept to within 1/[SUB_BUCKETS]
+ * (12.5%) of itself from a microsecond up to hours, in a fixed few hundred counters.
+ * Lock-free like [de.polocloud.node.services.ping.PingLatencyHistogram] — recording is a
+ * handful of atomic adds.
+ */
+class RpcLatencyHistogram {
+
+    private val counts = AtomicLongArray(indexOf(Long.MAX_VALUE) + 1)
+    private val sum = LongAdder()
+    private val max = AtomicLong()
+    private val errors = LongAdder()
+
+    /** Records one call that took [micros], [failed] if it ended with an exception. */
+    fun record(micros: Long, failed: Boolean = false) {
+        val value = micros.coerceAtLeast(0)
+        counts.incrementAndGet(indexOf(value))
+        sum.add(value)
+        max.accumulateAndGet(value) { current, new -> maxOf(current, new) }
+        if (failed) errors.increment()
+    }
+
+    fun snapshot(): Snapshot {
+        val buckets = LongArray(counts.length()) { counts.get(it) }
+        return Snapshot(buckets, buckets.sum(), errors.sum(), sum.sum(), max.get())
+    }
+
+    /**
+     * @param total  calls recorded, failed ones included.
+     * @param errors calls that ended with an exception.
+     */
+    class Snapshot internal constructor(
+        private val buckets: LongArray,
+        val total: Long,
+        val errors: Long,
+        val sumMicros: Long,
+        val maxMicros: Long,
+    ) {
+
+        val meanMicros: Double get() = if (total == 0L) 0.0 else sumMicros.toDouble() / total
+
+        /**
+         * Upper bound of the bucket the [quantile] (0..1) falls into, capped at [maxMicros]
+         * — `null` if nothing was recorded.
+         */
+        fun quantile(quantile: Double): Long? {
+            if (total == 0L) return null
+            val rank = ceil(quantile * total).toLong().coerceIn(1, total)
+            var seen = 0L
+            buckets.forEachIndexed { bucket, count ->
+                seen += count
+                if (seen >= rank) return minOf(upperBoundOf(bucket), maxMicros)
+            }
+            return maxMicros
+        }
+    }
+
+    internal companion object {
+        const val SUB_BUCKET_BITS = 3
+        const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        // Below 2 * SUB_BUCKETS every value has a bucket of its own.
+        private const val LINEAR = 2 * SUB_BUCKETS
+        private const val LINEAR_MAGNITUDE = SUB_BUCKET_BITS + 1
+
+        fun indexOf(value: Long): Int {
+            if (value < LINEAR) return value.toInt()
+            val magnitude = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val subBucket = (value ushr (magnitude - SUB_BUCKET_BITS)).toInt() and (SUB_BUCKETS - 1)
+            return LINEAR + (magnitude - LINEAR_MAGNITUDE) * SUB_BUCKETS + subBucket
+        }
+
+        /** The largest value [indexOf] maps to [index]. */
+        fun upperBoundOf(index: Int): Long {
+            if (index < LINEAR) return index.toLong()
+            val magnitude = (index - LINEAR) / SUB_BUCKETS + LINEAR_MAGNITUDE
+            val subBucket = (index - LINEAR) % SUB_BUCKETS
+            val shift = magnitude - SUB_BUCKET_BITS
+            val lower = (SUB_BUCKETS + subBucket).toLong() shl shift
+            return lower + ((1L shl shift) - 1)
+        }
+    }
+}
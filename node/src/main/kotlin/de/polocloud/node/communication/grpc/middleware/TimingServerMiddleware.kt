@@ -0,0 +1,47 @@
+package de.polocloud.node.communication.grpc.middleware
+
+import de.polocloud.common.communication.server.context.GrpcServerContext
+import de.polocloud.common.communication.server.middleware.GrpcServerMiddleware
+import kotlinx.coroutines.CancellationException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Middleware that times every request per handler — i.e. per request type — into an
+ * [RpcLatencyHistogram], counting the ones that end with an exception as errors. A
+ * cancelled call (the client went away) is timed but not counted as an error.
+ *
+ * Sits first in the pipeline, so the time includes every other middleware.
+ *
+ * @param clock monotonic time in nanoseconds — injectable for testing.
+ */
+class TimingServerMiddleware(
+    private val clock: () -> Long = System::nanoTime,
+) : GrpcServerMiddleware {
+
+    private val histograms = ConcurrentHashMap<Class<*>, RpcLatencyHistogram>()
+
+    override suspend fun <Request : Any, Response : Any> intercept(
+        request: Request,
+        context: GrpcServerContext,
+        next: suspend () -> Response
+    ): Response {
+        val type = request.javaClass
+        val histogram = histograms[type] ?: histograms.computeIfAbsent(type) { RpcLatencyHistogram() }
+        val startedAt = clock()
+        var failed = false
+        try {
+            return next()
+        } catch (cancel: CancellationException) {
+            throw cancel
+        } catch (e: Throwable) {
+            failed = true
+            throw e
+        } finally {
+            histogram.record((clock() - startedAt) / 1_000, failed)
+        }
+    }
+
+    /** Every request type handled so far, by its simple name. */
+    fun stats(): Map<String, RpcLatencyHistogram.Snapshot> =
+        histograms.entries.associate { (type, histogram) -> type.simpleName to histogram.snapshot() }
+}
@@ -0,0 +1,41 @@
+package de.polocloud.node.communication.handler.player
+
+import de.polocloud.common.communication.server.context.GrpcServerContext
+import de.polocloud.common.communication.server.handler.GrpcServerHandler
+import de.polocloud.node.player.CloudPlayerMapper
+import de.polocloud.node.player.CloudPlayerRepository
+import de.polocloud.proto.ListPlayersPageRequest
+import de.polocloud.proto.ListPlayersPageResponse
+import io.grpc.Status
+import java.util.UUID
+
+/**
+ * One id-ordered page of the players matching the request's filter. The page token is the
+ * id of the page's last player, so a page never repeats or skips a player that stayed
+ * online in between, however many joined or left.
+ */
+class ListPlayersPageServerHandler : GrpcServerHandler<ListPlayersPageRequest, ListPlayersPageResponse> {
+
+    override suspend fun handle(request: ListPlayersPageRequest, context: GrpcServerContext): ListPlayersPageResponse {
+        val pageSize = if (request.pageSize <= 0) DEFAULT_PAGE_SIZE else request.pageSize.coerceAtMost(MAX_PAGE_SIZE)
+        val after = request.pageToken.takeIf { it.isNotBlank() }?.let {
+            runCatching { UUID.fromString(it) }.getOrElse {
+                throw Status.INVALID_ARGUMENT.withDescription("Invalid page token").asRuntimeException()
+            }
+        }
+
+        // One extra to know whether there is a next page at all.
+        val players = CloudPlayerRepository.findPage(CloudPlayerMapper.toQuery(request.filter), after, pageSize + 1)
+        val page = players.take(pageSize)
+
+        return ListPlayersPageResponse.newBuilder()
+            .addAllPlayers(page.map(CloudPlayerMapper::toProto))
+            .setNextPageToken(if (players.size > pageSize) page.last().id.toString() else "")
+            .build()
+    }
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 500
+        const val MAX_PAGE_SIZE = 1000
+    }
+}
@@ -4,13 +4,34 @@ import de.polocloud.common.communication.server.context.GrpcServerContext
 import de.polocloud.common.communication.server.handler.GrpcServerHandler
 import de.polocloud.node.player.CloudPlayerMapper
 import de.polocloud.node.player.CloudPlayerRepository
+import de.polocloud.node.player.PlayerQuery
 import de.polocloud.proto.ListPlayersRequest
 import de.polocloud.proto.ListPlayersResponse
+import io.grpc.Status
 
-class ListPlayersServerHandler : GrpcServerHandler<ListPlayersRequest, ListPlayersResponse> {
+/**
+ * Every player in one response — for small networks only. Past [limit] players the
+ * response would run into megabytes, so it is refused in favor of
+ * [ListPlayersPageServerHandler] / `StreamPlayers`.
+ */
+class ListPlayersServerHandler(
+    private val limit: Int = LIST_ALL_LIMIT,
+) : GrpcServerHandler<ListPlayersRequest, ListPlayersResponse> {
 
-    override suspend fun handle(request: ListPlayersRequest, context: GrpcServerContext): ListPlayersResponse =
-        ListPlayersResponse.newBuilder()
-            .addAllPlayers(CloudPlayerRepository.findAll().map(CloudPlayerMapper::toProto))
+    override suspend fun handle(request: ListPlayersRequest, context: GrpcServerContext): ListPlayersResponse {
+        // One past the limit is enough to tell it's too many, without copying them all.
+        val players = CloudPlayerRepository.findPage(PlayerQuery.ALL, after = null, limit = limit + 1)
+        if (players.size > limit) {
+            throw Status.FAILED_PRECONDITION
+                .withDescription("More than $limit players online — use ListPlayersPage or StreamPlayers")
+                .asRuntimeException()
+        }
+        return ListPlayersResponse.newBuilder()
+            .addAllPlayers(players.map(CloudPlayerMapper::toProto))
             .build()
+    }
+
+    companion object {
+        const val LIST_ALL_LIMIT = 1000
+    }
 }
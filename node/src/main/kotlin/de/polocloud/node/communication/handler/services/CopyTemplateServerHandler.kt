@@ -62,8 +62,8 @@ class CopyTemplateServerHandler(
             onFailure = { message ->
                 CopyTemplateResponse.newBuilder().setCopied(false).setMessage(message).build()
             },
-        ) { client ->
-            val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(client.channel())
+        ) { channel ->
+            val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(channel)
             stub.copyTemplate(request)
         }
     }
@@ -51,8 +51,8 @@ class ExecuteServiceCommandServerHandler(
             onFailure = { message ->
                 ExecuteServiceCommandResponse.newBuilder().setExecuted(false).setMessage(message).build()
             },
-        ) { client ->
-            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(client.channel())
+        ) { channel ->
+            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(channel)
             stub.executeServiceCommand(request)
         }
     }
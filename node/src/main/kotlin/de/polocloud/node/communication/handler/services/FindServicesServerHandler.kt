@@ -47,14 +47,22 @@ class FindServicesServerHandler(
         val groupFilter = if (request.hasGroupFilter() && request.groupFilter.isNotBlank()) request.groupFilter else null
         val stateFilter = if (request.hasStateFilter() && request.stateFilter.isNotBlank()) request.stateFilter else null
 
-        val local = localServices(groupFilter, stateFilter)
-        val remote = if (request.localOnly) emptyList() else remoteServices(groupFilter, stateFilter)
-
         return ServiceListResponse.newBuilder()
-            .addAllServices(local + remote)
+            .addAllServices(list(groupFilter, stateFilter, request.localOnly))
             .build()
     }
 
+    /**
+     * The listing [handle] answers with, for node-internal callers such as
+     * [de.polocloud.node.services.watch.ServiceWatchLog]: this node's services plus, unless
+     * [localOnly], every online peer's.
+     */
+    suspend fun list(groupFilter: String?, stateFilter: String?, localOnly: Boolean = false): List<ServiceData> {
+        val local = localServices(groupFilter, stateFilter)
+        val remote = if (localOnly) emptyList() else remoteServices(groupFilter, stateFilter)
+        return local + remote
+    }
+
     private fun localServices(groupFilter: String?, stateFilter: String?): List<ServiceData> {
         // Snapshot first: the list is mutated by the queue and prune threads.
         var services = serviceProvider.localServices.toList().asSequence()
@@ -49,8 +49,8 @@ class StopServiceServerHandler(
             onFailure = { message ->
                 StopServiceResponse.newBuilder().setStopped(false).setMessage(message).build()
             },
-        ) { client ->
-            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(client.channel())
+        ) { channel ->
+            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(channel)
             stub.stopService(request)
         }
     }
@@ -3,6 +3,7 @@ package de.polocloud.node.communication.impl.event
 import de.polocloud.node.event.ClusterEventService
 import de.polocloud.proto.CallEventResponse
 import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
 import de.polocloud.proto.EventProviderGrpcKt
 import de.polocloud.proto.EventSubscribeRequest
 import de.polocloud.proto.UnsubscribeResponse
@@ -17,9 +18,22 @@ import kotlinx.coroutines.flow.Flow
 class EventProviderServiceImpl : EventProviderGrpcKt.EventProviderCoroutineImplBase() {
 
     override fun subscribe(request: EventSubscribeRequest): Flow<EventContext> =
-        ClusterEventService.subscribe(request.eventName, request.serviceName)
+        ClusterEventService.subscribe(
+            request.eventName,
+            request.serviceName,
+            request.acceptedEncodingsList,
+            request.overflow,
+        )
 
     override suspend fun call(request: EventContext): CallEventResponse {
+        // Published events are relayed to peers and other subscribers as JSON, which the
+        // node can't produce from a payload it may not know how to decode.
+        if (request.encoding != EventEncoding.JSON) {
+            return CallEventResponse.newBuilder()
+                .setSuccess(false)
+                .setMessage("Published events must be JSON encoded")
+                .build()
+        }
         // Publish (not just broadcast) so an event fired through the SDK reaches the whole
         // cluster's subscribers, not only those connected to this node.
         ClusterEventService.publish(request)
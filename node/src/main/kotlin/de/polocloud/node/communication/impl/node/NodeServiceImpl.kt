@@ -20,6 +20,8 @@ import de.polocloud.proto.NodeEventRequest
 import de.polocloud.proto.NodeInformationRequest
 import de.polocloud.proto.NodeInformationResponse
 import de.polocloud.proto.NodeServiceGrpcKt
+import de.polocloud.proto.RelayEventAck
+import de.polocloud.proto.RelayEventBatch
 import de.polocloud.proto.RelayEventRequest
 import de.polocloud.proto.RelayEventResponse
 import de.polocloud.proto.RequestVoteRequest
@@ -28,6 +30,7 @@ import kotlinx.coroutines.channels.SendChannel
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.flow
 import java.util.UUID
 
 class NodeServiceImpl(
@@ -52,15 +55,36 @@ class NodeServiceImpl(
      * Receives an event relayed from a peer node and re-broadcasts it to this node's
      * local subscribers only (via [ClusterEventService.broadcast], which does not relay
      * again) — so a peer's event reaches local bridges/SDKs without creating a loop.
+     *
+     * Service lifecycle events additionally update this node's
+     * [ServiceProvider.clusterReplica], attributed to the calling peer's mTLS identity —
+     * or, for a peer whose certificate names no node id, by resyncing it (see there).
      */
     override suspend fun relayEvent(request: RelayEventRequest): RelayEventResponse {
+        receiveRelayed(CliSessionInterceptor.SUBJECT_CTX_KEY.get(), request)
+        return RelayEventResponse.newBuilder().setSuccess(true).build()
+    }
+
+    /**
+     * Streamed [relayEvent]: every batch a peer's [de.polocloud.node.event.ClusterEventRelay]
+     * sends is handled in order, event by event, then acknowledged with its sequence number.
+     */
+    override fun relayEvents(requests: Flow<RelayEventBatch>): Flow<RelayEventAck> = flow {
+        val caller = CliSessionInterceptor.SUBJECT_CTX_KEY.get()
+        requests.collect { batch ->
+            batch.eventsList.forEach { receiveRelayed(caller, it) }
+            emit(RelayEventAck.newBuilder().setSequence(batch.sequence).build())
+        }
+    }
+
+    private fun receiveRelayed(caller: String?, request: RelayEventRequest) {
         ClusterEventService.broadcast(
             EventContext.newBuilder()
                 .setEventName(request.eventName)
                 .setEventData(request.eventData)
                 .build()
         )
-        return RelayEventResponse.newBuilder().setSuccess(true).build()
+        serviceProvider.clusterReplica.onPeerEvent(caller, request.eventName, request.eventData)
     }
 
     /**
@@ -2,17 +2,27 @@ package de.polocloud.node.communication.impl.player
 
 import de.polocloud.common.communication.server.executor.GrpcServerExecutor
 import de.polocloud.node.communication.grpc.GrpcContextFactory
+import de.polocloud.node.communication.handler.player.ListPlayersPageServerHandler
+import de.polocloud.node.player.CloudPlayerMapper
+import de.polocloud.node.player.CloudPlayerRepository
 import de.polocloud.proto.FindPlayerRequest
 import de.polocloud.proto.FindPlayerResponse
+import de.polocloud.proto.ListPlayersPageRequest
+import de.polocloud.proto.ListPlayersPageResponse
 import de.polocloud.proto.ListPlayersRequest
 import de.polocloud.proto.ListPlayersResponse
 import de.polocloud.proto.PlayerApiServiceGrpcKt
+import de.polocloud.proto.PlayerData
 import de.polocloud.proto.RegisterPlayerRequest
 import de.polocloud.proto.RegisterPlayerResponse
+import de.polocloud.proto.StreamPlayersRequest
 import de.polocloud.proto.UnregisterPlayerRequest
 import de.polocloud.proto.UnregisterPlayerResponse
 import de.polocloud.proto.UpdatePlayerServerRequest
 import de.polocloud.proto.UpdatePlayerServerResponse
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import java.util.UUID
 
 /**
  * gRPC entry point of the API-facing `PlayerApiService`, hosted on
@@ -20,6 +30,11 @@ import de.polocloud.proto.UpdatePlayerServerResponse
  * [de.polocloud.node.communication.impl.services.ServiceApiServiceImpl]: every RPC
  * delegates to the shared [GrpcServerExecutor] so it runs through the same middleware
  * pipeline (auth, logging, error mapping) as every other SDK-facing request.
+ *
+ * `StreamPlayers` is server-streaming, which that pipeline doesn't support, so — like
+ * `WatchServices` in [de.polocloud.node.communication.impl.services.ServiceApiServiceImpl]
+ * — it is implemented directly here: it walks the same id-ordered pages as
+ * `ListPlayersPage`, so only one page is ever mapped at a time.
  */
 class PlayerApiServiceImpl(
     private val executor: GrpcServerExecutor,
@@ -39,4 +54,18 @@ class PlayerApiServiceImpl(
 
     override suspend fun listPlayers(request: ListPlayersRequest): ListPlayersResponse =
         executor.execute(request, GrpcContextFactory.fromGrpc())
+
+    override suspend fun listPlayersPage(request: ListPlayersPageRequest): ListPlayersPageResponse =
+        executor.execute(request, GrpcContextFactory.fromGrpc())
+
+    override fun streamPlayers(request: StreamPlayersRequest): Flow<PlayerData> = flow {
+        val query = CloudPlayerMapper.toQuery(request.filter)
+        var after: UUID? = null
+        while (true) {
+            val page = CloudPlayerRepository.findPage(query, after, ListPlayersPageServerHandler.DEFAULT_PAGE_SIZE)
+            page.forEach { emit(CloudPlayerMapper.toProto(it)) }
+            if (page.size < ListPlayersPageServerHandler.DEFAULT_PAGE_SIZE) break
+            after = page.last().id
+        }
+    }
 }
@@ -19,9 +19,11 @@ import de.polocloud.proto.ServiceCountResponse
 import de.polocloud.proto.ServiceListRequest
 import de.polocloud.proto.ServiceListResponse
 import de.polocloud.proto.ServiceLogLine
+import de.polocloud.proto.ServiceWatchEvent
 import de.polocloud.proto.StopServiceRequest
 import de.polocloud.proto.StopServiceResponse
 import de.polocloud.proto.StreamServiceLogsRequest
+import de.polocloud.proto.WatchServicesRequest
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
@@ -45,6 +47,8 @@ import org.slf4j.LoggerFactory
  * `StreamServiceLogs` is a server-streaming RPC, so — like
  * [ServiceManagerImpl.streamServiceLogs] — it bypasses [executor] (that pipeline only
  * supports single request/response calls) and is implemented directly here instead.
+ * So is `WatchServices`, served from the node's
+ * [de.polocloud.node.services.watch.ServiceWatchLog].
  */
 class ServiceApiServiceImpl(
     private val executor: GrpcServerExecutor,
@@ -88,6 +92,13 @@ class ServiceApiServiceImpl(
         return forwardLogStream(node, request)
     }
 
+    override fun watchServices(request: WatchServicesRequest): Flow<ServiceWatchEvent> =
+        serviceProvider.serviceWatch.watch(
+            epoch = request.epoch,
+            fromVersion = request.fromVersion,
+            groupFilter = if (request.hasGroupFilter()) request.groupFilter else null,
+        )
+
     /** Relays [node]'s own [streamServiceLogs] response back to this call's collector. */
     private fun forwardLogStream(node: NodeData, request: StreamServiceLogsRequest): Flow<ServiceLogLine> = callbackFlow {
         val client = NodeGrpcClient()
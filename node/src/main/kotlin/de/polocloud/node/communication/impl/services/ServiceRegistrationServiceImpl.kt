@@ -7,6 +7,8 @@ import de.polocloud.node.security.NodeCertificateStorage
 import de.polocloud.node.security.SanBuilder
 import de.polocloud.proto.RegisterServiceRequest
 import de.polocloud.proto.RegisterServiceResponse
+import de.polocloud.proto.RegisterServicesRequest
+import de.polocloud.proto.RegisterServicesResponse
 import de.polocloud.proto.ServiceRegistrationServiceGrpcKt
 import org.slf4j.LoggerFactory
 
@@ -30,9 +32,19 @@ class ServiceRegistrationServiceImpl : ServiceRegistrationServiceGrpcKt.ServiceR
         // ServiceIdentityProvisioner.isHead for why that column alone isn't trustworthy
         // enough to gate signing on.
         if (!NodeEnvironment.runtime.electionService.isHead()) {
-            return deny("This node is not the cluster head and cannot sign service certificates.")
+            return deny(NOT_HEAD)
         }
+        return sign(request)
+    }
+
+    override suspend fun registerServices(request: RegisterServicesRequest): RegisterServicesResponse {
+        val head = NodeEnvironment.runtime.electionService.isHead()
+        return RegisterServicesResponse.newBuilder()
+            .addAllResults(request.servicesList.map { if (head) sign(it) else deny(NOT_HEAD) })
+            .build()
+    }
 
+    private fun sign(request: RegisterServiceRequest): RegisterServiceResponse {
         val signed = runCatching {
             val ca = NodeCertificateStorage.certificateAuthority()
             val csr = parseCsr(request.csrPem)
@@ -55,4 +67,8 @@ class ServiceRegistrationServiceImpl : ServiceRegistrationServiceGrpcKt.ServiceR
             .setAccepted(false)
             .setMessage(message)
             .build()
-}
\ No newline at end of file
+
+    private companion object {
+        const val NOT_HEAD = "This node is not the cluster head and cannot sign service certificates."
+    }
+}
@@ -2,10 +2,7 @@ package de.polocloud.node.communication.interceptor
 
 import de.polocloud.node.communication.cli.session.ICliSessionManager
 import io.grpc.*
-import org.bouncycastle.asn1.x500.X500Name
-import org.bouncycastle.asn1.x500.style.BCStyle
 import java.net.InetSocketAddress
-import java.security.cert.X509Certificate
 
 /**
  * gRPC interceptor that extracts the CLI client's certificate subject (CN)
@@ -13,6 +10,7 @@ import java.security.cert.X509Certificate
  *
  * The extracted subject is published via [SUBJECT_CTX_KEY] so downstream
  * handlers (e.g. disconnect) can identify the caller without re-parsing the cert.
+ * The cert itself is parsed once per TLS session, see [PeerIdentity].
  */
 class CliSessionInterceptor(
     private val sessionManager: ICliSessionManager,
@@ -27,7 +25,7 @@ class CliSessionInterceptor(
         headers: Metadata,
         next: ServerCallHandler<ReqT, RespT>,
     ): ServerCall.Listener<ReqT> {
-        val subject = extractSubject(call)
+        val subject = PeerIdentity.subjectOf(call)?.lowercase()
         val ip      = extractIp(call)
 
         if (subject != null && ip != null) {
@@ -43,22 +41,6 @@ class CliSessionInterceptor(
         return Contexts.interceptCall(context, call, headers, next)
     }
 
-    private fun extractSubject(call: ServerCall<*, *>): String? {
-        val cert = call.attributes
-            .get(Grpc.TRANSPORT_ATTR_SSL_SESSION)
-            ?.peerCertificates
-            ?.firstOrNull() as? X509Certificate
-            ?: return null
-
-        return X500Name(cert.subjectX500Principal.name)
-            .getRDNs(BCStyle.CN)
-            .firstOrNull()
-            ?.first
-            ?.value
-            ?.toString()
-            ?.lowercase()
-    }
-
     private fun extractIp(call: ServerCall<*, *>): String? =
         (call.attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR) as? InetSocketAddress)
             ?.address
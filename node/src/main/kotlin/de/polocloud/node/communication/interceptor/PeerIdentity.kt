@@ -0,0 +1,62 @@
+package de.polocloud.node.communication.interceptor
+
+import io.grpc.Grpc
+import io.grpc.ServerCall
+import org.bouncycastle.asn1.x500.X500Name
+import org.bouncycastle.asn1.x500.style.BCStyle
+import java.security.cert.X509Certificate
+import java.util.concurrent.atomic.AtomicLong
+import javax.net.ssl.SSLSession
+
+/**
+ * The certificate CN a TLS peer authenticated with — a node's UUID, a CLI username or a
+ * service id.
+ *
+ * A channel reuses its TLS session for every call on it, and the certificate can't change
+ * within one, so the CN is parsed on the session's first call and kept in the session
+ * itself ([SSLSession.putValue]) for the rest — it goes away together with the session.
+ */
+object PeerIdentity {
+
+    private const val SUBJECT_KEY = "de.polocloud.peer-subject"
+
+    // Wraps the CN so a certificate without one is cached too.
+    private class Subject(val commonName: String?)
+
+    private val parses = AtomicLong()
+    private val hits = AtomicLong()
+
+    /** The CN of [call]'s peer certificate, `null` without TLS or without a CN. */
+    fun subjectOf(call: ServerCall<*, *>): String? =
+        call.attributes.get(Grpc.TRANSPORT_ATTR_SSL_SESSION)?.let(::subjectOf)
+
+    fun subjectOf(session: SSLSession): String? {
+        (session.getValue(SUBJECT_KEY) as? Subject)?.let {
+            hits.incrementAndGet()
+            return it.commonName
+        }
+        val subject = Subject(parse(session))
+        parses.incrementAndGet()
+        session.putValue(SUBJECT_KEY, subject)
+        return subject.commonName
+    }
+
+    private fun parse(session: SSLSession): String? {
+        val cert = session.peerCertificates?.firstOrNull() as? X509Certificate ?: return null
+
+        return X500Name(cert.subjectX500Principal.name)
+            .getRDNs(BCStyle.CN)
+            .firstOrNull()
+            ?.first
+            ?.value
+            ?.toString()
+    }
+
+    /**
+     * @param parses certificates parsed — one per TLS session.
+     * @param hits   calls served from a session's cached CN.
+     */
+    data class Stats(val parses: Long, val hits: Long)
+
+    fun stats(): Stats = Stats(parses.get(), hits.get())
+}
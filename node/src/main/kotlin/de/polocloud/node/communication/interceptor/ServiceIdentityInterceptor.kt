@@ -8,10 +8,7 @@ import io.grpc.Metadata
 import io.grpc.ServerCall
 import io.grpc.ServerCallHandler
 import io.grpc.ServerInterceptor
-import org.bouncycastle.asn1.x500.X500Name
-import org.bouncycastle.asn1.x500.style.BCStyle
 import java.net.InetSocketAddress
-import java.security.cert.X509Certificate
 
 /**
  * gRPC interceptor for [de.polocloud.node.communication.grpc.ServiceGrpcEndpoint].
@@ -51,7 +48,7 @@ class ServiceIdentityInterceptor : ServerInterceptor {
         var context = Context.current()
 
         extractIp(call)?.let { context = context.withValue(GrpcClientContext.CLIENT_IP, it) }
-        extractServiceId(call)?.let {
+        PeerIdentity.subjectOf(call)?.let {
             context = context.withValue(CliSessionInterceptor.SUBJECT_CTX_KEY, it)
             context = context.withValue(SERVICE_SUBJECT_CTX_KEY, it)
         }
@@ -61,19 +58,4 @@ class ServiceIdentityInterceptor : ServerInterceptor {
 
     private fun extractIp(call: ServerCall<*, *>): String? =
         (call.attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR) as? InetSocketAddress)?.address?.hostAddress
-
-    private fun extractServiceId(call: ServerCall<*, *>): String? {
-        val cert = call.attributes
-            .get(Grpc.TRANSPORT_ATTR_SSL_SESSION)
-            ?.peerCertificates
-            ?.firstOrNull() as? X509Certificate
-            ?: return null
-
-        return X500Name(cert.subjectX500Principal.name)
-            .getRDNs(BCStyle.CN)
-            .firstOrNull()
-            ?.first
-            ?.value
-            ?.toString()
-    }
 }
@@ -5,6 +5,10 @@ import de.polocloud.common.GLOBAL_ADDRESS
 import de.polocloud.common.utils.localIpAddress
 import de.polocloud.common.utils.publicIpAddress
 import de.polocloud.node.core.configuration.serializer.LocaleSerializer
+import de.polocloud.node.group.template.TemplateMaterialization
+import de.polocloud.node.group.template.TemplateMaterializer
+import de.polocloud.node.security.ServiceKeyAlgorithm
+import de.polocloud.node.services.ping.PlayerCountSource
 import kotlinx.serialization.Serializable
 import java.util.*
 
@@ -32,4 +36,36 @@ data class GeneralConfiguration(
      * the update is only ever applied on demand via the `update` command.
      */
     var autoUpdate: Boolean = false,
+    /**
+     * How templates and platform jars are laid into a service's work directory on start.
+     * [TemplateMaterialization.LINK] hard-links the files matching [linkedTemplateFiles]
+     * instead of copying them per service — see [TemplateMaterializer]. Falls back to
+     * copying on its own where `servers/` and `.cache/` aren't on the same filesystem.
+     */
+    var templateMaterialization: TemplateMaterialization = TemplateMaterialization.COPY,
+    /**
+     * Glob patterns, relative to a template's folder, of the files linked in
+     * [TemplateMaterialization.LINK] mode. Only list files the service never writes to in
+     * place — e.g. add `world/region/*.mca` for a lobby map whose world is never saved.
+     */
+    var linkedTemplateFiles: List<String> = TemplateMaterializer.DEFAULT_LINK_PATTERNS,
+    /**
+     * Where running services' player counts come from. [PlayerCountSource.BRIDGE] counts
+     * the bridge's player logins, switches and disconnects the moment they happen, and
+     * only pings each service once a minute to check — use it when every proxy runs the
+     * bridge. [PlayerCountSource.PING] pings every few seconds instead.
+     */
+    var playerCountSource: PlayerCountSource = PlayerCountSource.PING,
+    /**
+     * Key type of the mTLS identity every started service gets. [ServiceKeyAlgorithm.EC_P256]
+     * keys are far cheaper to generate than the default RSA-2048 ones — worth it when
+     * many services start at once. Key pairs are pre-generated in the background either way.
+     */
+    var serviceKeyAlgorithm: ServiceKeyAlgorithm = ServiceKeyAlgorithm.RSA,
+    /**
+     * Where this node serves its metrics as Prometheus text (`GET /metrics`), e.g.
+     * `127.0.0.1:9464`. Off when unset — the `metrics` command shows them either way.
+     * Plain HTTP without authentication, so keep it on loopback or a monitoring network.
+     */
+    var metricsAddress: Address? = null,
 )
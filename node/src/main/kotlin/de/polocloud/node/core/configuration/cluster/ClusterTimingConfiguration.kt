@@ -16,6 +16,8 @@ import kotlinx.serialization.Serializable
 data class ClusterTimingConfiguration(
     /** How often a node saves its own CPU/memory heartbeat row. */
     var heartbeatIntervalMillis: Long = 1_000,
+    /** How often one of those heartbeats is also appended to the `nodes_heartbeats` history; the rest only update the latest row. */
+    var heartbeatHistoryIntervalMillis: Long = 10_000,
     /** How often [de.polocloud.node.cluster.heartbeat.NodeHeartBeatMonitor] re-checks every ONLINE node's liveness. */
     var heartbeatMonitorTickMillis: Long = 3_000,
     /** How long a node's heartbeat (or, absent one, its last contact) may go stale before it's declared CRASHED. */
@@ -37,6 +39,9 @@ data class ClusterTimingConfiguration(
         require(heartbeatIntervalMillis > 0) {
             "cluster.timing.heartbeatIntervalMillis must be positive, was $heartbeatIntervalMillis"
         }
+        require(heartbeatHistoryIntervalMillis > 0) {
+            "cluster.timing.heartbeatHistoryIntervalMillis must be positive, was $heartbeatHistoryIntervalMillis"
+        }
         require(heartbeatMonitorTickMillis > 0) {
             "cluster.timing.heartbeatMonitorTickMillis must be positive, was $heartbeatMonitorTickMillis"
         }
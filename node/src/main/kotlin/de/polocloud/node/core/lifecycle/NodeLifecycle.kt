@@ -8,11 +8,17 @@ import de.polocloud.i18n.api.TranslationService
 import de.polocloud.i18n.api.trError
 import de.polocloud.i18n.api.trInfo
 import de.polocloud.node.bootstrap.time.StartupTimer
+import de.polocloud.node.cache.RepositoryCaches
+import de.polocloud.node.cluster.node.NodeRepository
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.core.NodeRuntime
 import de.polocloud.node.core.configuration.NodeConfigurations
 import de.polocloud.node.core.context.NodeRuntimeContext
 import de.polocloud.node.event.ClusterEventRelay
+import de.polocloud.node.metrics.NodeMetrics
 import de.polocloud.node.module.ClusterModuleRegistry
+import de.polocloud.node.player.CloudPlayerRepository
+import de.polocloud.node.security.ServiceIdentityProvisioner
 import de.polocloud.updater.UpdateChecker
 import de.polocloud.updater.Updater
 import org.apache.logging.log4j.LogManager
@@ -71,8 +77,15 @@ class NodeLifecycle(
 
         container.markOnline()
 
+        // Repository reads are cached from here on, kept coherent with the peers' writes.
+        RepositoryCaches.start(context.serviceProvider.nodeId)
+        NodeMetrics.start(holder.value.general.metricsAddress)
+
         val timing = holder.value.cluster.timing
-        runtime.heartBeatService.startScheduler(timing.heartbeatIntervalMillis.milliseconds)
+        runtime.heartBeatService.startScheduler(
+            timing.heartbeatIntervalMillis.milliseconds,
+            historyInterval = timing.heartbeatHistoryIntervalMillis.milliseconds,
+        )
         runtime.electionService.start(
             container.data.id,
             baseTimeout = timing.electionBaseTimeoutMillis.milliseconds,
@@ -81,7 +94,11 @@ class NodeLifecycle(
         )
         runtime.heartBeatMonitor.start()
         runtime.nodePruneService.start()
+        NodeRepository.lastSeen.start()
+        NodeChannelPool.startEviction()
 
+        CloudPlayerRepository.start()
+        ServiceIdentityProvisioner.start(holder.value.general.serviceKeyAlgorithm)
         context.groupService.run()
         context.serviceProvider.run()
 
@@ -149,6 +166,10 @@ class NodeLifecycle(
             context.serviceProvider.shutdown()
         }
 
+        safe("serviceIdentities") {
+            ServiceIdentityProvisioner.close()
+        }
+
         safe("serviceGrpcEndpoint") {
             context.serviceGrpcEndpoint.close(mode)
         }
@@ -161,6 +182,11 @@ class NodeLifecycle(
             context.grpcEndpoint.close(mode)
         }
 
+        // Only once every component that could still call a peer has stopped.
+        safe("nodeChannelPool") {
+            NodeChannelPool.close()
+        }
+
         safe("registrationManager") {
             context.registrationManager.close(mode)
         }
@@ -169,6 +195,24 @@ class NodeLifecycle(
             container.markStopped()
         }
 
+        // Only once no peer RPC can arrive anymore.
+        safe("nodeLastSeen") {
+            NodeRepository.lastSeen.close()
+        }
+
+        // Only once no RPC can change a player anymore, and before the database goes away.
+        safe("players") {
+            CloudPlayerRepository.close()
+        }
+
+        safe("metrics") {
+            NodeMetrics.close()
+        }
+
+        safe("repositoryCaches") {
+            RepositoryCaches.stop()
+        }
+
         safe("database") {
             DatabaseAccess.close()
         }
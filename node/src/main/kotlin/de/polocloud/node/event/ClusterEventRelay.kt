@@ -1,109 +1,235 @@
 package de.polocloud.node.event
 
-import de.polocloud.common.Address
-import de.polocloud.common.communication.tls.GrpcChannelFactory
-import de.polocloud.common.communication.tls.MtlsConfig
+import de.polocloud.common.metrics.MetricsRegistry
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
-import de.polocloud.node.security.NodeCertificateStorage
-import de.polocloud.proto.NodeServiceGrpcKt
+import de.polocloud.node.metrics.NodeMetrics
 import de.polocloud.proto.NodeState
-import de.polocloud.proto.RelayEventRequest
 import de.polocloud.shared.event.EncodedEvent
-import io.grpc.ManagedChannel
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.LoggerFactory
 import java.util.UUID
-import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
 
 /**
  * Forwards this node's locally-fired cluster events to every other online node.
  *
- * Installed as [ClusterEventService.peerRelay] while the node is running: each origin
- * event triggers a best-effort unary `RelayEvent` fan-out to peers. The receiving node
- * re-broadcasts it to its own local subscribers only (via [ClusterEventService.broadcast]),
- * without relaying again — so events reach the whole cluster without loops.
+ * Installed as [ClusterEventService.peerRelay] while the node is running. The receiving
+ * node re-broadcasts each event to its own local subscribers only (via
+ * [ClusterEventService.broadcast]), without relaying again — so events reach the whole
+ * cluster without loops.
  *
- * A single-node cluster has no peers, so this is a no-op. Per-peer failures are isolated
- * and never affect local delivery.
+ * Firing an event only appends it to one in-memory outbox per peer; nothing on that path
+ * touches the database or the network. Each outbox is drained by its own coroutine in
+ * micro-batches of up to [maxBatchSize] events, collected for at most [maxBatchDelay]
+ * after the first one arrives, and sent over one long-lived `RelayEvents` stream per peer
+ * ([RelayEventStream]) instead of a unary RPC per event per peer. An event still waiting
+ * in an outbox is replaced in place by a newer one with the same [coalesceKey] — e.g. a
+ * service's player count, which is only ever read as "the latest value" — so a busy
+ * network sends each service's newest count once per batch rather than every change.
+ *
+ * The peer list is cached and refreshed every [peerRefreshInterval] off the send path —
+ * node membership changes are only ever written to [NodeRepository], there is no event
+ * for them — and right away whenever a send to a peer fails. Outboxes of peers that left
+ * are dropped with whatever they still held; a peer back on another host or port (a
+ * restart) gets a new outbox and stream to the new address, taking over the events the
+ * old one still held.
  *
- * The mTLS channel to each peer is opened once and cached per node id ([channels]) rather
- * than reconnected on every relay: with frequent events (e.g. player-count updates every
- * few seconds per running service), reconnecting per call would mean a fresh TCP+TLS
- * handshake per event per peer.
+ * A single-node cluster has no peers, so this is a no-op. Per-peer failures are isolated
+ * and never affect local delivery; a failed batch is dropped, as a failed unary relay was.
  *
  * @param localNodeId id of this node, excluded from the fan-out.
  * @param peers supplies the target nodes — injectable for testing.
- * @param send delivers one encoded event to one peer — injectable for testing; defaults to
- *             the cached-channel gRPC transport ([relayViaGrpc]).
+ * @param send delivers one batch of encoded events to one peer — injectable for testing;
+ *             defaults to the streamed gRPC transport ([RelayEventStream]).
+ * @param maxBatchSize most events sent to a peer in one batch.
+ * @param maxBatchDelay how long a peer's outbox collects events before sending a batch
+ *                      that isn't full yet.
+ * @param maxQueued most events buffered per peer; beyond that the oldest one is dropped,
+ *                  so an unreachable peer can't grow its outbox without bound.
+ * @param peerRefreshInterval how often the cached peer list is re-read.
+ * @param coalesceKey key under which a newer event supersedes an older one still queued,
+ *                    or `null` if the event must be delivered as is — see [EventCoalescing].
+ * @param metrics where the outbox backlog and the batches sent are recorded.
  */
 class ClusterEventRelay(
     private val localNodeId: String,
     private val peers: () -> List<NodeData> = {
         runCatching { NodeRepository.find(NodeState.ONLINE) }.getOrDefault(emptyList())
     },
-    send: (suspend (NodeData, EncodedEvent) -> Unit)? = null,
+    send: (suspend (NodeData, List<EncodedEvent>) -> Unit)? = null,
+    private val maxBatchSize: Int = 64,
+    private val maxBatchDelay: Duration = 50.milliseconds,
+    private val maxQueued: Int = 10_000,
+    private val peerRefreshInterval: Duration = 5.seconds,
+    private val coalesceKey: (EncodedEvent) -> String? = { EventCoalescing.keyOf(it.name, it.data) },
+    metrics: MetricsRegistry = NodeMetrics.registry,
 ) {
 
     private val logger = LoggerFactory.getLogger(ClusterEventRelay::class.java)
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
-    private val channels = ConcurrentHashMap<UUID, ManagedChannel>()
-    private val send: suspend (NodeData, EncodedEvent) -> Unit = send ?: ::relayViaGrpc
+    private val send: suspend (NodeData, List<EncodedEvent>) -> Unit = send ?: ::relayViaGrpc
+
+    @Volatile
+    private var outboxes: Map<UUID, PeerOutbox> = emptyMap()
+    private val refreshSignal = Channel<Unit>(Channel.CONFLATED)
+
+    // One stream per peer for the default transport, see relayViaGrpc.
+    private val streams = HashMap<UUID, RelayEventStream>()
+    private val dropped = AtomicLong()
+
+    private val relayed = metrics.counter("polocloud_event_relay_events_total", "Events relayed to peer nodes")
+    private val failedBatches = metrics.counter("polocloud_event_relay_failed_batches_total", "Relay batches that failed to send")
+    private val batchDuration = metrics.histogram("polocloud_event_relay_batch_seconds", "Time to send one relay batch to a peer")
+
+    init {
+        metrics.gauge("polocloud_event_relay_backlog", "Events waiting in the peer outboxes") { outboxes.values.sumOf { it.size() } }
+        metrics.gauge("polocloud_event_relay_peers", "Peer nodes events are relayed to") { outboxes.size }
+        metrics.counter("polocloud_event_relay_dropped_total", "Events dropped from a full peer outbox") { dropped.get() }
+    }
 
     /** Registers this relay as the cluster event fan-out hook. */
     fun install() {
+        refreshPeers()
+        scope.launch {
+            while (isActive) {
+                // Whichever comes first: the regular interval, or a failed send asking for it.
+                withTimeoutOrNull(peerRefreshInterval) { refreshSignal.receive() }
+                runCatching { refreshPeers() }
+                    .onFailure { logger.warn("Failed to refresh relay peers: {}", it.message) }
+            }
+        }
         ClusterEventService.peerRelay = ::dispatch
     }
 
-    /** Removes the hook, cancels any in-flight relays and closes every cached channel. */
+    /** Removes the hook and cancels any in-flight relays. The pooled channels stay open. */
     fun close() {
         ClusterEventService.peerRelay = null
         scope.cancel()
-        channels.values.forEach { runCatching { GrpcChannelFactory.shutdown(it) } }
-        channels.clear()
+        outboxes.values.forEach(PeerOutbox::close)
+        outboxes = emptyMap()
     }
 
     private fun dispatch(encoded: EncodedEvent) {
-        val others = peers().filter { it.id.toString() != localNodeId }
-        others.forEach { node ->
-            scope.launch {
-                runCatching { send(node, encoded) }
-                    .onFailure {
-                        logger.warn("Failed to relay event '{}' to node {}: {}", encoded.name, node.name(), it.message)
-                        // Drop the cached channel on failure so a stale connection (peer
-                        // restarted, address changed, cert rotated, ...) doesn't keep
-                        // failing forever instead of being re-established on the next event.
-                        channels.remove(node.id)?.let { channel -> runCatching { GrpcChannelFactory.shutdown(channel) } }
-                    }
+        val targets = outboxes.values
+        if (targets.isEmpty()) return
+        val key = coalesceKey(encoded)
+        targets.forEach { it.offer(encoded, key) }
+    }
+
+    /** Re-reads [peers] and opens/drops outboxes for nodes that joined/left or moved. */
+    @Synchronized
+    private fun refreshPeers() {
+        val current = peers().filter { it.id.toString() != localNodeId }.associateBy { it.id }
+        val existing = outboxes
+        val moved = existing.filter { (id, outbox) -> current[id]?.let { !outbox.sameAddress(it) } == true }
+        if (current.keys == existing.keys && moved.isEmpty()) return
+
+        existing.filterKeys { it !in current }.values.forEach(PeerOutbox::close)
+        outboxes = current.mapValues { (id, node) ->
+            val outbox = existing[id]
+            when {
+                outbox == null -> PeerOutbox(node)
+                id in moved -> PeerOutbox(node).also { it.takeOver(outbox) }
+                else -> outbox
             }
         }
     }
 
-    /** Real transport: a unary call to the peer's `NodeService.RelayEvent` over its cached channel. */
-    private suspend fun relayViaGrpc(node: NodeData, encoded: EncodedEvent) {
-        val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(channelFor(node))
-        val request = RelayEventRequest.newBuilder()
-            .setEventName(encoded.name)
-            .setEventData(encoded.data)
-            .build()
-        withTimeout(RELAY_TIMEOUT_MILLIS) { stub.relayEvent(request) }
+    /** Real transport: a batch over the peer's `RelayEvents` stream, see [RelayEventStream]. */
+    private suspend fun relayViaGrpc(node: NodeData, events: List<EncodedEvent>) {
+        val stream = synchronized(streams) { streams.getOrPut(node.id) { RelayEventStream(node, scope) } }
+        stream.send(events)
     }
 
-    private fun channelFor(node: NodeData): ManagedChannel = channels.computeIfAbsent(node.id) {
-        val config = MtlsConfig.mutual(
-            cert = NodeCertificateStorage.certificateFile(),
-            key = NodeCertificateStorage.privateKeyFile(),
-            caCert = NodeCertificateStorage.caCertificateFile(),
-        )
-        GrpcChannelFactory.secured(Address(node.hostname, node.port), config)
+    /**
+     * Events waiting to be sent to one peer, in arrival order. Coalesced events keep the
+     * position of the first one queued under their key, with the newest payload.
+     */
+    private inner class PeerOutbox(private val node: NodeData) {
+
+        private val pending = LinkedHashMap<Any, EncodedEvent>()
+        private val wakeUp = Channel<Unit>(Channel.CONFLATED)
+        private val job = scope.launch { drain() }
+
+        fun offer(encoded: EncodedEvent, key: String?) {
+            synchronized(pending) {
+                if (key != null && pending.containsKey(key)) {
+                    pending[key] = encoded
+                } else {
+                    if (pending.size >= maxQueued) {
+                        pending.remove(pending.keys.first())
+                        if (dropped.incrementAndGet() % DROP_LOG_EVERY == 1L) {
+                            logger.warn("Relay outbox for node {} is full, dropping its oldest events ({} so far)", node.name(), dropped.get())
+                        }
+                    }
+                    // Uncoalesced events each get a key of their own.
+                    pending[key ?: Any()] = encoded
+                }
+            }
+            wakeUp.trySend(Unit)
+        }
+
+        fun close() {
+            job.cancel()
+            synchronized(streams) { streams.remove(node.id) }?.close()
+        }
+
+        fun sameAddress(other: NodeData) = node.hostname == other.hostname && node.port == other.port
+
+        /** Closes [previous] — this peer's outbox for its old address — and queues what it still held. */
+        fun takeOver(previous: PeerOutbox) {
+            previous.close()
+            val held = synchronized(previous.pending) { previous.pending.toMap().also { previous.pending.clear() } }
+            if (held.isEmpty()) return
+            synchronized(pending) { pending.putAll(held) }
+            wakeUp.trySend(Unit)
+        }
+
+        fun size() = synchronized(pending) { pending.size }
+
+        private fun take(): List<EncodedEvent> = synchronized(pending) {
+            val iterator = pending.values.iterator()
+            buildList {
+                while (size < maxBatchSize && iterator.hasNext()) {
+                    add(iterator.next())
+                    iterator.remove()
+                }
+            }
+        }
+
+        private suspend fun drain() {
+            while (scope.isActive) {
+                wakeUp.receive()
+                // Let a batch build up unless there's already a full one waiting.
+                if (size() < maxBatchSize) delay(maxBatchDelay)
+                while (true) {
+                    val batch = take()
+                    if (batch.isEmpty()) break
+                    runCatching { batchDuration.time { send(node, batch) } }
+                        .onSuccess { relayed.inc(batch.size.toLong()) }
+                        .onFailure {
+                            failedBatches.inc()
+                            logger.warn("Failed to relay {} event(s) to node {}: {}", batch.size, node.name(), it.message)
+                            refreshSignal.trySend(Unit)
+                        }
+                }
+            }
+        }
     }
 
     private companion object {
-        const val RELAY_TIMEOUT_MILLIS = 3_000L
+        const val DROP_LOG_EVERY = 1_000L
     }
 }
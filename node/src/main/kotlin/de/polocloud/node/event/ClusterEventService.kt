@@ -1,20 +1,30 @@
 package de.polocloud.node.event
 
+import com.google.protobuf.ByteString
 import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
+import de.polocloud.proto.EventOverflow
 import de.polocloud.shared.event.EncodedEvent
 import de.polocloud.shared.event.Event
 import de.polocloud.shared.event.EventCodec
-import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.flow
 import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * Node-side fan-out for cluster events.
  *
  * Holds every open subscriber stream (one per `EventProvider.Subscribe` call) and
- * forwards matching [EventContext]s to them. Node-internal code publishes typed
+ * forwards matching [EventContext]s to them. Subscribers are indexed by event name, with
+ * the subscribe-to-everything ones in a bucket of their own, so an event only ever touches
+ * the subscribers that actually want it — not every proxy's and server's subscription of
+ * every other type. Each subscriber reads from its own bounded [SubscriberBuffer]; a slow
+ * one falls behind (and loses events per its [EventOverflow] policy) without holding up
+ * the rest. Node-internal code publishes typed
  * events through [call]; the [de.polocloud.node.communication.impl.event.EventProviderServiceImpl]
  * relays remote publishes and subscriptions here.
  *
@@ -25,13 +35,33 @@ object ClusterEventService {
 
     private val logger = LoggerFactory.getLogger(ClusterEventService::class.java)
 
+    /** Events a subscriber may fall behind by before its [EventOverflow] policy kicks in. */
+    const val DEFAULT_BUFFER_CAPACITY = 1_024
+
     private class Subscriber(
         val eventName: String,
         val serviceName: String,
-        val send: (EventContext) -> Unit,
+        /** Whether this subscriber asked for [EventEncoding.CBOR] payloads. */
+        val binary: Boolean,
+        val buffer: SubscriberBuffer,
     )
 
-    private val subscribers = CopyOnWriteArrayList<Subscriber>()
+    /** One subscriber's backlog and counters, for the terminal's `events` command. */
+    data class SubscriberStats(
+        val eventName: String,
+        val serviceName: String,
+        val overflow: EventOverflow,
+        val lag: Int,
+        val capacity: Int,
+        val delivered: Long,
+        val dropped: Long,
+        val coalesced: Long,
+    )
+
+    private val subscribersByName = ConcurrentHashMap<String, CopyOnWriteArraySet<Subscriber>>()
+    private val wildcardSubscribers = CopyOnWriteArraySet<Subscriber>()
+    private val overflowDisconnects = AtomicLong()
+    private val observers = CopyOnWriteArrayList<(EventContext) -> Unit>()
 
     /**
      * Optional hook that forwards a locally-fired event to peer nodes. Installed by
@@ -49,20 +79,99 @@ object ClusterEventService {
      * Opens a stream for a remote subscriber. Emits every matching event until the
      * client disconnects, at which point the subscriber is removed automatically.
      *
-     * An empty [eventName] subscribes to all events.
+     * An empty [eventName] subscribes to all events. [acceptedEncodings] is what the
+     * subscriber can decode besides JSON; empty — any client predating that field — means
+     * JSON only. [overflow] decides what happens once the subscriber is [capacity] events
+     * behind; the default ([EventOverflow.DROP_OLDEST]) is also what clients predating that
+     * field get — coalescing drops intermediate events, so only a client asking for it does.
      */
-    fun subscribe(eventName: String, serviceName: String): Flow<EventContext> = callbackFlow {
-        val subscriber = Subscriber(eventName, serviceName) { context -> trySend(context) }
-        subscribers += subscriber
-
-        awaitClose {
-            subscribers.remove(subscriber)
+    fun subscribe(
+        eventName: String,
+        serviceName: String,
+        acceptedEncodings: List<EventEncoding> = emptyList(),
+        overflow: EventOverflow = EventOverflow.DROP_OLDEST,
+        capacity: Int = DEFAULT_BUFFER_CAPACITY,
+    ): Flow<EventContext> = flow {
+        val binary = EventEncoding.CBOR in acceptedEncodings
+        // UNRECOGNIZED: a client newer than this node asked for a policy it doesn't know yet.
+        val policy = if (overflow == EventOverflow.UNRECOGNIZED) EventOverflow.DROP_OLDEST else overflow
+        val subscriber = Subscriber(eventName, serviceName, binary, SubscriberBuffer(capacity, policy))
+        register(subscriber)
+        try {
+            while (true) emit(subscriber.buffer.take() ?: break)
+        } finally {
+            unregister(subscriber)
+            subscriber.buffer.close()
         }
     }
 
-    /** Removes subscribers matching [eventName] and [serviceName] (explicit unsubscribe). */
+    /**
+     * Registers a node-internal [observer] for every event delivered here — published on
+     * this node or relayed in from a peer. Unlike a [subscribe]r it has no buffer and can't
+     * fall behind: it runs on the delivering thread, so it must be cheap. For in-process
+     * views that must not miss an event, such as
+     * [de.polocloud.node.services.watch.ServiceWatchLog].
+     *
+     * @return closes the registration.
+     */
+    fun observe(observer: (EventContext) -> Unit): AutoCloseable {
+        observers += observer
+        return AutoCloseable { observers -= observer }
+    }
+
+    /** Removes subscribers matching [eventName] and [serviceName] (explicit unsubscribe) and ends their streams. */
     fun unsubscribe(eventName: String, serviceName: String) {
-        subscribers.removeIf { it.eventName == eventName && it.serviceName == serviceName }
+        bucket(eventName)
+            .filter { it.serviceName == serviceName }
+            .forEach {
+                unregister(it)
+                it.buffer.close()
+            }
+    }
+
+    /** Every open subscriber's backlog and counters, most backed-up first. */
+    fun subscriberStats(): List<SubscriberStats> =
+        (subscribersByName.values.flatten() + wildcardSubscribers)
+            .map {
+                SubscriberStats(
+                    eventName = it.eventName,
+                    serviceName = it.serviceName,
+                    overflow = it.buffer.overflow,
+                    lag = it.buffer.lag,
+                    capacity = it.buffer.capacity,
+                    delivered = it.buffer.delivered.get(),
+                    dropped = it.buffer.dropped.get(),
+                    coalesced = it.buffer.coalesced.get(),
+                )
+            }
+            .sortedByDescending { it.lag }
+
+    /** How many subscribers were cut off by [EventOverflow.DISCONNECT] since the node started. */
+    fun overflowDisconnects(): Long = overflowDisconnects.get()
+
+    private fun bucket(eventName: String): Set<Subscriber> =
+        if (eventName.isBlank()) wildcardSubscribers else subscribersByName[eventName].orEmpty()
+
+    private fun register(subscriber: Subscriber) {
+        if (subscriber.eventName.isBlank()) {
+            wildcardSubscribers += subscriber
+            return
+        }
+        subscribersByName.compute(subscriber.eventName) { _, current ->
+            (current ?: CopyOnWriteArraySet()).apply { add(subscriber) }
+        }
+    }
+
+    private fun unregister(subscriber: Subscriber) {
+        if (subscriber.eventName.isBlank()) {
+            wildcardSubscribers -= subscriber
+            return
+        }
+        // Drop emptied buckets, so event names nobody listens to anymore don't pile up.
+        subscribersByName.computeIfPresent(subscriber.eventName) { _, current ->
+            current.remove(subscriber)
+            current.ifEmpty { null }
+        }
     }
 
     /**
@@ -70,11 +179,46 @@ object ClusterEventService {
      *
      * Local-only by design: this is also the path used to re-deliver an event relayed
      * *in* from a peer, so it must never fan back out to peers (that is the loop guard).
+     *
+     * Subscribers that accept CBOR get it instead of the JSON [context], transcoded at most
+     * once per event no matter how many of them there are. An event this node can't decode
+     * (a custom type only its publisher and subscribers know) is sent as JSON to everyone.
      */
     fun broadcast(context: EventContext) {
-        subscribers
-            .filter { it.eventName.isBlank() || it.eventName == context.eventName }
-            .forEach { it.send(context) }
+        observers.forEach { observer ->
+            runCatching { observer(context) }
+                .onFailure { logger.warn("Event observer failed on '{}': {}", context.eventName, it.message) }
+        }
+        val named = subscribersByName[context.eventName]
+        if (named == null && wildcardSubscribers.isEmpty()) return
+
+        val binary by lazy(LazyThreadSafetyMode.NONE) { toBinary(context) }
+        val key by lazy(LazyThreadSafetyMode.NONE) { EventCoalescing.keyOf(context.eventName, context.eventData) }
+        fun deliver(subscriber: Subscriber) {
+            val payload = if (subscriber.binary) binary ?: context else context
+            if (subscriber.buffer.offer(payload, if (subscriber.buffer.coalesces) key else null)) return
+            // Only DISCONNECT refuses an event from a still registered subscriber.
+            unregister(subscriber)
+            overflowDisconnects.incrementAndGet()
+            logger.warn(
+                "Disconnected event subscriber {} ({}): fell more than {} events behind",
+                subscriber.serviceName, subscriber.eventName.ifBlank { "*" }, subscriber.buffer.capacity,
+            )
+        }
+        named?.forEach(::deliver)
+        wildcardSubscribers.forEach(::deliver)
+    }
+
+    private fun toBinary(context: EventContext): EventContext? {
+        if (context.encoding != EventEncoding.JSON) return null
+        val payload = runCatching { EventCodec.toBinary(context.eventName, context.eventData) }
+            .onFailure { logger.debug("Sending '{}' as JSON only: {}", context.eventName, it.message) }
+            .getOrNull() ?: return null
+        return EventContext.newBuilder()
+            .setEventName(context.eventName)
+            .setEventPayload(ByteString.copyFrom(payload))
+            .setEncoding(EventEncoding.CBOR)
+            .build()
     }
 
     /**
@@ -0,0 +1,49 @@
+package de.polocloud.node.event
+
+import de.polocloud.node.cache.CacheInvalidationEvent
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import kotlinx.serialization.json.contentOrNull
+
+/**
+ * Which events a newer one makes pointless to still deliver: those only ever read as
+ * "the latest state of X". Used wherever events wait in a queue — a peer's outbox in
+ * [ClusterEventRelay], a subscriber's buffer in [ClusterEventService] — to replace the
+ * queued event instead of sending both.
+ *
+ * Asked for every event dispatched or relayed, so the key is read from the JSON tree
+ * ([Json.parseToJsonElement]) without decoding the event, and only for the coalescing
+ * ones — every other event is answered by its name alone.
+ */
+object EventCoalescing {
+
+    private val PLAYER_COUNT_EVENT = EventCodec.nameOf(PlayerCountChangedEvent::class.java)
+    private val CACHE_INVALIDATION_EVENT = EventCodec.nameOf(CacheInvalidationEvent::class.java)
+
+    /** Key shared by every event superseding the other, or `null` if this one must be delivered as is. */
+    fun keyOf(name: String, data: String): String? {
+        if (name != PLAYER_COUNT_EVENT && name != CACHE_INVALIDATION_EVENT) return null
+        val json = runCatching { Json.parseToJsonElement(data) }.getOrNull() as? JsonObject ?: return null
+        return when (name) {
+            PLAYER_COUNT_EVENT -> json.field("service", "id")?.let { "$PLAYER_COUNT_EVENT/$it" }
+            // Dropping the same row twice is no different from dropping it once.
+            else -> {
+                val nodeId = json.field("nodeId")
+                val cache = json.field("cache")
+                if (nodeId == null || cache == null) null
+                else "$CACHE_INVALIDATION_EVENT/$nodeId/$cache/${json.field("key")}"
+            }
+        }
+    }
+
+    /** The scalar at [path] — a string's content, `null` for a JSON `null` — or `null` if missing or not a scalar. */
+    private fun JsonObject.field(vararg path: String): String? {
+        var element: JsonElement = this
+        for (name in path) element = (element as? JsonObject)?.get(name) ?: return null
+        return (element as? JsonPrimitive)?.contentOrNull
+    }
+}
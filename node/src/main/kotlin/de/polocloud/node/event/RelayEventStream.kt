@@ -0,0 +1,95 @@
+package de.polocloud.node.event
+
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.node.communication.grpc.NodeChannelPool
+import de.polocloud.proto.NodeServiceGrpcKt
+import de.polocloud.proto.RelayEventBatch
+import de.polocloud.proto.RelayEventRequest
+import de.polocloud.shared.event.EncodedEvent
+import io.grpc.Status
+import io.grpc.StatusException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.consumeAsFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeout
+
+/**
+ * One peer's end of the streamed `NodeService.RelayEvents` call, used by
+ * [ClusterEventRelay] to deliver batches to that peer.
+ *
+ * The stream is opened lazily on the first [send] and kept open for every batch after it;
+ * only a failure (peer restarted, channel rebuilt, ack timeout) drops it, and the next
+ * [send] opens a fresh one on the peer's current pooled channel. A peer that doesn't
+ * serve `RelayEvents` yet (older version, answers `UNIMPLEMENTED`) is sent one unary
+ * `RelayEvent` per event instead, for as long as this instance lives.
+ *
+ * Not thread-safe: [ClusterEventRelay] calls [send] from the peer's single drain coroutine.
+ */
+internal class RelayEventStream(
+    private val node: NodeData,
+    private val scope: CoroutineScope,
+) {
+
+    private class Open(val requests: Channel<RelayEventBatch>, val acks: Channel<Long>)
+
+    private var open: Open? = null
+    private var sequence = 0L
+    private var unaryOnly = false
+
+    /** Delivers [events] and returns once the peer acknowledged them, or throws. */
+    suspend fun send(events: List<EncodedEvent>) {
+        if (unaryOnly) return sendUnary(events)
+
+        val stream = open ?: open()
+        val batch = RelayEventBatch.newBuilder()
+            .setSequence(++sequence)
+            .addAllEvents(events.map(::request))
+            .build()
+        try {
+            stream.requests.send(batch)
+            withTimeout(ACK_TIMEOUT_MILLIS) {
+                while (stream.acks.receive() < batch.sequence) Unit
+            }
+        } catch (e: Exception) {
+            close()
+            if (e is StatusException && e.status.code == Status.Code.UNIMPLEMENTED) {
+                unaryOnly = true
+                return sendUnary(events)
+            }
+            throw e
+        }
+    }
+
+    /** Ends the stream, if one is open. A later [send] reopens it. */
+    fun close() {
+        open?.requests?.close()
+        open = null
+    }
+
+    private fun open(): Open {
+        val stream = Open(Channel(Channel.BUFFERED), Channel(Channel.UNLIMITED))
+        val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(NodeChannelPool.channel(node))
+        scope.launch {
+            runCatching { stub.relayEvents(stream.requests.consumeAsFlow()).collect { stream.acks.send(it.sequence) } }
+                .onSuccess { stream.acks.close(IllegalStateException("Relay stream closed by ${node.name()}")) }
+                .onFailure { stream.acks.close(it) }
+        }
+        open = stream
+        return stream
+    }
+
+    private suspend fun sendUnary(events: List<EncodedEvent>) {
+        val stub = NodeServiceGrpcKt.NodeServiceCoroutineStub(NodeChannelPool.channel(node))
+        events.forEach { withTimeout(ACK_TIMEOUT_MILLIS) { stub.relayEvent(request(it)) } }
+    }
+
+    private fun request(encoded: EncodedEvent) = RelayEventRequest.newBuilder()
+        .setEventName(encoded.name)
+        .setEventData(encoded.data)
+        .build()
+
+    private companion object {
+        const val ACK_TIMEOUT_MILLIS = 3_000L
+    }
+}
@@ -0,0 +1,105 @@
+package de.polocloud.node.event
+
+import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventOverflow
+import io.grpc.Status
+import kotlinx.coroutines.channels.Channel
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The events waiting to be streamed to one [ClusterEventService] subscriber, at most
+ * [capacity] of them. What happens once it is full is up to [overflow]:
+ *
+ * - [EventOverflow.COALESCE]: an event replaces a queued one with the same
+ *   [EventCoalescing] key, in place, even before the buffer is full; otherwise the oldest
+ *   queued event is dropped to make room.
+ * - [EventOverflow.DROP_OLDEST]: the oldest queued event is dropped to make room.
+ * - [EventOverflow.DISCONNECT]: nothing is dropped — the subscriber is cut off instead,
+ *   so a client that can't afford gaps knows it has to re-sync.
+ *
+ * Every drop is counted, unlike the silently failing `trySend` this replaces.
+ */
+internal class SubscriberBuffer(
+    val capacity: Int,
+    val overflow: EventOverflow,
+) {
+
+    private val pending = LinkedHashMap<Any, EventContext>()
+    private val signal = Channel<Unit>(Channel.CONFLATED)
+    private var state = State.OPEN
+
+    private enum class State { OPEN, CLOSED, OVERFLOWED }
+
+    val delivered = AtomicLong()
+    val dropped = AtomicLong()
+    val coalesced = AtomicLong()
+
+    /** Whether [offer] makes use of a coalescing key, so callers can skip computing one. */
+    val coalesces get() = overflow == EventOverflow.COALESCE
+
+    /** Events queued but not yet read by the subscriber. */
+    val lag: Int get() = synchronized(pending) { pending.size }
+
+    /**
+     * Queues [context]. Returns `false` once the subscriber is no longer reading — closed,
+     * or just cut off by [EventOverflow.DISCONNECT].
+     */
+    fun offer(context: EventContext, key: String?): Boolean {
+        synchronized(pending) {
+            if (state != State.OPEN) return false
+            if (coalesces && key != null && pending.containsKey(key)) {
+                pending[key] = context
+                coalesced.incrementAndGet()
+            } else {
+                if (pending.size >= capacity) {
+                    dropped.incrementAndGet()
+                    if (overflow == EventOverflow.DISCONNECT) {
+                        state = State.OVERFLOWED
+                        signal.trySend(Unit)
+                        return false
+                    }
+                    pending.remove(pending.keys.first())
+                }
+                pending[if (coalesces && key != null) key else Any()] = context
+            }
+        }
+        signal.trySend(Unit)
+        return true
+    }
+
+    /**
+     * The next queued event, suspending until there is one; `null` once [close]d.
+     *
+     * @throws io.grpc.StatusException (`RESOURCE_EXHAUSTED`) once [EventOverflow.DISCONNECT] cut the subscriber off.
+     */
+    suspend fun take(): EventContext? {
+        while (true) {
+            synchronized(pending) {
+                when (state) {
+                    State.CLOSED -> return null
+                    State.OVERFLOWED -> throw Status.RESOURCE_EXHAUSTED
+                        .withDescription("Event subscriber fell more than $capacity events behind")
+                        .asException()
+                    State.OPEN -> Unit
+                }
+                val iterator = pending.values.iterator()
+                if (iterator.hasNext()) {
+                    val next = iterator.next()
+                    iterator.remove()
+                    delivered.incrementAndGet()
+                    return next
+                }
+            }
+            signal.receive()
+        }
+    }
+
+    /** Ends the stream: [take] returns `null`, [offer] refuses anything further. */
+    fun close() {
+        synchronized(pending) {
+            if (state == State.OPEN) state = State.CLOSED
+            pending.clear()
+        }
+        signal.trySend(Unit)
+    }
+}
@@ -0,0 +1,70 @@
+package de.polocloud.node.group
+
+import java.util.Collections
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * The decoded JSON columns of [Group] and [de.polocloud.node.player.CloudPlayer], decoded
+ * once per persisted value instead of on every read of their computed getters.
+ *
+ * The caches live out here rather than on the entities: those may not grow any field or
+ * companion object, since the SQL layer would map it to a column — see [Group.static] and
+ * the factory function below [Group]. The views are read-only and shared by every reader;
+ * copy one before editing it.
+ */
+object DecodedViews {
+
+    val groupProperties = DecodedViewCache<String, Map<String, String>> { Collections.unmodifiableMap(PropertyCodec.decode(it)) }
+    val groupTemplates = DecodedViewCache<String, List<String>> { Collections.unmodifiableList(TemplateCodec.decode(it)) }
+    val groupNodes = DecodedViewCache<String, List<String>> { Collections.unmodifiableList(TemplateCodec.decode(it)) }
+    val playerProperties = DecodedViewCache<UUID, Map<String, String>> { Collections.unmodifiableMap(PropertyCodec.decode(it)) }
+
+    /** Drops the views of the group [name] — on update or delete. */
+    fun evictGroup(name: String) {
+        groupProperties.evict(name)
+        groupTemplates.evict(name)
+        groupNodes.evict(name)
+    }
+
+    /** Drops the views of the player [id] — once it left. */
+    fun evictPlayer(id: UUID) = playerProperties.evict(id)
+}
+
+/**
+ * One decoded view per entity key, kept alongside the raw column value it was decoded
+ * from. A read whose raw value differs — a newer version of the entity, or one loaded
+ * from the database since — decodes it again and replaces the view; comparing the raw
+ * strings is far cheaper than parsing them.
+ */
+class DecodedViewCache<K : Any, V : Any>(private val decode: (String) -> V) {
+
+    private class Entry<V>(val raw: String, val view: V)
+
+    private val entries = ConcurrentHashMap<K, Entry<V>>()
+    private val hits = LongAdder()
+    private val decodes = LongAdder()
+
+    fun get(key: K, raw: String): V {
+        val entry = entries[key]
+        if (entry != null && entry.raw == raw) {
+            hits.increment()
+            return entry.view
+        }
+        decodes.increment()
+        return decode(raw).also { entries[key] = Entry(raw, it) }
+    }
+
+    fun evict(key: K) {
+        entries.remove(key)
+    }
+
+    fun stats() = DecodedViewStats(entries.size, hits.sum(), decodes.sum())
+}
+
+/**
+ * @param hits    reads served from an already decoded view.
+ * @param decodes reads that had to decode — the first of each version.
+ */
+data class DecodedViewStats(val views: Int, val hits: Long, val decodes: Long)
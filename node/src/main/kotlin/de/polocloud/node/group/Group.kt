@@ -47,25 +47,28 @@ data class Group (
 
     /**
      * The decoded property map. Computed (no backing field) so it is not turned into
-     * its own SQL column; the persisted representation is [propertiesJson].
+     * its own SQL column; the persisted representation is [propertiesJson]. Decoded once
+     * per [propertiesJson] value and shared (see [DecodedViews]), so it is read-only —
+     * edit a copy and re-encode it.
      */
-    val properties: MutableMap<String, String>
-        get() = PropertyCodec.decode(propertiesJson)
+    val properties: Map<String, String>
+        get() = DecodedViews.groupProperties.get(name, propertiesJson)
 
     /**
      * The decoded, ordered template name list. Computed (no backing field) so it is not
      * turned into its own SQL column; the persisted representation is [templatesJson].
+     * Decoded once per value, like [properties].
      */
     val templates: List<String>
-        get() = TemplateCodec.decode(templatesJson)
+        get() = DecodedViews.groupTemplates.get(name, templatesJson)
 
     /**
      * The decoded node whitelist. Computed (no backing field) so it is not turned into
      * its own SQL column; the persisted representation is [nodesJson]. Empty means the
-     * group may start on any online node.
+     * group may start on any online node. Decoded once per value, like [properties].
      */
     val nodes: List<String>
-        get() = TemplateCodec.decode(nodesJson)
+        get() = DecodedViews.groupNodes.get(name, nodesJson)
 }
 
 /**
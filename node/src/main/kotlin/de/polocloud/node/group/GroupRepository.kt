@@ -2,22 +2,40 @@ package de.polocloud.node.group
 
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseKey
-
+import de.polocloud.node.cache.RepositoryCache
+import de.polocloud.node.metrics.DatabaseCalls
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * The `groups` table, read through a [RepositoryCache]: groups change rarely, but are
+ * listed on every scaling tick. Group names are matched ignoring case throughout the
+ * node, so rows are cached by their lowercased name — a save of `Lobby` replaces what a
+ * `find("lobby")` cached.
+ */
 object GroupRepository {
 
     private val groupDatabaseKey = DatabaseKey(Group::class)
+    private val calls = DatabaseCalls("groups")
 
-    fun find(name: String) = DatabaseAccess.executor().findById(groupDatabaseKey,  name)
+    private val cache = RepositoryCache<String, Group>("groups", ttl = 30.seconds, parseKey = String::lowercase)
 
-    fun save(group: Group) = DatabaseAccess.executor().save(groupDatabaseKey, group)
+    fun find(name: String) = cache.find(name.lowercase()) { calls.call("findById") { DatabaseAccess.executor().findById(groupDatabaseKey, name) } }
 
-    fun delete(group: Group) = DatabaseAccess.executor().delete(groupDatabaseKey, group)
+    fun save(group: Group) {
+        calls.call("save") { DatabaseAccess.executor().save(groupDatabaseKey, group) }
+        cache.saved(group.name.lowercase(), group)
+    }
 
-    fun findAll() = DatabaseAccess.executor().findAll(groupDatabaseKey)
+    fun delete(group: Group) {
+        calls.call("delete") { DatabaseAccess.executor().delete(groupDatabaseKey, group) }
+        cache.deleted(group.name.lowercase())
+    }
 
-    fun count() = DatabaseAccess.executor().count(groupDatabaseKey)
+    fun findAll() = cache.query(ALL) { calls.call("findAll") { DatabaseAccess.executor().findAll(groupDatabaseKey) } }
 
-    fun exists(name: String) = DatabaseAccess.executor().findById(groupDatabaseKey,  name) != null
+    fun count() = findAll().size.toLong()
 
+    fun exists(name: String) = find(name) != null
 
-}
\ No newline at end of file
+    private const val ALL = "all"
+}
@@ -84,6 +84,7 @@ open class GroupService(private val platformService: PlatformService = PlatformS
 
     open fun update(group: Group): Group {
         GroupRepository.save(group)
+        DecodedViews.evictGroup(group.name)
         // Notify consumers (e.g. the bridge's fallback tracking) of the new state live,
         // regardless of whether the update came from gRPC or the node terminal.
         ClusterEventService.call(GroupUpdatedEvent(group.name, Properties.of(group.properties)))
@@ -100,5 +101,6 @@ open class GroupService(private val platformService: PlatformService = PlatformS
      */
     open fun delete(group: Group) {
         GroupRepository.delete(group)
+        DecodedViews.evictGroup(group.name)
     }
 }
\ No newline at end of file
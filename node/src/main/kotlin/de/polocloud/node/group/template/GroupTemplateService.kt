@@ -73,20 +73,29 @@ object GroupTemplateService {
      */
     fun copyInto(templates: List<String>, targetDir: File) {
         for (name in templates) {
-            val source = runCatching { directoryOf(name) }
-                .getOrElse {
-                    logger.error("Refusing to apply template '{}': {}", name, it.message)
-                    continue
-                }
-            if (!source.isDirectory) {
-                logger.warn("Template '{}' has no folder at {} — skipping", name, source.path)
-                continue
-            }
+            val source = existingDirectoryOf(name) ?: continue
             runCatching { source.copyRecursively(targetDir, overwrite = true) }
                 .onFailure { logger.error("Failed to apply template '{}' to {}: {}", name, targetDir.path, it.message) }
         }
     }
 
+    /**
+     * Template [name]'s folder if it exists, or `null` — logged — if it doesn't or [name]
+     * is unsafe (see [directoryOf]). Shared by [copyInto] and [TemplateMaterializer].
+     */
+    internal fun existingDirectoryOf(name: String): File? {
+        val source = runCatching { directoryOf(name) }
+            .getOrElse {
+                logger.error("Refusing to apply template '{}': {}", name, it.message)
+                return null
+            }
+        if (!source.isDirectory) {
+            logger.warn("Template '{}' has no folder at {} — skipping", name, source.path)
+            return null
+        }
+        return source
+    }
+
     /**
      * Copies [sourceDir] — a running service's live work directory — into template
      * [name]'s folder, overwriting any files already there. The reverse of [copyInto],
@@ -0,0 +1,26 @@
+package de.polocloud.node.group.template
+
+import kotlinx.serialization.Serializable
+
+/**
+ * What [TemplateMaterializer] last saw in one template folder: every regular file under
+ * it, keyed by its `/`-separated path relative to the template root, and every folder
+ * (so empty ones are recreated too).
+ *
+ * A file whose [Entry.size] and [Entry.modified] still match is taken as unchanged and
+ * never read again — only new or touched files are hashed.
+ */
+@Serializable
+data class TemplateManifest(
+    val entries: Map<String, Entry> = emptyMap(),
+    val directories: Set<String> = emptySet(),
+) {
+
+    /**
+     * @param size     file size in bytes when hashed.
+     * @param modified last-modified time in epoch millis when hashed.
+     * @param sha256   content hash, also the file's name in the blob store.
+     */
+    @Serializable
+    data class Entry(val size: Long, val modified: Long, val sha256: String)
+}
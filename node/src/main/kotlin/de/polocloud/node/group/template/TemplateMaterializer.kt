@@ -0,0 +1,254 @@
+package de.polocloud.node.group.template
+
+import de.polocloud.common.dependency.checksum.FileChecksum.sha256
+import de.polocloud.node.utils.FileLinker
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.json.Json
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.nio.file.FileSystems
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+
+/** How [TemplateMaterializer] lays template files into a service work directory. */
+@Serializable
+enum class TemplateMaterialization {
+    /** Every file is copied, as [GroupTemplateService.copyInto] always did. */
+    COPY,
+
+    /**
+     * Files matching the link patterns are hard-linked from a content-addressed blob
+     * store; everything else, and every file a platform task patches, is still copied.
+     */
+    LINK,
+}
+
+/**
+ * Lays a service's templates into its work directory on start, either by copying them
+ * ([TemplateMaterialization.COPY]) or by hard-linking the large files that nothing writes
+ * to in place ([TemplateMaterialization.LINK]) — plugin jars by default, plus whatever
+ * else [linkPatterns] names. A lobby group with a few hundred MB of plugins and maps then
+ * starts without rewriting all of it per replica, and its shutdown only unlinks them.
+ *
+ * Linked files never point into `local/templates/` itself: each one is first copied once
+ * into a blob store under [cacheDir], named by its SHA-256, and work directories link to
+ * that blob. So a service writing through its link can't change the template, an operator
+ * editing a template never changes a running service's files, and identical jars shared
+ * by several templates are stored once.
+ *
+ * A service writing to a linked file in place does change the blob, though — for every
+ * later start. Blobs are therefore stored with a fixed modification time ([BLOB_MODIFIED]),
+ * which any write through a link moves: a blob whose size or timestamp differ is never
+ * linked again, but replaced from the template (the service that wrote it keeps its
+ * version). Only link files that are meant to stay as shipped.
+ *
+ * What each template held is kept as a [TemplateManifest] (in memory and under
+ * [cacheDir]): a start only stats the template's files, and hashes just the ones whose
+ * size or modification time changed — an unchanged template is never read again. Blobs
+ * no manifest references any more are removed when a manifest changes; work directories
+ * still linking to one keep their copy of the file alive regardless.
+ *
+ * Reflinks (copy-on-write clones) would also cover files services do write, such as
+ * world regions, but the JDK has no API for them; list those in [linkPatterns] only for
+ * worlds the server never saves.
+ *
+ * @param mode         whether to link at all; [TemplateMaterialization.COPY] behaves exactly
+ *                     like [GroupTemplateService.copyInto].
+ * @param linkPatterns glob patterns (relative to the template root, `/`-separated) of the
+ *                     files to link in [TemplateMaterialization.LINK] mode.
+ * @param cacheDir     where the blob store and persisted manifests live.
+ * @param linker       places linked files — injectable for testing.
+ */
+class TemplateMaterializer(
+    val mode: TemplateMaterialization = TemplateMaterialization.COPY,
+    linkPatterns: List<String> = DEFAULT_LINK_PATTERNS,
+    private val cacheDir: File = File(".cache/templates"),
+    private val linker: FileLinker = FileLinker(),
+) {
+
+    private val logger = LoggerFactory.getLogger(TemplateMaterializer::class.java)
+    private val json = Json { ignoreUnknownKeys = true }
+    private val matchers = linkPatterns.map { FileSystems.getDefault().getPathMatcher("glob:$it") }
+    private val blobs = File(cacheDir, "blobs")
+    private val manifestDir = File(cacheDir, "manifests")
+
+    // Guarded by refresh()'s lock.
+    private val manifests = HashMap<String, TemplateManifest>()
+
+    /**
+     * Lays every named template into [targetDir], in [templates] order, so a later
+     * template's files replace an earlier one's on conflict. Missing templates are
+     * skipped with a warning, as in [GroupTemplateService.copyInto].
+     *
+     * @param mutablePaths `/`-separated paths (relative to [targetDir]) that are patched
+     *                     after materialization, e.g. by platform tasks — always copied,
+     *                     never linked, whatever [linkPatterns] says.
+     */
+    fun materialize(templates: List<String>, targetDir: File, mutablePaths: Set<String> = emptySet()) {
+        if (mode == TemplateMaterialization.COPY) {
+            GroupTemplateService.copyInto(templates, targetDir)
+            return
+        }
+        for (name in templates) {
+            val source = GroupTemplateService.existingDirectoryOf(name) ?: continue
+            runCatching { materialize(name, source, targetDir, mutablePaths) }
+                .onFailure { logger.error("Failed to apply template '{}' to {}: {}", name, targetDir.path, it.message) }
+        }
+    }
+
+    /**
+     * Places a single immutable file — e.g. the platform jar from its cache — at
+     * [target]: linked in [TemplateMaterialization.LINK] mode where possible, copied
+     * otherwise.
+     */
+    fun placeFile(source: File, target: File) {
+        if (mode == TemplateMaterialization.LINK) {
+            linker.linkOrCopy(source, target)
+        } else {
+            target.parentFile?.mkdirs()
+            source.copyTo(target, overwrite = true)
+        }
+    }
+
+    private fun materialize(name: String, source: File, targetDir: File, mutablePaths: Set<String>) {
+        var linked = 0
+        val copied = ArrayList<String>()
+        // Linked under refresh()'s lock, so another template's prune() can't delete a blob
+        // between this manifest naming it and the link to it being made.
+        val manifest = synchronized(this) {
+            val manifest = refresh(name, source)
+            for ((path, entry) in manifest.entries) {
+                if (!isLinkable(path) || path in mutablePaths) {
+                    copied += path
+                    continue
+                }
+                val blob = blobOf(entry.sha256)
+                if (!intact(blob, entry.size)) {
+                    // Gone from under the store, or written to meanwhile — the template still has the file.
+                    copied += path
+                    continue
+                }
+                if (linker.linkOrCopy(blob, File(targetDir, path))) linked++
+            }
+            manifest
+        }
+        for (path in copied) {
+            val target = File(targetDir, path)
+            target.parentFile?.mkdirs()
+            Files.copy(File(source, path).toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        }
+        // Empty folders carry meaning too (e.g. a `plugins/` the platform expects).
+        manifest.directories.forEach { File(targetDir, it).mkdirs() }
+        logger.debug("Template '{}' materialized into {} ({} of {} files linked)", name, targetDir.path, linked, manifest.entries.size)
+    }
+
+    /**
+     * Brings template [name]'s manifest up to date with [source] and returns it. Only
+     * files whose size or modification time differ from the last manifest are read.
+     *
+     * One lock for every template: blobs are shared between them, so a manifest dropping
+     * a blob must not race another one starting to reference the same blob.
+     */
+    @Synchronized
+    internal fun refresh(name: String, source: File): TemplateManifest {
+        val previous = manifests[name] ?: load(name)
+        val entries = HashMap<String, TemplateManifest.Entry>()
+        val directories = mutableSetOf<String>()
+        source.walkTopDown().filter { it != source }.forEach { file ->
+            val path = file.relativeTo(source).invariantSeparatorsPath
+            if (file.isDirectory) {
+                directories += path
+                return@forEach
+            }
+            if (!file.isFile) return@forEach
+            val known = previous.entries[path]
+            entries[path] = if (known != null && known.size == file.length() && known.modified == file.lastModified() &&
+                (!isLinkable(path) || intact(blobOf(known.sha256), known.size))
+            ) {
+                known
+            } else {
+                hashed(path, file)
+            }
+        }
+
+        val current = TemplateManifest(entries, directories)
+        manifests[name] = current
+        if (current != previous) {
+            save(name, current)
+            prune(previous.entries.values.map { it.sha256 }.toSet() - current.entries.values.map { it.sha256 }.toSet())
+        }
+        return current
+    }
+
+    /**
+     * Hashes [file] and, if it's linkable, stores it as a blob — replacing one a service
+     * wrote to. The blob is hashed from its own copy rather than from [file], so a
+     * template edited mid-copy can never leave a blob whose content doesn't match its name.
+     */
+    private fun hashed(path: String, file: File): TemplateManifest.Entry {
+        val size = file.length()
+        val modified = file.lastModified()
+        if (!isLinkable(path)) return TemplateManifest.Entry(size, modified, file.sha256())
+
+        blobs.mkdirs()
+        val tmp = File.createTempFile("blob", ".tmp", blobs)
+        try {
+            Files.copy(file.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            val sha256 = tmp.sha256()
+            val blob = blobOf(sha256)
+            if (!intact(blob, tmp.length())) {
+                tmp.setLastModified(BLOB_MODIFIED)
+                // Replaced, not rewritten: a service's link to a blob it wrote keeps pointing at its version.
+                Files.move(tmp.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+            }
+            return TemplateManifest.Entry(size, modified, sha256)
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    /** Deletes the blobs among [candidates] no persisted manifest references any more. */
+    private fun prune(candidates: Set<String>) {
+        if (candidates.isEmpty()) return
+        val referenced = (manifestDir.listFiles { file -> file.extension == "json" } ?: emptyArray())
+            .map { load(it.nameWithoutExtension) }
+            .flatMapTo(HashSet()) { manifest -> manifest.entries.values.map { it.sha256 } }
+        (candidates - referenced).forEach { blobOf(it).delete() }
+    }
+
+    private fun load(name: String): TemplateManifest {
+        val file = File(manifestDir, "$name.json")
+        if (!file.isFile) return TemplateManifest()
+        return runCatching { json.decodeFromString(TemplateManifest.serializer(), file.readText()) }
+            .getOrElse {
+                logger.warn("Ignoring unreadable manifest for template '{}': {}", name, it.message)
+                TemplateManifest()
+            }
+    }
+
+    private fun save(name: String, manifest: TemplateManifest) {
+        manifestDir.mkdirs()
+        val tmp = File(manifestDir, "$name.json.tmp")
+        tmp.writeText(json.encodeToString(TemplateManifest.serializer(), manifest))
+        Files.move(tmp.toPath(), File(manifestDir, "$name.json").toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    private fun blobOf(sha256: String) = File(blobs, sha256)
+
+    /** Whether [blob] exists as stored: writing through any link to it changes its timestamp. */
+    private fun intact(blob: File, size: Long) = blob.isFile && blob.length() == size && blob.lastModified() == BLOB_MODIFIED
+
+    private fun isLinkable(path: String): Boolean {
+        val relative = Path.of(path)
+        return matchers.any { it.matches(relative) }
+    }
+
+    companion object {
+        /** Jars anywhere in a template: loaded by the server, never written to in place. */
+        val DEFAULT_LINK_PATTERNS = listOf("**.jar")
+
+        /** Every blob's modification time — 2001-09-09, so no write happening now can keep it. */
+        private const val BLOB_MODIFIED = 1_000_000_000_000L
+    }
+}
@@ -19,6 +19,7 @@ import de.polocloud.node.communication.registration.node.RegistrationManager
 import de.polocloud.node.core.configuration.NodeConfigurations
 import de.polocloud.node.core.context.NodeRuntimeContext
 import de.polocloud.node.group.GroupService
+import de.polocloud.node.group.template.TemplateMaterializer
 import de.polocloud.node.identity.provider.NodeIdProvider
 import de.polocloud.node.services.ServiceProvider
 import de.polocloud.node.security.NodeCertificateStorage
@@ -69,6 +70,11 @@ class NodeIdentityService(
             // set general.serviceHostname to the node's reachable address for a cluster.
             nodeHost = holder.value.general.serviceHostname,
             nodeId = localId.toString(),
+            templateMaterializer = TemplateMaterializer(
+                mode = holder.value.general.templateMaterialization,
+                linkPatterns = holder.value.general.linkedTemplateFiles,
+            ),
+            playerCountSource = holder.value.general.playerCountSource,
         )
         // Shares serviceProvider's PlatformService so a group's default templates are
         // resolved (proxy vs. server) against the same loaded platform set services start
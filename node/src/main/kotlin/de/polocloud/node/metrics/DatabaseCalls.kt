@@ -0,0 +1,38 @@
+package de.polocloud.node.metrics
+
+import de.polocloud.common.metrics.Counter
+import de.polocloud.common.metrics.Histogram
+import de.polocloud.common.metrics.MetricsRegistry
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Times the database calls of one repository table by operation, into
+ * `polocloud_database_call_seconds` — its `_count` is the call rate — and counts the
+ * failed ones. Reads served by a [de.polocloud.node.cache.RepositoryCache] never get here.
+ */
+class DatabaseCalls(
+    private val table: String,
+    private val metrics: MetricsRegistry = NodeMetrics.registry,
+) {
+
+    private val durations = ConcurrentHashMap<String, Histogram>()
+    private val failures = ConcurrentHashMap<String, Counter>()
+
+    fun <T> call(operation: String, block: () -> T): T {
+        val startedAt = System.nanoTime()
+        try {
+            return block()
+        } catch (e: Exception) {
+            failures.computeIfAbsent(operation) {
+                metrics.counter("polocloud_database_call_failures_total", "Database calls that threw", labels(it))
+            }.inc()
+            throw e
+        } finally {
+            (durations[operation] ?: durations.computeIfAbsent(operation) {
+                metrics.histogram("polocloud_database_call_seconds", "Database call latency by table and operation", labels(it))
+            }).observeSince(startedAt)
+        }
+    }
+
+    private fun labels(operation: String) = mapOf("table" to table, "operation" to operation)
+}
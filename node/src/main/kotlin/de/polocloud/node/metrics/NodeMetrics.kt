@@ -0,0 +1,115 @@
+package de.polocloud.node.metrics
+
+import de.polocloud.common.Address
+import de.polocloud.common.metrics.MetricFamily
+import de.polocloud.common.metrics.MetricSample
+import de.polocloud.common.metrics.MetricType
+import de.polocloud.common.metrics.MetricsEndpoint
+import de.polocloud.common.metrics.MetricsRegistry
+import de.polocloud.node.cache.RepositoryCaches
+import de.polocloud.node.cluster.node.NodeRepository
+import de.polocloud.node.communication.grpc.GrpcModule
+import de.polocloud.node.communication.grpc.NodeChannelPool
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.player.CloudPlayerRepository
+import de.polocloud.node.security.ServiceIdentityProvisioner
+import org.slf4j.LoggerFactory
+
+/**
+ * This node's [MetricsRegistry]. Components record into it where things happen — the
+ * scaling queue, service starts, pings, the event relay, heartbeats, every repository's
+ * database calls — while [start] adds the counters other components already keep for
+ * their terminal commands, read when collected.
+ *
+ * Shown by the `metrics` command and, with `general.metricsAddress` set, served as
+ * Prometheus text on `http://<metricsAddress>/metrics`.
+ */
+object NodeMetrics {
+
+    private val logger = LoggerFactory.getLogger(NodeMetrics::class.java)
+
+    private val QUANTILES = listOf(0.5, 0.9, 0.99)
+
+    val registry = MetricsRegistry()
+
+    private var endpoint: MetricsEndpoint? = null
+
+    /** Binds the existing component counters, and serves them all on [address] if set. */
+    fun start(address: Address?) {
+        bindComponentStats()
+        val metricsAddress = address ?: return
+        runCatching { MetricsEndpoint(registry, metricsAddress).also { it.start() } }
+            .onSuccess {
+                endpoint = it
+                logger.info("Serving metrics on http://{}/metrics", metricsAddress.asString())
+            }
+            .onFailure { logger.warn("Failed to serve metrics on {}: {}", metricsAddress.asString(), it.message) }
+    }
+
+    fun close() {
+        endpoint?.close()
+        endpoint = null
+    }
+
+    private fun bindComponentStats() {
+        registry.register("repositoryCaches") {
+            val caches = RepositoryCaches.stats()
+            listOf(
+                family("polocloud_repository_cache_hits_total", "Repository reads served from the cache", MetricType.COUNTER,
+                    caches.map { sample("polocloud_repository_cache_hits_total", it.hits, "cache" to it.name) }),
+                family("polocloud_repository_cache_loads_total", "Repository reads that went to the database", MetricType.COUNTER,
+                    caches.map { sample("polocloud_repository_cache_loads_total", it.loads, "cache" to it.name) }),
+                family("polocloud_repository_cache_invalidations_total", "Cached rows or queries dropped by a write", MetricType.COUNTER,
+                    caches.map { sample("polocloud_repository_cache_invalidations_total", it.invalidations, "cache" to it.name) }),
+            )
+        }
+
+        registry.register("rpc") {
+            val handlers = GrpcModule.timing.stats()
+            val latency = handlers.flatMap { (type, snapshot) ->
+                QUANTILES.mapNotNull { quantile ->
+                    snapshot.quantile(quantile)?.let {
+                        MetricSample("polocloud_rpc_seconds", mapOf("type" to type, "quantile" to quantile.toString()), it / 1e6)
+                    }
+                } + MetricSample("polocloud_rpc_seconds_sum", mapOf("type" to type), snapshot.sumMicros / 1e6) +
+                    MetricSample("polocloud_rpc_seconds_count", mapOf("type" to type), snapshot.total.toDouble())
+            }
+            listOf(
+                family("polocloud_rpc_seconds", "Latency of the requests this node's gRPC handlers served", MetricType.SUMMARY, latency),
+                family("polocloud_rpc_errors_total", "Requests that ended with an error", MetricType.COUNTER,
+                    handlers.map { (type, snapshot) -> sample("polocloud_rpc_errors_total", snapshot.errors, "type" to type) }),
+            )
+        }
+
+        registry.gauge("polocloud_peer_channels_open", "Open gRPC channels to peer nodes") { NodeChannelPool.stats().open }
+        registry.counter("polocloud_peer_channel_handshakes_total", "TLS handshakes to peer nodes") { NodeChannelPool.stats().handshakes }
+
+        registry.counter("polocloud_peer_contacts_total", "RPCs received from peer nodes") { NodeRepository.lastSeen.stats().touches }
+        registry.counter("polocloud_peer_contacts_written_total", "Last-contact rows written for peer nodes") {
+            NodeRepository.lastSeen.stats().written
+        }
+
+        registry.gauge("polocloud_players", "Players connected through this cluster") { CloudPlayerRepository.sessions.stats().players }
+        registry.gauge("polocloud_player_write_queue_depth", "Player changes waiting to be persisted") {
+            CloudPlayerRepository.sessions.stats().queueDepth
+        }
+
+        registry.gauge("polocloud_service_keys_ready", "Pre-generated service key pairs ready to use") {
+            ServiceIdentityProvisioner.stats().keys.ready
+        }
+        registry.counter("polocloud_service_key_misses_total", "Service starts that had to generate their key pair") {
+            ServiceIdentityProvisioner.stats().keys.misses
+        }
+
+        registry.gauge("polocloud_event_subscribers", "Event streams held open by services") { ClusterEventService.subscriberStats().size }
+        registry.gauge("polocloud_event_subscriber_lag", "Events queued for subscribers but not yet read") {
+            ClusterEventService.subscriberStats().sumOf { it.lag }
+        }
+    }
+
+    private fun family(name: String, help: String, type: MetricType, samples: List<MetricSample>) =
+        MetricFamily(name, help, type, samples)
+
+    private fun sample(name: String, value: Long, label: Pair<String, String>) =
+        MetricSample(name, mapOf(label), value.toDouble())
+}
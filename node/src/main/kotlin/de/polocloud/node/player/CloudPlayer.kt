@@ -2,7 +2,7 @@ package de.polocloud.node.player
 
 import de.polocloud.database.EntryIdentifier
 import de.polocloud.database.RepositoryName
-import de.polocloud.node.group.PropertyCodec
+import de.polocloud.node.group.DecodedViews
 import java.util.UUID
 
 @RepositoryName("players")
@@ -31,8 +31,9 @@ class CloudPlayer(
 
     /**
      * The decoded property map. Computed (no backing field) so it is not turned into
-     * its own SQL column; the persisted representation is [propertiesJson].
+     * its own SQL column; the persisted representation is [propertiesJson]. Decoded once
+     * per [propertiesJson] value and shared (see [DecodedViews]), so it is read-only.
      */
-    val properties: MutableMap<String, String>
-        get() = PropertyCodec.decode(propertiesJson)
+    val properties: Map<String, String>
+        get() = DecodedViews.playerProperties.get(id, propertiesJson)
 }
@@ -2,6 +2,7 @@ package de.polocloud.node.player
 
 import de.polocloud.node.group.PropertyCodec
 import de.polocloud.proto.PlayerData
+import de.polocloud.proto.PlayerFilter
 import de.polocloud.shared.player.CloudPlayer as SharedCloudPlayer
 import de.polocloud.shared.property.Properties
 import java.util.UUID
@@ -34,6 +35,22 @@ object CloudPlayerMapper {
         currentServer = data.currentServer.ifBlank { null },
     )
 
+    fun toQuery(filter: PlayerFilter): PlayerQuery = PlayerQuery(
+        proxy = filter.proxy.ifBlank { null },
+        server = filter.server.ifBlank { null },
+        namePrefix = filter.namePrefix.ifBlank { null },
+    )
+
+    fun fromShared(player: SharedCloudPlayer): CloudPlayer = CloudPlayer(
+        id = UUID.fromString(player.id),
+        name = player.name,
+        skinValue = player.skinValue,
+        skinSignature = player.skinSignature,
+        propertiesJson = PropertyCodec.encode(player.properties.asMap()),
+        currentProxy = player.currentProxy,
+        currentServer = player.currentServer,
+    )
+
     fun toShared(player: CloudPlayer): SharedCloudPlayer = SharedCloudPlayer(
         id = player.id.toString(),
         name = player.name,
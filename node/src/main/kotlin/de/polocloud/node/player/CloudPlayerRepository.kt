@@ -2,22 +2,49 @@ package de.polocloud.node.player
 
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseKey
+import de.polocloud.node.metrics.DatabaseCalls
 import java.util.UUID
 
+/**
+ * The connected players. Reads and writes go through the in-memory [sessions] — the
+ * `players` table only backs them, written behind the request path (see
+ * [PlayerSessionStore]) and read on [start] and to reconcile the peers' players.
+ */
 object CloudPlayerRepository {
 
     private val playerDatabaseKey = DatabaseKey(CloudPlayer::class)
+    private val calls = DatabaseCalls("players")
 
-    fun save(player: CloudPlayer) = DatabaseAccess.executor().save(playerDatabaseKey, player)
+    val sessions = PlayerSessionStore(
+        loader = { calls.call("findAll") { DatabaseAccess.executor().findAll(playerDatabaseKey) } },
+        writer = object : PlayerSessionStore.Writer {
+            override fun save(player: CloudPlayer) {
+                calls.call("save") { DatabaseAccess.executor().save(playerDatabaseKey, player) }
+            }
 
-    fun delete(player: CloudPlayer) = DatabaseAccess.executor().delete(playerDatabaseKey, player)
+            override fun delete(player: CloudPlayer) {
+                calls.call("delete") { DatabaseAccess.executor().delete(playerDatabaseKey, player) }
+            }
+        },
+    )
 
-    fun findAll() = DatabaseAccess.executor().findAll(playerDatabaseKey)
+    /** Seeds [sessions] from the database and starts persisting changes. Once the database is connected. */
+    fun start() = sessions.start()
 
-    fun findById(id: UUID) = DatabaseAccess.executor().findById(playerDatabaseKey, id)
+    /** Writes out every pending change. Before the database is closed. */
+    fun close() = sessions.close()
 
-    // Filtered in-memory (not via a DB Eq filter) so name matching is reliably
-    // case-insensitive regardless of the backing database's collation settings —
-    // mirrors NodeArgument/ServiceArgument's own name-lookup style.
-    fun findByName(name: String) = findAll().firstOrNull { it.name.equals(name, ignoreCase = true) }
+    fun save(player: CloudPlayer) = sessions.save(player)
+
+    fun delete(player: CloudPlayer) = sessions.delete(player)
+
+    fun findAll() = sessions.all()
+
+    fun findPage(query: PlayerQuery, after: UUID?, limit: Int) = sessions.page(query, after, limit)
+
+    fun findById(id: UUID) = sessions.find(id)
+
+    // Case-insensitive regardless of the backing database's collation settings — mirrors
+    // NodeArgument/ServiceArgument's own name-lookup style.
+    fun findByName(name: String) = sessions.findByName(name)
 }
@@ -0,0 +1,22 @@
+package de.polocloud.node.player
+
+/**
+ * Server-side filter of a player listing. `null` criteria match every player.
+ *
+ * @param namePrefix matched case-insensitively.
+ */
+data class PlayerQuery(
+    val proxy: String? = null,
+    val server: String? = null,
+    val namePrefix: String? = null,
+) {
+
+    fun matches(player: CloudPlayer): Boolean =
+        (proxy == null || player.currentProxy == proxy) &&
+            (server == null || player.currentServer == server) &&
+            (namePrefix == null || player.name.startsWith(namePrefix, ignoreCase = true))
+
+    companion object {
+        val ALL = PlayerQuery()
+    }
+}
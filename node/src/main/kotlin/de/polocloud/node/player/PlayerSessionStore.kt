@@ -0,0 +1,315 @@
+package de.polocloud.node.player
+
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.group.DecodedViews
+import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.player.PlayerDisconnectEvent
+import de.polocloud.shared.event.player.PlayerJoinEvent
+import de.polocloud.shared.event.player.PlayerKickEvent
+import de.polocloud.shared.event.player.PlayerSwitchEvent
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The connected players, held in memory and written to the `players` table behind the
+ * request path.
+ *
+ * Lookups — by id, by name (case-insensitively, via a lower-cased name index), the full
+ * listing and its id-ordered [page]s — never touch the database. Changes are applied in memory at once and queued
+ * for persistence; a background flusher writes the queue out in batches every
+ * [flushIntervalMillis], or as soon as [batchSize] changes are waiting. Several changes to
+ * the same player before a flush coalesce into one write — a join storm that also
+ * switches everyone to a lobby costs one write per player, not two.
+ *
+ * Players registered through a peer are kept current from the relayed player events, in
+ * memory only: the node that handled the player's RPC is the one persisting it. The
+ * table seeds the map on [start], e.g. after this node restarted. Relayed events are
+ * best-effort, so every [reconcileIntervalMillis] the peers' players are also
+ * [reconcile]d against the table — only those no event changed since the previous round,
+ * as a fresher event may not have reached the table yet.
+ *
+ * @param loader  reads every persisted player, on [start] and every reconciliation.
+ * @param writer  persists one queued change.
+ * @param observe registers the player event feed — injectable for testing.
+ */
+class PlayerSessionStore(
+    private val loader: () -> List<CloudPlayer>,
+    private val writer: Writer,
+    private val flushIntervalMillis: Long = 250,
+    private val batchSize: Int = 500,
+    private val reconcileIntervalMillis: Long = 30_000,
+    private val observe: ((EventContext) -> Unit) -> AutoCloseable = ClusterEventService::observe,
+) {
+
+    /** Where queued changes end up — the database in production. */
+    interface Writer {
+        fun save(player: CloudPlayer)
+        fun delete(player: CloudPlayer)
+    }
+
+    private class Pending(val player: CloudPlayer, val delete: Boolean, val since: Long)
+
+    private val logger = LoggerFactory.getLogger(PlayerSessionStore::class.java)
+
+    // Sorted by id, so a page picks up right after the last id of the previous one.
+    private val players = ConcurrentSkipListMap<UUID, CloudPlayer>()
+    private val byName = ConcurrentHashMap<String, UUID>()
+
+    // Registered through this node ([save]), so persisted by it: the table is never newer.
+    private val owned = ConcurrentHashMap.newKeySet<UUID>()
+
+    // When a relayed event last changed each player, until [reconcile] has settled it.
+    private val relayedAt = ConcurrentHashMap<UUID, Long>()
+
+    // Insertion-ordered, so the oldest change is flushed first. Guarded by itself.
+    private val pending = LinkedHashMap<UUID, Pending>()
+    private val wake = Channel<Unit>(Channel.CONFLATED)
+
+    // One flush at a time, so two changes to the same player are never written out of order.
+    private val flushLock = Any()
+
+    private val flushed = AtomicLong()
+    private val coalesced = AtomicLong()
+    private val failures = AtomicLong()
+    private val lastFlushLag = AtomicLong()
+    private val maxFlushLag = AtomicLong()
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var observation: AutoCloseable? = null
+
+    fun start() {
+        runCatching { loader() }
+            .onSuccess { persisted -> persisted.forEach { if (players.putIfAbsent(it.id, it) == null) index(it) } }
+            .onFailure { logger.warn("Failed to load persisted players: ${it.message}") }
+        observation = observe { context ->
+            if (context.encoding == EventEncoding.JSON) onEvent(context.eventName, context.eventData)
+        }
+        scope.launch {
+            while (isActive) {
+                withTimeoutOrNull(flushIntervalMillis) { wake.receive() }
+                try {
+                    flush()
+                } catch (cancel: CancellationException) {
+                    throw cancel
+                } catch (e: Exception) {
+                    logger.error("Player flush failed", e)
+                }
+            }
+        }
+        scope.launch {
+            while (isActive) {
+                delay(reconcileIntervalMillis)
+                try {
+                    reconcile()
+                } catch (cancel: CancellationException) {
+                    throw cancel
+                } catch (e: Exception) {
+                    logger.warn("Failed to reconcile players with the database: ${e.message}")
+                }
+            }
+        }
+    }
+
+    /** Stops the flusher and writes out whatever is still queued — as long as writes keep succeeding. */
+    fun close() {
+        runCatching { observation?.close() }
+        scope.cancel()
+        while (true) {
+            val before = flushed.get()
+            if (flush() == 0 || flushed.get() == before) break
+        }
+    }
+
+    fun find(id: UUID): CloudPlayer? = players[id]
+
+    fun findByName(name: String): CloudPlayer? = byName[name.lowercase()]?.let(players::get)
+
+    fun all(): List<CloudPlayer> = players.values.toList()
+
+    /**
+     * Up to [limit] players matching [query], in id order, starting after the id [after] —
+     * which doesn't have to be online any more.
+     */
+    fun page(query: PlayerQuery, after: UUID?, limit: Int): List<CloudPlayer> {
+        val source = if (after == null) players.values else players.tailMap(after, false).values
+        return source.asSequence().filter(query::matches).take(limit).toList()
+    }
+
+    /** Adds or replaces [player] and queues it for persistence. */
+    fun save(player: CloudPlayer) {
+        owned += player.id
+        put(player)
+        enqueue(player, delete = false)
+    }
+
+    /** Removes [player] and queues its row's deletion. */
+    fun delete(player: CloudPlayer) {
+        owned -= player.id
+        remove(player.id)
+        enqueue(player, delete = true)
+    }
+
+    fun stats(): PlayerSessionStats {
+        val (depth, oldest) = synchronized(pending) { pending.size to pending.values.firstOrNull()?.since }
+        return PlayerSessionStats(
+            players = players.size,
+            queueDepth = depth,
+            oldestPendingMillis = oldest?.let { System.currentTimeMillis() - it } ?: 0,
+            flushed = flushed.get(),
+            coalesced = coalesced.get(),
+            failures = failures.get(),
+            lastFlushLagMillis = lastFlushLag.get(),
+            maxFlushLagMillis = maxFlushLag.get(),
+        )
+    }
+
+    /** Applies a player event relayed from a peer (or echoed from this node) — in memory only. */
+    internal fun onEvent(eventName: String, eventData: String) {
+        if (eventName !in PLAYER_EVENTS) return
+        val player = when (val event = runCatching { EventCodec.decode(eventName, eventData) }.getOrNull()) {
+            is PlayerJoinEvent -> CloudPlayerMapper.fromShared(event.player).also(::put).id
+            is PlayerSwitchEvent -> CloudPlayerMapper.fromShared(event.player).also(::put).id
+            is PlayerDisconnectEvent -> UUID.fromString(event.player.id).also { owned -= it; remove(it) }
+            is PlayerKickEvent -> UUID.fromString(event.player.id).also { owned -= it; remove(it) }
+            else -> return
+        }
+        relayedAt[player] = System.currentTimeMillis()
+    }
+
+    /**
+     * Corrects the players registered through a peer from the table: adds or refreshes
+     * the persisted ones, drops those without a row — events this node missed, e.g. while
+     * the relay from their node was down. Players no event changed within the last
+     * [reconcileIntervalMillis] only; this node's own are left alone.
+     *
+     * @return how many players were corrected.
+     */
+    internal fun reconcile(): Int {
+        val settled = System.currentTimeMillis() - reconcileIntervalMillis
+        val persisted = loader().associateBy { it.id }
+        relayedAt.entries.removeIf { it.value < settled }
+        fun correctable(id: UUID) = id !in owned && id !in relayedAt
+
+        var corrected = 0
+        players.keys.filter { it !in persisted && correctable(it) }.forEach {
+            remove(it)
+            corrected++
+        }
+        persisted.values.forEach { row ->
+            val current = players[row.id]
+            if (correctable(row.id) && (current == null || current.differsFrom(row))) {
+                put(row)
+                corrected++
+            }
+        }
+        if (corrected > 0) logger.debug("Corrected {} players the relayed events had missed", corrected)
+        return corrected
+    }
+
+    private fun CloudPlayer.differsFrom(row: CloudPlayer) =
+        name != row.name || currentProxy != row.currentProxy || currentServer != row.currentServer ||
+            propertiesJson != row.propertiesJson
+
+    /**
+     * Writes up to [batchSize] queued changes, oldest first.
+     *
+     * @return how many were written.
+     */
+    internal fun flush(): Int = synchronized(flushLock) {
+        val batch = synchronized(pending) {
+            val iterator = pending.values.iterator()
+            buildList {
+                while (size < batchSize && iterator.hasNext()) {
+                    add(iterator.next())
+                    iterator.remove()
+                }
+            }
+        }
+        if (batch.isEmpty()) return@synchronized 0
+
+        val now = System.currentTimeMillis()
+        val lag = now - batch.first().since
+        lastFlushLag.set(lag)
+        maxFlushLag.accumulateAndGet(lag) { a, b -> maxOf(a, b) }
+
+        batch.forEach { change ->
+            try {
+                if (change.delete) writer.delete(change.player) else writer.save(change.player)
+                flushed.incrementAndGet()
+            } catch (e: Exception) {
+                failures.incrementAndGet()
+                logger.warn("Failed to persist player ${change.player.name}, retrying: ${e.message}")
+                // Retried with the next flush — unless a newer change superseded it meanwhile.
+                synchronized(pending) { pending.putIfAbsent(change.player.id, change) }
+            }
+        }
+        batch.size
+    }
+
+    private fun enqueue(player: CloudPlayer, delete: Boolean) {
+        val depth = synchronized(pending) {
+            val previous = pending.remove(player.id)
+            if (previous != null) coalesced.incrementAndGet()
+            pending[player.id] = Pending(player, delete, previous?.since ?: System.currentTimeMillis())
+            pending.size
+        }
+        if (depth >= batchSize) wake.trySend(Unit)
+    }
+
+    private fun put(player: CloudPlayer) {
+        players.put(player.id, player)?.let { previous ->
+            if (!previous.name.equals(player.name, ignoreCase = true)) byName.remove(previous.name.lowercase(), previous.id)
+        }
+        index(player)
+    }
+
+    private fun remove(id: UUID) {
+        players.remove(id)?.let { byName.remove(it.name.lowercase(), id) }
+        DecodedViews.evictPlayer(id)
+    }
+
+    private fun index(player: CloudPlayer) {
+        byName[player.name.lowercase()] = player.id
+    }
+
+    private companion object {
+        val PLAYER_EVENTS = setOf(
+            EventCodec.nameOf(PlayerJoinEvent::class.java),
+            EventCodec.nameOf(PlayerSwitchEvent::class.java),
+            EventCodec.nameOf(PlayerDisconnectEvent::class.java),
+            EventCodec.nameOf(PlayerKickEvent::class.java),
+        )
+    }
+}
+
+/**
+ * @param queueDepth          changes waiting to be persisted.
+ * @param oldestPendingMillis how long the oldest of them has been waiting.
+ * @param coalesced           changes folded into one still waiting for the same player.
+ * @param lastFlushLagMillis  how long the oldest change of the last flush had waited.
+ */
+data class PlayerSessionStats(
+    val players: Int,
+    val queueDepth: Int,
+    val oldestPendingMillis: Long,
+    val flushed: Long,
+    val coalesced: Long,
+    val failures: Long,
+    val lastFlushLagMillis: Long,
+    val maxFlushLagMillis: Long,
+)
@@ -0,0 +1,102 @@
+package de.polocloud.node.security
+
+import de.polocloud.proto.RegisterServiceRequest
+import de.polocloud.proto.RegisterServiceResponse
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Collects the CSRs of services starting at about the same time on a non-head node and
+ * has the head sign them in one `RegisterServices` call per batch, instead of one call
+ * per service.
+ *
+ * A batch is sent once [maxBatch] CSRs are waiting, or [lingerMillis] after its first one
+ * arrived — a lone service start waits at most that long. A failed call fails every
+ * request of its batch; retrying is up to the caller, as it was for a single request.
+ *
+ * @param send signs one batch, one result per request in request order — the head's
+ *   `RegisterServices` RPC in production.
+ */
+class ServiceCsrBatcher(
+    private val send: suspend (List<RegisterServiceRequest>) -> List<RegisterServiceResponse>,
+    private val maxBatch: Int = 32,
+    private val lingerMillis: Long = 20,
+) {
+
+    private class Pending(val request: RegisterServiceRequest, val result: CompletableDeferred<RegisterServiceResponse>)
+
+    // A request lost to the linger timeout cancelling its receive fails like a failed batch.
+    private val pending = Channel<Pending>(Channel.UNLIMITED) {
+        it.result.completeExceptionally(IllegalStateException("Signing request for '${it.request.serviceId}' was dropped"))
+    }
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val batches = AtomicLong()
+    private val signed = AtomicLong()
+
+    init {
+        scope.launch {
+            while (isActive) {
+                val batch = mutableListOf(pending.receive())
+                withTimeoutOrNull(lingerMillis) {
+                    while (batch.size < maxBatch) batch += pending.receive()
+                }
+                dispatch(batch)
+            }
+        }
+    }
+
+    /**
+     * Signs [request] as part of the next batch, waiting at most [timeoutMillis].
+     *
+     * @throws IllegalStateException if the batch's call failed or timed out.
+     */
+    fun sign(request: RegisterServiceRequest, timeoutMillis: Long = 10_000): RegisterServiceResponse {
+        val entry = Pending(request, CompletableDeferred())
+        check(pending.trySend(entry).isSuccess) { "CSR batcher is closed" }
+        return runBlocking {
+            try {
+                withTimeout(timeoutMillis) { entry.result.await() }
+            } catch (e: CancellationException) {
+                throw IllegalStateException("Signing service '${request.serviceId}' timed out", e)
+            }
+        }
+    }
+
+    fun close() {
+        scope.cancel()
+        pending.cancel()
+    }
+
+    /** @param batches `RegisterServices` calls made; [signed] CSRs sent with them. */
+    data class Stats(val batches: Long, val signed: Long)
+
+    fun stats(): Stats = Stats(batches.get(), signed.get())
+
+    private suspend fun dispatch(batch: List<Pending>) {
+        val results = try {
+            send(batch.map { it.request }).also {
+                check(it.size == batch.size) { "Expected ${batch.size} signing results, got ${it.size}" }
+            }
+        } catch (cancel: CancellationException) {
+            throw cancel
+        } catch (e: Exception) {
+            batch.forEach { it.result.completeExceptionally(IllegalStateException("Batch signing failed: ${e.message}", e)) }
+            return
+        }
+        batches.incrementAndGet()
+        signed.addAndGet(batch.size.toLong())
+        batch.zip(results).forEach { (entry, result) -> entry.result.complete(result) }
+    }
+}
@@ -1,16 +1,18 @@
 package de.polocloud.node.security
 
-import de.polocloud.common.Address
 import de.polocloud.common.communication.certificate.certToPem
 import de.polocloud.common.communication.certificate.restrictDirToOwnerOnly
 import de.polocloud.common.communication.certificate.restrictToOwnerOnly
 import de.polocloud.common.communication.security.toPem
 import de.polocloud.node.cluster.node.NodeRepository
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.core.environment.NodeEnvironment
 import de.polocloud.proto.RegisterServiceRequest
+import de.polocloud.proto.RegisterServiceResponse
+import de.polocloud.proto.RegisterServicesRequest
 import de.polocloud.proto.ServiceRegistrationServiceGrpcKt
-import kotlinx.coroutines.runBlocking
+import io.grpc.Status
+import io.grpc.StatusException
 import org.bouncycastle.asn1.x500.X500Name
 import org.bouncycastle.openssl.jcajce.JcaPEMWriter
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder
@@ -19,7 +21,7 @@ import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder
 import java.io.File
 import java.io.FileWriter
 import java.security.KeyPair
-import java.security.KeyPairGenerator
+import java.util.concurrent.TimeUnit
 
 /**
  * Provisions the mTLS identity a locally launched service needs to talk back to
@@ -50,9 +52,41 @@ import java.security.KeyPairGenerator
  * The identity directory is then handed to the process via the
  * `POLOCLOUD_IDENTITY_DIR` environment variable so the API picks it up on its
  * first call.
+ *
+ * Key generation is kept off the start path: while the node runs ([start]), a
+ * [ServiceKeyPool] pre-generates key pairs of the configured [ServiceKeyAlgorithm] in
+ * the background. On a non-head node the CSRs of services starting together reach the
+ * head through a [ServiceCsrBatcher], one `RegisterServices` call per batch over the
+ * pooled channel to the head.
  */
 object ServiceIdentityProvisioner {
 
+    @Volatile
+    private var algorithm = ServiceKeyAlgorithm.RSA
+
+    // Until start(): no pre-generated keys, every key pair is generated on the spot.
+    @Volatile
+    private var keyPool = ServiceKeyPool(1, algorithm::generate)
+
+    private val batcher = ServiceCsrBatcher(::signBatchViaHead)
+
+    /** Starts pre-generating [keyAlgorithm] key pairs, up to [poolSize] ahead. */
+    fun start(keyAlgorithm: ServiceKeyAlgorithm, poolSize: Int = DEFAULT_POOL_SIZE) {
+        algorithm = keyAlgorithm
+        keyPool.close()
+        keyPool = ServiceKeyPool(poolSize, keyAlgorithm::generate).also { it.start() }
+    }
+
+    fun close() {
+        keyPool.close()
+        batcher.close()
+    }
+
+    /** Key pool and signing batch counters, for the terminal and metrics. */
+    data class Stats(val algorithm: ServiceKeyAlgorithm, val keys: ServiceKeyPool.Stats, val batches: ServiceCsrBatcher.Stats)
+
+    fun stats(): Stats = Stats(algorithm, keyPool.stats(), batcher.stats())
+
     /**
      * Generates and writes a freshly signed identity for the given service into
      * [identityDir]. Any previously provisioned files are overwritten so a
@@ -66,7 +100,7 @@ object ServiceIdentityProvisioner {
         identityDir.mkdirs()
         restrictDirToOwnerOnly(identityDir.toPath())
 
-        val keyPair = generateKeyPair()
+        val keyPair = keyPool.take()
         val csr = buildCsr(keyPair, serviceId)
         val (certificatePem, caCertificatePem) = signWithRetry(csr, serviceId, planName)
 
@@ -118,43 +152,51 @@ object ServiceIdentityProvisioner {
     // deciding whether *it* should sign locally.
     private fun isHead(): Boolean = NodeEnvironment.runtime.electionService.isHead()
 
-    /** Forwards [csr] to whichever node is currently head and returns (certificate, CA) PEMs. */
+    /**
+     * Has whichever node is currently head sign [csr], batched with other services starting
+     * meanwhile, and returns (certificate, CA) PEMs.
+     */
     private fun signViaHead(csr: PKCS10CertificationRequest, serviceId: String, planName: String): Pair<String, String> {
+        val response = batcher.sign(
+            RegisterServiceRequest.newBuilder()
+                .setServiceId(serviceId)
+                .setPlanName(planName)
+                .setCsrPem(csr.toPem())
+                .build()
+        )
+        if (!response.accepted) {
+            error("Head node refused to sign service '$serviceId': ${response.message}")
+        }
+        return response.certificate to response.caCertificate
+    }
+
+    private suspend fun signBatchViaHead(requests: List<RegisterServiceRequest>): List<RegisterServiceResponse> {
         val head = NodeRepository.findAll().firstOrNull { it.head }
-            ?: error("Cannot provision identity for service '$serviceId' — no cluster head is currently known")
-
-        val client = NodeGrpcClient()
-        client.connect(Address(head.hostname, head.port))
-        try {
-            val stub = ServiceRegistrationServiceGrpcKt.ServiceRegistrationServiceCoroutineStub(client.channel())
-            val response = runBlocking {
-                stub.registerService(
-                    RegisterServiceRequest.newBuilder()
-                        .setServiceId(serviceId)
-                        .setPlanName(planName)
-                        .setCsrPem(csr.toPem())
-                        .build()
-                )
-            }
-            if (!response.accepted) {
-                error("Head node '${head.name()}' refused to sign service '$serviceId': ${response.message}")
-            }
-            return response.certificate to response.caCertificate
-        } finally {
-            client.disconnect()
+            ?: error("Cannot provision service identities — no cluster head is currently known")
+
+        // Batches are sent one after another: a head that never answers must fail this one before
+        // its services give up waiting (ServiceCsrBatcher.sign), not hold up every batch behind it.
+        val stub = ServiceRegistrationServiceGrpcKt.ServiceRegistrationServiceCoroutineStub(NodeChannelPool.channel(head))
+            .withDeadlineAfter(SIGN_BATCH_DEADLINE_MILLIS, TimeUnit.MILLISECONDS)
+        return try {
+            stub.registerServices(RegisterServicesRequest.newBuilder().addAllServices(requests).build()).resultsList
+        } catch (e: StatusException) {
+            // A head running an older version only knows the one-by-one call.
+            if (e.status.code != Status.Code.UNIMPLEMENTED) throw e
+            requests.map { stub.registerService(it) }
         }
     }
 
     private fun buildCsr(keyPair: KeyPair, serviceId: String): PKCS10CertificationRequest {
-        val signer = JcaContentSignerBuilder("SHA256withRSA").build(keyPair.private)
+        val signer = JcaContentSignerBuilder(algorithmOf(keyPair).csrSignature).build(keyPair.private)
         return JcaPKCS10CertificationRequestBuilder(X500Name("CN=$serviceId"), keyPair.public)
             .build(signer)
     }
 
-    private fun generateKeyPair(): KeyPair =
-        KeyPairGenerator.getInstance("RSA")
-            .apply { initialize(2048) }
-            .generateKeyPair()
+    // From the key itself, not the configured algorithm: start() may switch it while a
+    // pooled key of the previous one is still being handed out.
+    private fun algorithmOf(keyPair: KeyPair): ServiceKeyAlgorithm =
+        if (keyPair.private.algorithm == "EC") ServiceKeyAlgorithm.EC_P256 else ServiceKeyAlgorithm.RSA
 
     private fun writePem(file: File, obj: Any) {
         JcaPEMWriter(FileWriter(file)).use { it.writeObject(obj) }
@@ -164,4 +206,11 @@ object ServiceIdentityProvisioner {
     // + up to 4s jitter = ~9s) plus margin for the sign RPC's own connect/timeout overhead.
     private const val SIGN_RETRY_ATTEMPTS = 6
     private const val SIGN_RETRY_DELAY_MILLIS = 2000L
+
+    // Below ServiceCsrBatcher.sign's 10s wait, which also covers the batching window. Shared
+    // by the one-by-one fallback, as the deadline is fixed when the stub is created.
+    private const val SIGN_BATCH_DEADLINE_MILLIS = 5_000L
+
+    // Enough for a typical scale-up burst; refilled in the background as it drains.
+    private const val DEFAULT_POOL_SIZE = 16
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package de.polocloud.node.security
+
+import kotlinx.serialization.Serializable
+import java.security.KeyPair
+import java.security.KeyPairGenerator
+import java.security.spec.ECGenParameterSpec
+
+/**
+ * The key type of the mTLS identity handed to every started service —
+ * `general.serviceKeyAlgorithm`. Only the service's own key pair: the cluster CA and the
+ * nodes keep their RSA keys either way.
+ */
+@Serializable
+enum class ServiceKeyAlgorithm(
+    /** Signs the service's CSR with its own private key. */
+    val csrSignature: String,
+) {
+    /** RSA-2048 — what every service got before this option existed. */
+    RSA("SHA256withRSA") {
+        override fun generate(): KeyPair =
+            KeyPairGenerator.getInstance("RSA").apply { initialize(2048) }.generateKeyPair()
+    },
+
+    /**
+     * EC on the P-256 curve. Comparable strength to RSA-3072, generated in well under a
+     * millisecond where RSA-2048 takes tens of milliseconds.
+     */
+    EC_P256("SHA256withECDSA") {
+        override fun generate(): KeyPair =
+            KeyPairGenerator.getInstance("EC").apply { initialize(ECGenParameterSpec("secp256r1")) }.generateKeyPair()
+    };
+
+    abstract fun generate(): KeyPair
+}
@@ -0,0 +1,77 @@
+package de.polocloud.node.security
+
+import org.slf4j.LoggerFactory
+import java.security.KeyPair
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Key pairs for service identities, generated ahead of time so a starting service doesn't
+ * wait for one.
+ *
+ * After [start], a low-priority background thread keeps up to [capacity] key pairs ready
+ * and refills the pool as [take] drains it. [take] hands out a ready one, or generates one
+ * on the spot when the pool has run dry — a large scale-up outrunning the refill — or
+ * hasn't been started. A key pair is handed out once, never reused.
+ *
+ * @param generate creates one key pair — injectable for testing.
+ */
+class ServiceKeyPool(
+    private val capacity: Int,
+    private val generate: () -> KeyPair,
+) {
+
+    private val logger = LoggerFactory.getLogger(ServiceKeyPool::class.java)
+    private val ready = ArrayBlockingQueue<KeyPair>(capacity)
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    @Volatile
+    private var thread: Thread? = null
+
+    fun start() {
+        thread = Thread({
+            while (!Thread.currentThread().isInterrupted) {
+                try {
+                    val keyPair = try {
+                        generate()
+                    } catch (e: Exception) {
+                        logger.warn("Failed to pre-generate a service key pair: {}", e.message)
+                        Thread.sleep(1_000)
+                        continue
+                    }
+                    // Blocks while the pool is full.
+                    ready.put(keyPair)
+                } catch (_: InterruptedException) {
+                    Thread.currentThread().interrupt()
+                }
+            }
+        }, "service-key-pool").apply {
+            isDaemon = true
+            priority = Thread.MIN_PRIORITY
+            start()
+        }
+    }
+
+    fun close() {
+        thread?.interrupt()
+        thread = null
+        ready.clear()
+    }
+
+    /** A ready key pair if one is pooled, else a freshly generated one. */
+    fun take(): KeyPair {
+        ready.poll()?.let {
+            hits.incrementAndGet()
+            return it
+        }
+        misses.incrementAndGet()
+        return generate()
+    }
+
+    /** @param hits handed out ready; [misses] had to be generated on the start path. */
+    data class Stats(val ready: Int, val capacity: Int, val hits: Long, val misses: Long)
+
+    fun stats(): Stats = Stats(ready.size, capacity, hits.get(), misses.get())
+}
@@ -71,20 +71,25 @@ class LocalService(private val service: Service) : Service(
     /**
      * Players currently connected / configured player slots, as last reported by
      * [de.polocloud.node.services.ping.ServicePingFactory] over the Minecraft Server List
-     * Ping. `0` until the first successful ping. These are only ever written by the ping
-     * loop — nothing else in the node should assign them, keeping the value a read-only
-     * reflection of what the service itself reports.
+     * Ping — or, for [onlinePlayers] with `general.playerCountSource: BRIDGE`, as counted
+     * from the bridge's player moves in between. `0` until the first successful ping. These
+     * are only ever written by the ping factory, under this service's monitor — nothing
+     * else in the node should assign them.
      */
     var onlinePlayers: Int = 0
     var maxPlayers: Int = 0
 
+    /** Millis timestamp of the last player move applied to [onlinePlayers]; see [de.polocloud.node.services.ping.PlayerCountSource.BRIDGE]. */
+    @Volatile
+    var lastPlayerPushAt: Long = 0
+
     /**
      * MOTD text from the last successful [de.polocloud.node.services.ping.ServicePingFactory]
      * ping. Empty until the first successful ping. Only ever written by the ping loop.
      */
     var motd: String = ""
 
-    /** Millis timestamp of the last player-count ping; used to throttle [de.polocloud.node.services.ping.ServicePingFactory] polling of already-running services. */
+    /** Millis timestamp of the last successful player-count ping (or of going online); the first re-ping of a running service is scheduled from it. */
     var lastPlayerPollAt: Long = 0
 
     /**
@@ -219,7 +224,7 @@ class LocalService(private val service: Service) : Service(
         // Reading the row back is the only way to notice a delete that quietly did nothing
         // (e.g. a stale schema after a column was added) instead of it only ever surfacing
         // later as an unexplained stale row.
-        if (runCatching { ServiceRepository.findById(service.id) != null }.getOrDefault(false)) {
+        if (runCatching { ServiceRepository.findStoredById(service.id) != null }.getOrDefault(false)) {
             logger.warn("Service {} (id={}) still exists in the database after delete — the row may now be stale", service.name(), service.id)
         }
 
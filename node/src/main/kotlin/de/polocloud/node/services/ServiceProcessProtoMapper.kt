@@ -1,6 +1,7 @@
 package de.polocloud.node.services
 
 import de.polocloud.proto.ProtoServiceProcessData
+import de.polocloud.shared.service.Service as SharedService
 
 /**
  * Maps a running [LocalService] to the CLI-facing [ProtoServiceProcessData] wire type
@@ -25,4 +26,25 @@ object ServiceProcessProtoMapper {
             .setMaxPlayers(service.maxPlayers)
             .setMotd(service.motd)
             .build()
+
+    /**
+     * Maps a peer's service as carried on a relayed lifecycle event to the same wire type,
+     * so [de.polocloud.node.services.cluster.ClusterServiceReplica] can hold event-fed and
+     * snapshot-fed entries side by side. [nodeId] is the peer the event came from — the
+     * shared model itself doesn't carry it.
+     */
+    fun fromShared(service: SharedService, nodeId: String): ProtoServiceProcessData =
+        ProtoServiceProcessData.newBuilder()
+            .setUuid(service.id)
+            .setIndex(service.index)
+            .setPlan(service.group)
+            .setNodeId(nodeId)
+            .setBoundPort(service.port)
+            .setPid(service.pid.toInt())
+            .setState(service.state.name)
+            .putAllProperties(service.properties.asMap())
+            .setOnlinePlayers(service.onlinePlayers)
+            .setMaxPlayers(service.maxPlayers)
+            .setMotd(service.motd)
+            .build()
 }
@@ -1,6 +1,7 @@
 package de.polocloud.node.services
 
 import de.polocloud.proto.ServiceData
+import de.polocloud.shared.service.Service as SharedService
 
 /**
  * Maps a running [LocalService] to its protobuf [ServiceData] representation
@@ -23,4 +24,25 @@ object ServiceProtoMapper {
         .setCpuUsage(service.cpuUsage)
         .setUsedMemory(service.usedMemory)
         .build()
-}
\ No newline at end of file
+
+    /**
+     * Maps a service as carried on a lifecycle event to the same wire type, so
+     * [de.polocloud.node.services.watch.ServiceWatchLog] can hold event-fed and
+     * listing-fed entries side by side.
+     */
+    fun fromShared(service: SharedService): ServiceData = ServiceData.newBuilder()
+        .setId(service.id)
+        .setIndex(service.index)
+        .setGroup(service.group)
+        .setState(service.state.name)
+        .setPort(service.port)
+        .setPid(service.pid)
+        .setHost(service.host)
+        .putAllProperties(service.properties.asMap())
+        .setOnlinePlayers(service.onlinePlayers)
+        .setMaxPlayers(service.maxPlayers)
+        .setMotd(service.motd)
+        .setCpuUsage(service.cpuUsage)
+        .setUsedMemory(service.usedMemory)
+        .build()
+}
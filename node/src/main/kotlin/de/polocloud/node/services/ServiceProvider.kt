@@ -1,13 +1,23 @@
 package de.polocloud.node.services
 
+import de.polocloud.node.communication.handler.services.FindServicesServerHandler
 import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.group.Group
 import de.polocloud.node.group.GroupRepository
+import de.polocloud.node.group.template.TemplateMaterializer
+import de.polocloud.node.services.cluster.ClusterServiceReplica
 import de.polocloud.node.services.factory.FactoryService
 import de.polocloud.node.services.factory.PlatformService
+import de.polocloud.node.services.factory.PortAllocator
+import de.polocloud.node.services.ping.PlayerCountSource
 import de.polocloud.node.services.ping.ServicePingFactory
 import de.polocloud.node.services.queue.CrashLoopGuard
 import de.polocloud.node.services.queue.ServiceQueue
+import de.polocloud.node.services.standby.StandbyPool
+import de.polocloud.node.services.watch.ServiceWatchLog
+import de.polocloud.shared.event.server.ServerStartEvent
 import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
 import de.polocloud.shared.service.ServiceState
 import org.slf4j.LoggerFactory
 import java.util.UUID
@@ -25,6 +35,10 @@ class ServiceProvider(
      * default templates) instead of each loading its own copy.
      */
     val platformService: PlatformService = PlatformService(),
+    /** Lays templates and platform jars into each service's work directory on start. */
+    val templateMaterializer: TemplateMaterializer = TemplateMaterializer(),
+    /** Where running services' player counts come from. */
+    playerCountSource: PlayerCountSource = PlayerCountSource.PING,
 ) {
 
     private val logger = LoggerFactory.getLogger(ServiceProvider::class.java)
@@ -37,14 +51,42 @@ class ServiceProvider(
     /** Backs off placing new replicas of a group that keeps crashing right after start. */
     val crashLoopGuard = CrashLoopGuard()
 
+    /**
+     * Every peer's services as last reported by their relayed lifecycle events — fed by
+     * [de.polocloud.node.communication.impl.node.NodeServiceImpl.relayEvents], read by the
+     * scaling [queue] instead of querying each peer on every tick.
+     */
+    val clusterReplica = ClusterServiceReplica(nodeId)
+
+    /**
+     * Ports of this node's services, reserved by the factory on start and released by
+     * [shutdownLocal]. Seeded from whatever this node's rows and [localServices] already
+     * claim the first time a port is needed — after [reconcileStaleServices] has run.
+     */
+    val portAllocator = PortAllocator(seed = {
+        (ServiceRepository.findAllForNode(nodeId) + localServices).associate { it.id to it.port }
+    })
+
+    /**
+     * Booted but not yet announced services, promoted by the scaling [queue] on demand.
+     * Never part of [localServices] until then — see [StandbyPool].
+     */
+    val standbyPool = StandbyPool()
+
+    /**
+     * The cluster-wide service list as a versioned change log, streamed to API clients by
+     * `WatchServices`; reconciled against the same listing `FindServices` answers with.
+     */
+    val serviceWatch = ServiceWatchLog(listing = { FindServicesServerHandler(this).list(null, null) })
+
     private val factory = FactoryService(platformService, this, nodePort, nodeHost)
-    private val queue = ServiceQueue(factory, this)
+    private val queue = ServiceQueue(factory, this, replica = clusterReplica)
 
     /** The node-wide forwarding secret shared by every service this node starts. */
     val forwardingHandler get() = factory.forwardingHandler
 
-    // Pings starting services and flips them to RUNNING once they are reachable.
-    private val pingFactory = ServicePingFactory(this)
+    /** Pings starting services (flipping them to RUNNING once reachable) and running ones for their player count. */
+    val pingFactory = ServicePingFactory(this, playerCountSource)
 
     fun run() {
         platformService.load()
@@ -80,13 +122,15 @@ class ServiceProvider(
     fun shutdown() {
         runCatching { pingFactory.close() }
         runCatching { queue.close() }
+        runCatching { serviceWatch.close() }
 
         // Isolate each service: one that hangs or throws must not stop the rest
         // from being terminated.
-        this.localServices.forEach { service ->
+        (this.localServices + standbyPool.services()).forEach { service ->
             runCatching { service.shutdown() }
         }
         this.localServices.clear()
+        standbyPool.services().forEach(standbyPool::remove)
     }
 
     fun find(name: String) : Service? {
@@ -127,18 +171,41 @@ class ServiceProvider(
         // only a clean `false` (the CAS guard in LocalService.shutdown) means skip.
         val alreadyHandledElsewhere = !runCatching { service.shutdown() }.getOrDefault(true)
         if (alreadyHandledElsewhere) return false
+        // A standby was never announced, so there's no stop to announce either.
+        val wasStandby = standbyPool.remove(service)
         localServices.remove(service)
-        ClusterEventService.call(ServerStoppedEvent(ServiceEventMapper.toShared(service)))
+        portAllocator.release(service.id)
+        if (!wasStandby) ClusterEventService.call(ServerStoppedEvent(ServiceEventMapper.toShared(service)))
         return true
     }
 
     /**
-     * Stops every running service of [groupName] and drops any of its still-queued
-     * services. Used when a group is deleted so it leaves no orphaned processes behind.
+     * Turns a ready standby of [group] into a regular, running service: registered in
+     * [localServices] and the database, and announced with the same [ServerStartEvent] /
+     * [ServiceOnlineEvent] pair a cold start ends with — the bridge registers it right
+     * away. Skips standbys whose index is in [takenIndexes] (claimed by a peer meanwhile).
+     *
+     * @return the promoted service, or `null` if no ready standby was available.
+     */
+    fun promoteStandby(group: Group, takenIndexes: Set<Int>): LocalService? =
+        standbyPool.promote(group, takenIndexes) { service ->
+            service.state = ServiceState.RUNNING
+            service.lastPlayerPollAt = System.currentTimeMillis()
+            localServices.add(service)
+            persist(service)
+            val shared = ServiceEventMapper.toShared(service)
+            ClusterEventService.call(ServerStartEvent(shared))
+            ClusterEventService.call(ServiceOnlineEvent(shared))
+            logger.info("Promoted standby {} to RUNNING", service.name())
+        }
+
+    /**
+     * Stops every running and standby service of [groupName] and drops any of its
+     * still-queued services. Used when a group is deleted so it leaves no orphaned processes behind.
      */
     fun shutdownGroup(groupName: String) {
         queue.removeGroup(groupName)
-        localServices
+        (localServices + standbyPool.services())
             .filter { it.groupName.equals(groupName, ignoreCase = true) }
             .forEach { shutdownLocal(it) }
     }
@@ -3,24 +3,46 @@ package de.polocloud.node.services
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseKey
 import de.polocloud.database.filtering.Eq
+import de.polocloud.node.cache.RepositoryCache
+import de.polocloud.node.metrics.DatabaseCalls
 import java.util.UUID
+import kotlin.time.Duration.Companion.seconds
 
+/**
+ * The `services` table, read through a [RepositoryCache] — name lookups and listings
+ * would otherwise read the whole table each time. Short-lived, since services change
+ * state all the time.
+ */
 object ServiceRepository {
 
     private val serviceDatabaseKey = DatabaseKey(Service::class)
+    private val calls = DatabaseCalls("services")
 
-    fun save(service: Service) = DatabaseAccess.executor().save(serviceDatabaseKey, service)
+    private val cache = RepositoryCache<UUID, Service>("services", ttl = 5.seconds, parseKey = UUID::fromString)
 
-    fun delete(service: Service) = DatabaseAccess.executor().delete(serviceDatabaseKey, service)
+    fun save(service: Service) {
+        calls.call("save") { DatabaseAccess.executor().save(serviceDatabaseKey, service) }
+        cache.saved(service.id, service)
+    }
 
-    fun findAll() = DatabaseAccess.executor().findAll(serviceDatabaseKey)
+    fun delete(service: Service) {
+        calls.call("delete") { DatabaseAccess.executor().delete(serviceDatabaseKey, service) }
+        cache.deleted(service.id)
+    }
 
-    fun findAllForNode(nodeId: String) = DatabaseAccess.executor().find(serviceDatabaseKey, Eq("nodeId", nodeId))
+    fun findAll() = cache.query("all") { calls.call("findAll") { DatabaseAccess.executor().findAll(serviceDatabaseKey) } }
 
-    fun findByGroup(groupName: String) = DatabaseAccess.executor().find(serviceDatabaseKey, Eq("groupName", groupName))
-    
-    fun findById(id: UUID) = DatabaseAccess.executor().findById(serviceDatabaseKey, id)
+    fun findAllForNode(nodeId: String) =
+        cache.query("node:$nodeId") { calls.call("find") { DatabaseAccess.executor().find(serviceDatabaseKey, Eq("nodeId", nodeId)) } }
 
-    fun count() = DatabaseAccess.executor().count(serviceDatabaseKey)
+    fun findByGroup(groupName: String) =
+        cache.query("group:$groupName") { calls.call("find") { DatabaseAccess.executor().find(serviceDatabaseKey, Eq("groupName", groupName)) } }
 
-}
\ No newline at end of file
+    fun findById(id: UUID) = cache.find(id) { calls.call("findById") { DatabaseAccess.executor().findById(serviceDatabaseKey, id) } }
+
+    /** [findById], bypassing the cache — for checking what a write actually left in the table. */
+    fun findStoredById(id: UUID) = calls.call("findById") { DatabaseAccess.executor().findById(serviceDatabaseKey, id) }
+
+    fun count() = findAll().size.toLong()
+
+}
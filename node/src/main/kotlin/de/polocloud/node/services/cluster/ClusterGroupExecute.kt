@@ -1,9 +1,8 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.services.ServiceProvider
 import de.polocloud.proto.ExecuteGroupServicesCommandRequest
 import de.polocloud.proto.NodeState
@@ -46,17 +45,11 @@ object ClusterGroupExecute {
     }
 
     private suspend fun executeOnPeer(node: NodeData, groupName: String, command: String): Int {
-        val client = NodeGrpcClient()
-        try {
-            client.connect(Address(node.hostname, node.port))
-            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(client.channel())
-            val request = ExecuteGroupServicesCommandRequest.newBuilder()
-                .setGroupName(groupName)
-                .setCommand(command)
-                .build()
-            return stub.executeGroupServicesCommand(request).executedCount
-        } finally {
-            client.disconnect()
-        }
+        val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(NodeChannelPool.channel(node))
+        val request = ExecuteGroupServicesCommandRequest.newBuilder()
+            .setGroupName(groupName)
+            .setCommand(command)
+            .build()
+        return stub.executeGroupServicesCommand(request).executedCount
     }
 }
@@ -1,9 +1,8 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.services.ServiceProvider
 import de.polocloud.proto.NodeState
 import de.polocloud.proto.RestartGroupServicesRequest
@@ -48,14 +47,8 @@ object ClusterGroupRestart {
     }
 
     private suspend fun restartOnPeer(node: NodeData, groupName: String): Int {
-        val client = NodeGrpcClient()
-        try {
-            client.connect(Address(node.hostname, node.port))
-            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(client.channel())
-            val request = RestartGroupServicesRequest.newBuilder().setGroupName(groupName).build()
-            return stub.restartGroupServices(request).restartedCount
-        } finally {
-            client.disconnect()
-        }
+        val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(NodeChannelPool.channel(node))
+        val request = RestartGroupServicesRequest.newBuilder().setGroupName(groupName).build()
+        return stub.restartGroupServices(request).restartedCount
     }
 }
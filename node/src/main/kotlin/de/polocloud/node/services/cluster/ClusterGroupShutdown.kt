@@ -1,9 +1,8 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.services.ServiceProvider
 import de.polocloud.proto.NodeState
 import de.polocloud.proto.ServiceManagerGrpcKt
@@ -48,13 +47,7 @@ object ClusterGroupShutdown {
     }
 
     private suspend fun stopOnPeer(node: NodeData, groupName: String) {
-        val client = NodeGrpcClient()
-        try {
-            client.connect(Address(node.hostname, node.port))
-            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(client.channel())
-            stub.stopGroupServices(StopGroupServicesRequest.newBuilder().setGroupName(groupName).build())
-        } finally {
-            client.disconnect()
-        }
+        val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(NodeChannelPool.channel(node))
+        stub.stopGroupServices(StopGroupServicesRequest.newBuilder().setGroupName(groupName).build())
     }
 }
\ No newline at end of file
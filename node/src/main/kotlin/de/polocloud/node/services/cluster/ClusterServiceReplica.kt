@@ -0,0 +1,192 @@
+package de.polocloud.node.services.cluster
+
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.node.services.ServiceProcessProtoMapper
+import de.polocloud.proto.ProtoServiceProcessData
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.event.server.ServerStartEvent
+import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
+import de.polocloud.shared.service.Service
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.runBlocking
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * Node-local, incrementally maintained copy of every peer's *local* services — what
+ * [PeerServiceQuery.localServicesOf] would return for that peer, without asking it.
+ *
+ * Used by [de.polocloud.node.services.queue.ServiceQueue], which needs the cluster-wide
+ * running count/indexes/occupancy of every group on every tick: querying each peer live
+ * meant one RPC per group per peer every 2 seconds. Instead, this view is kept current
+ * from the lifecycle events peers already relay to us anyway
+ * ([de.polocloud.node.event.ClusterEventRelay] → `NodeService.RelayEvents` →
+ * [onPeerEvent]), so reading it is a plain in-memory lookup.
+ *
+ * Events alone are best-effort (a relay can fail, a start can throw after
+ * [ServerStartEvent] without ever firing [ServerStoppedEvent]), so [ensureSynced] also
+ * replaces a peer's whole view with a fresh [PeerServiceQuery] snapshot once it is older
+ * than [resyncInterval] — the anti-entropy pass that bounds how long a missed event can
+ * stay wrong. A peer that has never been synced is fetched on first use, once per node
+ * rather than once per group.
+ *
+ * An event is attributed to the node id its sender's certificate names. The founding
+ * node's bootstrap certificate names no node (`CN=Polocloud-Node`), so its events can't
+ * be; instead, each one marks every peer no event was attributed to yet for a resync on
+ * the next [ensureSynced] — that peer is then snapshotted every tick while it has
+ * services changing, like before this view existed.
+ *
+ * @param localNodeId id of this node; its own services live in
+ *                    [de.polocloud.node.services.ServiceProvider.localServices], never here.
+ * @param peerQuery fetches a peer's full local service list for resyncs — injectable for testing.
+ * @param clock millis time source — injectable for testing.
+ */
+class ClusterServiceReplica(
+    private val localNodeId: String,
+    private val peerQuery: PeerServiceQuery = NodePeerServiceQuery(),
+    private val resyncInterval: Duration = 30.seconds,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+
+    private val logger = LoggerFactory.getLogger(ClusterServiceReplica::class.java)
+
+    private class PeerView {
+        /** Keyed by service id. Guarded by the view's own monitor. */
+        val services = HashMap<String, ProtoServiceProcessData>()
+
+        /** Millis of the last successful full snapshot, `0` if there never was one (or it must be redone). */
+        var syncedAt = 0L
+
+        /** Whether an event was ever attributed to this peer — i.e. it isn't the one that can't identify itself. */
+        var attributed = false
+
+        /**
+         * Non-null while a resync is in flight: every event applied meanwhile is also
+         * recorded here and replayed on top of the snapshot, so an event that raced the
+         * snapshot isn't lost when the snapshot replaces [services].
+         */
+        var pending: MutableList<(MutableMap<String, ProtoServiceProcessData>) -> Unit>? = null
+    }
+
+    private val views = ConcurrentHashMap<String, PeerView>()
+
+    /**
+     * Applies an event relayed in from [originNodeId], the sender's certificate subject.
+     * Anything other than the four service lifecycle/occupancy events is ignored without
+     * being decoded, as are events without a sender (e.g. a CLI caller) or claiming to
+     * come from this node. A subject that isn't a node id only schedules a resync, see
+     * the class doc.
+     */
+    fun onPeerEvent(originNodeId: String?, eventName: String, eventData: String) {
+        if (originNodeId.isNullOrBlank() || originNodeId == localNodeId) return
+        if (eventName !in TRACKED_EVENTS) return
+        if (runCatching { UUID.fromString(originNodeId) }.isFailure) {
+            resyncUnattributed()
+            return
+        }
+
+        val event = runCatching { EventCodec.decode(eventName, eventData) }
+            .onFailure { logger.debug("Failed to decode relayed event '{}' from node {}: {}", eventName, originNodeId, it.message) }
+            .getOrNull() ?: return
+
+        val op: (MutableMap<String, ProtoServiceProcessData>) -> Unit = when (event) {
+            is ServerStartEvent -> upsert(event.service, originNodeId)
+            is ServiceOnlineEvent -> upsert(event.service, originNodeId)
+            is PlayerCountChangedEvent -> upsert(event.service, originNodeId)
+            is ServerStoppedEvent -> { services -> services.remove(event.service.id) }
+            else -> return
+        }
+
+        val view = views.computeIfAbsent(originNodeId) { PeerView() }
+        synchronized(view) {
+            op(view.services)
+            view.pending?.add(op)
+            view.attributed = true
+        }
+    }
+
+    private fun resyncUnattributed() {
+        views.values.forEach { view -> synchronized(view) { if (!view.attributed) view.syncedAt = 0L } }
+    }
+
+    private fun upsert(
+        service: Service,
+        nodeId: String,
+    ): (MutableMap<String, ProtoServiceProcessData>) -> Unit {
+        val proto = ServiceProcessProtoMapper.fromShared(service, nodeId)
+        return { services -> services[service.id] = proto }
+    }
+
+    /**
+     * Makes sure every node in [peers] (other than this one) has a view no older than
+     * [resyncInterval], fetching the stale/missing ones in parallel, and drops the views of
+     * nodes no longer in [peers] — so a node that left the cluster stops being counted.
+     *
+     * A failed fetch keeps whatever the view already had (events keep it roughly current
+     * in the meantime) and is simply retried on the next call.
+     */
+    fun ensureSynced(peers: List<NodeData>) {
+        val others = peers.filter { it.id.toString() != localNodeId }
+        val ids = others.mapTo(HashSet()) { it.id.toString() }
+        views.keys.retainAll(ids)
+
+        val now = clock()
+        val stale = others.filter { node ->
+            val view = views[node.id.toString()]
+            view == null || synchronized(view) { view.syncedAt == 0L || now - view.syncedAt >= resyncInterval.inWholeMilliseconds }
+        }
+        if (stale.isEmpty()) return
+
+        runBlocking {
+            coroutineScope {
+                stale.map { node -> async { resync(node) } }.awaitAll()
+            }
+        }
+    }
+
+    private suspend fun resync(node: NodeData) {
+        val view = views.computeIfAbsent(node.id.toString()) { PeerView() }
+        synchronized(view) { view.pending = mutableListOf() }
+
+        val snapshot = runCatching { peerQuery.localServicesOf(node, "") }
+            .onFailure { logger.warn("Failed to resync services from node {}: {}", node.name(), it.message) }
+            .getOrNull()
+
+        synchronized(view) {
+            val replay = view.pending
+            view.pending = null
+            if (snapshot == null) return
+
+            view.services.clear()
+            snapshot.forEach { view.services[it.uuid] = it }
+            replay?.forEach { it(view.services) }
+            view.syncedAt = clock()
+        }
+    }
+
+    /** The services last known to run locally on [node]; empty if nothing is known about it yet. */
+    fun servicesOf(node: NodeData): List<ProtoServiceProcessData> {
+        val view = views[node.id.toString()] ?: return emptyList()
+        return synchronized(view) { view.services.values.toList() }
+    }
+
+    /** Like [servicesOf], but only [groupName]'s services. */
+    fun servicesOf(node: NodeData, groupName: String): List<ProtoServiceProcessData> =
+        servicesOf(node).filter { it.plan.equals(groupName, ignoreCase = true) }
+
+    private companion object {
+        val TRACKED_EVENTS = setOf(
+            EventCodec.nameOf(ServerStartEvent::class.java),
+            EventCodec.nameOf(ServiceOnlineEvent::class.java),
+            EventCodec.nameOf(PlayerCountChangedEvent::class.java),
+            EventCodec.nameOf(ServerStoppedEvent::class.java),
+        )
+    }
+}
@@ -1,10 +1,10 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.services.Service
+import io.grpc.ManagedChannel
 import org.slf4j.Logger
 import java.util.UUID
 
@@ -23,12 +23,12 @@ object ClusterServiceRouting {
     }
 
     /**
-     * Forwards a request to [node] over a fresh mTLS [NodeGrpcClient] connection: connects,
-     * runs [call] (which builds the peer's gRPC stub and invokes the actual RPC on it) and
-     * disconnects again once [call] returns or throws — regardless of which. A connection
-     * or RPC failure is logged through [logger] and turned into a handler-specific failure
-     * response via [onFailure] instead of propagating, since a forwarding handler always
-     * owes its own caller *a* response rather than a thrown exception.
+     * Forwards a request to [node] over its pooled mTLS channel ([NodeChannelPool]): runs
+     * [call], which builds the peer's gRPC stub on that channel and invokes the actual RPC
+     * on it; the channel stays open for later calls. A connection or RPC failure is logged
+     * through [logger] and turned into a handler-specific failure response via [onFailure]
+     * instead of propagating, since a forwarding handler always owes its own caller *a*
+     * response rather than a thrown exception.
      *
      * Shared by the otherwise near-identical forwarding tail of
      * [de.polocloud.node.communication.handler.services.StopServiceServerHandler],
@@ -42,17 +42,13 @@ object ClusterServiceRouting {
         requestName: String,
         serviceName: String,
         onFailure: (message: String) -> Response,
-        call: suspend (NodeGrpcClient) -> Response,
+        call: suspend (ManagedChannel) -> Response,
     ): Response {
-        val client = NodeGrpcClient()
         return try {
-            client.connect(Address(node.hostname, node.port))
-            call(client)
+            call(NodeChannelPool.channel(node))
         } catch (ex: Exception) {
             logger.warn("Failed to forward {} for '{}' to node {}: {}", requestName, serviceName, node.name(), ex.message)
             onFailure("Could not reach the node hosting '$serviceName': ${ex.message}")
-        } finally {
-            client.disconnect()
         }
     }
 }
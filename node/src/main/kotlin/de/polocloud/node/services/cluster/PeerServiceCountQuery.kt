@@ -1,8 +1,7 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.proto.ServiceApiServiceGrpcKt
 import de.polocloud.proto.ServiceCountRequest
 import kotlinx.coroutines.withTimeout
@@ -21,7 +20,7 @@ fun interface PeerServiceCountQuery {
     suspend fun countLocalServicesOf(node: NodeData, groupFilter: String?, stateFilter: String?): Int
 }
 
-/** Real [PeerServiceCountQuery]: opens a short-lived mTLS channel to the peer's node endpoint. */
+/** Real [PeerServiceCountQuery]: calls the peer's node endpoint over its pooled mTLS channel ([NodeChannelPool]). */
 class NodePeerServiceCountQuery(
     private val timeoutMillis: Long = 3_000,
 ) : PeerServiceCountQuery {
@@ -31,18 +30,12 @@ class NodePeerServiceCountQuery(
         groupFilter: String?,
         stateFilter: String?,
     ): Int {
-        val client = NodeGrpcClient()
-        return try {
-            client.connect(Address(node.hostname, node.port))
-            val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(client.channel())
-            val request = ServiceCountRequest.newBuilder().apply {
-                localOnly = true
-                groupFilter?.let { setGroupFilter(it) }
-                stateFilter?.let { setStateFilter(it) }
-            }.build()
-            withTimeout(timeoutMillis) { stub.countServices(request).count }
-        } finally {
-            client.disconnect()
-        }
+        val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(NodeChannelPool.channel(node))
+        val request = ServiceCountRequest.newBuilder().apply {
+            localOnly = true
+            groupFilter?.let { setGroupFilter(it) }
+            stateFilter?.let { setStateFilter(it) }
+        }.build()
+        return withTimeout(timeoutMillis) { stub.countServices(request).count }
     }
 }
@@ -1,8 +1,7 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.proto.ServiceApiServiceGrpcKt
 import de.polocloud.proto.ServiceData
 import de.polocloud.proto.ServiceListRequest
@@ -23,8 +22,8 @@ fun interface PeerServiceDataQuery {
 }
 
 /**
- * Real [PeerServiceDataQuery]: opens a short-lived mTLS channel to the peer's node
- * endpoint ([NodeData.hostname]:[NodeData.port], which also hosts `ServiceApiService`)
+ * Real [PeerServiceDataQuery]: calls the peer's node endpoint ([NodeData.hostname]:[NodeData.port],
+ * which also hosts `ServiceApiService`) over its pooled mTLS channel ([NodeChannelPool])
  * and asks for its local services (`local_only = true`).
  */
 class NodePeerServiceDataQuery(
@@ -36,18 +35,12 @@ class NodePeerServiceDataQuery(
         groupFilter: String?,
         stateFilter: String?,
     ): List<ServiceData> {
-        val client = NodeGrpcClient()
-        return try {
-            client.connect(Address(node.hostname, node.port))
-            val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(client.channel())
-            val request = ServiceListRequest.newBuilder().apply {
-                localOnly = true
-                groupFilter?.let { setGroupFilter(it) }
-                stateFilter?.let { setStateFilter(it) }
-            }.build()
-            withTimeout(timeoutMillis) { stub.findServices(request).servicesList }
-        } finally {
-            client.disconnect()
-        }
+        val stub = ServiceApiServiceGrpcKt.ServiceApiServiceCoroutineStub(NodeChannelPool.channel(node))
+        val request = ServiceListRequest.newBuilder().apply {
+            localOnly = true
+            groupFilter?.let { setGroupFilter(it) }
+            stateFilter?.let { setStateFilter(it) }
+        }.build()
+        return withTimeout(timeoutMillis) { stub.findServices(request).servicesList }
     }
 }
@@ -1,8 +1,7 @@
 package de.polocloud.node.services.cluster
 
-import de.polocloud.common.Address
 import de.polocloud.node.cluster.node.NodeData
-import de.polocloud.node.communication.grpc.NodeGrpcClient
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.proto.ListServicesRequest
 import de.polocloud.proto.ProtoServiceProcessData
 import de.polocloud.proto.ServiceManagerGrpcKt
@@ -23,26 +22,20 @@ fun interface PeerServiceQuery {
 }
 
 /**
- * Real [PeerServiceQuery]: opens a short-lived mTLS channel to the peer's node endpoint
- * ([NodeData.hostname]:[NodeData.port], which hosts `ServiceManager`) and asks it for its
- * local services (`local_only = true`, so the peer does not fan out again).
+ * Real [PeerServiceQuery]: calls the peer's node endpoint ([NodeData.hostname]:[NodeData.port],
+ * which hosts `ServiceManager`) over its pooled mTLS channel ([NodeChannelPool]) and asks
+ * it for its local services (`local_only = true`, so the peer does not fan out again).
  */
 class NodePeerServiceQuery(
     private val timeoutMillis: Long = 3_000,
 ) : PeerServiceQuery {
 
     override suspend fun localServicesOf(node: NodeData, planName: String): List<ProtoServiceProcessData> {
-        val client = NodeGrpcClient()
-        return try {
-            client.connect(Address(node.hostname, node.port))
-            val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(client.channel())
-            val request = ListServicesRequest.newBuilder()
-                .setPlanName(planName)
-                .setLocalOnly(true)
-                .build()
-            withTimeout(timeoutMillis) { stub.listServices(request).serviceProcessList }
-        } finally {
-            client.disconnect()
-        }
+        val stub = ServiceManagerGrpcKt.ServiceManagerCoroutineStub(NodeChannelPool.channel(node))
+        val request = ListServicesRequest.newBuilder()
+            .setPlanName(planName)
+            .setLocalOnly(true)
+            .build()
+        return withTimeout(timeoutMillis) { stub.listServices(request).serviceProcessList }
     }
 }
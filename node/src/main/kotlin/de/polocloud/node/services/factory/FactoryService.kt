@@ -1,10 +1,12 @@
 package de.polocloud.node.services.factory
 
+import de.polocloud.common.metrics.MetricsRegistry
 import de.polocloud.common.version.PolocloudVersion
 import de.polocloud.node.event.ClusterEventService
 import de.polocloud.node.forwarding.ForwardingHandler
 import de.polocloud.node.group.Group
-import de.polocloud.node.group.template.GroupTemplateService
+import de.polocloud.node.group.template.TemplateMaterializer
+import de.polocloud.node.metrics.NodeMetrics
 import de.polocloud.node.services.LocalService
 import de.polocloud.node.services.ServiceEventMapper
 import de.polocloud.node.services.ServiceProvider
@@ -14,7 +16,6 @@ import de.polocloud.node.services.factory.platform.PlatformVersion
 import de.polocloud.node.services.factory.process.PlatformProcess
 import de.polocloud.node.services.factory.task.TaskExecutor
 import de.polocloud.node.security.ServiceIdentityProvisioner
-import de.polocloud.node.utils.PortDetector
 import de.polocloud.shared.event.server.ServerStartEvent
 import de.polocloud.shared.service.Service
 import org.slf4j.LoggerFactory
@@ -28,10 +29,19 @@ class FactoryService(
     // configured hostname (see GeneralConfiguration.hostname) so a remote proxy can
     // reach services that are not co-located, instead of a hard-coded 127.0.0.1.
     private val nodeHost: String = "127.0.0.1",
+    metrics: MetricsRegistry = NodeMetrics.registry,
 ) {
 
     private val logger = LoggerFactory.getLogger(FactoryService::class.java)
 
+    private val startDuration = metrics.histogram(
+        "polocloud_service_start_seconds", "Time from a start request to the running process", mapOf("mode" to "cold"),
+    )
+    private val standbyStartDuration = metrics.histogram(
+        "polocloud_service_start_seconds", "Time from a start request to the running process", mapOf("mode" to "standby"),
+    )
+    private val startFailures = metrics.counter("polocloud_service_start_failures_total", "Service starts that failed")
+
     // Owns the shared player-forwarding secret; the same token is written into every
     // backend server and the proxy so modern forwarding can be established. Exposed via
     // ServiceProvider so a newly-joined node can adopt the real cluster-wide secret from
@@ -46,13 +56,34 @@ class FactoryService(
         const val NODE_BACK_CONNECT_HOST = "127.0.0.1"
     }
 
-    fun start(service: LocalService, group: Group) {
+    /**
+     * Lays out [service]'s work directory and launches its process.
+     *
+     * @param standby start it as a pre-warmed standby: reserved in
+     *                [ServiceProvider.standbyPool] by the caller beforehand, and kept out
+     *                of [ServiceProvider.localServices], the database and the lifecycle
+     *                events until [ServiceProvider.promoteStandby] announces it.
+     */
+    fun start(service: LocalService, group: Group, standby: Boolean = false) {
+        val startedAt = System.nanoTime()
+        try {
+            prepareAndLaunch(service, group, standby)
+        } catch (e: Exception) {
+            startFailures.inc()
+            throw e
+        } finally {
+            (if (standby) standbyStartDuration else startDuration).observeSince(startedAt)
+        }
+    }
+
+    private fun prepareAndLaunch(service: LocalService, group: Group, standby: Boolean) {
         // Fired right here, before anything else — platform resolution, the port/host
         // assignment, and the actual process launch all happen below and can still fail.
         // This is a "start requested" signal, not a readiness one: subscribers that need
         // a real address/RUNNING state should use ServiceOnlineEvent (fired later, from
         // ServicePingFactory.markOnline, once the service actually answers a ping).
-        ClusterEventService.call(ServerStartEvent(ServiceEventMapper.toShared(service)))
+        // A standby fires it only once it is promoted.
+        if (!standby) ClusterEventService.call(ServerStartEvent(ServiceEventMapper.toShared(service)))
 
         val platform = platformService.find(group.platform)
             ?: throw IllegalArgumentException("Platform '${group.platform}' is not loaded")
@@ -63,21 +94,48 @@ class FactoryService(
 
         val workDir = File("servers/${group.name}-${service.serviceIndex}")
         val process = PlatformProcess(platform, version)
-        val jar = process.download(workDir)
+        val jar = process.download(workDir, serviceProvider.templateMaterializer::placeFile)
 
         // Seed the service's properties from its group so group-level flags (e.g. `fallback`)
         // are visible on the service without overwriting any already set on it.
         group.properties.forEach { (key, value) -> service.properties.putIfAbsent(key, value) }
 
-         service.port = assignPort(service, platform)
-         service.hostname = nodeHost
-         service.static = group.static
+        service.port = assignPort(service, platform)
+        // Everything from here on can still fail (template copy, tasks, the process launch
+        // itself) — a service that never reached localServices is never passed to
+        // shutdownLocal(), which is what normally releases its port. Hand it back here
+        // instead of leaking it.
+        try {
+            launch(service, group, platform, version, process, jar, workDir, standby)
+        } catch (e: Exception) {
+            if (service !in serviceProvider.localServices) serviceProvider.portAllocator.release(service.id)
+            throw e
+        }
+    }
+
+    private fun launch(
+        service: LocalService,
+        group: Group,
+        platform: Platform,
+        version: PlatformVersion,
+        process: PlatformProcess,
+        jar: File,
+        workDir: File,
+        standby: Boolean,
+    ) {
+        service.hostname = nodeHost
+        service.static = group.static
 
         // Templates are laid down first — tasks below then patch specific keys in
         // whatever files the templates (or the platform itself, on first launch) left
-        // behind, so template content must already be in place before tasks run.
+        // behind, so template content must already be in place before tasks run. The
+        // files those tasks write are always laid down as private copies, never links.
         service.templates = group.templates
-        GroupTemplateService.copyInto(group.templates, workDir)
+        serviceProvider.templateMaterializer.materialize(
+            group.templates,
+            workDir,
+            mutablePaths = TaskExecutor.targetFiles(platform.tasks, version.version, platformService.taskDefinitions()),
+        )
 
         installBridgePlugin(platform, workDir)
         applyTasks(platform, version, service, group, workDir)
@@ -109,10 +167,12 @@ class FactoryService(
         // once ServicePingFactory can reach it, which then flips the state to RUNNING and
         // fires ServiceOnlineEvent.
         service.state = ServiceState.STARTING
-        serviceProvider.localServices.add(service)
-        // Persist the now-assigned port/host/state so the database reflects the live
-        // service instead of the placeholder row written while it was still queued.
-        serviceProvider.persist(service)
+        if (!standby) {
+            serviceProvider.localServices.add(service)
+            // Persist the now-assigned port/host/state so the database reflects the live
+            // service instead of the placeholder row written while it was still queued.
+            serviceProvider.persist(service)
+        }
         // The process can end on its own at any time — a crash, or `/stop` typed in the
         // service's own console — without the node ever commanding it. Without this hook
         // that was only noticed incidentally, up to 2s later, when the scaling queue
@@ -137,7 +197,7 @@ class FactoryService(
                 serviceProvider.crashLoopGuard.recordExit(group.name, ranForMillis)
             }
         }
-        logger.info("Service {}-{} started (pid: {})", group.name, service.serviceIndex, proc.pid())
+        logger.info("Service {}-{} started{} (pid: {})", group.name, service.serviceIndex, if (standby) " as standby" else "", proc.pid())
     }
 
     /**
@@ -174,10 +234,19 @@ class FactoryService(
     }
 
     /**
-     * Derives a deterministic port for a service from its platform role and index.
+     * Reserves the service's port from the node's [PortAllocator]: its `startPort`
+     * property if set, otherwise the first free one above the platform role's base port.
+     * Released again by [ServiceProvider.shutdownLocal].
      */
     private fun assignPort(service: LocalService, platform: Platform): Int {
-        return PortDetector.nextPort(service, platform);
+        val startPort = service.properties["startPort"]?.toIntOrNull()?.takeIf { it in 1..65535 }
+        val from = startPort
+            ?: if (platform.type.equals("PROXY", ignoreCase = true)) PortAllocator.PROXY_BASE_PORT else PortAllocator.SERVER_BASE_PORT
+        val port = serviceProvider.portAllocator.reserve(service.id, from)
+        if (startPort != null && port != startPort) {
+            logger.warn("The startPort {} of {} is already in use, using {} instead", startPort, service.name(), port)
+        }
+        return port
     }
 
     /**
@@ -185,7 +254,8 @@ class FactoryService(
      *
      * The bridge fat jar is shipped inside the runner and laid out under
      * `.cache/dependencies` on startup. For proxy platforms (Velocity, Waterfall)
-     * it is copied into the service work directory so the proxy loads it on boot.
+     * it is placed (copied, or linked — see [TemplateMaterializer.placeFile]) into the
+     * service work directory so the proxy loads it on boot.
      * Non-proxy platforms are skipped.
      */
     private fun installBridgePlugin(platform: Platform, workDir: File) {
@@ -202,8 +272,7 @@ class FactoryService(
         }
 
         val target = File(workDir, "plugins/polocloud-bridge.jar")
-        target.parentFile.mkdirs()
-        bridgeJar.copyTo(target, overwrite = true)
+        serviceProvider.templateMaterializer.placeFile(bridgeJar, target)
         logger.info("Installed Polocloud bridge into {}", target.path)
     }
 
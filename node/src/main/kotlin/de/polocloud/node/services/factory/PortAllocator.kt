@@ -0,0 +1,91 @@
+package de.polocloud.node.services.factory
+
+import java.net.InetSocketAddress
+import java.net.ServerSocket
+import java.util.BitSet
+import java.util.UUID
+
+/**
+ * Hands out the ports of the services started on this node.
+ *
+ * Ports already given to a service are tracked in an in-memory bitmap, seeded once (on
+ * the first [reserve]) from [seed] — the services this node already has — and kept
+ * current afterwards by [reserve]/[release] alone, so picking a port never touches the
+ * database. [reserve] is synchronized: two services started in parallel by the scaling
+ * queue can never be handed the same port.
+ *
+ * The bitmap only knows about ports polocloud itself handed out; anything else on the
+ * machine is caught by test-binding the candidate before handing it out. A candidate
+ * that fails that probe is skipped (but not remembered — whatever held it may let go).
+ *
+ * @param seed ports already in use by this node's services, keyed by service id.
+ * @param isBindable whether nothing else on the machine holds a port — injectable for testing.
+ */
+class PortAllocator(
+    private val seed: () -> Map<UUID, Int>,
+    private val isBindable: (Int) -> Boolean = ::canBind,
+) {
+
+    private val reserved = BitSet(MAX_PORT + 1)
+    private val owners = HashMap<UUID, Int>()
+    private var seeded = false
+
+    /**
+     * Reserves the lowest free port at or above [from] for [serviceId] and returns it. A
+     * service that already holds a port gets that same port back.
+     *
+     * @throws IllegalStateException if no port at or above [from] is free.
+     */
+    @Synchronized
+    fun reserve(serviceId: UUID, from: Int): Int {
+        ensureSeeded()
+        owners[serviceId]?.let { return it }
+
+        var port = reserved.nextClearBit(from)
+        while (port <= MAX_PORT) {
+            if (isBindable(port)) {
+                reserved.set(port)
+                owners[serviceId] = port
+                return port
+            }
+            port = reserved.nextClearBit(port + 1)
+        }
+        throw IllegalStateException("No free port left at or above $from")
+    }
+
+    /** Frees the port held by [serviceId], if any. Safe to call more than once. */
+    @Synchronized
+    fun release(serviceId: UUID) {
+        owners.remove(serviceId)?.let { port ->
+            // Another owner may share a seeded port (two stale rows claiming the same one).
+            if (port !in owners.values) reserved.clear(port)
+        }
+    }
+
+    /** Whether [port] is currently reserved for one of this node's services. */
+    @Synchronized
+    fun isReserved(port: Int): Boolean {
+        ensureSeeded()
+        return reserved.get(port)
+    }
+
+    private fun ensureSeeded() {
+        if (seeded) return
+        seed().forEach { (serviceId, port) ->
+            if (port in 1..MAX_PORT) {
+                reserved.set(port)
+                owners[serviceId] = port
+            }
+        }
+        seeded = true
+    }
+
+    companion object {
+        const val SERVER_BASE_PORT = 30000
+        const val PROXY_BASE_PORT = 25565
+        private const val MAX_PORT = 65535
+
+        private fun canBind(port: Int): Boolean =
+            runCatching { ServerSocket().use { it.bind(InetSocketAddress(port)) } }.isSuccess
+    }
+}
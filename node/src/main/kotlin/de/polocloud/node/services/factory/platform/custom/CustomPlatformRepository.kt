@@ -2,18 +2,20 @@ package de.polocloud.node.services.factory.platform.custom
 
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseKey
+import de.polocloud.node.metrics.DatabaseCalls
 
 object CustomPlatformRepository {
 
     private val customPlatformDatabaseKey = DatabaseKey(CustomPlatform::class)
+    private val calls = DatabaseCalls("custom_platforms")
 
-    fun find(name: String) = DatabaseAccess.executor().findById(customPlatformDatabaseKey, name)
+    fun find(name: String) = calls.call("findById") { DatabaseAccess.executor().findById(customPlatformDatabaseKey, name) }
 
-    fun save(platform: CustomPlatform) = DatabaseAccess.executor().save(customPlatformDatabaseKey, platform)
+    fun save(platform: CustomPlatform) = calls.call("save") { DatabaseAccess.executor().save(customPlatformDatabaseKey, platform) }
 
-    fun delete(platform: CustomPlatform) = DatabaseAccess.executor().delete(customPlatformDatabaseKey, platform)
+    fun delete(platform: CustomPlatform) = calls.call("delete") { DatabaseAccess.executor().delete(customPlatformDatabaseKey, platform) }
 
-    fun findAll() = DatabaseAccess.executor().findAll(customPlatformDatabaseKey)
+    fun findAll() = calls.call("findAll") { DatabaseAccess.executor().findAll(customPlatformDatabaseKey) }
 
-    fun exists(name: String) = DatabaseAccess.executor().findById(customPlatformDatabaseKey, name) != null
+    fun exists(name: String) = calls.call("findById") { DatabaseAccess.executor().findById(customPlatformDatabaseKey, name) } != null
 }
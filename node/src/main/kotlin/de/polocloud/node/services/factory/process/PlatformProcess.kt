@@ -37,20 +37,23 @@ class PlatformProcess(
      * Ensures the platform JAR is available inside [targetDir].
      *
      * The JAR is downloaded once into a shared cache ([PlatformJarCache]) and reused across
-     * services; on each start it is copied from that cache into [targetDir] (the
+     * services; on each start it is placed from that cache into [targetDir] (the
      * service work directory, which is wiped on shutdown, so the JAR itself must live
      * there for the process to run in the right directory).
      *
      * @param targetDir Directory the JAR is placed into (the service work directory).
+     * @param place     Puts the cached JAR at its target — a copy by default, a hard link
+     *                  when the node materializes templates by linking. Cache entries are
+     *                  only ever replaced, never rewritten in place, so a link is safe.
      * @return The JAR [File] inside [targetDir].
      */
-    fun download(targetDir: File): File {
+    fun download(targetDir: File, place: (source: File, target: File) -> Unit = { source, target -> source.copyTo(target, overwrite = true) }): File {
         targetDir.mkdirs()
         val target = File(targetDir, jarName)
         if (target.exists()) return target
 
         val cached = cachedJar()
-        cached.copyTo(target, overwrite = true)
+        place(cached, target)
         return target
     }
 
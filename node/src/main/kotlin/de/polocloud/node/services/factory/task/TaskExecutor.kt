@@ -72,6 +72,19 @@ object TaskExecutor {
         }
     }
 
+    /**
+     * The files [apply] would write for [version], as `/`-separated paths relative to the
+     * work directory — so they can be laid down as private copies beforehand, never as
+     * links shared with other services (see [de.polocloud.node.group.template.TemplateMaterializer]).
+     */
+    fun targetFiles(tasks: List<ServiceTask>, version: String, definitions: Map<String, TaskDefinition>): Set<String> =
+        tasks.asSequence()
+            .filter { it.appliesTo(version) }
+            .mapNotNull { definitions[it.key] }
+            .flatMap { it.steps }
+            .map { File(it.file).normalize().invariantSeparatorsPath }
+            .toSet()
+
     /**
      * Applies a single [step].
      *
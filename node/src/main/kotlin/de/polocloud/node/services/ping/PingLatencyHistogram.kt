@@ -0,0 +1,57 @@
+package de.polocloud.node.services.ping
+
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+
+/**
+ * Fixed-bucket histogram of ping round trips in milliseconds. Lock-free: recording is one
+ * atomic increment, so every ping can record without contending on the others.
+ *
+ * @param bounds inclusive upper bound of each bucket, ascending; anything above the last
+ *   one lands in a final overflow bucket.
+ */
+class PingLatencyHistogram(private val bounds: LongArray = DEFAULT_BOUNDS) {
+
+    private val counts = AtomicLongArray(bounds.size + 1)
+    private val sum = LongAdder()
+
+    fun record(millis: Long) {
+        var bucket = 0
+        while (bucket < bounds.size && millis > bounds[bucket]) bucket++
+        counts.incrementAndGet(bucket)
+        sum.add(millis)
+    }
+
+    fun snapshot(): Snapshot =
+        Snapshot(bounds.toList(), List(counts.length()) { counts.get(it) }, sum.sum())
+
+    /**
+     * @param counts one per bound, plus the overflow bucket last.
+     */
+    data class Snapshot(val bounds: List<Long>, val counts: List<Long>, val sumMillis: Long) {
+
+        val total: Long get() = counts.sum()
+
+        val meanMillis: Double get() = if (total == 0L) 0.0 else sumMillis.toDouble() / total
+
+        /**
+         * Upper bound of the bucket the [quantile] (0..1) falls into — `null` if nothing
+         * was recorded, [Long.MAX_VALUE] if it is in the overflow bucket.
+         */
+        fun quantile(quantile: Double): Long? {
+            if (total == 0L) return null
+            val rank = ceil(quantile * total).toLong().coerceIn(1, total)
+            var seen = 0L
+            counts.forEachIndexed { bucket, count ->
+                seen += count
+                if (seen >= rank) return bounds.getOrElse(bucket) { Long.MAX_VALUE }
+            }
+            return Long.MAX_VALUE
+        }
+    }
+
+    private companion object {
+        val DEFAULT_BOUNDS = longArrayOf(1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500)
+    }
+}
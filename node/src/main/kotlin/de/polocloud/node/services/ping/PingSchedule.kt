@@ -0,0 +1,78 @@
+package de.polocloud.node.services.ping
+
+import java.util.UUID
+
+/**
+ * Decides when [ServicePingFactory] pings each local service next.
+ *
+ * A starting service is pinged every [startingInterval], so it is flipped to `RUNNING`
+ * moments after it starts answering. A running one starts at [runningInterval] and backs
+ * off (doubling, up to [maxInterval]) for as long as its player count stays the same — a
+ * quiet lobby is pinged twice a minute instead of twelve times. Any change resets it to
+ * [runningInterval], and a [nudge] (a player joined or left it) pulls its next ping in to
+ * [nudgeDelay] from now; a burst of nudges within that window still costs one ping.
+ *
+ * Thread-safe: the ping loop reads it while player events [nudge] it.
+ */
+internal class PingSchedule(
+    private val startingInterval: Long = 1_000,
+    private val runningInterval: Long = 5_000,
+    private val maxInterval: Long = 30_000,
+    private val nudgeDelay: Long = 250,
+) {
+
+    private class Slot(var nextAt: Long, var interval: Long)
+
+    private val slots = HashMap<UUID, Slot>()
+
+    /**
+     * Whether the service [id] is due for a ping at [now]. A service seen for the first
+     * time is due at [firstDueAt].
+     */
+    @Synchronized
+    fun isDue(id: UUID, now: Long, firstDueAt: Long): Boolean =
+        now >= slots.getOrPut(id) { Slot(firstDueAt, runningInterval) }.nextAt
+
+    /**
+     * Plans the next ping after one finished at [now].
+     *
+     * @param starting the service hasn't been confirmed online yet.
+     * @param changed  the ping reported something new — or failed, which is no reason to
+     *   check back any later either.
+     */
+    @Synchronized
+    fun reschedule(id: UUID, now: Long, starting: Boolean, changed: Boolean) {
+        val slot = slots.getOrPut(id) { Slot(now, runningInterval) }
+        if (starting) {
+            slot.nextAt = now + startingInterval
+            return
+        }
+        slot.interval = if (changed) runningInterval else (slot.interval * 2).coerceAtMost(maxInterval)
+        slot.nextAt = now + slot.interval
+    }
+
+    /**
+     * Pulls the service [id]'s next ping in to [nudgeDelay] after [now].
+     *
+     * @return `false` if a ping was already due that soon, i.e. this nudge was coalesced.
+     */
+    @Synchronized
+    fun nudge(id: UUID, now: Long): Boolean {
+        val slot = slots.getOrPut(id) { Slot(Long.MAX_VALUE, runningInterval) }
+        slot.interval = runningInterval
+        if (slot.nextAt <= now + nudgeDelay) return false
+        slot.nextAt = now + nudgeDelay
+        return true
+    }
+
+    /** Forgets every service not in [ids], e.g. once stopped. */
+    @Synchronized
+    fun retainOnly(ids: Set<UUID>) {
+        slots.keys.retainAll(ids)
+    }
+
+    /** How many services are scheduled, and their current mean interval (0 if none). */
+    @Synchronized
+    fun summary(): Pair<Int, Long> =
+        slots.size to if (slots.isEmpty()) 0 else slots.values.sumOf { it.interval } / slots.size
+}
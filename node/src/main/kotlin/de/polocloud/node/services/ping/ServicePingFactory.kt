@@ -1,77 +1,216 @@
 package de.polocloud.node.services.ping
 
+import de.polocloud.common.metrics.MetricsRegistry
 import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.metrics.NodeMetrics
 import de.polocloud.node.services.LocalService
 import de.polocloud.node.services.ServiceEventMapper
 import de.polocloud.node.services.ServiceProvider
 import de.polocloud.node.services.ServiceResourceSampler
+import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.player.PlayerDisconnectEvent
+import de.polocloud.shared.event.player.PlayerKickEvent
+import de.polocloud.shared.event.player.PlayerSwitchEvent
 import de.polocloud.shared.service.ServiceState
 import de.polocloud.shared.event.server.PlayerCountChangedEvent
 import de.polocloud.shared.event.server.ServiceOnlineEvent
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.async
+import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import kotlinx.serialization.Serializable
 import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
-class ServicePingFactory(private val serviceProvider: ServiceProvider) {
+/**
+ * Where a node's running services get their player counts from — `general.playerCountSource`.
+ */
+@Serializable
+enum class PlayerCountSource {
+    /** Re-pinged every few seconds over the Server List Ping, sooner after a player moved. */
+    PING,
+
+    /**
+     * Counted from the player RPCs the bridge sends on every login, switch and
+     * disconnect, the moment a player moves. The Server List Ping stays as a once-a-minute
+     * consistency check, correcting for players that joined through a proxy without the
+     * bridge.
+     */
+    BRIDGE,
+}
+
+/**
+ * Pings this node's services over the Server List Ping: starting ones until they answer
+ * (then they are `RUNNING`), running ones to keep their player count current — or, with
+ * [PlayerCountSource.BRIDGE], only to check the count the bridge's player moves keep.
+ *
+ * Each ping runs on its own virtual thread, so a slow or hung service parks nothing but
+ * that thread, and pings are pipelined — the loop hands them off and moves on instead of
+ * waiting for a whole round. How often a service is pinged is up to [PingSchedule]: fast
+ * while starting, backing off while its player count holds still, and right away when a
+ * player joins or leaves it (observed via the player events the bridge's RPCs fire).
+ *
+ * Also samples each service's CPU/memory usage and process tree once a second.
+ *
+ * @param playerCounts where running services' player counts come from.
+ * @param observe      registers the player event feed — injectable for testing.
+ * @param metrics      where ping round trips and time-to-online are recorded.
+ */
+class ServicePingFactory(
+    private val serviceProvider: ServiceProvider,
+    private val playerCounts: PlayerCountSource = PlayerCountSource.PING,
+    private val observe: ((EventContext) -> Unit) -> AutoCloseable = ClusterEventService::observe,
+    metrics: MetricsRegistry = NodeMetrics.registry,
+) {
 
     private val logger = LoggerFactory.getLogger(ServicePingFactory::class.java)
-    private lateinit var thread: Thread
     private val resourceSampler = ServiceResourceSampler()
 
+    private val schedule = when (playerCounts) {
+        PlayerCountSource.PING -> PingSchedule()
+        PlayerCountSource.BRIDGE -> PingSchedule(runningInterval = CONSISTENCY_CHECK_MILLIS, maxInterval = CONSISTENCY_CHECK_MILLIS)
+    }
+    private val latency = PingLatencyHistogram()
+    private val inFlight = ConcurrentHashMap.newKeySet<UUID>()
+    private val permits = Semaphore(MAX_CONCURRENT_PINGS)
+
+    private val pings = AtomicLong()
+    private val failures = AtomicLong()
+    private val nudges = AtomicLong()
+    private val coalescedNudges = AtomicLong()
+    private val pushes = AtomicLong()
+    private val corrections = AtomicLong()
+
+    private val pingDuration = metrics.histogram("polocloud_service_ping_seconds", "Round trip of successful service pings")
+    private val onlineDuration = metrics.histogram(
+        "polocloud_service_online_seconds", "Time from a service's launch until it first answers a ping",
+        mapOf("mode" to "cold"), ONLINE_BUCKETS,
+    )
+    private val standbyReadyDuration = metrics.histogram(
+        "polocloud_service_online_seconds", "Time from a service's launch until it first answers a ping",
+        mapOf("mode" to "standby"), ONLINE_BUCKETS,
+    )
+
+    init {
+        metrics.counter("polocloud_service_pings_total", "Service pings sent") { pings.get() }
+        metrics.counter("polocloud_service_ping_failures_total", "Service pings that got no answer") { failures.get() }
+        metrics.gauge("polocloud_service_pings_in_flight", "Service pings currently waiting for an answer") { inFlight.size }
+    }
+
+    // Player moves to apply with PlayerCountSource.BRIDGE, one at a time and in order, so
+    // the PlayerCountChangedEvents they fire never go out of order either.
+    private val moves = Channel<Pair<String, Int>>(Channel.UNLIMITED)
+
+    private val pingDispatcher = Executors.newVirtualThreadPerTaskExecutor().asCoroutineDispatcher()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var observation: AutoCloseable? = null
+    private var lastSampleAt = 0L
+
     fun run() {
-        thread = Thread({
-            while (!Thread.currentThread().isInterrupted) {
+        observation = observe { context ->
+            if (context.encoding == EventEncoding.JSON) onEvent(context.eventName, context.eventData)
+        }
+        scope.launch {
+            while (isActive) {
                 try {
-                    tick()
-                    Thread.sleep(POLL_INTERVAL_MILLIS)
-                } catch (_: InterruptedException) {
-                    Thread.currentThread().interrupt()
-                    break
+                    tick(System.currentTimeMillis())
+                } catch (cancel: CancellationException) {
+                    throw cancel
                 } catch (e: Exception) {
                     logger.error("Service ping tick failed", e)
                 }
+                delay(TICK_MILLIS)
+            }
+        }
+        if (playerCounts == PlayerCountSource.BRIDGE) {
+            scope.launch {
+                for ((serviceName, delta) in moves) push(serviceName, delta)
             }
-        }, "service-ping")
-        thread.isDaemon = true
-        thread.start()
-        logger.info("Service ping factory started")
+        }
+        logger.info("Service ping factory started (player counts: {})", playerCounts.name.lowercase())
     }
 
     fun close() {
-        if (this::thread.isInitialized) thread.interrupt()
+        runCatching { observation?.close() }
+        scope.cancel()
+        pingDispatcher.close()
+    }
+
+    fun stats(): ServicePingStats {
+        val (scheduled, averageInterval) = schedule.summary()
+        return ServicePingStats(
+            scheduled = scheduled,
+            averageIntervalMillis = averageInterval,
+            inFlight = inFlight.size,
+            pings = pings.get(),
+            failures = failures.get(),
+            nudges = nudges.get(),
+            coalescedNudges = coalescedNudges.get(),
+            playerCounts = playerCounts,
+            pushes = pushes.get(),
+            corrections = corrections.get(),
+            latency = latency.snapshot(),
+        )
     }
 
-    private fun tick() {
-        val now = System.currentTimeMillis()
+    private suspend fun tick(now: Long) {
         val services = serviceProvider.localServices.filter { it.process?.isAlive == true }
+        val standbys = serviceProvider.standbyPool.booting()
+        schedule.retainOnly((services + standbys).mapTo(HashSet()) { it.id })
+
+        if (now - lastSampleAt >= SAMPLE_INTERVAL_MILLIS) {
+            lastSampleAt = now
+            sample(services)
+        }
+
+        services.forEach { service ->
+            if (service.port <= 0) return@forEach
+            when {
+                isAwaitingOnline(service) -> dispatch(service, now, firstDueAt = now, ::markOnline)
+                service.state == ServiceState.RUNNING ->
+                    dispatch(service, now, firstDueAt = service.lastPlayerPollAt + FIRST_PLAYER_POLL_DELAY_MILLIS, ::updatePlayerCount)
+            }
+        }
+        standbys.forEach { service ->
+            if (service.port > 0) dispatch(service, now, firstDueAt = now, ::markStandbyReady)
+        }
+    }
+
+    private suspend fun sample(services: List<LocalService>) {
         // Drop retained CPU-sampling snapshots for anything that isn't alive anymore, so a
         // stopped service's PID doesn't linger in the sampler for the rest of the node's uptime.
         resourceSampler.retainOnly(services.mapNotNull { it.process?.pid() }.toSet())
-        if (services.isEmpty()) return
-
-        runBlocking {
+        coroutineScope {
             services.map { service ->
-                async(PING_DISPATCHER) { tickOne(service, now) }
+                async(SAMPLING_DISPATCHER) {
+                    // Refreshed here (not just on demand) because a process's descendants can
+                    // only be enumerated while it's still alive — if we waited until it crashed
+                    // to look, it would already be too late. See LocalService.lastKnownDescendants.
+                    service.sampleDescendants()
+                    sampleResourceUsage(service)
+                }
             }.awaitAll()
         }
     }
 
-    private fun tickOne(service: LocalService, now: Long) {
-        // Refreshed here (not just on demand) because a process's descendants can
-        // only be enumerated while it's still alive — if we waited until it crashed
-        // to look, it would already be too late. See LocalService.lastKnownDescendants.
-        service.sampleDescendants()
-        sampleResourceUsage(service)
-        if (service.port <= 0) return
-
-        when {
-            isAwaitingOnline(service) -> pingStarting(service)
-            service.state == ServiceState.RUNNING -> pingPlayerCount(service, now)
-        }
-    }
-
     private fun sampleResourceUsage(service: LocalService) {
         val pid = service.process?.pid() ?: return
         val usage = resourceSampler.sample(pid) ?: return
@@ -79,6 +218,30 @@ class ServicePingFactory(private val serviceProvider: ServiceProvider) {
         service.usedMemory = usage.usedMemory
     }
 
+    /**
+     * Pings [service] in the background if it is due and not already being pinged, then
+     * hands a successful result to [onResult] — along with when the ping started, and
+     * reporting back whether it changed anything.
+     */
+    private fun dispatch(
+        service: LocalService,
+        now: Long,
+        firstDueAt: Long,
+        onResult: (LocalService, MinecraftPingResult, Long) -> Boolean,
+    ) {
+        if (!schedule.isDue(service.id, now, firstDueAt) || !inFlight.add(service.id)) return
+        scope.launch {
+            try {
+                val startedAt = System.currentTimeMillis()
+                val result = permits.withPermit { ping(service) }
+                val changed = result == null || onResult(service, result, startedAt)
+                schedule.reschedule(service.id, System.currentTimeMillis(), starting = service.state != ServiceState.RUNNING, changed)
+            } finally {
+                inFlight -= service.id
+            }
+        }
+    }
+
     // Pinged over service.hostname (== general.serviceHostname), not a hardcoded loopback:
     // a service only ever *listens* on the address it was told to bind to (e.g. Velocity's
     // `bind` is derived from the same value — see task_velocity_config.json in
@@ -86,37 +249,73 @@ class ServicePingFactory(private val serviceProvider: ServiceProvider) {
     // non-loopback interface. Pinging loopback unconditionally would never reach such a
     // service even though it is healthy. Defaults to 127.0.0.1 for a single-host setup, so
     // behavior there is unchanged.
-
-    private fun pingStarting(service: LocalService) {
-        val result = MinecraftServerPing.ping(service.hostname, service.port) ?: return
-        markOnline(service, result)
+    private suspend fun ping(service: LocalService): MinecraftPingResult? {
+        val started = System.nanoTime()
+        // A blocking socket on a virtual thread: waiting on the network unmounts it, so
+        // only the few pings actually moving bytes occupy a carrier thread.
+        val result = withContext(pingDispatcher) { MinecraftServerPing.ping(service.hostname, service.port) }
+        pings.incrementAndGet()
+        if (result == null) {
+            failures.incrementAndGet()
+        } else {
+            latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+            pingDuration.observeSince(started)
+        }
+        return result
     }
 
-    private fun pingPlayerCount(service: LocalService, now: Long) {
-        if (now - service.lastPlayerPollAt < PLAYER_POLL_INTERVAL_MILLIS) return
-        service.lastPlayerPollAt = now
-
-        val result = MinecraftServerPing.ping(service.hostname, service.port) ?: return
-        val changed = service.onlinePlayers != result.onlinePlayers || service.maxPlayers != result.maxPlayers
+    /**
+     * A booting standby is only marked ready, not online: it stays unannounced (and
+     * [ServiceState.STARTING]) until the scaling queue promotes it.
+     */
+    private fun markStandbyReady(service: LocalService, result: MinecraftPingResult, @Suppress("UNUSED_PARAMETER") startedAt: Long): Boolean {
         service.onlinePlayers = result.onlinePlayers
         service.maxPlayers = result.maxPlayers
         service.motd = result.description
+        serviceProvider.standbyPool.markReady(service)
+        standbyReadyDuration.observe(secondsSinceStart(service))
+        logger.info("Standby {} is ready ({}ms after start)", service.name(), System.currentTimeMillis() - service.startedAt)
+        return true
+    }
+
+    private fun updatePlayerCount(service: LocalService, result: MinecraftPingResult, startedAt: Long): Boolean {
+        val changed = synchronized(service) {
+            service.lastPlayerPollAt = System.currentTimeMillis()
+            // A player moved while this ping was in flight: the pushed count is newer.
+            val onlinePlayers = if (service.lastPlayerPushAt >= startedAt) service.onlinePlayers else result.onlinePlayers
+            if (playerCounts == PlayerCountSource.BRIDGE && onlinePlayers != service.onlinePlayers) {
+                corrections.incrementAndGet()
+                logger.debug("Consistency check corrected {} from {} to {} players", service.name(), service.onlinePlayers, onlinePlayers)
+            }
+            val changed = service.onlinePlayers != onlinePlayers || service.maxPlayers != result.maxPlayers
+            service.onlinePlayers = onlinePlayers
+            service.maxPlayers = result.maxPlayers
+            service.motd = result.description
+            changed
+        }
 
         if (changed) {
             ClusterEventService.call(PlayerCountChangedEvent(ServiceEventMapper.toShared(service)))
         }
+        return changed
     }
 
+    private fun secondsSinceStart(service: LocalService): Double =
+        (System.currentTimeMillis() - service.startedAt) / 1000.0
+
     /** True while a service has been started but has not yet been confirmed online. */
     private fun isAwaitingOnline(service: LocalService): Boolean =
         service.state == ServiceState.STARTING || service.state == ServiceState.QUEUED
 
-    private fun markOnline(service: LocalService, result: MinecraftPingResult) {
+    private fun markOnline(service: LocalService, result: MinecraftPingResult, @Suppress("UNUSED_PARAMETER") startedAt: Long): Boolean {
+        // Stopped (or otherwise moved on) while this ping was in flight.
+        if (!isAwaitingOnline(service)) return false
         service.state = ServiceState.RUNNING
         service.onlinePlayers = result.onlinePlayers
         service.maxPlayers = result.maxPlayers
         service.motd = result.description
         service.lastPlayerPollAt = System.currentTimeMillis()
+        onlineDuration.observe(secondsSinceStart(service))
         // Persist the RUNNING transition so the database no longer shows the service as
         // STARTING once it is actually online.
         serviceProvider.persist(service)
@@ -132,15 +331,108 @@ class ServicePingFactory(private val serviceProvider: ServiceProvider) {
         // the notify addon) that need a real address/RUNNING state, not just "starting".
         val shared = ServiceEventMapper.toShared(service)
         ClusterEventService.call(ServiceOnlineEvent(shared))
+        return true
+    }
+
+    /**
+     * A player moved onto or off a service. If it is one of this node's, its count is
+     * adjusted right away with [PlayerCountSource.BRIDGE]; otherwise it is re-pinged right
+     * away instead of waiting out an interval that may have backed off to half a minute.
+     */
+    internal fun onEvent(eventName: String, eventData: String) {
+        if (eventName !in PLAYER_EVENTS) return
+        when (val event = runCatching { EventCodec.decode(eventName, eventData) }.getOrNull()) {
+            is PlayerSwitchEvent -> {
+                moved(event.previousServer, -1)
+                moved(event.player.currentServer, +1)
+            }
+            // Still carries the server the player was last on.
+            is PlayerDisconnectEvent -> moved(event.player.currentServer, -1)
+            is PlayerKickEvent -> moved(event.player.currentServer, -1)
+            else -> return
+        }
+    }
+
+    private fun moved(serviceName: String?, delta: Int) {
+        if (serviceName == null) return
+        when (playerCounts) {
+            PlayerCountSource.PING -> nudge(serviceName)
+            PlayerCountSource.BRIDGE -> moves.trySend(serviceName to delta)
+        }
+    }
+
+    private fun nudge(serviceName: String) {
+        val service = serviceProvider.findLocal(serviceName) ?: return
+        if (service.state != ServiceState.RUNNING) return
+        nudges.incrementAndGet()
+        if (!schedule.nudge(service.id, System.currentTimeMillis())) coalescedNudges.incrementAndGet()
+    }
+
+    /** Applies one player move to a local service's count, announcing it if it changed. */
+    internal fun push(serviceName: String, delta: Int) {
+        val service = serviceProvider.findLocal(serviceName) ?: return
+        if (service.state != ServiceState.RUNNING) return
+        pushes.incrementAndGet()
+        val changed = synchronized(service) {
+            val onlinePlayers = (service.onlinePlayers + delta).coerceAtLeast(0)
+            service.lastPlayerPushAt = System.currentTimeMillis()
+            (onlinePlayers != service.onlinePlayers).also { service.onlinePlayers = onlinePlayers }
+        }
+        if (changed) {
+            ClusterEventService.call(PlayerCountChangedEvent(ServiceEventMapper.toShared(service)))
+        }
     }
 
     private companion object {
-        const val POLL_INTERVAL_MILLIS = 1000L
+        /** Resolution of the scheduling loop; no ping runs more than this late. */
+        const val TICK_MILLIS = 250L
+
+        const val SAMPLE_INTERVAL_MILLIS = 1000L
+
+        /** How long after going online a service is first re-pinged for its player count. */
+        const val FIRST_PLAYER_POLL_DELAY_MILLIS = 5000L
+
+        /** How often a running service is pinged with [PlayerCountSource.BRIDGE]. */
+        const val CONSISTENCY_CHECK_MILLIS = 60_000L
 
-        /** How often an already-`RUNNING` service is re-pinged to refresh its player count. */
-        const val PLAYER_POLL_INTERVAL_MILLIS = 5000L
+        /** Bounds how many sockets are open at once — not threads, those are virtual. */
+        const val MAX_CONCURRENT_PINGS = 256
 
-        /** Bounds how many pings run at once — plenty for cheap loopback socket calls. */
-        val PING_DISPATCHER = Dispatchers.IO.limitedParallelism(16)
+        /** A server boots in seconds to minutes. */
+        val ONLINE_BUCKETS = doubleArrayOf(1.0, 2.5, 5.0, 10.0, 15.0, 20.0, 30.0, 45.0, 60.0, 90.0, 120.0, 180.0, 300.0)
+
+        /** Bounds how many processes are sampled at once. */
+        val SAMPLING_DISPATCHER = Dispatchers.IO.limitedParallelism(16)
+
+        val PLAYER_EVENTS = setOf(
+            EventCodec.nameOf(PlayerSwitchEvent::class.java),
+            EventCodec.nameOf(PlayerDisconnectEvent::class.java),
+            EventCodec.nameOf(PlayerKickEvent::class.java),
+        )
     }
-}
\ No newline at end of file
+}
+
+/**
+ * @param scheduled             services currently scheduled for pings.
+ * @param averageIntervalMillis their mean interval — how far adaptive back-off has stretched it.
+ * @param pings                 pings sent; each is one connection, as a status connection
+ *   is closed by the server after a single exchange and can't be reused.
+ * @param nudges                player moves that pulled a ping in.
+ * @param coalescedNudges       of those, how many were folded into an already imminent ping.
+ * @param pushes                player moves applied with [PlayerCountSource.BRIDGE].
+ * @param corrections           pushed counts the consistency check found off.
+ * @param latency               round trips of successful pings.
+ */
+data class ServicePingStats(
+    val scheduled: Int,
+    val averageIntervalMillis: Long,
+    val inFlight: Int,
+    val pings: Long,
+    val failures: Long,
+    val nudges: Long,
+    val coalescedNudges: Long,
+    val playerCounts: PlayerCountSource,
+    val pushes: Long,
+    val corrections: Long,
+    val latency: PingLatencyHistogram.Snapshot,
+)
@@ -21,5 +21,5 @@ fun interface NodeLoadProvider {
  */
 object HeartbeatNodeLoadProvider : NodeLoadProvider {
     override fun loadOf(node: NodeData): Double =
-        NodeHeartBeatRepository.find(node.id).maxByOrNull { it.heartBeatAt }?.systemMemoryUsage ?: 0.0
+        NodeHeartBeatRepository.latest(node.id)?.systemMemoryUsage ?: 0.0
 }
\ No newline at end of file
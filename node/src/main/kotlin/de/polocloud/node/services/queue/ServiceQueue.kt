@@ -1,21 +1,24 @@
 package de.polocloud.node.services.queue
 
+import de.polocloud.common.metrics.MetricsRegistry
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
 import de.polocloud.node.group.Group
 import de.polocloud.node.group.GroupRepository
+import de.polocloud.node.metrics.NodeMetrics
 import de.polocloud.node.services.LocalService
 import de.polocloud.node.services.Service
 import de.polocloud.node.services.ServiceProvider
+import de.polocloud.node.services.cluster.ClusterServiceReplica
 import de.polocloud.node.services.cluster.NodePeerServiceQuery
 import de.polocloud.node.services.cluster.PeerServiceQuery
 import de.polocloud.proto.NodeState
 import de.polocloud.shared.service.ServiceState
 import de.polocloud.node.services.factory.FactoryService
+import de.polocloud.node.services.standby.StandbyPool
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.runBlocking
 import org.slf4j.LoggerFactory
 import java.util.LinkedList
@@ -33,19 +36,36 @@ class ServiceQueue(
     private val onlineNodes: () -> List<NodeData> = {
         runCatching { NodeRepository.find(NodeState.ONLINE) }.getOrDefault(emptyList())
     },
-    private val peerQuery: PeerServiceQuery = NodePeerServiceQuery(),
+    peerQuery: PeerServiceQuery = NodePeerServiceQuery(),
     private val loadProvider: NodeLoadProvider = HeartbeatNodeLoadProvider,
+    // Event-fed view of every peer's services, read instead of querying each peer per
+    // group per tick. ServiceProvider passes its own (the one NodeServiceImpl feeds
+    // relayed events into); tests get a fresh one backed by their injected peerQuery.
+    private val replica: ClusterServiceReplica = ClusterServiceReplica(serviceProvider.nodeId, peerQuery),
+    metrics: MetricsRegistry = NodeMetrics.registry,
 ) {
 
     private lateinit var thread: Thread
     private val logger = LoggerFactory.getLogger(ServiceQueue::class.java)
     private val queue: Queue<Pair<LocalService, Group>> = LinkedList()
+    // Standbys to start, reserved in serviceProvider.standbyPool already. Kept apart from
+    // [queue] so they never count towards a group's queued (about to run) services.
+    private val standbyQueue: Queue<Pair<LocalService, Group>> = LinkedList()
+
+    private val tickDuration = metrics.histogram("polocloud_service_queue_tick_seconds", "Duration of one scaling pass")
+
+    init {
+        metrics.gauge("polocloud_service_queue_depth", "Services queued to start on this node") { synchronized(queue) { queue.size } }
+        metrics.gauge("polocloud_service_queue_standby_depth", "Standbys queued to start on this node") {
+            synchronized(standbyQueue) { standbyQueue.size }
+        }
+    }
 
     fun run() {
         thread = Thread({
             while (!Thread.currentThread().isInterrupted) {
                 try {
-                    tick()
+                    tickDuration.time { tick() }
                     Thread.sleep(2000)
                 } catch (_: InterruptedException) {
                     // Interrupted by close() during shutdown — exit the loop quietly.
@@ -82,6 +102,11 @@ class ServiceQueue(
             queue.removeIf { it.second.name.equals(groupName, ignoreCase = true) }
             matching
         }
+        synchronized(standbyQueue) {
+            standbyQueue.filter { it.second.name.equals(groupName, ignoreCase = true) }
+                .forEach { (service, _) -> serviceProvider.standbyPool.remove(service) }
+            standbyQueue.removeIf { it.second.name.equals(groupName, ignoreCase = true) }
+        }
         removed.forEach { (service, _) ->
             runCatching { serviceProvider.remove(service) }.onFailure {
                 logger.warn("Failed to delete queued service {} (id={}) from the database: {}", service.name(), service.id, it.message)
@@ -107,111 +132,195 @@ class ServiceQueue(
         if (allGroups.isEmpty()) return
 
         val online = onlineNodes()
+        // At most one snapshot RPC per peer, and only for peers never synced or past the
+        // replica's resync interval — every per-group read below is in-memory.
+        replica.ensureSynced(online)
         val groupMemoryMb = allGroups.associate { it.name to it.memory }
         val usedMemoryMb = nodeMemoryUsage(online, groupMemoryMb).toMutableMap()
 
         for (group in allGroups) {
             val eligible = GroupNodeEligibility.eligibleOnlineNodes(group, online).sortedBy { it.id.toString() }
-            if (eligible.isEmpty()) continue
 
             // This node isn't (or is no longer) allowed to run this group — leave it to
             // whichever node(s) are actually eligible.
-            val self = eligible.firstOrNull { it.id.toString() == serviceProvider.nodeId } ?: continue
+            val self = eligible.firstOrNull { it.id.toString() == serviceProvider.nodeId }
 
             // A group crashing repeatedly right after start is backed off by
             // CrashLoopGuard (fed from FactoryService's exit hook) — skip placing more of
             // it until the backoff window elapses, instead of restarting it as fast as
             // start+detect-exit allows.
-            if (serviceProvider.crashLoopGuard.isBackingOff(group.name)) continue
+            if (self == null || serviceProvider.crashLoopGuard.isBackingOff(group.name)) {
+                // Nothing of it is placed here for now, so standbys would only hold memory and ports.
+                trimStandbys(group, 0)
+                continue
+            }
 
             val cluster = clusterState(group, eligible)
-            val queued = synchronized(queue) { queue.count { it.second.name == group.name } }.toLong()
-            val minOnlineNeeded = (group.minOnline - cluster.running - queued).coerceAtLeast(0)
-            val capacityLeft = (group.maxOnline - cluster.running - queued).coerceAtLeast(0)
-
-            // Load-based scale-up: once every currently-running instance's aggregate
-            // occupancy (players / configured slots, both cluster-wide) reaches
-            // startThreshold, grow by one more — capped at maxOnline via capacityLeft.
-            // Only considered once at least one instance has actually reported real
-            // slots (cluster.maxPlayers > 0); before the first successful ping (or with
-            // no instances running yet) there's nothing to measure load from, and a
-            // startThreshold of 0.0 (the un-configured default — see GroupBuilder) opts
-            // a group out of this entirely rather than scaling it to maxOnline at 0 load.
-            val occupancy = if (cluster.maxPlayers > 0) cluster.onlinePlayers.toDouble() / cluster.maxPlayers else 0.0
-            val loadTriggered = capacityLeft > 0 && group.startThreshold > 0.0 &&
-                cluster.maxPlayers > 0 && occupancy >= group.startThreshold
-            val clusterNeeded = maxOf(minOnlineNeeded, if (loadTriggered) 1L else 0L).coerceAtMost(capacityLeft)
-
-            if (clusterNeeded <= 0) continue
-
-            val assignment = assignReplicas(eligible, cluster.perNodeRunning, usedMemoryMb, group.memory, clusterNeeded.toInt())
-            val myShare = assignment[self.name()] ?: 0
-            if (myShare <= 0) continue
-
-            usedMemoryMb[self.name()] = (usedMemoryMb[self.name()] ?: 0) + myShare * group.memory
-
-            if (loadTriggered && minOnlineNeeded <= 0) {
-                logger.info(
-                    "Group '{}' is at {}/{} players ({}% >= {}% threshold) — starting {} more service(s) cluster-wide (this node: {}), capped at maxOnline: {}",
-                    group.name, cluster.onlinePlayers, cluster.maxPlayers,
-                    "%.1f".format(occupancy * 100), "%.1f".format(group.startThreshold * 100),
-                    clusterNeeded, myShare, group.maxOnline
-                )
-            } else {
-                logger.info(
-                    "Group '{}' needs {} more service(s) cluster-wide (this node: {}) — minOnline: {}, cluster running: {}, queued: {}",
-                    group.name, clusterNeeded, myShare, group.minOnline, cluster.running, queued
-                )
-            }
-            if (assignment.values.sum() < clusterNeeded.toInt()) {
-                logger.warn(
-                    "Group '{}' could only place {}/{} needed replica(s) cluster-wide — every eligible node is at its memory capacity",
-                    group.name, assignment.values.sum(), clusterNeeded
-                )
-            }
-            repeat(myShare) {
-                val index = nextIndex(group, cluster.usedIndexes)
-                val service = LocalService(
-                    Service(UUID.randomUUID(), index, group.name, ServiceState.QUEUED, "127.0.0.1", -1, serviceProvider.nodeId)
-                )
+            // Grows with every promotion below, so a cold start or new standby in the same
+            // pass never reuses the index of a standby that was just promoted.
+            val usedIndexes = cluster.usedIndexes.toMutableSet()
+            val promoted = placeReplicas(group, eligible, self, cluster, usedIndexes, usedMemoryMb)
+            maintainStandbys(group, self, cluster.running + promoted, usedIndexes, usedMemoryMb)
+        }
+    }
 
-                serviceProvider.update(service)
-                synchronized(queue) { queue.offer(Pair(service, group)) }
-                logger.info("Queued {}-{} [memory: {}MB, platform: {}/{}]",
-                    group.name, index, group.memory, group.platform, group.version
-                )
+    /**
+     * Covers [group]'s deficit (`minOnline`, or one more on load) with this node's share
+     * of it — promoting a ready standby where one exists, queueing a cold start otherwise.
+     *
+     * @return how many standbys were promoted.
+     */
+    private fun placeReplicas(
+        group: Group,
+        eligible: List<NodeData>,
+        self: NodeData,
+        cluster: ClusterState,
+        usedIndexes: MutableSet<Int>,
+        usedMemoryMb: MutableMap<String, Int>,
+    ): Int {
+        val queued = synchronized(queue) { queue.count { it.second.name == group.name } }.toLong()
+        val minOnlineNeeded = (group.minOnline - cluster.running - queued).coerceAtLeast(0)
+        val capacityLeft = (group.maxOnline - cluster.running - queued).coerceAtLeast(0)
+
+        // Load-based scale-up: once every currently-running instance's aggregate
+        // occupancy (players / configured slots, both cluster-wide) reaches
+        // startThreshold, grow by one more — capped at maxOnline via capacityLeft.
+        // Only considered once at least one instance has actually reported real
+        // slots (cluster.maxPlayers > 0); before the first successful ping (or with
+        // no instances running yet) there's nothing to measure load from, and a
+        // startThreshold of 0.0 (the un-configured default — see GroupBuilder) opts
+        // a group out of this entirely rather than scaling it to maxOnline at 0 load.
+        val occupancy = if (cluster.maxPlayers > 0) cluster.onlinePlayers.toDouble() / cluster.maxPlayers else 0.0
+        val loadTriggered = capacityLeft > 0 && group.startThreshold > 0.0 &&
+            cluster.maxPlayers > 0 && occupancy >= group.startThreshold
+        val clusterNeeded = maxOf(minOnlineNeeded, if (loadTriggered) 1L else 0L).coerceAtMost(capacityLeft)
+
+        if (clusterNeeded <= 0) return 0
+
+        val assignment = assignReplicas(eligible, cluster.perNodeRunning, usedMemoryMb, group.memory, clusterNeeded.toInt())
+        val myShare = assignment[self.name()] ?: 0
+        if (myShare <= 0) return 0
+
+        if (loadTriggered && minOnlineNeeded <= 0) {
+            logger.info(
+                "Group '{}' is at {}/{} players ({}% >= {}% threshold) — starting {} more service(s) cluster-wide (this node: {}), capped at maxOnline: {}",
+                group.name, cluster.onlinePlayers, cluster.maxPlayers,
+                "%.1f".format(occupancy * 100), "%.1f".format(group.startThreshold * 100),
+                clusterNeeded, myShare, group.maxOnline
+            )
+        } else {
+            logger.info(
+                "Group '{}' needs {} more service(s) cluster-wide (this node: {}) — minOnline: {}, cluster running: {}, queued: {}",
+                group.name, clusterNeeded, myShare, group.minOnline, cluster.running, queued
+            )
+        }
+        if (assignment.values.sum() < clusterNeeded.toInt()) {
+            logger.warn(
+                "Group '{}' could only place {}/{} needed replica(s) cluster-wide — every eligible node is at its memory capacity",
+                group.name, assignment.values.sum(), clusterNeeded
+            )
+        }
+        var promoted = 0
+        repeat(myShare) {
+            // Already booted, and its memory already counted in usedMemoryMb — just announce it.
+            val standby = serviceProvider.promoteStandby(group, usedIndexes)
+            if (standby != null) {
+                usedIndexes += standby.serviceIndex
+                promoted++
+                return@repeat
             }
+            usedMemoryMb[self.name()] = (usedMemoryMb[self.name()] ?: 0) + group.memory
+
+            val index = nextIndex(group, usedIndexes)
+            val service = LocalService(
+                Service(UUID.randomUUID(), index, group.name, ServiceState.QUEUED, "127.0.0.1", -1, serviceProvider.nodeId)
+            )
+
+            serviceProvider.update(service)
+            synchronized(queue) { queue.offer(Pair(service, group)) }
+            logger.info("Queued {}-{} [memory: {}MB, platform: {}/{}]",
+                group.name, index, group.memory, group.platform, group.version
+            )
         }
+        return promoted
+    }
+
+    /**
+     * Keeps [group]'s standby pool on this node at its `standby-count`: stops standbys that
+     * can't be promoted or are beyond the target, and queues new ones while memory allows. Never more than would still fit under `maxOnline` once promoted.
+     */
+    private fun maintainStandbys(
+        group: Group,
+        self: NodeData,
+        running: Long,
+        usedIndexes: Set<Int>,
+        usedMemoryMb: MutableMap<String, Int>,
+    ) {
+        val pool = serviceProvider.standbyPool
+        // Outdated, or its name was meanwhile taken by a peer's service: never promotable.
+        (pool.outdated(group) + pool.servicesOf(group.name).filter { it.serviceIndex in usedIndexes })
+            .distinct()
+            .forEach { serviceProvider.shutdownLocal(it) }
+
+        val target = minOf(StandbyPool.standbyCountOf(group).toLong(), group.maxOnline - running).coerceAtLeast(0).toInt()
+        if (trimStandbys(group, target)) return
+
+        repeat(target - pool.servicesOf(group.name).size) {
+            val used = usedMemoryMb[self.name()] ?: 0
+            if (self.maxMemory > 0 && used + group.memory > self.maxMemory) return
+            usedMemoryMb[self.name()] = used + group.memory
+
+            val index = nextIndex(group, usedIndexes)
+            val service = LocalService(
+                Service(UUID.randomUUID(), index, group.name, ServiceState.QUEUED, "127.0.0.1", -1, serviceProvider.nodeId)
+            )
+            pool.reserve(service, group)
+            synchronized(standbyQueue) { standbyQueue.offer(Pair(service, group)) }
+            logger.info("Queued standby {}-{} [memory: {}MB, platform: {}/{}]",
+                group.name, index, group.memory, group.platform, group.version
+            )
+        }
+    }
+
+    /**
+     * Stops [group]'s standbys on this node beyond [target]: those not started yet (or no
+     * longer running) first, then booting ones — the ready ones are the whole point of the pool.
+     *
+     * @return whether any were stopped.
+     */
+    private fun trimStandbys(group: Group, target: Int): Boolean {
+        val pool = serviceProvider.standbyPool
+        val current = pool.servicesOf(group.name)
+        if (current.size <= target) return false
+        val booting = pool.booting().toSet()
+        current.sortedByDescending {
+            when {
+                it.process?.isAlive != true -> 2
+                it in booting -> 1
+                else -> 0
+            }
+        }.take(current.size - target)
+            .forEach { serviceProvider.shutdownLocal(it) }
+        return true
     }
 
     /**
      * Total memory (MB), across every group, that each online node currently runs
-     * locally — used to enforce [NodeData.maxMemory] as a hard placement cap. Computed
-     * once per tick via the same peer-query mechanism as [clusterState], but scoped to
-     * all groups at once (blank plan filter) instead of one node fetch per group.
+     * locally (this node's standbys included) — used to enforce [NodeData.maxMemory] as
+     * a hard placement cap. Computed once per tick from the same [replica] as
+     * [clusterState], scoped to all groups at once.
      */
     private fun nodeMemoryUsage(online: List<NodeData>, groupMemoryMb: Map<String, Int>): Map<String, Int> {
         val self = online.firstOrNull { it.id.toString() == serviceProvider.nodeId }
-        val localUsed = serviceProvider.localServices.sumOf { groupMemoryMb[it.groupName] ?: 0 }
+        val localUsed = (serviceProvider.localServices + serviceProvider.standbyPool.services())
+            .sumOf { groupMemoryMb[it.groupName] ?: 0 }
 
         val others = online.filter { it.id.toString() != serviceProvider.nodeId }
-        val remoteUsed = if (others.isEmpty()) emptyMap() else runBlocking {
-            coroutineScope {
-                others.map { node ->
-                    async {
-                        val used = runCatching { peerQuery.localServicesOf(node, "") }
-                            .onFailure { logger.warn("Failed to query services from node {}: {}", node.name(), it.message) }
-                            .getOrDefault(emptyList())
-                            .sumOf { service -> groupMemoryMb[service.plan] ?: 0 }
-                        node.name() to used
-                    }
-                }.awaitAll().toMap()
-            }
-        }
-
         return buildMap {
             self?.let { put(it.name(), localUsed) }
-            putAll(remoteUsed)
+            others.forEach { node ->
+                put(node.name(), replica.servicesOf(node).sumOf { service -> groupMemoryMb[service.plan] ?: 0 })
+            }
         }
     }
 
@@ -231,11 +340,10 @@ class ServiceQueue(
 
     /**
      * Aggregates [group]'s running-service count, used indexes, per-node breakdown and
-     * player occupancy across every node in [eligible] besides this one, via the same
-     * peer-query mechanism the cluster-wide service listing handlers use
-     * ([de.polocloud.node.services.cluster.PeerServiceQuery]). A slow or unreachable peer
-     * is skipped rather than failing the whole tick, at the cost of briefly
-     * under-counting that peer's services.
+     * player occupancy across every node in [eligible] besides this one, read from
+     * [replica] rather than asking each peer. A peer the replica has never managed to
+     * sync (slow or unreachable) contributes nothing, at the cost of briefly
+     * under-counting that peer's services — same trade-off as the live query had.
      */
     private fun clusterState(group: Group, eligible: List<NodeData>): ClusterState {
         val self = eligible.firstOrNull { it.id.toString() == serviceProvider.nodeId }
@@ -251,17 +359,7 @@ class ServiceQueue(
             return ClusterState(localRunning, localIndexes, perNodeRunning, localOnlinePlayers, localMaxPlayers)
         }
 
-        val remote = runBlocking {
-            coroutineScope {
-                others.map { node ->
-                    async {
-                        node to runCatching { peerQuery.localServicesOf(node, group.name) }
-                            .onFailure { logger.warn("Failed to query services from node {}: {}", node.name(), it.message) }
-                            .getOrDefault(emptyList())
-                    }
-                }.awaitAll()
-            }
-        }
+        val remote = others.map { node -> node to replica.servicesOf(node, group.name) }
 
         val perNodeRunning = buildMap {
             self?.let { put(it.name(), localRunning.toInt()) }
@@ -276,8 +374,13 @@ class ServiceQueue(
             localMaxPlayers + remote.sumOf { (_, services) -> services.sumOf { it.maxPlayers } },
         )
     }
-    
-    private fun assignReplicas(
+
+    /**
+     * Spreads [count] new replicas over [eligible]: each goes to the least loaded node with
+     * memory left, ties broken by running count and then id. Keyed by [NodeData.name].
+     * Internal for the placement benchmark.
+     */
+    internal fun assignReplicas(
         eligible: List<NodeData>,
         perNodeRunning: Map<String, Int>,
         usedMemoryMb: Map<String, Int>,
@@ -309,20 +412,25 @@ class ServiceQueue(
 
     private fun drainQueue() {
         val batch = synchronized(queue) { generateSequence { queue.poll() }.toList() }
-        if (batch.isEmpty()) return
+        val standbys = synchronized(standbyQueue) { generateSequence { standbyQueue.poll() }.toList() }
+        if (batch.isEmpty() && standbys.isEmpty()) return
 
         runBlocking {
-            batch.map { (service, group) ->
-                async(SERVICE_START_DISPATCHER) { startOne(service, group) }
-            }.awaitAll()
+            // Demand first: standbys only take start slots left over by real scale-ups.
+            (batch.map { (service, group) -> async(SERVICE_START_DISPATCHER) { startOne(service, group, standby = false) } } +
+                standbys.map { (service, group) -> async(SERVICE_START_DISPATCHER) { startOne(service, group, standby = true) } })
+                .awaitAll()
         }
     }
 
-    private fun startOne(service: LocalService, group: Group) {
-        logger.info("Starting {}-{} [memory: {}MB, platform: {}/{}]", group.name, service.serviceIndex, group.memory, group.platform, group.version)
+    private fun startOne(service: LocalService, group: Group, standby: Boolean) {
+        // Stopped again (outdated, surplus) before it ever got a start slot.
+        if (standby && service !in serviceProvider.standbyPool) return
+        logger.info("Starting {}-{}{} [memory: {}MB, platform: {}/{}]", group.name, service.serviceIndex, if (standby) " as standby" else "", group.memory, group.platform, group.version)
         try {
-            factory.start(service, group)
+            factory.start(service, group, standby)
         } catch (e: Exception) {
+            if (standby) serviceProvider.standbyPool.remove(service)
             logger.error("Failed to start {}-{}: {}", group.name, service.serviceIndex, e.message)
         }
     }
@@ -332,7 +440,8 @@ class ServiceQueue(
         val queuedIndexes = synchronized(queue) {
             queue.filter { it.second.name == group.name }.map { it.first.serviceIndex }.toSet()
         }
-        val usedIndexes = queuedIndexes + clusterOtherIndexes
+        val standbyIndexes = serviceProvider.standbyPool.servicesOf(group.name).map { it.serviceIndex }
+        val usedIndexes = queuedIndexes + clusterOtherIndexes + standbyIndexes
         var index = 1
         while (index in usedIndexes) index++
         return index
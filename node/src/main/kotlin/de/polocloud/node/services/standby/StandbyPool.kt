@@ -0,0 +1,148 @@
+package de.polocloud.node.services.standby
+
+import de.polocloud.node.group.Group
+import de.polocloud.node.services.LocalService
+import de.polocloud.shared.property.Properties
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * This node's pre-warmed services: started and booted like any other, but kept out of
+ * [de.polocloud.node.services.ServiceProvider.localServices], the database and the
+ * lifecycle events until the scaling queue needs one — so no proxy, API client or peer
+ * knows about them yet. Promoting one then only takes registering it, instead of a
+ * template copy, tasks and a JVM boot of tens of seconds.
+ *
+ * How many a group keeps per node is its [Properties.STANDBY_COUNT] property, see
+ * [standbyCountOf]. The queue reserves entries here ([reserve]) before starting them,
+ * the ping loop marks them [ready][markReady] once they answer, and [promote] hands out
+ * a ready one.
+ *
+ * Also counts, per group, how often a scale-up found a ready standby ([promote] hit) or
+ * had to cold-start instead (miss), and how long promotions took.
+ */
+class StandbyPool(private val nanoTime: () -> Long = System::nanoTime) {
+
+    private class Entry(val service: LocalService, val group: Group) {
+        @Volatile
+        var ready = false
+    }
+
+    private class Counters {
+        val hits = AtomicLong()
+        val misses = AtomicLong()
+        val promotionNanos = AtomicLong()
+        val maxPromotionNanos = AtomicLong()
+    }
+
+    private val entries = ConcurrentHashMap<UUID, Entry>()
+    private val counters = ConcurrentHashMap<String, Counters>()
+
+    /** Registers [service] as a standby of [group], before it is started. */
+    fun reserve(service: LocalService, group: Group) {
+        entries[service.id] = Entry(service, group)
+    }
+
+    /** Drops [service] from the pool. Returns whether it was a standby at all. */
+    fun remove(service: LocalService): Boolean = entries.remove(service.id) != null
+
+    operator fun contains(service: LocalService): Boolean = entries.containsKey(service.id)
+
+    /** Standbys whose process is running but hasn't answered a ping yet. */
+    fun booting(): List<LocalService> =
+        entries.values.filter { !it.ready && it.service.process?.isAlive == true }.map { it.service }
+
+    /** Marks [service] as fully booted, i.e. ready to be [promote]d. */
+    fun markReady(service: LocalService) {
+        entries[service.id]?.ready = true
+    }
+
+    /** Every standby of [groupName], booting or ready. */
+    fun servicesOf(groupName: String): List<LocalService> =
+        entries.values.filter { it.group.name == groupName }.map { it.service }
+
+    /** Every standby on this node. */
+    fun services(): List<LocalService> = entries.values.map { it.service }
+
+    /**
+     * Standbys of [group] started from an earlier version of it (another platform or
+     * version) — useless for promotion, so the queue stops them.
+     */
+    fun outdated(group: Group): List<LocalService> =
+        entries.values
+            .filter { it.group.name == group.name && (it.group.platform != group.platform || it.group.version != group.version) }
+            .map { it.service }
+
+    /**
+     * Takes a ready standby of [group] whose index isn't in [takenIndexes] out of the pool
+     * and hands it to [activate], which makes it a regular service. Returns it, or `null`
+     * if there was none — counted as a miss if [group] keeps standbys at all.
+     */
+    fun promote(group: Group, takenIndexes: Set<Int>, activate: (LocalService) -> Unit): LocalService? {
+        val started = nanoTime()
+        val entry = entries.values
+            .filter { it.ready && it.group.name == group.name && it.service.serviceIndex !in takenIndexes }
+            .filter { it.service.process?.isAlive == true }
+            .minByOrNull { it.service.serviceIndex }
+            ?.takeIf { entries.remove(it.service.id, it) }
+        if (entry == null) {
+            if (standbyCountOf(group) > 0) countersOf(group.name).misses.incrementAndGet()
+            return null
+        }
+
+        activate(entry.service)
+        val took = nanoTime() - started
+        val groupCounters = countersOf(group.name)
+        groupCounters.hits.incrementAndGet()
+        groupCounters.promotionNanos.addAndGet(took)
+        groupCounters.maxPromotionNanos.accumulateAndGet(took) { a, b -> maxOf(a, b) }
+        return entry.service
+    }
+
+    private fun countersOf(groupName: String) = counters.computeIfAbsent(groupName) { Counters() }
+
+    /** Per-group pool size and promotion counters, sorted by group name. */
+    fun stats(): List<StandbyStats> =
+        (counters.keys + entries.values.map { it.group.name }).distinct().sorted().map { name ->
+            val groupCounters = counters[name]
+            val standbys = entries.values.filter { it.group.name == name }
+            val hits = groupCounters?.hits?.get() ?: 0
+            StandbyStats(
+                group = name,
+                ready = standbys.count { it.ready },
+                booting = standbys.count { !it.ready },
+                hits = hits,
+                misses = groupCounters?.misses?.get() ?: 0,
+                averagePromotionMicros = if (hits > 0) groupCounters!!.promotionNanos.get() / hits / 1_000 else 0,
+                maxPromotionMicros = (groupCounters?.maxPromotionNanos?.get() ?: 0) / 1_000,
+            )
+        }
+
+    companion object {
+        /** How many standbys [group] keeps per node: its [Properties.STANDBY_COUNT], or `0`. */
+        fun standbyCountOf(group: Group): Int =
+            group.properties[Properties.STANDBY_COUNT]?.toIntOrNull()?.coerceAtLeast(0) ?: 0
+    }
+}
+
+/**
+ * One group's row of [StandbyPool.stats].
+ *
+ * @param hits   scale-ups served by promoting a standby.
+ * @param misses scale-ups of a group with standbys configured that found none ready and
+ *               cold-started a service instead.
+ */
+data class StandbyStats(
+    val group: String,
+    val ready: Int,
+    val booting: Int,
+    val hits: Long,
+    val misses: Long,
+    val averagePromotionMicros: Long,
+    val maxPromotionMicros: Long,
+) {
+    /** Share of scale-ups served from the pool, `0.0` before the first one. */
+    val hitRate: Double
+        get() = if (hits + misses > 0) hits.toDouble() / (hits + misses) else 0.0
+}
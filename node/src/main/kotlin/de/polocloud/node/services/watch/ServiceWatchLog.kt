@@ -0,0 +1,298 @@
+package de.polocloud.node.services.watch
+
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.services.ServiceProtoMapper
+import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
+import de.polocloud.proto.ServiceData
+import de.polocloud.proto.ServiceWatchDelta
+import de.polocloud.proto.ServiceWatchEvent
+import de.polocloud.proto.ServiceWatchSnapshot
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.event.server.ServerStartEvent
+import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * The cluster-wide service list as a versioned log of changes, streamed to API clients by
+ * `ServiceApiService.WatchServices` ([watch]): a snapshot first, then every change as an
+ * ordered delta, each stamped with the log's [epoch] and a strictly increasing version. A
+ * client reconnecting with the last version it applied is sent just the deltas after it,
+ * as long as the last [retained] are still held — otherwise a fresh snapshot.
+ *
+ * Fed like [de.polocloud.node.services.cluster.ClusterServiceReplica]: by the lifecycle
+ * events every node already sees, observed on [ClusterEventService] whether published
+ * here or relayed in from a peer. Events are best-effort, so every [reconcileInterval]
+ * the log also diffs itself against a full [listing] and emits whatever the events
+ * missed as ordinary deltas — clients never need to refetch.
+ *
+ * Does nothing until the first [watch]: a node nobody watches never lists the cluster.
+ *
+ * @param listing         the cluster-wide service list, e.g. what `FindServices` returns.
+ * @param retained        deltas kept for resuming clients.
+ * @param watcherCapacity deltas a client may fall behind by; a client falling further
+ *                        behind has its stream ended and resumes after reconnecting.
+ * @param observe         registers the event feed — injectable for testing.
+ */
+class ServiceWatchLog(
+    private val listing: suspend () -> List<ServiceData>,
+    private val retained: Int = DEFAULT_RETAINED,
+    private val watcherCapacity: Int = DEFAULT_WATCHER_CAPACITY,
+    private val reconcileInterval: Duration = 30.seconds,
+    private val observe: ((EventContext) -> Unit) -> AutoCloseable = ClusterEventService::observe,
+) {
+
+    private val logger = LoggerFactory.getLogger(ServiceWatchLog::class.java)
+
+    /** Random per log, so a version is never resumed against another node's or an earlier process's log. */
+    val epoch: String = UUID.randomUUID().toString()
+
+    private sealed interface Change {
+        /** [onlyIfKnown]: a player-count update must not resurrect a service already removed. */
+        data class Upsert(val service: ServiceData, val onlyIfKnown: Boolean = false) : Change
+        data class Remove(val id: String) : Change
+    }
+
+    private class Watcher(val groupFilter: String?, val events: Channel<ServiceWatchEvent>) {
+        fun accepts(service: ServiceData) = groupFilter == null || service.group.equals(groupFilter, ignoreCase = true)
+    }
+
+    // Everything below up to [seeded] is guarded by [lock].
+    private val lock = Any()
+    private val services = LinkedHashMap<String, ServiceData>()
+    private var version = 0L
+    private val deltas = ArrayDeque<ServiceWatchEvent>()
+    private val watchers = HashSet<Watcher>()
+
+    /** Non-null while a [listing] is in flight: changes applied meanwhile are replayed on top of it. */
+    private var pending: MutableList<Change>? = null
+    private val seeded = CompletableDeferred<Unit>()
+
+    private val resumes = AtomicLong()
+    private val snapshots = AtomicLong()
+    private val overflows = AtomicLong()
+
+    private val started = AtomicBoolean()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    @Volatile
+    private var observation: AutoCloseable? = null
+
+    /**
+     * Streams the log from the client's last applied [epoch]/[fromVersion] on, or from a
+     * snapshot if that can't be resumed (empty/foreign epoch, or too old). Only services of
+     * [groupFilter] are included, if given.
+     */
+    fun watch(epoch: String, fromVersion: Long, groupFilter: String?): Flow<ServiceWatchEvent> = flow {
+        start()
+        seeded.await()
+
+        val watcher = Watcher(groupFilter?.takeIf { it.isNotBlank() }, Channel(watcherCapacity))
+        // Registered under the same lock the backlog is read under, so no delta falls in between.
+        val backlog = synchronized(lock) {
+            watchers += watcher
+            backlogFor(epoch, fromVersion, watcher)
+        }
+        try {
+            backlog.forEach { emit(it) }
+            for (event in watcher.events) emit(event)
+        } finally {
+            synchronized(lock) { watchers -= watcher }
+        }
+    }
+
+    private fun backlogFor(clientEpoch: String, fromVersion: Long, watcher: Watcher): List<ServiceWatchEvent> {
+        val oldest = deltas.firstOrNull()?.version ?: (version + 1)
+        if (clientEpoch == epoch && fromVersion in (oldest - 1)..version) {
+            resumes.incrementAndGet()
+            return deltas.filter { it.version > fromVersion && watcher.accepts(it.delta.service) }
+        }
+        snapshots.incrementAndGet()
+        val snapshot = ServiceWatchSnapshot.newBuilder()
+            .addAllServices(services.values.filter(watcher::accepts))
+            .build()
+        return listOf(ServiceWatchEvent.newBuilder().setEpoch(epoch).setVersion(version).setSnapshot(snapshot).build())
+    }
+
+    private fun start() {
+        if (!started.compareAndSet(false, true)) return
+        observation = observe { context ->
+            if (context.encoding == EventEncoding.JSON) onEvent(context.eventName, context.eventData)
+        }
+        scope.launch {
+            while (isActive) {
+                try {
+                    reconcile()
+                } catch (cancel: CancellationException) {
+                    throw cancel
+                } catch (ex: Exception) {
+                    logger.warn("Failed to list services for the watch log: {}", ex.message)
+                }
+                delay(if (seeded.isCompleted) reconcileInterval else SEED_RETRY)
+            }
+        }
+    }
+
+    /** Folds a lifecycle event into the log; anything else is ignored without being decoded. */
+    internal fun onEvent(eventName: String, eventData: String) {
+        if (eventName !in TRACKED_EVENTS) return
+        val event = runCatching { EventCodec.decode(eventName, eventData) }.getOrNull() ?: return
+        val change = when (event) {
+            is ServerStartEvent -> Change.Upsert(ServiceProtoMapper.fromShared(event.service))
+            is ServiceOnlineEvent -> Change.Upsert(ServiceProtoMapper.fromShared(event.service))
+            is PlayerCountChangedEvent -> Change.Upsert(ServiceProtoMapper.fromShared(event.service), onlyIfKnown = true)
+            is ServerStoppedEvent -> Change.Remove(event.service.id)
+            else -> return
+        }
+        synchronized(lock) {
+            pending?.add(change)
+            // Before the first listing there is nothing to change yet; it's replayed onto it.
+            if (seeded.isCompleted) apply(change)
+        }
+    }
+
+    /**
+     * Lists the cluster and emits a delta for every difference to the log — what events
+     * missed, e.g. a relay that failed. The first listing seeds the log without deltas.
+     */
+    internal suspend fun reconcile() {
+        synchronized(lock) { pending = mutableListOf() }
+        val fresh = try {
+            listing()
+        } catch (ex: Exception) {
+            synchronized(lock) { pending = null }
+            throw ex
+        }
+
+        synchronized(lock) {
+            val target = LinkedHashMap<String, ServiceData>()
+            fresh.forEach { target[it.id] = it }
+            pending.orEmpty().forEach { change -> change.applyTo(target) }
+            pending = null
+
+            if (!seeded.isCompleted) {
+                services.putAll(target)
+                seeded.complete(Unit)
+                return
+            }
+            services.keys.filter { it !in target }.forEach { apply(Change.Remove(it)) }
+            target.values.forEach { apply(Change.Upsert(it)) }
+        }
+    }
+
+    private fun Change.applyTo(target: MutableMap<String, ServiceData>) {
+        when (this) {
+            is Change.Upsert -> if (!onlyIfKnown || service.id in target) target[service.id] = service
+            is Change.Remove -> target.remove(id)
+        }
+    }
+
+    /** Applies [change] to [services] and emits its delta, if it changes anything. Holds [lock]. */
+    private fun apply(change: Change) {
+        when (change) {
+            is Change.Upsert -> {
+                val previous = services[change.service.id]
+                if (previous == change.service || (previous == null && change.onlyIfKnown)) return
+                services[change.service.id] = change.service
+                // Resource samples differ on nearly every listing: kept for snapshots, but no delta on their own.
+                if (previous != null && previous.withoutUsage() == change.service.withoutUsage()) return
+                append(if (previous == null) ServiceWatchDelta.Type.ADDED else ServiceWatchDelta.Type.UPDATED, change.service)
+            }
+            is Change.Remove -> {
+                val previous = services.remove(change.id) ?: return
+                append(ServiceWatchDelta.Type.REMOVED, previous)
+            }
+        }
+    }
+
+    private fun ServiceData.withoutUsage(): ServiceData = toBuilder().clearCpuUsage().clearUsedMemory().build()
+
+    private fun append(type: ServiceWatchDelta.Type, service: ServiceData) {
+        version++
+        val event = ServiceWatchEvent.newBuilder()
+            .setEpoch(epoch)
+            .setVersion(version)
+            .setDelta(ServiceWatchDelta.newBuilder().setType(type).setService(service))
+            .build()
+        deltas.addLast(event)
+        if (deltas.size > retained) deltas.removeFirst()
+
+        watchers.removeIf { watcher ->
+            if (!watcher.accepts(service) || watcher.events.trySend(event).isSuccess) return@removeIf false
+            // Ends the client's stream; it resumes from its last version after reconnecting.
+            watcher.events.close()
+            overflows.incrementAndGet()
+            logger.debug("Ended a service watch that fell more than {} changes behind", watcherCapacity)
+            true
+        }
+    }
+
+    /** Size and counters of the log, for diagnostics. */
+    fun stats(): ServiceWatchStats = synchronized(lock) {
+        ServiceWatchStats(
+            version = version,
+            services = services.size,
+            watchers = watchers.size,
+            resumes = resumes.get(),
+            snapshots = snapshots.get(),
+            overflows = overflows.get(),
+        )
+    }
+
+    /** Stops the reconcile loop and the event feed; open watches end. */
+    fun close() {
+        observation?.close()
+        scope.cancel()
+        synchronized(lock) {
+            watchers.forEach { it.events.close() }
+            watchers.clear()
+        }
+    }
+
+    private companion object {
+        const val DEFAULT_RETAINED = 4_096
+        const val DEFAULT_WATCHER_CAPACITY = 1_024
+        val SEED_RETRY = 3.seconds
+
+        val TRACKED_EVENTS = setOf(
+            EventCodec.nameOf(ServerStartEvent::class.java),
+            EventCodec.nameOf(ServiceOnlineEvent::class.java),
+            EventCodec.nameOf(PlayerCountChangedEvent::class.java),
+            EventCodec.nameOf(ServerStoppedEvent::class.java),
+        )
+    }
+}
+
+/**
+ * @param version   the log's current version.
+ * @param resumes   watches resumed from a client's version instead of a snapshot.
+ * @param snapshots watches started with a snapshot.
+ * @param overflows watches ended for falling too far behind.
+ */
+data class ServiceWatchStats(
+    val version: Long,
+    val services: Int,
+    val watchers: Int,
+    val resumes: Long,
+    val snapshots: Long,
+    val overflows: Long,
+)
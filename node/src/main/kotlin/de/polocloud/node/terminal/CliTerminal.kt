@@ -2,17 +2,23 @@ package de.polocloud.node.terminal
 
 import de.polocloud.common.commands.CommandService
 import de.polocloud.node.core.context.NodeRuntimeContext
+import de.polocloud.node.terminal.impl.CachesCommand
 import de.polocloud.node.terminal.impl.ClearCommand
 import de.polocloud.node.terminal.impl.ClusterCommand
+import de.polocloud.node.terminal.impl.EventsCommand
 import de.polocloud.node.terminal.impl.GroupCommand
 import de.polocloud.node.terminal.impl.HelpCommand
 import de.polocloud.node.terminal.impl.InfoCommand
+import de.polocloud.node.terminal.impl.MetricsCommand
 import de.polocloud.node.terminal.impl.ModuleCommand
+import de.polocloud.node.terminal.impl.PingCommand
 import de.polocloud.node.terminal.impl.PlatformCommand
 import de.polocloud.node.terminal.impl.PlayerCommand
 import de.polocloud.node.terminal.impl.ReloadCommand
+import de.polocloud.node.terminal.impl.RpcCommand
 import de.polocloud.node.terminal.impl.ServiceCommand
 import de.polocloud.node.terminal.impl.ShutdownCommand
+import de.polocloud.node.terminal.impl.StandbyCommand
 import de.polocloud.node.terminal.impl.TemplateCommand
 import de.polocloud.node.terminal.impl.UpdateCommand
 import de.polocloud.node.services.factory.platform.custom.CustomPlatformService
@@ -130,6 +136,12 @@ class CliTerminal(val context: NodeRuntimeContext) : WizardPrompt {
         )
         this.commandService.registerCommand(ModuleCommand(this.context.moduleManager))
         this.commandService.registerCommand(PlayerCommand(this.context.serviceProvider))
+        this.commandService.registerCommand(EventsCommand())
+        this.commandService.registerCommand(CachesCommand())
+        this.commandService.registerCommand(StandbyCommand(this.context.serviceProvider))
+        this.commandService.registerCommand(PingCommand(this.context.serviceProvider))
+        this.commandService.registerCommand(RpcCommand())
+        this.commandService.registerCommand(MetricsCommand())
     }
 
     /**
@@ -0,0 +1,37 @@
+package de.polocloud.node.terminal.impl
+
+import de.polocloud.common.commands.Command
+import de.polocloud.node.cache.RepositoryCaches
+import de.polocloud.node.terminal.CommandOutput.white
+import org.slf4j.LoggerFactory
+
+/**
+ * Shows this node's repository read caches — how many reads each one served without the
+ * database (every hit is a database call saved), its hit rate, and how often writes here
+ * or on other nodes invalidated it — see [RepositoryCaches].
+ */
+class CachesCommand : Command("caches", "Show repository cache hit rates and saved database calls") {
+
+    private val logger = LoggerFactory.getLogger(CachesCommand::class.java)
+
+    init {
+        defaultExecution { list() }
+    }
+
+    private fun list() {
+        if (!RepositoryCaches.active) {
+            logger.info("Repository caching is not active yet.")
+            return
+        }
+        val caches = RepositoryCaches.stats()
+        logger.info("Repository caches (${caches.size}, ${white(caches.sumOf { it.hits }.toString())} database calls saved):")
+        caches.forEach {
+            logger.info(
+                "  ${it.name} &8|&r hit rate: ${white("%.1f%%".format(it.hitRate * 100))} " +
+                    "&8|&r saved: ${white(it.hits.toString())} &8|&r loaded: ${white(it.loads.toString())} " +
+                    "&8|&r invalidated: ${white(it.invalidations.toString())} " +
+                    "&8|&r cached: ${white("${it.rows} rows, ${it.queries} queries")} &8|&r ttl: ${white("${it.ttlMillis / 1000}s")}"
+            )
+        }
+    }
+}
@@ -4,21 +4,27 @@ import de.polocloud.common.Address
 import de.polocloud.common.commands.Command
 import de.polocloud.common.commands.type.KeywordArgument
 import de.polocloud.database.DatabaseCredentials
+import de.polocloud.node.cluster.heartbeat.HeartBeatResolution
 import de.polocloud.node.cluster.heartbeat.NodeHeartBeat
 import de.polocloud.node.cluster.heartbeat.NodeHeartBeatRepository
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.cluster.node.NodeRepository
+import de.polocloud.node.communication.grpc.NodeChannelPool
 import de.polocloud.node.communication.registration.node.RegistrationInfo
 import de.polocloud.node.core.context.NodeRuntimeContext
 import de.polocloud.node.identity.JoinResult
 import de.polocloud.node.terminal.CommandOutput.decimal
+import de.polocloud.node.terminal.CommandOutput.dim
 import de.polocloud.node.terminal.CommandOutput.timestamp
 import de.polocloud.node.terminal.CommandOutput.white
 import de.polocloud.node.terminal.WizardPrompt
 import de.polocloud.node.terminal.types.NodeArgument
 import de.polocloud.proto.NodeState
 import org.slf4j.LoggerFactory
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
 import kotlin.math.roundToInt
+import kotlin.time.toJavaInstant
 
 /**
  * Terminal command giving an overview of the cluster: known nodes, their live state and
@@ -27,6 +33,8 @@ import kotlin.math.roundToInt
  * `cluster` (no args) prints a summary, `cluster list` lists every node one-line each,
  * and `cluster <name>` shows the detailed view of a single node — the same three-tier
  * shape as [GroupCommand] (list/info) and [ServiceCommand] (list/bare-argument info).
+ * `cluster history <name>` prints a node's recent load from the pre-aggregated heartbeat
+ * buckets (see [de.polocloud.node.cluster.heartbeat.NodeHeartBeatRetention]).
  */
 class ClusterCommand(
     private val context: NodeRuntimeContext,
@@ -48,6 +56,10 @@ class ClusterCommand(
             info(it.arg(nodeArgument))
         }, "Show detailed information about a node", nodeArgument)
 
+        syntax({
+            history(it.arg(nodeArgument))
+        }, "Show a node's recent cpu/memory history", KeywordArgument("history"), nodeArgument)
+
         syntax({
             join()
         }, "Interactively join this fresh, standalone node into an existing cluster", KeywordArgument("join"))
@@ -83,6 +95,16 @@ class ClusterCommand(
                 "  memory: ${white("unknown")} (no online node reports its capacity)"
         )
         logger.info("  this node: ${white(context.localNodeContainer.data.name())}${if (context.localNodeContainer.data.head) " (head)" else ""}")
+        val channels = NodeChannelPool.stats()
+        logger.info(
+            "  peer channels: ${white(channels.open.toString())} open, " +
+                "${white(channels.handshakes.toString())} handshakes, ${white(channels.reuses.toString())} reuses"
+        )
+        val lastSeen = NodeRepository.lastSeen.stats()
+        logger.info(
+            "  peer contacts: ${white(lastSeen.touches.toString())} recorded, " +
+                "${white(lastSeen.written.toString())} written in ${white(lastSeen.flushes.toString())} flushes"
+        )
         logger.info("Use 'cluster list' to see all nodes, or 'cluster <name>' for details.")
     }
 
@@ -113,7 +135,8 @@ class ClusterCommand(
         logger.info("  version: ${white("${node.version} (${node.gitCommitHash})")}")
         logger.info("  memory: ${white(if (node.maxMemory > 0) "${node.maxMemory}MB" else "unknown")}")
         logger.info("  first connection: ${timestamp(node.firstConnection.toEpochMilliseconds()) { elapsed -> "$elapsed ago" }}")
-        logger.info("  last connection: ${timestamp(node.lastConnection.toEpochMilliseconds()) { elapsed -> "$elapsed ago" }}")
+        val lastConnection = maxOf(node.lastConnection, NodeRepository.lastSeen.of(node.id) ?: node.lastConnection)
+        logger.info("  last connection: ${timestamp(lastConnection.toEpochMilliseconds()) { elapsed -> "$elapsed ago" }}")
         if (heartbeat == null) {
             logger.info("  heartbeat: none received yet")
         } else {
@@ -124,7 +147,30 @@ class ClusterCommand(
     }
 
     private fun latestHeartbeat(node: NodeData): NodeHeartBeat? =
-        NodeHeartBeatRepository.find(node.id).maxByOrNull { it.heartBeatAt }
+        NodeHeartBeatRepository.latest(node.id)
+
+    /** The newest [HISTORY_BUCKETS] buckets of every resolution, as min/avg/max system load. */
+    private fun history(node: NodeData) {
+        logger.info("History of ${node.name()} (system load, min/avg/max):")
+        HeartBeatResolution.entries.forEach { resolution ->
+            val buckets = NodeHeartBeatRepository.rollups(node.id, resolution)
+                .sortedByDescending { it.bucketStart }
+                .take(HISTORY_BUCKETS)
+                .reversed()
+            if (buckets.isEmpty()) {
+                logger.info("  ${resolution.label}: no data yet")
+                return@forEach
+            }
+            logger.info("  ${resolution.label}:")
+            buckets.forEach { bucket ->
+                logger.info(
+                    "    ${dim(historyFormatter.format(bucket.bucketStart.toJavaInstant()))} " +
+                        "cpu ${white("${decimal(bucket.systemCpuMin)}/${decimal(bucket.systemCpuAvg)}/${decimal(bucket.systemCpuMax)}%")} " +
+                        "&8|&r memory ${white("${decimal(bucket.systemMemoryMin)}/${decimal(bucket.systemMemoryAvg)}/${decimal(bucket.systemMemoryMax)}%")}"
+                )
+            }
+        }
+    }
 
     /**
      * Guides an operator through joining this node into an existing cluster, live and
@@ -173,4 +219,9 @@ class ClusterCommand(
             }
         }
     }
+
+    private companion object {
+        const val HISTORY_BUCKETS = 6
+        val historyFormatter: DateTimeFormatter = DateTimeFormatter.ofPattern("MM-dd HH:mm").withZone(ZoneId.systemDefault())
+    }
 }
@@ -0,0 +1,41 @@
+package de.polocloud.node.terminal.impl
+
+import de.polocloud.common.commands.Command
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.terminal.CommandOutput.white
+import org.slf4j.LoggerFactory
+
+/**
+ * Shows every event stream services/plugins hold open on this node, with how far each
+ * one is behind (lag = events queued but not yet read, against its buffer size) and
+ * what its overflow policy already dropped or coalesced — see [ClusterEventService].
+ */
+class EventsCommand : Command("events", "Show event subscribers with their lag and drops") {
+
+    private val logger = LoggerFactory.getLogger(EventsCommand::class.java)
+
+    init {
+        defaultExecution { list() }
+    }
+
+    private fun list() {
+        val subscribers = ClusterEventService.subscriberStats()
+        val disconnects = ClusterEventService.overflowDisconnects()
+        if (subscribers.isEmpty()) {
+            logger.info("There are no event subscribers. (${white(disconnects.toString())} disconnected for falling behind)")
+            return
+        }
+
+        logger.info(
+            "Event subscribers (${subscribers.size}, ${white(disconnects.toString())} disconnected for falling behind):"
+        )
+        subscribers.forEach {
+            logger.info(
+                "  ${it.serviceName.ifBlank { "(unnamed)" }} &8|&r event: ${it.eventName.ifBlank { "*" }} " +
+                    "&8|&r lag: ${white("${it.lag}/${it.capacity}")} &8|&r delivered: ${white(it.delivered.toString())} " +
+                    "&8|&r dropped: ${white(it.dropped.toString())} &8|&r coalesced: ${white(it.coalesced.toString())} " +
+                    "&8|&r overflow: ${it.overflow.name.lowercase()}"
+            )
+        }
+    }
+}
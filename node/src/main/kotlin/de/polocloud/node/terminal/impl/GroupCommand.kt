@@ -144,14 +144,14 @@ class GroupCommand(
             val group = it.arg(groupArgument)
             val key = it.arg(propertyKeyArgument)
             val value = it.arg(propertyValueArgument)
-            val properties = group.properties.apply { put(key, value) }
+            val properties = group.properties + (key to value)
             update(group.copy(propertiesJson = PropertyCodec.encode(properties)), "property $key", value)
         }, "Set a group property", KeywordArgument("edit"), groupArgument, KeywordArgument("property"), propertyKeyArgument, propertyValueArgument)
 
         syntax({
             val group = it.arg(groupArgument)
             val key = it.arg(propertyKeyArgument)
-            val properties = group.properties.apply { remove(key) }
+            val properties = group.properties - key
             update(group.copy(propertiesJson = PropertyCodec.encode(properties)), "property $key", "(removed)")
         }, "Remove a group property", KeywordArgument("edit"), groupArgument, KeywordArgument("unset"), propertyKeyArgument)
 
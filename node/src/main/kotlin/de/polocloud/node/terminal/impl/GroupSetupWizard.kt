@@ -123,7 +123,7 @@ class GroupSetupWizard(
             return group
         }
 
-        val properties = group.properties.apply { if (fallback) put("fallback", "true") }
+        val properties = if (fallback) group.properties + ("fallback" to "true") else group.properties
         val updated = group.copy(static = static, propertiesJson = PropertyCodec.encode(properties))
         return groupService.update(updated)
     }
@@ -42,7 +42,7 @@ class InfoCommand(
     private fun info() {
         val node = localNodeContainer.data
         val config = holder.value
-        val heartbeat = NodeHeartBeatRepository.find(node.id).maxByOrNull { it.heartBeatAt }
+        val heartbeat = NodeHeartBeatRepository.latest(node.id)
         val runtimeMx = ManagementFactory.getRuntimeMXBean()
         val localServices = serviceProvider.localServices
 
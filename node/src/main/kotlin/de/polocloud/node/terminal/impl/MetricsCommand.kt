@@ -0,0 +1,93 @@
+package de.polocloud.node.terminal.impl
+
+import de.polocloud.common.commands.Command
+import de.polocloud.common.commands.type.TextArgument
+import de.polocloud.common.metrics.MetricFamily
+import de.polocloud.common.metrics.MetricSample
+import de.polocloud.common.metrics.MetricType
+import de.polocloud.common.metrics.PrometheusText
+import de.polocloud.node.metrics.NodeMetrics
+import de.polocloud.node.terminal.CommandOutput.dim
+import de.polocloud.node.terminal.CommandOutput.white
+import org.slf4j.LoggerFactory
+import kotlin.math.ceil
+
+/**
+ * Shows this node's metrics — the same values `general.metricsAddress` serves to
+ * Prometheus, see [NodeMetrics]. Histograms and summaries are condensed to their count,
+ * mean and quantiles. `metrics <filter>` only shows the metrics whose name contains it.
+ */
+class MetricsCommand : Command("metrics", "Show this node's metrics") {
+
+    private val logger = LoggerFactory.getLogger(MetricsCommand::class.java)
+
+    init {
+        val filterArgument = TextArgument("filter")
+
+        defaultExecution { list(null) }
+
+        syntax({
+            list(it.arg(filterArgument))
+        }, "Show only the metrics whose name contains the filter", filterArgument)
+    }
+
+    private fun list(filter: String?) {
+        val families = NodeMetrics.registry.collect()
+            .filter { filter == null || it.name.contains(filter, ignoreCase = true) }
+            .filter { it.samples.isNotEmpty() }
+        if (families.isEmpty()) {
+            logger.info(if (filter == null) "There are no metrics yet." else "No metric matches '$filter'.")
+            return
+        }
+        logger.info("Metrics (${families.size}):")
+        families.forEach { family ->
+            logger.info("  ${family.name} ${dim("— ${family.help}")}")
+            when (family.type) {
+                MetricType.HISTOGRAM -> histogram(family)
+                MetricType.SUMMARY -> summary(family)
+                else -> family.samples.forEach { logger.info("    ${labels(it.labels)}${white(PrometheusText.formatValue(it.value))}") }
+            }
+        }
+    }
+
+    private fun histogram(family: MetricFamily) {
+        family.samples.filter { it.name == "${family.name}_count" }.forEach { count ->
+            val series = family.samples.filter { it.labels - "le" == count.labels }
+            val buckets = series.filter { it.name == "${family.name}_bucket" }
+            val sum = series.firstOrNull { it.name == "${family.name}_sum" }?.value ?: 0.0
+            logger.info(
+                "    ${labels(count.labels)}count ${white(PrometheusText.formatValue(count.value))}" +
+                    "${mean(sum, count.value)} &8|&r p50 ${white(bound(buckets, count.value, 0.5))} " +
+                    "&8|&r p99 ${white(bound(buckets, count.value, 0.99))}"
+            )
+        }
+    }
+
+    private fun summary(family: MetricFamily) {
+        family.samples.filter { it.name == "${family.name}_count" }.forEach { count ->
+            val series = family.samples.filter { it.labels - "quantile" == count.labels }
+            val sum = series.firstOrNull { it.name == "${family.name}_sum" }?.value ?: 0.0
+            val quantiles = series.filter { it.name == family.name }.joinToString("") {
+                " &8|&r p${(it.labels.getValue("quantile").toDouble() * 100).toInt()} ${white(seconds(it.value))}"
+            }
+            logger.info("    ${labels(count.labels)}count ${white(PrometheusText.formatValue(count.value))}${mean(sum, count.value)}$quantiles")
+        }
+    }
+
+    /** Upper bound of the cumulative bucket the [quantile] falls into. */
+    private fun bound(buckets: List<MetricSample>, count: Double, quantile: Double): String {
+        if (count == 0.0) return "-"
+        val rank = ceil(quantile * count)
+        val bucket = buckets.firstOrNull { it.value >= rank } ?: return "-"
+        val le = bucket.labels.getValue("le")
+        return if (le == "+Inf") ">${buckets.getOrNull(buckets.size - 2)?.labels?.get("le") ?: "0"}" else "≤$le"
+    }
+
+    private fun mean(sum: Double, count: Double) =
+        if (count == 0.0) "" else " &8|&r avg ${white(seconds(sum / count))}"
+
+    private fun seconds(value: Double) = "%.4fs".format(value)
+
+    private fun labels(labels: Map<String, String>) =
+        if (labels.isEmpty()) "" else "${labels.entries.joinToString(", ") { (key, value) -> "$key=$value" }} &8|&r "
+}
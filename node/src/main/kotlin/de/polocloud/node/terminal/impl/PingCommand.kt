@@ -0,0 +1,62 @@
+package de.polocloud.node.terminal.impl
+
+import de.polocloud.common.commands.Command
+import de.polocloud.node.services.ServiceProvider
+import de.polocloud.node.services.ping.PingLatencyHistogram
+import de.polocloud.node.services.ping.PlayerCountSource
+import de.polocloud.node.services.ping.ServicePingFactory
+import de.polocloud.node.terminal.CommandOutput.white
+import org.slf4j.LoggerFactory
+
+/**
+ * Shows how this node pings its services — how many are scheduled, how far their
+ * intervals have backed off, how often player moves pulled a ping in, and the round-trip
+ * latency distribution — see [ServicePingFactory].
+ */
+class PingCommand(private val serviceProvider: ServiceProvider) :
+    Command("ping", "Show service ping scheduling and latency") {
+
+    private val logger = LoggerFactory.getLogger(PingCommand::class.java)
+
+    init {
+        defaultExecution { show() }
+    }
+
+    private fun show() {
+        val stats = serviceProvider.pingFactory.stats()
+        val latency = stats.latency
+
+        logger.info("Service pings on this node:")
+        logger.info(
+            "  scheduled: ${white(stats.scheduled.toString())} &8|&r in flight: ${white(stats.inFlight.toString())} " +
+                "&8|&r avg interval: ${white("${stats.averageIntervalMillis}ms")}"
+        )
+        logger.info(
+            "  pings: ${white(stats.pings.toString())} &8|&r failed: ${white(stats.failures.toString())} " +
+                "&8|&r nudges: ${white(stats.nudges.toString())} (${white(stats.coalescedNudges.toString())} coalesced)"
+        )
+        if (stats.playerCounts == PlayerCountSource.BRIDGE) {
+            logger.info(
+                "  player counts: ${white("bridge")} &8|&r moves: ${white(stats.pushes.toString())} " +
+                    "&8|&r corrected by check: ${white(stats.corrections.toString())}"
+            )
+        }
+        if (latency.total == 0L) return
+        logger.info(
+            "  latency: ${white("%.1fms".format(latency.meanMillis))} avg &8|&r p50 ${white(label(latency, 0.5))} " +
+                "&8|&r p90 ${white(label(latency, 0.9))} &8|&r p99 ${white(label(latency, 0.99))}"
+        )
+        latency.counts.forEachIndexed { bucket, count ->
+            if (count == 0L) return@forEachIndexed
+            val label = latency.bounds.getOrNull(bucket)?.let { "≤${it}ms" } ?: ">${latency.bounds.last()}ms"
+            logger.info("    $label: ${white(count.toString())}")
+        }
+    }
+
+    private fun label(latency: PingLatencyHistogram.Snapshot, quantile: Double): String =
+        when (val bound = latency.quantile(quantile)) {
+            null -> "-"
+            Long.MAX_VALUE -> ">${latency.bounds.last()}ms"
+            else -> "≤${bound}ms"
+        }
+}
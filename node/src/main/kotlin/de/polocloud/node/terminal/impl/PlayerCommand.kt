@@ -19,9 +19,10 @@ import org.slf4j.LoggerFactory
  *
  * `players` (default) / `players list` / `players info <name>` read directly from
  * [CloudPlayerRepository] — no cross-node gRPC fan-out is needed (unlike
- * [ServiceCommand]'s `list`/`info`): every node shares the same database, and a
- * player's row is always current as of its last join/switch/disconnect/kick RPC (see
- * `node/.../player/CloudPlayer.kt`'s persistence design doc).
+ * [ServiceCommand]'s `list`/`info`): every node holds every connected player in memory,
+ * kept current by the player events of each join/switch/disconnect/kick RPC (see
+ * [de.polocloud.node.player.PlayerSessionStore]). `players sessions` shows how far that
+ * store's database writes lag behind.
  *
  * `players send`/`players kick` broadcast a request event to every bridge instance in
  * the cluster instead of a targeted RPC — there is no direct channel from the node into
@@ -45,6 +46,10 @@ class PlayerCommand(
             list()
         }, "List all connected players", KeywordArgument("list"))
 
+        syntax({
+            sessions()
+        }, "Show the player store's write-behind queue", KeywordArgument("sessions"))
+
         syntax({ context ->
             info(context.arg(playerArgument))
         }, "Show detailed information about a connected player", playerArgument)
@@ -74,6 +79,20 @@ class PlayerCommand(
         }
     }
 
+    private fun sessions() {
+        val stats = CloudPlayerRepository.sessions.stats()
+        logger.info("Player sessions on this node:")
+        logger.info("  players: ${white(stats.players.toString())}")
+        logger.info(
+            "  pending writes: ${white(stats.queueDepth.toString())} &8|&r oldest: ${white("${stats.oldestPendingMillis}ms")} " +
+                "&8|&r flush lag: ${white("${stats.lastFlushLagMillis}ms")} last, ${white("${stats.maxFlushLagMillis}ms")} max"
+        )
+        logger.info(
+            "  written: ${white(stats.flushed.toString())} &8|&r coalesced: ${white(stats.coalesced.toString())} " +
+                "&8|&r failed: ${white(stats.failures.toString())}"
+        )
+    }
+
     private fun info(player: CloudPlayer) {
         logger.info("Player ${player.name}:")
         logger.info("  id: ${white(player.id.toString())}")
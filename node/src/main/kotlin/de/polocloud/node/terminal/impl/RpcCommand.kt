@@ -0,0 +1,46 @@
+package de.polocloud.node.terminal.impl
+
+import de.polocloud.common.commands.Command
+import de.polocloud.node.communication.grpc.GrpcModule
+import de.polocloud.node.communication.grpc.middleware.RpcLatencyHistogram
+import de.polocloud.node.communication.interceptor.PeerIdentity
+import de.polocloud.node.terminal.CommandOutput.white
+import org.slf4j.LoggerFactory
+
+/**
+ * Shows the requests this node's gRPC handlers served — calls, errors and latency per
+ * request type, busiest first — see [de.polocloud.node.communication.grpc.middleware.TimingServerMiddleware].
+ */
+class RpcCommand : Command("rpc", "Show gRPC handler call counts, errors and latency") {
+
+    private val logger = LoggerFactory.getLogger(RpcCommand::class.java)
+
+    init {
+        defaultExecution { list() }
+    }
+
+    private fun list() {
+        val handlers = GrpcModule.timing.stats()
+        if (handlers.isEmpty()) {
+            logger.info("No requests have been handled yet.")
+            return
+        }
+        val identities = PeerIdentity.stats()
+        logger.info(
+            "Handled requests (${handlers.size} types, ${white(handlers.values.sumOf { it.total }.toString())} calls, " +
+                "${white(identities.parses.toString())} certificates parsed):"
+        )
+        handlers.entries.sortedByDescending { it.value.total }.forEach { (type, latency) ->
+            logger.info(
+                "  $type &8|&r calls: ${white(latency.total.toString())} &8|&r errors: ${white(latency.errors.toString())} " +
+                    "&8|&r avg ${white(millis(latency.meanMicros))} &8|&r p50 ${white(label(latency, 0.5))} " +
+                    "&8|&r p99 ${white(label(latency, 0.99))} &8|&r max ${white(millis(latency.maxMicros.toDouble()))}"
+            )
+        }
+    }
+
+    private fun label(latency: RpcLatencyHistogram.Snapshot, quantile: Double): String =
+        latency.quantile(quantile)?.let { "≤${millis(it.toDouble())}" } ?: "-"
+
+    private fun millis(micros: Double): String = "%.2fms".format(micros / 1_000)
+}
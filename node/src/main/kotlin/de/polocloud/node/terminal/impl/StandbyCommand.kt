@@ -0,0 +1,41 @@
+package de.polocloud.node.terminal.impl
+
+import de.polocloud.common.commands.Command
+import de.polocloud.node.services.ServiceProvider
+import de.polocloud.node.services.standby.StandbyPool
+import de.polocloud.node.terminal.CommandOutput.white
+import de.polocloud.shared.property.Properties
+import org.slf4j.LoggerFactory
+
+/**
+ * Shows this node's pre-warmed standby services per group — how many are ready or still
+ * booting, how often a scale-up was served from the pool (hit rate) and how long the
+ * promotions took — see [StandbyPool].
+ */
+class StandbyCommand(private val serviceProvider: ServiceProvider) :
+    Command("standby", "Show pre-warmed standby services and their hit rate") {
+
+    private val logger = LoggerFactory.getLogger(StandbyCommand::class.java)
+
+    init {
+        defaultExecution { list() }
+    }
+
+    private fun list() {
+        val stats = serviceProvider.standbyPool.stats()
+        if (stats.isEmpty()) {
+            logger.info("No group keeps standby services on this node. (group property '${Properties.STANDBY_COUNT}')")
+            return
+        }
+
+        logger.info("Standby services on this node:")
+        stats.forEach {
+            logger.info(
+                "  ${it.group} &8|&r ready: ${white(it.ready.toString())} &8|&r booting: ${white(it.booting.toString())} " +
+                    "&8|&r hits: ${white(it.hits.toString())} &8|&r misses: ${white(it.misses.toString())} " +
+                    "&8|&r hit rate: ${white("%.1f%%".format(it.hitRate * 100))} " +
+                    "&8|&r promotion: ${white("${it.averagePromotionMicros}µs")} avg, ${white("${it.maxPromotionMicros}µs")} max"
+            )
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.polocloud.node.utils
+
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.nio.file.FileSystemException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Places files as hard links, falling back to a plain copy where the filesystem can't
+ * link the two paths (different volumes, FAT, some network mounts). The first such
+ * refusal is logged once; every later call on this instance copies straight away. Any
+ * other failure — a missing source, a permission error — only copies that one file.
+ *
+ * A hard link shares the file itself, not a snapshot of it: only link files nothing
+ * writes to in place afterwards — jars, or blobs of a content-addressed store. Replacing
+ * or deleting the link later (as every service shutdown does) never touches the source.
+ *
+ * @param link creates [target] as a link to [source] — injectable for testing.
+ */
+class FileLinker(private val link: (source: File, target: File) -> Unit = ::hardLink) {
+
+    private val logger = LoggerFactory.getLogger(FileLinker::class.java)
+
+    @Volatile
+    private var unsupported = false
+
+    /**
+     * Places [source]'s content at [target], replacing whatever [target] was.
+     *
+     * @return `true` if [target] was linked, `false` if it had to be copied.
+     */
+    fun linkOrCopy(source: File, target: File): Boolean {
+        target.parentFile?.mkdirs()
+        Files.deleteIfExists(target.toPath())
+        if (!unsupported) {
+            val linked = runCatching { link(source, target) }
+                .onFailure {
+                    if (linksUnsupported(it)) {
+                        unsupported = true
+                        logger.warn("Hard links are not supported for {} ({}) — copying files instead", target.path, it.message)
+                    } else {
+                        logger.debug("Failed to link {}, copying it instead: {}", target.path, it.message)
+                    }
+                }
+                .isSuccess
+            if (linked) return true
+        }
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        return false
+    }
+
+    private companion object {
+        /** Whether [failure] says these paths can't be linked at all, rather than that this one link failed. */
+        fun linksUnsupported(failure: Throwable): Boolean = when (failure) {
+            is UnsupportedOperationException -> true
+            // EXDEV: source and target are on different filesystems.
+            is FileSystemException -> failure.reason?.contains("cross-device", ignoreCase = true) == true
+            else -> false
+        }
+
+        fun hardLink(source: File, target: File) {
+            Files.createLink(target.toPath(), source.toPath())
+        }
+    }
+}
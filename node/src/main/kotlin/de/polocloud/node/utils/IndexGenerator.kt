@@ -5,7 +5,7 @@ import de.polocloud.node.cluster.node.NodeRepository
 object IndexGenerator {
 
     fun generateNode(): Int {
-        val usedIndexes = NodeRepository.findAll()
+        val usedIndexes = NodeRepository.findAllStored()
             .map { it.nodeIndex }
             .toSet()
 
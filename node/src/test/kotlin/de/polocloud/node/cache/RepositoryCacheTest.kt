@@ -0,0 +1,118 @@
+package de.polocloud.node.cache
+
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.proto.EventContext
+import de.polocloud.shared.event.EventCodec
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import kotlin.time.Duration.Companion.seconds
+
+class RepositoryCacheTest {
+
+    private var now = 0L
+    private val table = mutableMapOf("lobby" to "lobby@1")
+    private var reads = 0
+    private val cache = RepositoryCache<String, String>("test-${UUID.randomUUID()}", ttl = 10.seconds, parseKey = { it }, clock = { now })
+
+    private fun find(key: String) = cache.find(key) { reads++; table[key] }
+    private fun all() = cache.query("all") { reads++; table.values.toList() }
+
+    private fun relay(event: CacheInvalidationEvent) {
+        val encoded = EventCodec.encode(event)
+        ClusterEventService.broadcast(EventContext.newBuilder().setEventName(encoded.name).setEventData(encoded.data).build())
+    }
+
+    @BeforeEach
+    fun start() = RepositoryCaches.start("local-node")
+
+    @AfterEach
+    fun stop() = RepositoryCaches.stop()
+
+    @Test
+    fun `reads within the ttl are served from the cache`() {
+        repeat(3) { assertEquals("lobby@1", find("lobby")) }
+        repeat(3) { assertEquals(listOf("lobby@1"), all()) }
+
+        assertEquals(2, reads)
+        assertEquals(4, cache.stats().hits)
+
+        now += 10_000
+        find("lobby")
+        assertEquals(3, reads)
+    }
+
+    @Test
+    fun `a missing row is not cached`() {
+        assertNull(find("proxy"))
+        table["proxy"] = "proxy@1"
+
+        assertEquals("proxy@1", find("proxy"))
+    }
+
+    @Test
+    fun `a save writes through and drops cached query results`() {
+        all()
+        table["lobby"] = "lobby@2"
+        cache.saved("lobby", "lobby@2")
+
+        assertEquals("lobby@2", find("lobby"))
+        assertEquals(listOf("lobby@2"), all())
+        assertEquals(2, reads)
+    }
+
+    @Test
+    fun `a touch replaces a cached row but keeps query results and tells no one`() {
+        find("lobby")
+        all()
+        val written = mutableListOf<String?>()
+        cache.observeWrites { written += it }
+
+        cache.touched("lobby", "lobby@1b")
+        cache.touched("proxy", "proxy@1")
+
+        assertEquals("lobby@1b", find("lobby"))
+        assertEquals(listOf("lobby@1"), all())
+        assertNull(cache.find("proxy") { null })
+        assertEquals(2, reads)
+        assertEquals(emptyList<String?>(), written)
+    }
+
+    @Test
+    fun `another node's write invalidates the row, this node's own does not`() {
+        find("lobby")
+        relay(CacheInvalidationEvent("local-node", cache.name, "lobby"))
+        find("lobby")
+        assertEquals(1, reads)
+
+        table["lobby"] = "lobby@2"
+        relay(CacheInvalidationEvent("peer-node", cache.name, "lobby"))
+
+        assertEquals("lobby@2", find("lobby"))
+        assertEquals(1, cache.stats().invalidations)
+    }
+
+    @Test
+    fun `a load racing an invalidation is not cached`() {
+        cache.find("lobby") {
+            cache.invalidate("lobby")
+            table["lobby"]
+        }
+        find("lobby")
+
+        assertEquals(1, reads)
+        assertEquals(0, cache.stats().hits)
+    }
+
+    @Test
+    fun `nothing is cached while caching is stopped`() {
+        RepositoryCaches.stop()
+        find("lobby")
+        find("lobby")
+
+        assertEquals(2, reads)
+    }
+}
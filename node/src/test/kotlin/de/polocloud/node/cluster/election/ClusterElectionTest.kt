@@ -0,0 +1,177 @@
+package de.polocloud.node.cluster.election
+
+import de.polocloud.node.cluster.election.rpc.ElectionRpcClient
+import de.polocloud.node.cluster.election.rpc.LeaderHeartbeatResult
+import de.polocloud.node.cluster.election.rpc.RequestVoteResult
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.proto.NodeState
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.time.Clock.System.now
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.Duration.Companion.milliseconds
+
+/**
+ * Several [NodeElectionService]s in one process, wired to each other through [LocalRpcClient]
+ * and sharing an in-memory `nodes` table that answers every call only after [LATENCY_MILLIS].
+ * Election timeouts are an hour, so no timer ever fires: every election is started by the
+ * test, which keeps the outcome deterministic.
+ */
+class ClusterElectionTest {
+
+    private val store = InMemoryStore()
+    private val services = ConcurrentHashMap<UUID, NodeElectionService>()
+    private val heartbeats = ConcurrentHashMap<UUID, AtomicInteger>()
+
+    @AfterEach
+    fun cleanup() = services.values.forEach { it.stop() }
+
+    private fun node(index: Int) = NodeData(
+        id = UUID.randomUUID(),
+        nodeIndex = index,
+        groupName = "node",
+        hostname = "10.0.0.$index",
+        port = 4240 + index,
+        state = NodeState.ONLINE,
+        head = false,
+        electedAt = null,
+        term = 0,
+        votedFor = null,
+        version = "3",
+        gitCommitHash = "abc",
+        firstConnection = now(),
+        lastConnection = now(),
+        maxMemory = 0,
+    )
+
+    private fun register(index: Int): UUID = node(index).also { store.save(listOf(it)) }.id
+
+    private fun start(id: UUID): NodeElectionService {
+        val service = NodeElectionService(store, { LocalRpcClient() }, membershipReconcileInterval = 1.hours)
+        services[id] = service
+        service.start(id, baseTimeout = 1.hours, jitterRangeMillis = 0, heartbeatInterval = 10.milliseconds)
+        return service
+    }
+
+    private fun awaitCondition(description: String, condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 10_000
+        while (!condition()) {
+            check(System.currentTimeMillis() < deadline) { "Timed out waiting until $description" }
+            Thread.sleep(5)
+        }
+    }
+
+    private fun heartbeatsOf(id: UUID) = heartbeats[id]?.get() ?: 0
+
+    @Test
+    fun `leader heartbeats don't read the table and leadership is written in one batch`() {
+        val ids = List(3) { register(it + 1) }
+        val leadership = CopyOnWriteArrayList<Boolean>()
+        val (a, b, c) = ids.map(::start)
+        a.addLeadershipListener { leadership += it }
+        val readsBefore = store.findAllCalls.get()
+        val savesBefore = store.saveCalls.get()
+
+        runBlocking { a.startElection() }
+        awaitCondition("both followers heard 50 heartbeats") { ids.drop(1).all { heartbeatsOf(it) >= 50 } }
+        awaitCondition("the head is recorded") { store.stored(ids[0]).head }
+
+        assertTrue(a.isHead())
+        assertFalse(b.isHead())
+        assertFalse(c.isHead())
+        assertEquals(listOf(true), leadership)
+        assertEquals(listOf(true, false, false), ids.map { store.stored(it).head })
+        // No heartbeat round read the table: the only read is the one recording the outcome.
+        assertEquals(readsBefore + 1, store.findAllCalls.get())
+        // The candidate's vote, each peer's new term and vote, then the head in one save.
+        assertEquals(savesBefore + 6, store.saveCalls.get())
+    }
+
+    @Test
+    fun `a node registered after the election is heartbeated without a reconciliation`() {
+        val first = register(1)
+        val leader = start(first) // alone: elects itself right away
+        awaitCondition("the single node leads") { leader.isHead() }
+
+        val joined = register(2)
+        start(joined)
+
+        awaitCondition("the joined node hears the head") { heartbeatsOf(joined) >= 5 }
+        assertTrue(leader.isHead())
+        assertEquals(2, leader.membershipStats()?.members)
+    }
+
+    @Test
+    fun `a failed head steps aside for a new one, and only the new head is recorded`() {
+        val ids = List(3) { register(it + 1) }
+        val (a, b, _) = ids.map(::start)
+        runBlocking { a.startElection() }
+        awaitCondition("the first head is recorded") { store.stored(ids[0]).head }
+
+        services.remove(ids[0])?.stop()
+        val heard = heartbeatsOf(ids[2])
+        runBlocking { b.startElection() }
+        awaitCondition("the second head is recorded") { store.stored(ids[1]).head }
+
+        assertTrue(b.isHead())
+        assertFalse(a.isHead())
+        assertEquals(listOf(false, true, false), ids.map { store.stored(it).head })
+        awaitCondition("the remaining follower hears the new head") { heartbeatsOf(ids[2]) >= heard + 5 }
+    }
+
+    /** Calls the other services in this process directly — a stopped one doesn't answer. */
+    private inner class LocalRpcClient : ElectionRpcClient {
+        override suspend fun requestVote(peer: NodeData, term: Long, candidateId: UUID): RequestVoteResult? =
+            services[peer.id]?.handleRequestVote(term, candidateId)
+
+        override suspend fun leaderHeartbeat(peer: NodeData, term: Long, leaderId: UUID): LeaderHeartbeatResult? =
+            services[peer.id]?.handleLeaderHeartbeat(term, leaderId)
+                ?.also { if (it.success) heartbeats.computeIfAbsent(peer.id) { AtomicInteger() }.incrementAndGet() }
+    }
+
+    /** The `nodes` table: copies in and out like a database, [LATENCY_MILLIS] per call. */
+    private class InMemoryStore : NodeElectionService.Store {
+        private val rows = ConcurrentHashMap<UUID, NodeData>()
+        private val observers = CopyOnWriteArrayList<(UUID?) -> Unit>()
+
+        val findAllCalls = AtomicInteger()
+        val saveCalls = AtomicInteger()
+
+        fun stored(id: UUID): NodeData = rows.getValue(id)
+
+        override fun findAll(): List<NodeData> {
+            Thread.sleep(LATENCY_MILLIS)
+            findAllCalls.incrementAndGet()
+            return rows.values.map { it.copy() }
+        }
+
+        override fun find(id: UUID): NodeData? {
+            Thread.sleep(LATENCY_MILLIS)
+            return rows[id]?.copy()
+        }
+
+        override fun save(nodes: List<NodeData>) {
+            Thread.sleep(LATENCY_MILLIS)
+            saveCalls.incrementAndGet()
+            nodes.forEach { rows[it.id] = it.copy() }
+            nodes.forEach { node -> observers.forEach { it(node.id) } }
+        }
+
+        override fun observeWrites(observer: (UUID?) -> Unit): AutoCloseable {
+            observers += observer
+            return AutoCloseable { observers -= observer }
+        }
+    }
+
+    private companion object {
+        const val LATENCY_MILLIS = 20L
+    }
+}
@@ -0,0 +1,153 @@
+package de.polocloud.node.cluster.election
+
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.proto.NodeState
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.time.Clock.System.now
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.Duration.Companion.milliseconds
+
+class ClusterMembershipTest {
+
+    private val nodes = CopyOnWriteArrayList<NodeData>()
+    private val reads = AtomicInteger()
+    private val lookups = AtomicInteger()
+    @Volatile
+    private var failing = false
+    private val created = mutableListOf<ClusterMembership>()
+
+    @AfterEach
+    fun cleanup() = created.forEach { it.stop() }
+
+    private fun membership(reconcileInterval: Duration = 1.hours) =
+        ClusterMembership(
+            source = {
+                reads.incrementAndGet()
+                check(!failing) { "database down" }
+                nodes.toList()
+            },
+            lookup = { id ->
+                lookups.incrementAndGet()
+                nodes.firstOrNull { it.id == id }
+            },
+            reconcileInterval = reconcileInterval,
+        ).also { created += it }
+
+    private fun node(index: Int) = NodeData(
+        id = UUID.randomUUID(),
+        nodeIndex = index,
+        groupName = "node",
+        hostname = "10.0.0.$index",
+        port = 4240 + index,
+        state = NodeState.ONLINE,
+        head = false,
+        electedAt = null,
+        term = 0,
+        votedFor = null,
+        version = "3",
+        gitCommitHash = "abc",
+        firstConnection = now(),
+        lastConnection = now(),
+        maxMemory = 0,
+    ).also { nodes += it }
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (!condition()) {
+            check(System.currentTimeMillis() < deadline) { "Timed out" }
+            Thread.sleep(5)
+        }
+    }
+
+    @Test
+    fun `members are read once, not on every call`() {
+        node(1)
+        node(2)
+        val membership = membership()
+        membership.start()
+
+        repeat(1_000) { membership.members() }
+
+        assertEquals(2, membership.members().size)
+        assertEquals(1, reads.get())
+    }
+
+    @Test
+    fun `a write to a member doesn't reload, a write to an unknown node does`() {
+        val member = node(1)
+        val membership = membership()
+        membership.start()
+
+        membership.changed(member.id)
+        awaitCondition { lookups.get() == 1 }
+        Thread.sleep(50)
+        assertEquals(1, reads.get())
+        assertEquals(member, membership.members().single())
+
+        val joined = node(2)
+        membership.changed(joined.id)
+        awaitCondition { membership.members().any { it.id == joined.id } }
+        assertEquals(2, reads.get())
+    }
+
+    @Test
+    fun `a member restarted on another port is reloaded`() {
+        val member = node(1)
+        val membership = membership()
+        membership.start()
+
+        nodes -= member
+        nodes += member.copy(port = 5000)
+        membership.changed(member.id)
+
+        awaitCondition { membership.members().single().port == 5000 }
+        assertEquals(1, reads.get())
+        assertEquals(1, lookups.get())
+    }
+
+    @Test
+    fun `a deleted member is dropped with its write, not at the reconciliation`() {
+        val member = node(1)
+        node(2)
+        val membership = membership()
+        membership.start()
+
+        nodes -= member
+        membership.changed(member.id)
+
+        awaitCondition { membership.members().none { it.id == member.id } }
+        assertEquals(1, membership.members().size)
+        assertEquals(1, reads.get())
+    }
+
+    @Test
+    fun `a removed node is dropped by the reconciliation`() {
+        val member = node(1)
+        node(2)
+        val membership = membership(reconcileInterval = 20.milliseconds)
+        membership.start()
+
+        nodes -= member
+
+        awaitCondition { membership.members().none { it.id == member.id } }
+    }
+
+    @Test
+    fun `a failed reload keeps the previous view`() {
+        node(1)
+        val membership = membership()
+        membership.start()
+        failing = true
+
+        membership.changed(null)
+        awaitCondition { reads.get() == 2 }
+
+        assertEquals(1, membership.members().size)
+    }
+}
@@ -149,6 +149,49 @@ class NodeHeartBeatMonitorTest {
         assertEquals(NodeState.ONLINE, NodeRepository.find(node.id)?.state)
     }
 
+    @Test
+    fun `only the latest heartbeat row counts, not the history`() {
+        val node = onlineNode(lastConnection = now() - timeout - 30.seconds, index = 8)
+        NodeHeartBeatRepository.appendHistory(
+            NodeHeartBeat(
+                id = UUID.randomUUID().toString(),
+                nodeId = node.id,
+                heartBeatAt = now(),
+                systemCpuUsage = 1.0,
+                systemMemoryUsage = 1.0,
+                applicationCpuUsage = 1.0,
+                applicationMemoryUsage = 1.0,
+            )
+        )
+
+        monitor.checkAll()
+
+        assertEquals(NodeState.CRASHED, NodeRepository.find(node.id)?.state)
+    }
+
+    @Test
+    fun `saving a heartbeat replaces the node's latest one`() {
+        val node = onlineNode(lastConnection = now(), index = 9)
+        val older = now() - 5.seconds
+        val newer = now()
+        listOf(older, newer).forEach { at ->
+            NodeHeartBeatRepository.save(
+                NodeHeartBeat(
+                    id = UUID.randomUUID().toString(),
+                    nodeId = node.id,
+                    heartBeatAt = at,
+                    systemCpuUsage = 1.0,
+                    systemMemoryUsage = 1.0,
+                    applicationCpuUsage = 1.0,
+                    applicationMemoryUsage = 1.0,
+                )
+            )
+        }
+
+        assertEquals(newer, NodeHeartBeatRepository.latest(node.id)?.heartBeatAt)
+        assertEquals(1, NodeHeartBeatRepository.latestByNode().count { it.key == node.id })
+    }
+
     @Test
     fun `a node stuck in STARTING with a stale lastConnection is marked crashed`() {
         // Not just ONLINE nodes: one that died before finishing startup must also reach
@@ -0,0 +1,165 @@
+package de.polocloud.node.cluster.heartbeat
+
+import de.polocloud.database.DatabaseAccess
+import de.polocloud.database.DatabaseCredentials
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.util.UUID
+import kotlin.time.Duration.Companion.days
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.Instant
+
+/**
+ * Covers [NodeHeartBeatRetention.compact] against a throwaway H2 database, like
+ * [NodeHeartBeatMonitorTest]: raw rows rolled into 1m/10m/1h buckets, expiry per level,
+ * and that a repeated pass changes nothing.
+ */
+class NodeHeartBeatRetentionTest {
+
+    companion object {
+        private val dbPath = "build/tmp/polocloud-heartbeat-retention-test-${UUID.randomUUID()}"
+
+        @JvmStatic
+        @BeforeAll
+        fun setUpDatabase() {
+            DatabaseAccess.initialize(DatabaseCredentials.H2(dbPath))
+            check(DatabaseAccess.connect()) { "Failed to connect to the test H2 database" }
+        }
+
+        @JvmStatic
+        @AfterAll
+        fun tearDownDatabase() {
+            DatabaseAccess.close()
+            File(dbPath).parentFile?.listFiles { file -> file.name.startsWith(File(dbPath).name) }
+                ?.forEach { it.delete() }
+        }
+    }
+
+    // Aligned to an hour so bucket boundaries are easy to reason about.
+    private val now = Instant.fromEpochMilliseconds(1_800_000_000_000 / 3_600_000 * 3_600_000)
+
+    private fun beat(nodeId: UUID, at: Instant, cpu: Double) = NodeHeartBeat(
+        id = UUID.randomUUID().toString(),
+        nodeId = nodeId,
+        heartBeatAt = at,
+        systemCpuUsage = cpu,
+        systemMemoryUsage = 50.0,
+        applicationCpuUsage = 1.0,
+        applicationMemoryUsage = 1.0,
+    ).also(NodeHeartBeatRepository::appendHistory)
+
+    @Test
+    fun `raw samples are rolled into minute buckets with min, avg and max`() {
+        val nodeId = UUID.randomUUID()
+        val minute = now - 10.minutes
+        beat(nodeId, minute, 10.0)
+        beat(nodeId, minute + 20.seconds, 20.0)
+        beat(nodeId, minute + 40.seconds, 60.0)
+
+        NodeHeartBeatRetention(clock = { now }).compact(nodeId)
+
+        val bucket = NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.MINUTE).single()
+        assertEquals(minute, bucket.bucketStart)
+        assertEquals(3, bucket.samples)
+        assertEquals(10.0, bucket.systemCpuMin)
+        assertEquals(30.0, bucket.systemCpuAvg, 1e-9)
+        assertEquals(60.0, bucket.systemCpuMax)
+        // Still within the raw retention, so the raw rows themselves stay.
+        assertEquals(3, NodeHeartBeatRepository.history(nodeId).size)
+    }
+
+    @Test
+    fun `a minute that is not over yet is not rolled up`() {
+        val nodeId = UUID.randomUUID()
+        beat(nodeId, now - 10.seconds, 10.0)
+
+        NodeHeartBeatRetention(clock = { now - 5.seconds }).compact(nodeId)
+
+        assertTrue(NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.MINUTE).isEmpty())
+    }
+
+    @Test
+    fun `coarser buckets weight finer ones by their sample count`() {
+        val nodeId = UUID.randomUUID()
+        val hour = now - 2.hours
+        beat(nodeId, hour, 10.0)
+        beat(nodeId, hour + 10.seconds, 10.0)
+        beat(nodeId, hour + 15.minutes, 40.0)
+
+        NodeHeartBeatRetention(rawRetention = 1.days, clock = { now }).compact(nodeId)
+
+        val tenMinutes = NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.TEN_MINUTES)
+        assertEquals(2, tenMinutes.size)
+        val hourly = NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.HOUR).single()
+        assertEquals(3, hourly.samples)
+        assertEquals(20.0, hourly.systemCpuAvg, 1e-9)
+        assertEquals(40.0, hourly.systemCpuMax)
+    }
+
+    @Test
+    fun `raw rows past the retention are deleted once rolled up`() {
+        val nodeId = UUID.randomUUID()
+        beat(nodeId, now - 3.hours, 10.0)
+        beat(nodeId, now - 10.minutes, 20.0)
+
+        val result = NodeHeartBeatRetention(rawRetention = 1.hours, clock = { now }).compact(nodeId)
+
+        assertEquals(1, result.rowsDeleted)
+        assertEquals(listOf(now - 10.minutes), NodeHeartBeatRepository.history(nodeId).map { it.heartBeatAt })
+        assertEquals(2, NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.MINUTE).size)
+    }
+
+    @Test
+    fun `minute buckets older than a day are expired but stay covered by coarser ones`() {
+        val nodeId = UUID.randomUUID()
+        beat(nodeId, now - 2.days, 10.0)
+
+        NodeHeartBeatRetention(clock = { now }).compact(nodeId)
+
+        assertTrue(NodeHeartBeatRepository.history(nodeId).isEmpty())
+        assertTrue(NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.MINUTE).isEmpty())
+        assertEquals(1, NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.TEN_MINUTES).size)
+        assertEquals(1, NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.HOUR).size)
+    }
+
+    @Test
+    fun `a backlog is worked off over several capped passes, oldest first`() {
+        val nodeId = UUID.randomUUID()
+        val start = now - 3.hours
+        repeat(30) { beat(nodeId, start + it.minutes, it.toDouble()) }
+        val retention = NodeHeartBeatRetention(maxChangesPerPass = 10, clock = { now })
+
+        val first = retention.compact(nodeId)
+        assertEquals(NodeHeartBeatRetention.Result(bucketsWritten = 10, rowsDeleted = 0), first)
+        assertEquals((0 until 10).map { start + it.minutes }, NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.MINUTE).map { it.bucketStart }.sorted())
+        assertEquals(30, NodeHeartBeatRepository.history(nodeId).size)
+
+        var passes = 1
+        while (retention.compact(nodeId) != NodeHeartBeatRetention.Result(0, 0)) {
+            check(++passes < 20) { "Never settled" }
+        }
+        assertTrue(passes > 3)
+        assertTrue(NodeHeartBeatRepository.history(nodeId).isEmpty())
+        assertEquals(30, NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.MINUTE).size)
+        val hourly = NodeHeartBeatRepository.rollups(nodeId, HeartBeatResolution.HOUR).single()
+        assertEquals(30, hourly.samples)
+        assertEquals(14.5, hourly.systemCpuAvg, 1e-9)
+    }
+
+    @Test
+    fun `a second pass over unchanged data writes and deletes nothing`() {
+        val nodeId = UUID.randomUUID()
+        beat(nodeId, now - 3.hours, 10.0)
+        beat(nodeId, now - 30.minutes, 20.0)
+        val retention = NodeHeartBeatRetention(clock = { now })
+        retention.compact(nodeId)
+
+        assertEquals(NodeHeartBeatRetention.Result(bucketsWritten = 0, rowsDeleted = 0), retention.compact(nodeId))
+    }
+}
@@ -0,0 +1,126 @@
+package de.polocloud.node.cluster.node
+
+import de.polocloud.common.communication.server.context.GrpcServerContext
+import de.polocloud.node.communication.grpc.middleware.NodeLastConnectionMiddleware
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.time.Instant
+
+class NodeLastSeenTest {
+
+    private val writes = CopyOnWriteArrayList<Map<UUID, Instant>>()
+    private val writer = NodeLastSeen.Writer { lastSeen -> writes += lastSeen; lastSeen.size }
+
+    private fun NodeLastConnectionMiddleware.call(subject: String) = runBlocking {
+        intercept(Unit, GrpcServerContext().with("subject", subject)) { "ok" }
+    }
+
+    @Test
+    fun `thousands of node rpcs cost one write per node and flush`() {
+        val lastSeen = NodeLastSeen(writer, isNode = { true }, flushIntervalMillis = 50)
+        val middleware = NodeLastConnectionMiddleware(lastSeen)
+        val nodes = List(5) { UUID.randomUUID() }
+        val calls = AtomicLong()
+
+        lastSeen.start()
+        val startedAt = System.currentTimeMillis()
+        val executor = Executors.newFixedThreadPool(8)
+        repeat(8) { thread ->
+            executor.execute {
+                var i = thread
+                while (System.currentTimeMillis() - startedAt < 1_000) {
+                    middleware.call(nodes[i++ % nodes.size].toString())
+                    calls.incrementAndGet()
+                }
+            }
+        }
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS))
+        lastSeen.close()
+        val elapsed = System.currentTimeMillis() - startedAt
+
+        assertTrue(calls.get() >= 5_000, "only ${calls.get()} calls fired")
+        assertEquals(calls.get(), lastSeen.stats().touches)
+        // At most every node once per flush, plus the final flush on close.
+        val maxWrites = nodes.size * (elapsed / 50 + 2)
+        val rows = writes.sumOf { it.size }
+        assertTrue(rows <= maxWrites, "$rows writes for ${calls.get()} calls, expected at most $maxWrites")
+        assertEquals(nodes.toSet(), writes.flatMap { it.keys }.toSet())
+        nodes.forEach { assertEquals(lastSeen.of(it), writes.last { write -> it in write }[it]) }
+    }
+
+    @Test
+    fun `the in-memory value is current before it is flushed`() {
+        var now = 1_000L
+        val lastSeen = NodeLastSeen(writer, isNode = { true }, clock = { now })
+        val node = UUID.randomUUID()
+
+        lastSeen.touch(node)
+        now = 2_000L
+        lastSeen.touch(node)
+
+        assertEquals(Instant.fromEpochMilliseconds(2_000), lastSeen.of(node))
+        assertTrue(writes.isEmpty())
+    }
+
+    @Test
+    fun `a node not heard from again is not written again`() {
+        val lastSeen = NodeLastSeen(writer, isNode = { true })
+        lastSeen.touch(UUID.randomUUID())
+
+        assertEquals(1, lastSeen.flush())
+        assertEquals(0, lastSeen.flush())
+        assertEquals(1, writes.size)
+    }
+
+    @Test
+    fun `a failed write is retried with the next flush`() {
+        var fail = true
+        val lastSeen = NodeLastSeen({ lastSeen -> if (fail) error("database down") else writer.write(lastSeen) }, isNode = { true })
+        val node = UUID.randomUUID()
+        lastSeen.touch(node)
+
+        assertThrows(IllegalStateException::class.java) { lastSeen.flush() }
+        fail = false
+
+        assertEquals(1, lastSeen.flush())
+        assertEquals(setOf(node), writes.single().keys)
+    }
+
+    @Test
+    fun `cli callers are not tracked`() {
+        val lastSeen = NodeLastSeen(writer)
+
+        NodeLastConnectionMiddleware(lastSeen).call("john.doe")
+
+        assertEquals(0, lastSeen.stats().nodes)
+        assertNull(lastSeen.of(UUID.randomUUID()))
+    }
+
+    @Test
+    fun `services and nodes without a row are not tracked`() {
+        val nodes = mutableSetOf(UUID.randomUUID())
+        val lastSeen = NodeLastSeen(writer, isNode = { it in nodes })
+        val middleware = NodeLastConnectionMiddleware(lastSeen)
+        val node = nodes.single()
+
+        middleware.call(node.toString())
+        middleware.call(UUID.randomUUID().toString()) // a service
+        assertEquals(1, lastSeen.stats().nodes)
+        assertEquals(1, lastSeen.stats().touches)
+
+        nodes.clear() // pruned
+        assertEquals(0, lastSeen.flush())
+        assertEquals(0, lastSeen.stats().nodes)
+        assertNull(lastSeen.of(node))
+    }
+}
@@ -0,0 +1,42 @@
+package de.polocloud.node.communication.grpc.middleware
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class RpcLatencyHistogramTest {
+
+    @Test
+    fun `every value falls into a bucket at most an eighth wider than itself`() {
+        var value = 0L
+        while (value < Long.MAX_VALUE / 17) {
+            val index = RpcLatencyHistogram.indexOf(value)
+            val upper = RpcLatencyHistogram.upperBoundOf(index)
+            assertTrue(value <= upper, "$value above its bucket bound $upper")
+            assertTrue(upper - value <= value / RpcLatencyHistogram.SUB_BUCKETS, "bucket of $value reaches $upper")
+            if (index > 0) assertTrue(value > RpcLatencyHistogram.upperBoundOf(index - 1))
+            value = value * 17 / 16 + 1
+        }
+        assertEquals(Long.MAX_VALUE, RpcLatencyHistogram.upperBoundOf(RpcLatencyHistogram.indexOf(Long.MAX_VALUE)))
+    }
+
+    @Test
+    fun `quantiles report the bucket bound capped at the maximum`() {
+        val histogram = RpcLatencyHistogram()
+        assertNull(histogram.snapshot().quantile(0.5))
+
+        repeat(98) { histogram.record(100) }
+        histogram.record(5_000)
+        histogram.record(20_000, failed = true)
+        val snapshot = histogram.snapshot()
+
+        assertEquals(100, snapshot.total)
+        assertEquals(1, snapshot.errors)
+        assertEquals(103, snapshot.quantile(0.5))
+        assertEquals(5_119, snapshot.quantile(0.99))
+        assertEquals(20_000, snapshot.quantile(1.0))
+        assertEquals(20_000, snapshot.maxMicros)
+        assertEquals(348.0, snapshot.meanMicros)
+    }
+}
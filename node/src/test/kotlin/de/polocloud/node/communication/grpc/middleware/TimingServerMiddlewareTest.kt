@@ -0,0 +1,52 @@
+package de.polocloud.node.communication.grpc.middleware
+
+import de.polocloud.common.communication.server.context.GrpcServerContext
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class TimingServerMiddlewareTest {
+
+    private var now = 0L
+    private val timing = TimingServerMiddleware(clock = { now })
+
+    private fun <Response : Any> call(request: Any, tookMicros: Long, result: () -> Response) = runBlocking {
+        timing.intercept(request, GrpcServerContext()) {
+            now += tookMicros * 1_000
+            result()
+        }
+    }
+
+    @Test
+    fun `every request type gets its own histogram`() {
+        call("ping", 40) { "pong" }
+        call("ping", 60) { "pong" }
+        call(42, 1_000) { "answer" }
+
+        val stats = timing.stats()
+        assertEquals(setOf("String", "Integer"), stats.keys)
+        assertEquals(2, stats.getValue("String").total)
+        assertEquals(60, stats.getValue("String").maxMicros)
+        assertEquals(1_000, stats.getValue("Integer").maxMicros)
+    }
+
+    @Test
+    fun `a failed call is timed and counted as an error`() {
+        assertThrows(IllegalStateException::class.java) { call<String>("ping", 250) { error("no handler") } }
+        call("ping", 10) { "pong" }
+
+        val ping = timing.stats().getValue("String")
+        assertEquals(2, ping.total)
+        assertEquals(1, ping.errors)
+        assertEquals(250, ping.maxMicros)
+    }
+
+    @Test
+    fun `a cancelled call is not an error`() {
+        assertThrows(CancellationException::class.java) { call<String>("ping", 10) { throw CancellationException("client left") } }
+
+        assertEquals(0, timing.stats().getValue("String").errors)
+    }
+}
@@ -6,11 +6,15 @@ import de.polocloud.database.DatabaseCredentials
 import de.polocloud.i18n.api.TranslationService
 import de.polocloud.node.player.CloudPlayerRepository
 import de.polocloud.proto.FindPlayerRequest
+import de.polocloud.proto.ListPlayersPageRequest
 import de.polocloud.proto.ListPlayersRequest
 import de.polocloud.proto.PlayerData
+import de.polocloud.proto.PlayerFilter
 import de.polocloud.proto.RegisterPlayerRequest
 import de.polocloud.proto.UnregisterPlayerRequest
 import de.polocloud.proto.UpdatePlayerServerRequest
+import io.grpc.Status
+import io.grpc.StatusRuntimeException
 import kotlinx.coroutines.runBlocking
 import org.junit.jupiter.api.AfterAll
 import org.junit.jupiter.api.Assertions.assertEquals
@@ -26,7 +30,7 @@ import java.util.UUID
 /**
  * Covers the player RPC handlers ([RegisterPlayerServerHandler],
  * [UpdatePlayerServerServerHandler], [UnregisterPlayerServerHandler],
- * [FindPlayerServerHandler], [ListPlayersServerHandler]) — mirrors
+ * [FindPlayerServerHandler], [ListPlayersServerHandler], [ListPlayersPageServerHandler]) — mirrors
  * `node/.../communication/handler/group/GroupServerHandlerTest.kt`'s shape, but against
  * a real throwaway H2 database rather than a fake repository, since
  * [CloudPlayerRepository] (unlike `GroupService`) is not itself injectable.
@@ -198,4 +202,45 @@ class PlayerServerHandlerTest {
         assertTrue(names.contains("ListTargetOne"))
         assertTrue(names.contains("ListTargetTwo"))
     }
+
+    @Test
+    fun `listPlayers is refused once more players are online than its limit`() = runBlocking {
+        RegisterPlayerServerHandler().handle(RegisterPlayerRequest.newBuilder().setPlayer(playerData()).build(), callContext("proxy-1"))
+        RegisterPlayerServerHandler().handle(RegisterPlayerRequest.newBuilder().setPlayer(playerData()).build(), callContext("proxy-1"))
+
+        val error = assertThrows(StatusRuntimeException::class.java) {
+            runBlocking { ListPlayersServerHandler(limit = 1).handle(ListPlayersRequest.getDefaultInstance(), GrpcServerContext()) }
+        }
+
+        assertEquals(Status.Code.FAILED_PRECONDITION, error.status.code)
+    }
+
+    @Test
+    fun `listPlayersPage walks the filtered players page by page`() = runBlocking {
+        val names = listOf("PageAlex", "PageSteve", "pageHerobrine", "OtherName")
+        names.forEach {
+            RegisterPlayerServerHandler().handle(
+                RegisterPlayerRequest.newBuilder().setPlayer(playerData(name = it, currentProxy = "proxy-paged")).build(),
+                callContext("proxy-paged"),
+            )
+        }
+        val filter = PlayerFilter.newBuilder().setProxy("proxy-paged").setNamePrefix("page").build()
+
+        val seen = mutableListOf<PlayerData>()
+        var token = ""
+        var pages = 0
+        do {
+            val page = ListPlayersPageServerHandler().handle(
+                ListPlayersPageRequest.newBuilder().setFilter(filter).setPageSize(2).setPageToken(token).build(),
+                GrpcServerContext(),
+            )
+            seen += page.playersList
+            token = page.nextPageToken
+            pages++
+        } while (token.isNotEmpty())
+
+        assertEquals(2, pages)
+        assertEquals(setOf("PageAlex", "PageSteve", "pageHerobrine"), seen.map { it.name }.toSet())
+        assertEquals(seen.map { UUID.fromString(it.id) }.sorted(), seen.map { UUID.fromString(it.id) })
+    }
 }
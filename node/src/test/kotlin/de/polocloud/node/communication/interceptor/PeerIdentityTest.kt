@@ -0,0 +1,70 @@
+package de.polocloud.node.communication.interceptor
+
+import org.bouncycastle.asn1.x500.X500Name
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import java.lang.reflect.Proxy
+import java.math.BigInteger
+import java.security.KeyPairGenerator
+import java.security.cert.Certificate
+import java.util.Date
+import javax.net.ssl.SSLSession
+
+class PeerIdentityTest {
+
+    private class Session(val certificates: Array<Certificate>) {
+        val values = HashMap<String, Any>()
+        var certificateReads = 0
+
+        val proxy = Proxy.newProxyInstance(javaClass.classLoader, arrayOf(SSLSession::class.java)) { _, method, args ->
+            when (method.name) {
+                "getPeerCertificates" -> certificates.also { certificateReads++ }
+                "getValue" -> values[args[0] as String]
+                "putValue" -> values.put(args[0] as String, args[1])
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as SSLSession
+    }
+
+    private fun certificate(subject: String): Certificate {
+        val keyPair = KeyPairGenerator.getInstance("EC").apply { initialize(256) }.generateKeyPair()
+        val name = X500Name(subject)
+        val now = System.currentTimeMillis()
+        val holder = JcaX509v3CertificateBuilder(name, BigInteger.ONE, Date(now), Date(now + 60_000), name, keyPair.public)
+            .build(JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.private))
+        return JcaX509CertificateConverter().getCertificate(holder)
+    }
+
+    @Test
+    fun `the certificate is parsed once per session`() {
+        val session = Session(arrayOf(certificate("CN=Lobby-1,O=polocloud")))
+        val before = PeerIdentity.stats()
+
+        repeat(100) { assertEquals("Lobby-1", PeerIdentity.subjectOf(session.proxy)) }
+
+        assertEquals(1, session.certificateReads)
+        assertEquals(1, PeerIdentity.stats().parses - before.parses)
+    }
+
+    @Test
+    fun `sessions are parsed independently`() {
+        val first = Session(arrayOf(certificate("CN=proxy-1")))
+        val second = Session(arrayOf(certificate("CN=proxy-2")))
+
+        assertEquals("proxy-1", PeerIdentity.subjectOf(first.proxy))
+        assertEquals("proxy-2", PeerIdentity.subjectOf(second.proxy))
+    }
+
+    @Test
+    fun `a certificate without a common name is cached as none`() {
+        val session = Session(arrayOf(certificate("O=polocloud")))
+
+        assertNull(PeerIdentity.subjectOf(session.proxy))
+        assertNull(PeerIdentity.subjectOf(session.proxy))
+        assertEquals(1, session.certificateReads)
+    }
+}
@@ -3,8 +3,12 @@ package de.polocloud.node.event
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.proto.NodeState
 import de.polocloud.shared.event.EncodedEvent
+import de.polocloud.shared.event.EventCodec
 import de.polocloud.shared.event.group.GroupUpdatedEvent
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
 import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
 import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertNull
@@ -14,7 +18,11 @@ import java.util.UUID
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
 import kotlin.time.Clock
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.minutes
 
 class ClusterEventRelayTest {
 
@@ -65,7 +73,7 @@ class ClusterEventRelayTest {
         val relay = ClusterEventRelay(
             localNodeId = localNodeId.toString(),
             peers = { listOf(node(name = "b")) },
-            send = { _, encoded -> received += encoded; latch.countDown() },
+            send = { _, batch -> received += batch; latch.countDown() },
         )
         relay.install()
 
@@ -124,4 +132,109 @@ class ClusterEventRelayTest {
         assertTrue(sent.isEmpty())
         relay.close()
     }
+
+    private fun playerCount(serviceId: String, online: Int) = ClusterEventService.call(
+        PlayerCountChangedEvent(
+            Service(serviceId, 1, "lobby", ServiceState.RUNNING, 30000, "127.0.0.1", 1, onlinePlayers = online)
+        )
+    )
+
+    @Test
+    fun `events fired close together reach a peer as one batch`() {
+        val batches = CopyOnWriteArrayList<List<EncodedEvent>>()
+        val latch = CountDownLatch(1)
+        val relay = ClusterEventRelay(
+            localNodeId = localNodeId.toString(),
+            peers = { listOf(node(name = "b")) },
+            send = { _, batch -> batches += batch; latch.countDown() },
+            maxBatchDelay = 200.milliseconds,
+        )
+        relay.install()
+
+        repeat(5) { fire() }
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS))
+        assertEquals(listOf(5), batches.map { it.size })
+        relay.close()
+    }
+
+    @Test
+    fun `a newer player count replaces the queued one for the same service`() {
+        val received = CopyOnWriteArrayList<EncodedEvent>()
+        val latch = CountDownLatch(1)
+        val relay = ClusterEventRelay(
+            localNodeId = localNodeId.toString(),
+            peers = { listOf(node(name = "b")) },
+            send = { _, batch -> received += batch; latch.countDown() },
+            maxBatchDelay = 200.milliseconds,
+        )
+        relay.install()
+
+        playerCount("a", 1)
+        fire()
+        playerCount("a", 2)
+        playerCount("b", 5)
+        playerCount("a", 3)
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS))
+        assertEquals(
+            listOf("PlayerCountChangedEvent", "GroupUpdatedEvent", "PlayerCountChangedEvent"),
+            received.map { it.name },
+        )
+        val counts = received.mapNotNull { EventCodec.decode(it.name, it.data) as? PlayerCountChangedEvent }
+            .associate { it.service.id to it.service.onlinePlayers }
+        assertEquals(mapOf("a" to 3, "b" to 5), counts)
+        relay.close()
+    }
+
+    @Test
+    fun `the peer list is not queried per event`() {
+        val lookups = AtomicInteger()
+        val latch = CountDownLatch(20)
+        val relay = ClusterEventRelay(
+            localNodeId = localNodeId.toString(),
+            peers = { lookups.incrementAndGet(); listOf(node(name = "b")) },
+            send = { _, batch -> repeat(batch.size) { latch.countDown() } },
+            peerRefreshInterval = 10.minutes,
+        )
+        relay.install()
+
+        repeat(20) { fire() }
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS))
+        assertEquals(1, lookups.get())
+        relay.close()
+    }
+
+    @Test
+    fun `a peer restarted on another port is relayed to at its new address`() {
+        val peer = node(name = "b")
+        val current = AtomicReference(peer)
+        val sentToPorts = CopyOnWriteArrayList<Int>()
+        val relay = ClusterEventRelay(
+            localNodeId = localNodeId.toString(),
+            peers = { listOf(current.get()) },
+            send = { node, _ -> sentToPorts += node.port },
+            peerRefreshInterval = 20.milliseconds,
+        )
+        relay.install()
+        fire()
+        awaitCondition { sentToPorts.isNotEmpty() }
+
+        current.set(peer.copy(port = 5000))
+        Thread.sleep(100)
+        fire()
+
+        awaitCondition { 5000 in sentToPorts }
+        assertEquals(listOf(4240, 5000), sentToPorts.toList())
+        relay.close()
+    }
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 2_000
+        while (!condition()) {
+            check(System.currentTimeMillis() < deadline) { "Timed out" }
+            Thread.sleep(5)
+        }
+    }
 }
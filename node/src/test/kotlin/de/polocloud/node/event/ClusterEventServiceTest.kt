@@ -1,11 +1,24 @@
 package de.polocloud.node.event
 
 import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventEncoding
 import de.polocloud.shared.event.EncodedEvent
+import de.polocloud.shared.event.EventCodec
 import de.polocloud.shared.event.group.GroupUpdatedEvent
 import de.polocloud.shared.property.Properties
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
+import kotlinx.coroutines.yield
 import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import java.util.concurrent.CopyOnWriteArrayList
@@ -60,4 +73,80 @@ class ClusterEventServiceTest {
         // Must not throw — call swallows relay failures.
         ClusterEventService.call(GroupUpdatedEvent("lobby", Properties()))
     }
+
+    @Test
+    fun `CBOR subscribers get a binary payload while JSON subscribers keep JSON`() = runBlocking {
+        val event = GroupUpdatedEvent("lobby", Properties().set(Properties.FALLBACK, "true"))
+        val json = async(start = CoroutineStart.UNDISPATCHED) {
+            ClusterEventService.subscribe("GroupUpdatedEvent", "json").first()
+        }
+        val binary = async(start = CoroutineStart.UNDISPATCHED) {
+            ClusterEventService.subscribe("GroupUpdatedEvent", "binary", listOf(EventEncoding.CBOR)).first()
+        }
+        yield()
+
+        ClusterEventService.call(event)
+
+        val jsonContext = withTimeout(2_000) { json.await() }
+        assertEquals(EventEncoding.JSON, jsonContext.encoding)
+        assertEquals(event, EventCodec.decode(jsonContext.eventName, jsonContext.eventData))
+
+        val binaryContext = withTimeout(2_000) { binary.await() }
+        assertEquals(EventEncoding.CBOR, binaryContext.encoding)
+        assertTrue(binaryContext.eventData.isEmpty())
+        assertEquals(event, EventCodec.decodeBinary(binaryContext.eventName, binaryContext.eventPayload.toByteArray()))
+    }
+
+    @Test
+    fun `events the node cannot decode reach CBOR subscribers as JSON`() = runBlocking {
+        val binary = async(start = CoroutineStart.UNDISPATCHED) {
+            ClusterEventService.subscribe("SomePluginEvent", "binary", listOf(EventEncoding.CBOR)).first()
+        }
+        yield()
+
+        ClusterEventService.broadcast(
+            EventContext.newBuilder().setEventName("SomePluginEvent").setEventData("{\"x\":1}").build()
+        )
+
+        val context = withTimeout(2_000) { binary.await() }
+        assertEquals(EventEncoding.JSON, context.encoding)
+        assertEquals("{\"x\":1}", context.eventData)
+    }
+
+    @Test
+    fun `events only reach subscribers of their own name and the wildcard ones`() = runBlocking {
+        val other = async(start = CoroutineStart.UNDISPATCHED) {
+            withTimeoutOrNull(300) { ClusterEventService.subscribe("ServerStartEvent", "other").first() }
+        }
+        val named = async(start = CoroutineStart.UNDISPATCHED) {
+            ClusterEventService.subscribe("GroupUpdatedEvent", "named").first()
+        }
+        val wildcard = async(start = CoroutineStart.UNDISPATCHED) {
+            ClusterEventService.subscribe("", "wildcard").first()
+        }
+
+        ClusterEventService.call(GroupUpdatedEvent("lobby", Properties()))
+
+        assertEquals("GroupUpdatedEvent", withTimeout(2_000) { named.await() }.eventName)
+        assertEquals("GroupUpdatedEvent", withTimeout(2_000) { wildcard.await() }.eventName)
+        assertNull(other.await())
+    }
+
+    @Test
+    fun `a slow subscriber's backlog shows up in its stats`() = runBlocking {
+        val stalled = launch(start = CoroutineStart.UNDISPATCHED) {
+            ClusterEventService.subscribe("GroupUpdatedEvent", "stalled", capacity = 2).collect { awaitCancellation() }
+        }
+
+        repeat(4) { ClusterEventService.call(GroupUpdatedEvent("lobby-$it", Properties())) }
+        yield()
+
+        val stats = ClusterEventService.subscriberStats().single { it.serviceName == "stalled" }
+        assertEquals(2, stats.capacity)
+        assertEquals(1, stats.delivered)
+        assertTrue(stats.lag <= 2)
+        assertEquals(4L, stats.delivered + stats.lag + stats.dropped)
+        stalled.cancelAndJoin()
+        assertTrue(ClusterEventService.subscriberStats().none { it.serviceName == "stalled" })
+    }
 }
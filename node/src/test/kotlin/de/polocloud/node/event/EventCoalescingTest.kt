@@ -0,0 +1,42 @@
+package de.polocloud.node.event
+
+import de.polocloud.node.cache.CacheInvalidationEvent
+import de.polocloud.shared.event.EventCodec
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class EventCoalescingTest {
+
+    @Test
+    fun `cache invalidations are keyed by node, cache and row`() {
+        val row = EventCodec.encode(CacheInvalidationEvent("node-1", "groups", "lobby \"eu\""))
+        val table = EventCodec.encode(CacheInvalidationEvent("node-1", "groups", null))
+
+        assertEquals("CacheInvalidationEvent/node-1/groups/lobby \"eu\"", EventCoalescing.keyOf(row.name, row.data))
+        assertEquals("CacheInvalidationEvent/node-1/groups/null", EventCoalescing.keyOf(table.name, table.data))
+    }
+
+    @Test
+    fun `player counts are keyed by the service id, not an id nested deeper`() {
+        val data = """{"service":{"properties":{"id":"not-this","tags":[{"id":1},"]"]},"id":"lobby-1","onlinePlayers":3}}"""
+
+        assertEquals("PlayerCountChangedEvent/lobby-1", EventCoalescing.keyOf("PlayerCountChangedEvent", data))
+    }
+
+    @Test
+    fun `keys are found regardless of whitespace, order and escapes`() {
+        val data = """ { "onlinePlayers" : 1e2, "service" : { "tags": [ {"id": "}"} ], "id" : "lobby\u002d1" } } """
+
+        assertEquals("PlayerCountChangedEvent/lobby-1", EventCoalescing.keyOf("PlayerCountChangedEvent", data))
+    }
+
+    @Test
+    fun `missing fields and malformed json have no key`() {
+        assertNull(EventCoalescing.keyOf("PlayerCountChangedEvent", """{"service":{"name":"lobby-1"}}"""))
+        assertNull(EventCoalescing.keyOf("PlayerCountChangedEvent", """{"service":{"id":{"nested":1}}}"""))
+        assertNull(EventCoalescing.keyOf("PlayerCountChangedEvent", """{"service":{"id":"unterminated}}"""))
+        assertNull(EventCoalescing.keyOf("PlayerCountChangedEvent", "not json"))
+        assertNull(EventCoalescing.keyOf("ServiceOnlineEvent", """{"service":{"id":"lobby-1"}}"""))
+    }
+}
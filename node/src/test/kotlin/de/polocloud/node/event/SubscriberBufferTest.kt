@@ -0,0 +1,77 @@
+package de.polocloud.node.event
+
+import de.polocloud.proto.EventContext
+import de.polocloud.proto.EventOverflow
+import io.grpc.Status
+import io.grpc.StatusException
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class SubscriberBufferTest {
+
+    private fun event(data: String) = EventContext.newBuilder().setEventName("TestEvent").setEventData(data).build()
+
+    private fun SubscriberBuffer.drain(): List<String> = runBlocking {
+        List(lag) { take()!!.eventData }
+    }
+
+    @Test
+    fun `drop oldest keeps the newest events once full`() {
+        val buffer = SubscriberBuffer(capacity = 2, overflow = EventOverflow.DROP_OLDEST)
+
+        listOf("a", "b", "c").forEach { assertTrue(buffer.offer(event(it), key = null)) }
+
+        assertEquals(1, buffer.dropped.get())
+        assertEquals(listOf("b", "c"), buffer.drain())
+    }
+
+    @Test
+    fun `coalesce replaces a queued event with the same key in place`() {
+        val buffer = SubscriberBuffer(capacity = 10, overflow = EventOverflow.COALESCE)
+
+        buffer.offer(event("count-1"), key = "lobby-1")
+        buffer.offer(event("other"), key = null)
+        buffer.offer(event("count-2"), key = "lobby-1")
+
+        assertEquals(1, buffer.coalesced.get())
+        assertEquals(0, buffer.dropped.get())
+        assertEquals(listOf("count-2", "other"), buffer.drain())
+    }
+
+    @Test
+    fun `coalesce still drops the oldest when nothing can be replaced`() {
+        val buffer = SubscriberBuffer(capacity = 2, overflow = EventOverflow.COALESCE)
+
+        listOf("a", "b", "c").forEach { buffer.offer(event(it), key = null) }
+
+        assertEquals(1, buffer.dropped.get())
+        assertEquals(listOf("b", "c"), buffer.drain())
+    }
+
+    @Test
+    fun `disconnect refuses the event and fails the stream instead of dropping`() {
+        val buffer = SubscriberBuffer(capacity = 1, overflow = EventOverflow.DISCONNECT)
+
+        assertTrue(buffer.offer(event("a"), key = null))
+        assertFalse(buffer.offer(event("b"), key = null))
+
+        val failure = assertThrows(StatusException::class.java) { runBlocking { buffer.take() } }
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, failure.status.code)
+    }
+
+    @Test
+    fun `a closed buffer ends the stream and takes nothing further`() {
+        val buffer = SubscriberBuffer(capacity = 4, overflow = EventOverflow.COALESCE)
+        buffer.offer(event("a"), key = null)
+
+        buffer.close()
+
+        assertNull(runBlocking { buffer.take() })
+        assertFalse(buffer.offer(event("b"), key = null))
+    }
+}
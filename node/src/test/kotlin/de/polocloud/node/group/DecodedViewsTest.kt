@@ -0,0 +1,54 @@
+package de.polocloud.node.group
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class DecodedViewsTest {
+
+    private var decoded = 0
+    private val cache = DecodedViewCache<String, List<String>> { decoded++; TemplateCodec.decode(it) }
+
+    @Test
+    fun `a value is decoded once however often it is read`() {
+        val first = cache.get("lobby", """["global","lobby"]""")
+        val second = cache.get("lobby", """["global","lobby"]""")
+
+        assertSame(first, second)
+        assertEquals(1, decoded)
+        assertEquals(DecodedViewStats(views = 1, hits = 1, decodes = 1), cache.stats())
+    }
+
+    @Test
+    fun `a changed value is decoded again`() {
+        cache.get("lobby", """["global"]""")
+        val updated = cache.get("lobby", """["global","lobby"]""")
+
+        assertEquals(listOf("global", "lobby"), updated)
+        assertEquals(2, decoded)
+    }
+
+    @Test
+    fun `an evicted view is decoded again`() {
+        val first = cache.get("lobby", "[]")
+        cache.evict("lobby")
+
+        assertNotSame(first, cache.get("lobby", "[]"))
+        assertEquals(2, decoded)
+    }
+
+    @Test
+    fun `group views are shared and read-only`() {
+        val group = Group("views-test", 512, 0.5, 1, 2, "paper", "1.21").copy(propertiesJson = """{"fallback":"true"}""")
+        val copy = group.copy()
+
+        assertSame(group.properties, copy.properties)
+        @Suppress("UNCHECKED_CAST")
+        assertThrows(UnsupportedOperationException::class.java) {
+            (group.properties as MutableMap<String, String>)["fallback"] = "false"
+        }
+        assertEquals(mapOf("fallback" to "true", "priority" to "1"), group.properties + ("priority" to "1"))
+    }
+}
@@ -0,0 +1,197 @@
+package de.polocloud.node.group.template
+
+import de.polocloud.node.utils.FileLinker
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.nio.file.Files
+import java.util.UUID
+import kotlin.io.path.createTempDirectory
+
+class TemplateMaterializerTest {
+
+    // Same trade-off as GroupTemplateServiceTest: templates live under the real
+    // local/templates/ root, uniquely named and removed again in [cleanup].
+    private val createdTemplates = mutableListOf<String>()
+    private val targets = mutableListOf<File>()
+    private val cacheDir = createTempDirectory().toFile().also { targets += it }
+
+    private fun template(files: Map<String, String>): String {
+        val name = "test-${UUID.randomUUID()}".also { createdTemplates += it }
+        val dir = GroupTemplateService.directoryOf(name)
+        files.forEach { (path, content) -> File(dir, path).apply { parentFile.mkdirs() }.writeText(content) }
+        return name
+    }
+
+    private fun target(): File = createTempDirectory().toFile().also { targets += it }
+
+    private fun materializer(linker: FileLinker = FileLinker()) =
+        TemplateMaterializer(TemplateMaterialization.LINK, cacheDir = cacheDir, linker = linker)
+
+    @AfterEach
+    fun cleanup() {
+        createdTemplates.forEach { GroupTemplateService.directoryOf(it).deleteRecursively() }
+        targets.forEach { it.deleteRecursively() }
+    }
+
+    @Test
+    fun `jars are shared between services instead of copied`() {
+        val name = template(mapOf("plugins/lobby.jar" to "jar-bytes"))
+        val materializer = materializer()
+        val first = target()
+        val second = target()
+
+        materializer.materialize(listOf(name), first)
+        materializer.materialize(listOf(name), second)
+
+        assertEquals("jar-bytes", File(second, "plugins/lobby.jar").readText())
+        assertTrue(Files.isSameFile(File(first, "plugins/lobby.jar").toPath(), File(second, "plugins/lobby.jar").toPath()))
+        // Linked to the blob store, never to the template file itself.
+        val templateJar = File(GroupTemplateService.directoryOf(name), "plugins/lobby.jar").toPath()
+        assertFalse(Files.isSameFile(templateJar, File(first, "plugins/lobby.jar").toPath()))
+    }
+
+    @Test
+    fun `files tasks patch and non-jar files are private copies`() {
+        val name = template(mapOf("server.properties" to "motd=hi", "config.yml" to "a: 1", "patched.jar" to "x"))
+        val materializer = materializer()
+        val first = target()
+        val second = target()
+
+        materializer.materialize(listOf(name), first, mutablePaths = setOf("patched.jar"))
+        materializer.materialize(listOf(name), second, mutablePaths = setOf("patched.jar"))
+        File(first, "server.properties").writeText("motd=changed")
+        File(first, "patched.jar").writeText("changed")
+
+        assertEquals("motd=hi", File(second, "server.properties").readText())
+        assertEquals("x", File(second, "patched.jar").readText())
+        assertEquals("motd=hi", File(GroupTemplateService.directoryOf(name), "server.properties").readText())
+        assertFalse(Files.isSameFile(File(first, "config.yml").toPath(), File(second, "config.yml").toPath()))
+    }
+
+    @Test
+    fun `an unchanged template is not read again`() {
+        val name = template(mapOf("plugin.jar" to "old"))
+        val materializer = materializer()
+        val file = File(GroupTemplateService.directoryOf(name), "plugin.jar")
+        materializer.materialize(listOf(name), target())
+
+        // Same size and timestamp: only a re-read could notice the new content.
+        val modified = file.lastModified()
+        file.writeText("new")
+        file.setLastModified(modified)
+        val target = target()
+        materializer.materialize(listOf(name), target)
+
+        assertEquals("old", File(target, "plugin.jar").readText())
+    }
+
+    @Test
+    fun `a changed template file is picked up and its old blob dropped`() {
+        val name = template(mapOf("plugin.jar" to "old"))
+        val materializer = materializer()
+        val file = File(GroupTemplateService.directoryOf(name), "plugin.jar")
+        val first = target()
+        materializer.materialize(listOf(name), first)
+
+        file.writeText("newer")
+        val second = target()
+        materializer.materialize(listOf(name), second)
+
+        assertEquals("newer", File(second, "plugin.jar").readText())
+        // The running service keeps its file, even though the blob store let go of it.
+        assertEquals("old", File(first, "plugin.jar").readText())
+        assertEquals(1, File(cacheDir, "blobs").listFiles()!!.size)
+    }
+
+    @Test
+    fun `falls back to copying when the filesystem refuses links`() {
+        val name = template(mapOf("plugin.jar" to "bytes"))
+        var attempts = 0
+        val materializer = materializer(FileLinker { _, _ -> attempts++; throw UnsupportedOperationException("no links") })
+        val first = target()
+        val second = target()
+
+        materializer.materialize(listOf(name), first)
+        materializer.materialize(listOf(name), second)
+
+        assertEquals("bytes", File(second, "plugin.jar").readText())
+        assertFalse(Files.isSameFile(File(first, "plugin.jar").toPath(), File(second, "plugin.jar").toPath()))
+        assertEquals(1, attempts)
+    }
+
+    @Test
+    fun `a link failing for one file copies only that file and keeps linking`() {
+        val name = template(mapOf("plugin.jar" to "bytes"))
+        var fail = true
+        val materializer = materializer(FileLinker { source, target ->
+            if (fail) {
+                fail = false
+                throw java.nio.file.AccessDeniedException(target.path)
+            }
+            Files.createLink(target.toPath(), source.toPath())
+        })
+        val first = target()
+        val second = target()
+        val third = target()
+
+        materializer.materialize(listOf(name), first)
+        materializer.materialize(listOf(name), second)
+        materializer.materialize(listOf(name), third)
+
+        assertEquals("bytes", File(first, "plugin.jar").readText())
+        assertFalse(Files.isSameFile(File(first, "plugin.jar").toPath(), File(second, "plugin.jar").toPath()))
+        assertTrue(Files.isSameFile(File(second, "plugin.jar").toPath(), File(third, "plugin.jar").toPath()))
+    }
+
+    @Test
+    fun `a blob deleted from the store is restored from the template`() {
+        val name = template(mapOf("plugin.jar" to "bytes"))
+        val materializer = materializer()
+        materializer.materialize(listOf(name), target())
+        File(cacheDir, "blobs").listFiles()!!.forEach { it.delete() }
+        val target = target()
+
+        materializer.materialize(listOf(name), target)
+
+        assertEquals("bytes", File(target, "plugin.jar").readText())
+        assertEquals(1, File(cacheDir, "blobs").listFiles()!!.size)
+    }
+
+    @Test
+    fun `a blob a service wrote to through its link is not handed to the next one`() {
+        val name = template(mapOf("plugin.jar" to "bytes"))
+        val materializer = materializer()
+        val first = target()
+        materializer.materialize(listOf(name), first)
+
+        // Same size: only the timestamp gives the write away.
+        File(first, "plugin.jar").writeText("BYTES")
+        val second = target()
+        materializer.materialize(listOf(name), second)
+
+        assertEquals("bytes", File(second, "plugin.jar").readText())
+        assertEquals("BYTES", File(first, "plugin.jar").readText())
+        // The replaced blob is linked again from now on.
+        val third = target()
+        materializer.materialize(listOf(name), third)
+        assertTrue(Files.isSameFile(File(second, "plugin.jar").toPath(), File(third, "plugin.jar").toPath()))
+    }
+
+    @Test
+    fun `later templates still win and empty folders are kept`() {
+        val first = template(mapOf("motd.txt" to "first", "shared.jar" to "first"))
+        val second = template(mapOf("motd.txt" to "second", "shared.jar" to "second"))
+        File(GroupTemplateService.directoryOf(second), "plugins").mkdirs()
+        val target = target()
+
+        materializer().materialize(listOf(first, second), target)
+
+        assertEquals("second", File(target, "motd.txt").readText())
+        assertEquals("second", File(target, "shared.jar").readText())
+        assertTrue(File(target, "plugins").isDirectory)
+    }
+}
@@ -0,0 +1,34 @@
+package de.polocloud.node.metrics
+
+import de.polocloud.common.metrics.MetricsRegistry
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class DatabaseCallsTest {
+
+    private val registry = MetricsRegistry()
+    private val calls = DatabaseCalls("nodes", registry)
+
+    private fun sample(name: String, operation: String) = registry.collect()
+        .flatMap { it.samples }
+        .single { it.name == name && it.labels == mapOf("table" to "nodes", "operation" to operation) }
+        .value
+
+    @Test
+    fun `calls are timed per operation and return their result`() {
+        repeat(3) { assertEquals(it, calls.call("findById") { it }) }
+        calls.call("save") { }
+
+        assertEquals(3.0, sample("polocloud_database_call_seconds_count", "findById"))
+        assertEquals(1.0, sample("polocloud_database_call_seconds_count", "save"))
+    }
+
+    @Test
+    fun `a failed call is timed, counted and rethrown`() {
+        assertThrows(IllegalStateException::class.java) { calls.call("delete") { error("database down") } }
+
+        assertEquals(1.0, sample("polocloud_database_call_seconds_count", "delete"))
+        assertEquals(1.0, sample("polocloud_database_call_failures_total", "delete"))
+    }
+}
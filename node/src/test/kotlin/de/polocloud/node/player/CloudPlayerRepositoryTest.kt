@@ -2,6 +2,7 @@ package de.polocloud.node.player
 
 import de.polocloud.database.DatabaseAccess
 import de.polocloud.database.DatabaseCredentials
+import de.polocloud.database.DatabaseKey
 import de.polocloud.i18n.api.TranslationService
 import org.junit.jupiter.api.AfterAll
 import org.junit.jupiter.api.Assertions.assertEquals
@@ -93,4 +94,16 @@ class CloudPlayerRepositoryTest {
 
         assertNull(CloudPlayerRepository.findById(player.id)?.currentServer)
     }
+
+    @Test
+    fun `a flushed player is persisted to the database`() {
+        val player = player(currentServer = null)
+        CloudPlayerRepository.save(player)
+
+        while (CloudPlayerRepository.sessions.flush() > 0) continue
+
+        val row = DatabaseAccess.executor().findById(DatabaseKey(CloudPlayer::class), player.id)
+        assertEquals(player.name, row?.name)
+        assertNull(row?.currentServer)
+    }
 }
@@ -0,0 +1,159 @@
+package de.polocloud.node.player
+
+import de.polocloud.shared.event.Event
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.player.PlayerDisconnectEvent
+import de.polocloud.shared.event.player.PlayerSwitchEvent
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArrayList
+
+class PlayerSessionStoreTest {
+
+    /** Records every write; fails the next [failures] of them. */
+    private class RecordingWriter : PlayerSessionStore.Writer {
+        val writes = CopyOnWriteArrayList<String>()
+        var failures = 0
+
+        override fun save(player: CloudPlayer) = write("save ${player.name}@${player.currentServer}")
+        override fun delete(player: CloudPlayer) = write("delete ${player.name}")
+
+        private fun write(description: String) {
+            if (failures > 0) {
+                failures--
+                error("database unavailable")
+            }
+            writes += description
+        }
+    }
+
+    private val writer = RecordingWriter()
+    private var persisted = listOf<CloudPlayer>()
+    private val store = PlayerSessionStore(loader = { persisted }, writer = writer, batchSize = 2, observe = { AutoCloseable {} })
+
+    private fun player(name: String, server: String? = null, id: UUID = UUID.randomUUID()) =
+        CloudPlayer(id, name, "", "", "{}", "proxy-1", server)
+
+    private fun fire(event: Event) {
+        val encoded = EventCodec.encode(event)
+        store.onEvent(encoded.name, encoded.data)
+    }
+
+    @Test
+    fun `lookups are served from memory before anything is written`() {
+        val notch = player("Notch")
+        store.save(notch)
+
+        assertSame(notch, store.find(notch.id))
+        assertSame(notch, store.findByName("NOTCH"))
+        assertEquals(listOf(notch), store.all())
+        assertTrue(writer.writes.isEmpty())
+        assertEquals(1, store.stats().queueDepth)
+    }
+
+    @Test
+    fun `changes to one player before a flush coalesce into one write`() {
+        val notch = player("Notch")
+        val jeb = player("Jeb")
+        store.save(notch)
+        store.save(jeb)
+        notch.currentServer = "lobby-1"
+        store.save(notch)
+        store.delete(jeb)
+
+        while (store.flush() > 0) continue
+
+        assertEquals(listOf("save Notch@lobby-1", "delete Jeb"), writer.writes.toList())
+        assertEquals(2, store.stats().coalesced)
+        assertNull(store.findByName("jeb"))
+    }
+
+    @Test
+    fun `a flush writes at most one batch, oldest first`() {
+        listOf("a", "b", "c").forEach { store.save(player(it)) }
+
+        assertEquals(2, store.flush())
+        assertEquals(listOf("save a@null", "save b@null"), writer.writes.toList())
+        assertEquals(1, store.stats().queueDepth)
+    }
+
+    @Test
+    fun `a failed write is retried unless superseded`() {
+        val notch = player("Notch")
+        store.save(notch)
+        writer.failures = 1
+
+        store.flush()
+        assertEquals(1, store.stats().queueDepth)
+        store.flush()
+
+        assertEquals(listOf("save Notch@null"), writer.writes.toList())
+        assertEquals(1, store.stats().failures)
+    }
+
+    @Test
+    fun `relayed player events update memory without writing`() {
+        val id = UUID.randomUUID()
+        fire(PlayerSwitchEvent(CloudPlayerMapper.toShared(player("Dinnerbone", "lobby-2", id)), previousServer = null))
+
+        assertEquals("lobby-2", store.findByName("dinnerbone")?.currentServer)
+
+        fire(PlayerDisconnectEvent(CloudPlayerMapper.toShared(player("Dinnerbone", "lobby-2", id))))
+
+        assertNull(store.find(id))
+        assertEquals(0, store.flush())
+    }
+
+    @Test
+    fun `start seeds from the database and close writes out the rest`() {
+        persisted = listOf(player("Notch"))
+        store.start()
+        store.save(player("Jeb"))
+        store.save(player("Dinnerbone"))
+        store.save(player("Grumm"))
+
+        store.close()
+
+        assertEquals(4, store.all().size)
+        assertEquals(3, writer.writes.size)
+        assertEquals(0, store.stats().queueDepth)
+    }
+
+    @Test
+    fun `reconcile corrects the peers' players the events missed, never this node's own`() {
+        val reconciling = PlayerSessionStore(
+            loader = { persisted }, writer = writer, reconcileIntervalMillis = 0, observe = { AutoCloseable {} },
+        )
+        val left = player("Jeb", "lobby-1")
+        val moved = player("Grumm", "lobby-1")
+        persisted = listOf(left, moved)
+        // Not started, so no background round races the ones below; the first one seeds.
+        assertEquals(2, reconciling.reconcile())
+        val own = player("Notch")
+        reconciling.save(own)
+
+        // The disconnect and switch events never arrived; the peer's table rows did change.
+        persisted = listOf(player("Grumm", "survival-1", moved.id), player("Dinnerbone", "lobby-2"))
+        Thread.sleep(5)
+
+        assertEquals(3, reconciling.reconcile())
+        assertNull(reconciling.find(left.id))
+        assertEquals("survival-1", reconciling.find(moved.id)?.currentServer)
+        assertEquals("lobby-2", reconciling.findByName("dinnerbone")?.currentServer)
+        assertSame(own, reconciling.find(own.id))
+    }
+
+    @Test
+    fun `reconcile leaves players alone that an event changed more recently`() {
+        val id = UUID.randomUUID()
+        fire(PlayerSwitchEvent(CloudPlayerMapper.toShared(player("Dinnerbone", "lobby-2", id)), previousServer = null))
+
+        // The peer hasn't flushed the join yet.
+        assertEquals(0, store.reconcile())
+        assertEquals("lobby-2", store.find(id)?.currentServer)
+    }
+}
@@ -0,0 +1,77 @@
+package de.polocloud.node.security
+
+import de.polocloud.proto.RegisterServiceRequest
+import de.polocloud.proto.RegisterServiceResponse
+import kotlinx.coroutines.CompletableDeferred
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ServiceCsrBatcherTest {
+
+    private val calls = CopyOnWriteArrayList<List<String>>()
+    private var batcher: ServiceCsrBatcher? = null
+
+    @AfterEach
+    fun close() {
+        batcher?.close()
+    }
+
+    private fun request(serviceId: String) =
+        RegisterServiceRequest.newBuilder().setServiceId(serviceId).setPlanName("lobby").setCsrPem("csr").build()
+
+    private fun signingBatcher(maxBatch: Int, lingerMillis: Long, gate: CompletableDeferred<Unit>? = null) =
+        ServiceCsrBatcher(
+            send = { requests ->
+                gate?.await()
+                calls += requests.map { it.serviceId }
+                requests.map { RegisterServiceResponse.newBuilder().setAccepted(true).setCertificate("cert-${it.serviceId}").build() }
+            },
+            maxBatch = maxBatch,
+            lingerMillis = lingerMillis,
+        ).also { batcher = it }
+
+    @Test
+    fun `services starting together are signed in one call`() {
+        val batcher = signingBatcher(maxBatch = 10, lingerMillis = 500)
+        val executor = Executors.newFixedThreadPool(4)
+
+        val results = (1..4).map { index -> executor.submit<RegisterServiceResponse> { batcher.sign(request("lobby-$index")) } }
+            .map { it.get(5, TimeUnit.SECONDS) }
+        executor.shutdown()
+
+        assertEquals((1..4).map { "cert-lobby-$it" }, results.map { it.certificate })
+        assertEquals(1, calls.size)
+        assertEquals(ServiceCsrBatcher.Stats(batches = 1, signed = 4), batcher.stats())
+    }
+
+    @Test
+    fun `a batch never exceeds its limit`() {
+        val gate = CompletableDeferred<Unit>()
+        val batcher = signingBatcher(maxBatch = 2, lingerMillis = 500, gate = gate)
+        val executor = Executors.newFixedThreadPool(5)
+
+        val futures = (1..5).map { index -> executor.submit<RegisterServiceResponse> { batcher.sign(request("lobby-$index")) } }
+        Thread.sleep(100)
+        gate.complete(Unit)
+        futures.forEach { it.get(5, TimeUnit.SECONDS) }
+        executor.shutdown()
+
+        assertEquals(5, calls.sumOf { it.size })
+        assertTrue(calls.all { it.size <= 2 })
+    }
+
+    @Test
+    fun `a failed call fails every request of its batch`() {
+        val batcher = ServiceCsrBatcher(send = { error("head unreachable") }, lingerMillis = 1).also { batcher = it }
+
+        val failure = assertThrows(IllegalStateException::class.java) { batcher.sign(request("lobby-1")) }
+
+        assertEquals("Batch signing failed: head unreachable", failure.message)
+    }
+}
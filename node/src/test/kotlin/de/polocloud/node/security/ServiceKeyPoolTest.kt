@@ -0,0 +1,49 @@
+package de.polocloud.node.security
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.security.interfaces.ECPublicKey
+
+class ServiceKeyPoolTest {
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (!condition() && System.currentTimeMillis() < deadline) Thread.sleep(10)
+        assertTrue(condition())
+    }
+
+    @Test
+    fun `an unstarted pool generates every key pair on the spot`() {
+        val pool = ServiceKeyPool(4, ServiceKeyAlgorithm.EC_P256::generate)
+
+        assertNotSame(pool.take(), pool.take())
+        assertEquals(ServiceKeyPool.Stats(ready = 0, capacity = 4, hits = 0, misses = 2), pool.stats())
+    }
+
+    @Test
+    fun `a started pool fills up ahead and hands out ready key pairs`() {
+        val pool = ServiceKeyPool(3, ServiceKeyAlgorithm.EC_P256::generate)
+        pool.start()
+        try {
+            awaitCondition { pool.stats().ready == 3 }
+
+            pool.take()
+            pool.take()
+
+            assertEquals(2, pool.stats().hits)
+            assertEquals(0, pool.stats().misses)
+            awaitCondition { pool.stats().ready == 3 }
+        } finally {
+            pool.close()
+        }
+    }
+
+    @Test
+    fun `ec keys are on the p-256 curve`() {
+        val key = ServiceKeyAlgorithm.EC_P256.generate().public as ECPublicKey
+
+        assertEquals(256, key.params.curve.field.fieldSize)
+    }
+}
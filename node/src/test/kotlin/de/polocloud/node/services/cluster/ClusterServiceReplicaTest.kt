@@ -0,0 +1,192 @@
+package de.polocloud.node.services.cluster
+
+import de.polocloud.node.cluster.node.NodeData
+import de.polocloud.proto.NodeState
+import de.polocloud.proto.ProtoServiceProcessData
+import de.polocloud.shared.event.Event
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.group.GroupUpdatedEvent
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.event.server.ServerStartEvent
+import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+import kotlin.time.Clock
+import kotlin.time.Duration.Companion.seconds
+
+class ClusterServiceReplicaTest {
+
+    private val selfId = UUID.randomUUID()
+    private val peer = node(UUID.randomUUID(), "node-b")
+
+    private fun node(id: UUID, name: String) =
+        NodeData(
+            id = id, nodeIndex = 1, groupName = name, hostname = "10.0.0.9", port = 4240, state = NodeState.ONLINE,
+            head = false, electedAt = null, term = 0, votedFor = null,
+            version = "3", gitCommitHash = "abc",
+            firstConnection = Clock.System.now(), lastConnection = Clock.System.now(),
+            maxMemory = 0,
+        )
+
+    private fun service(id: String, group: String = "lobby", index: Int = 1, onlinePlayers: Int = 0) =
+        Service(id, index, group, ServiceState.RUNNING, 25565, "10.0.0.9", 1, onlinePlayers = onlinePlayers)
+
+    private fun snapshotEntry(id: String, group: String = "lobby", index: Int = 1) =
+        ProtoServiceProcessData.newBuilder().setUuid(id).setPlan(group).setIndex(index).setState("RUNNING").build()
+
+    private fun ClusterServiceReplica.relay(from: UUID, event: Event) {
+        val encoded = EventCodec.encode(event)
+        onPeerEvent(from.toString(), encoded.name, encoded.data)
+    }
+
+    @Test
+    fun `lifecycle events add, update and remove a peer's services`() {
+        val replica = ClusterServiceReplica(selfId.toString(), peerQuery = { _, _ -> emptyList() })
+
+        replica.relay(peer.id, ServerStartEvent(service("a")))
+        replica.relay(peer.id, ServiceOnlineEvent(service("b", index = 2)))
+        assertEquals(setOf("a", "b"), replica.servicesOf(peer).map { it.uuid }.toSet())
+
+        replica.relay(peer.id, PlayerCountChangedEvent(service("a", onlinePlayers = 7)))
+        assertEquals(7, replica.servicesOf(peer).single { it.uuid == "a" }.onlinePlayers)
+
+        replica.relay(peer.id, ServerStoppedEvent(service("a")))
+        assertEquals(listOf("b"), replica.servicesOf(peer).map { it.uuid })
+    }
+
+    @Test
+    fun `events from this node itself or unrelated events are ignored`() {
+        val replica = ClusterServiceReplica(selfId.toString(), peerQuery = { _, _ -> emptyList() })
+
+        replica.relay(selfId, ServerStartEvent(service("a")))
+        replica.relay(peer.id, GroupUpdatedEvent("lobby"))
+
+        assertTrue(replica.servicesOf(node(selfId, "self")).isEmpty())
+        assertTrue(replica.servicesOf(peer).isEmpty())
+    }
+
+    @Test
+    fun `group filtered reads only return that group's services`() {
+        val replica = ClusterServiceReplica(selfId.toString(), peerQuery = { _, _ -> emptyList() })
+        replica.relay(peer.id, ServerStartEvent(service("a", group = "lobby")))
+        replica.relay(peer.id, ServerStartEvent(service("b", group = "proxy")))
+
+        assertEquals(listOf("a"), replica.servicesOf(peer, "lobby").map { it.uuid })
+    }
+
+    @Test
+    fun `a peer is only snapshotted once per resync interval`() {
+        val calls = AtomicInteger()
+        var now = 0L
+        val replica = ClusterServiceReplica(
+            selfId.toString(),
+            peerQuery = { _, _ -> calls.incrementAndGet(); listOf(snapshotEntry("a")) },
+            resyncInterval = 30.seconds,
+            clock = { now },
+        )
+
+        now = 1_000
+        repeat(10) { replica.ensureSynced(listOf(node(selfId, "self"), peer)) }
+        assertEquals(1, calls.get())
+        assertEquals(listOf("a"), replica.servicesOf(peer).map { it.uuid })
+
+        now += 30_000
+        replica.ensureSynced(listOf(peer))
+        assertEquals(2, calls.get())
+    }
+
+    @Test
+    fun `a resync replaces state a missed event left behind`() {
+        var now = 1_000L
+        val replica = ClusterServiceReplica(
+            selfId.toString(),
+            peerQuery = { _, _ -> listOf(snapshotEntry("b")) },
+            clock = { now },
+        )
+        replica.ensureSynced(listOf(peer))
+        // "a" started but its stop event never arrived.
+        replica.relay(peer.id, ServerStartEvent(service("a")))
+
+        now += 60_000
+        replica.ensureSynced(listOf(peer))
+
+        assertEquals(listOf("b"), replica.servicesOf(peer).map { it.uuid })
+    }
+
+    @Test
+    fun `an event racing an in-flight resync survives the snapshot`() {
+        val fetchStarted = CompletableDeferred<Unit>()
+        val release = CompletableDeferred<Unit>()
+        val replica = ClusterServiceReplica(
+            selfId.toString(),
+            peerQuery = { _, _ ->
+                fetchStarted.complete(Unit)
+                release.await()
+                listOf(snapshotEntry("a"))
+            },
+        )
+
+        val syncing = thread { replica.ensureSynced(listOf(peer)) }
+        runBlocking { fetchStarted.await() }
+        replica.relay(peer.id, ServerStartEvent(service("b", index = 2)))
+        release.complete(Unit)
+        syncing.join()
+
+        assertEquals(setOf("a", "b"), replica.servicesOf(peer).map { it.uuid }.toSet())
+    }
+
+    @Test
+    fun `a node that left the cluster is dropped`() {
+        val replica = ClusterServiceReplica(selfId.toString(), peerQuery = { _, _ -> emptyList() })
+        replica.relay(peer.id, ServerStartEvent(service("a")))
+
+        replica.ensureSynced(emptyList())
+
+        assertTrue(replica.servicesOf(peer).isEmpty())
+    }
+
+    @Test
+    fun `a failed resync keeps the event-fed view`() {
+        val replica = ClusterServiceReplica(selfId.toString(), peerQuery = { _, _ -> throw RuntimeException("down") })
+        replica.relay(peer.id, ServerStartEvent(service("a")))
+
+        replica.ensureSynced(listOf(peer))
+
+        assertEquals(listOf("a"), replica.servicesOf(peer).map { it.uuid })
+    }
+
+    @Test
+    fun `an event from a sender that isn't a node id resyncs the peers it could be`() {
+        val founder = node(UUID.randomUUID(), "node-a")
+        val snapshots = mutableMapOf(founder.id to listOf(snapshotEntry("a")), peer.id to listOf(snapshotEntry("x")))
+        val calls = AtomicInteger()
+        val now = 1_000L
+        val replica = ClusterServiceReplica(
+            selfId.toString(),
+            peerQuery = { node, _ -> calls.incrementAndGet(); snapshots.getValue(node.id) },
+            clock = { now },
+        )
+        replica.ensureSynced(listOf(founder, peer))
+        replica.relay(peer.id, ServerStartEvent(service("y", index = 2)))
+        assertEquals(2, calls.get())
+
+        snapshots[founder.id] = listOf(snapshotEntry("a"), snapshotEntry("b", index = 2))
+        val encoded = EventCodec.encode(ServerStartEvent(service("b", index = 2)))
+        replica.onPeerEvent("Polocloud-Node", encoded.name, encoded.data)
+        replica.ensureSynced(listOf(founder, peer))
+
+        // Only the founder is fetched again; the peer identifies itself through its events.
+        assertEquals(3, calls.get())
+        assertEquals(setOf("a", "b"), replica.servicesOf(founder).map { it.uuid }.toSet())
+        assertEquals(setOf("x", "y"), replica.servicesOf(peer).map { it.uuid }.toSet())
+    }
+}
@@ -0,0 +1,90 @@
+package de.polocloud.node.services.factory
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class PortAllocatorTest {
+
+    private fun allocator(seed: Map<UUID, Int> = emptyMap(), isBindable: (Int) -> Boolean = { true }) =
+        PortAllocator(seed = { seed }, isBindable = isBindable)
+
+    @Test
+    fun `concurrent reserves never hand out the same port`() {
+        val allocator = allocator()
+        val pool = Executors.newFixedThreadPool(8)
+        try {
+            val ports = (1..200).map { pool.submit(Callable { allocator.reserve(UUID.randomUUID(), 30000) }) }
+                .map { it.get() }
+            assertEquals(200, ports.toSet().size)
+            assertEquals((30000 until 30200).toSet(), ports.toSet())
+        } finally {
+            pool.shutdownNow()
+        }
+    }
+
+    @Test
+    fun `a released port is handed out again`() {
+        val allocator = allocator()
+        val first = UUID.randomUUID()
+        assertEquals(30000, allocator.reserve(first, 30000))
+        assertEquals(30001, allocator.reserve(UUID.randomUUID(), 30000))
+
+        allocator.release(first)
+
+        assertFalse(allocator.isReserved(30000))
+        assertEquals(30000, allocator.reserve(UUID.randomUUID(), 30000))
+    }
+
+    @Test
+    fun `ports of already known services are skipped`() {
+        val allocator = allocator(seed = mapOf(UUID.randomUUID() to 25565, UUID.randomUUID() to 25566))
+
+        assertEquals(25567, allocator.reserve(UUID.randomUUID(), 25565))
+    }
+
+    @Test
+    fun `seed is read once and only the handed out candidate is probed`() {
+        val seedReads = AtomicInteger()
+        val probed = mutableListOf<Int>()
+        val allocator = PortAllocator(
+            seed = { seedReads.incrementAndGet(); mapOf(UUID.randomUUID() to 30000) },
+            isBindable = { probed += it; true },
+        )
+
+        allocator.reserve(UUID.randomUUID(), 30000)
+        allocator.reserve(UUID.randomUUID(), 30000)
+
+        assertEquals(1, seedReads.get())
+        assertEquals(listOf(30001, 30002), probed)
+    }
+
+    @Test
+    fun `a port held outside polocloud is skipped but not remembered`() {
+        var busy = true
+        val allocator = allocator(isBindable = { it != 30000 || !busy })
+
+        assertEquals(30001, allocator.reserve(UUID.randomUUID(), 30000))
+        assertFalse(allocator.isReserved(30000))
+
+        busy = false
+        assertEquals(30000, allocator.reserve(UUID.randomUUID(), 30000))
+    }
+
+    @Test
+    fun `reserving twice for the same service returns its port`() {
+        val allocator = allocator()
+        val serviceId = UUID.randomUUID()
+
+        val port = allocator.reserve(serviceId, 30000)
+
+        assertEquals(port, allocator.reserve(serviceId, 30000))
+        assertTrue(allocator.isReserved(port))
+        assertFalse(allocator.isReserved(port + 1))
+    }
+}
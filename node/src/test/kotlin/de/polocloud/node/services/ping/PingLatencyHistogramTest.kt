@@ -0,0 +1,34 @@
+package de.polocloud.node.services.ping
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class PingLatencyHistogramTest {
+
+    @Test
+    fun `records into the first bucket whose bound fits, overflow last`() {
+        val histogram = PingLatencyHistogram(longArrayOf(1, 10, 100))
+
+        listOf(0L, 1, 2, 10, 99, 1_000).forEach(histogram::record)
+
+        val snapshot = histogram.snapshot()
+        assertEquals(listOf(2L, 2, 1, 1), snapshot.counts)
+        assertEquals(6, snapshot.total)
+        assertEquals(1_112.0 / 6, snapshot.meanMillis)
+    }
+
+    @Test
+    fun `quantiles report the bucket bound`() {
+        val histogram = PingLatencyHistogram(longArrayOf(1, 10, 100))
+        assertNull(histogram.snapshot().quantile(0.5))
+
+        repeat(9) { histogram.record(5) }
+        histogram.record(500)
+
+        val snapshot = histogram.snapshot()
+        assertEquals(10, snapshot.quantile(0.5))
+        assertEquals(10, snapshot.quantile(0.9))
+        assertEquals(Long.MAX_VALUE, snapshot.quantile(0.99))
+    }
+}
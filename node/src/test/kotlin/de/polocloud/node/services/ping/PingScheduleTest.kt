@@ -0,0 +1,58 @@
+package de.polocloud.node.services.ping
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+
+class PingScheduleTest {
+
+    private val id = UUID.randomUUID()
+    private val schedule = PingSchedule(startingInterval = 1_000, runningInterval = 5_000, maxInterval = 20_000, nudgeDelay = 250)
+
+    @Test
+    fun `a new service is due at its first due time`() {
+        assertFalse(schedule.isDue(id, now = 0, firstDueAt = 5_000))
+        assertTrue(schedule.isDue(id, now = 5_000, firstDueAt = 0))
+    }
+
+    @Test
+    fun `a starting service is pinged at the fast interval`() {
+        schedule.reschedule(id, now = 0, starting = true, changed = true)
+
+        assertFalse(schedule.isDue(id, now = 999, firstDueAt = 0))
+        assertTrue(schedule.isDue(id, now = 1_000, firstDueAt = 0))
+    }
+
+    @Test
+    fun `a stable service backs off up to the maximum, a change resets it`() {
+        schedule.reschedule(id, now = 0, starting = false, changed = true)
+        assertEquals(5_000, schedule.summary().second)
+
+        repeat(4) { schedule.reschedule(id, now = 0, starting = false, changed = false) }
+        assertEquals(20_000, schedule.summary().second)
+        assertFalse(schedule.isDue(id, now = 19_999, firstDueAt = 0))
+
+        schedule.reschedule(id, now = 0, starting = false, changed = true)
+        assertTrue(schedule.isDue(id, now = 5_000, firstDueAt = 0))
+    }
+
+    @Test
+    fun `a nudge pulls the next ping in and later nudges coalesce into it`() {
+        repeat(3) { schedule.reschedule(id, now = 0, starting = false, changed = false) }
+
+        assertTrue(schedule.nudge(id, now = 1_000))
+        assertFalse(schedule.nudge(id, now = 1_100))
+        assertTrue(schedule.isDue(id, now = 1_250, firstDueAt = 0))
+        assertEquals(5_000, schedule.summary().second)
+    }
+
+    @Test
+    fun `stopped services are forgotten`() {
+        schedule.reschedule(id, now = 0, starting = false, changed = true)
+        schedule.retainOnly(emptySet())
+
+        assertEquals(0, schedule.summary().first)
+    }
+}
@@ -0,0 +1,104 @@
+package de.polocloud.node.services.ping
+
+import de.polocloud.node.event.ClusterEventService
+import de.polocloud.node.services.LocalService
+import de.polocloud.node.services.Service
+import de.polocloud.node.services.ServiceProvider
+import de.polocloud.shared.event.Event
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.player.PlayerDisconnectEvent
+import de.polocloud.shared.event.player.PlayerSwitchEvent
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.player.CloudPlayer
+import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.ServiceState
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArrayList
+
+class ServicePingFactoryTest {
+
+    private val provider = ServiceProvider()
+    private val lobby1 = local("lobby", 1)
+    private val lobby2 = local("lobby", 2)
+    private val announced = CopyOnWriteArrayList<String>()
+    private val observation = ClusterEventService.observe { context ->
+        if (context.eventName == EventCodec.nameOf(PlayerCountChangedEvent::class.java)) {
+            val service = (EventCodec.decode(context.eventName, context.eventData) as PlayerCountChangedEvent).service
+            announced += "${service.name()}=${service.onlinePlayers}"
+        }
+    }
+    private var factory: ServicePingFactory? = null
+
+    init {
+        provider.localServices += listOf(lobby1, lobby2)
+    }
+
+    @AfterEach
+    fun close() {
+        observation.close()
+        factory?.close()
+    }
+
+    private fun local(group: String, index: Int) =
+        LocalService(Service(UUID.randomUUID(), index, group, ServiceState.RUNNING, "127.0.0.1", 30000 + index, ""))
+
+    private fun player(server: String?) =
+        CloudPlayer(UUID.randomUUID().toString(), "Steve", "", "", Properties(), "proxy-1", server)
+
+    private fun start(playerCounts: PlayerCountSource) =
+        ServicePingFactory(provider, playerCounts, observe = { AutoCloseable {} }).also {
+            factory = it
+            it.run()
+        }
+
+    private fun ServicePingFactory.fire(event: Event) {
+        val encoded = EventCodec.encode(event)
+        onEvent(encoded.name, encoded.data)
+    }
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (!condition() && System.currentTimeMillis() < deadline) Thread.sleep(10)
+        assertTrue(condition())
+    }
+
+    @Test
+    fun `bridge mode counts player moves the moment they happen`() {
+        val factory = start(PlayerCountSource.BRIDGE)
+
+        factory.fire(PlayerSwitchEvent(player("lobby-1"), previousServer = null))
+        factory.fire(PlayerSwitchEvent(player("lobby-2"), previousServer = "lobby-1"))
+        factory.fire(PlayerSwitchEvent(player("lobby-1"), previousServer = null))
+        factory.fire(PlayerDisconnectEvent(player("lobby-2")))
+
+        awaitCondition { factory.stats().pushes == 5L }
+        assertEquals(1, lobby1.onlinePlayers)
+        assertEquals(0, lobby2.onlinePlayers)
+        assertEquals(listOf("lobby-1=1", "lobby-1=0", "lobby-2=1", "lobby-1=1", "lobby-2=0"), announced.toList())
+    }
+
+    @Test
+    fun `a pushed count never goes negative`() {
+        val factory = ServicePingFactory(provider, PlayerCountSource.BRIDGE, observe = { AutoCloseable {} }).also { this.factory = it }
+
+        factory.push("lobby-1", -1)
+
+        assertEquals(0, lobby1.onlinePlayers)
+        assertTrue(announced.isEmpty())
+    }
+
+    @Test
+    fun `ping mode re-pings on a player move instead of counting it`() {
+        val factory = start(PlayerCountSource.PING)
+
+        factory.fire(PlayerSwitchEvent(player("lobby-2"), previousServer = "lobby-1"))
+
+        assertEquals(2, factory.stats().nudges)
+        assertEquals(0, lobby2.onlinePlayers)
+        assertTrue(announced.isEmpty())
+    }
+}
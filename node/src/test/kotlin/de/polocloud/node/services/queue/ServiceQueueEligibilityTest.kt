@@ -5,6 +5,7 @@ import de.polocloud.database.DatabaseCredentials
 import de.polocloud.i18n.api.TranslationService
 import de.polocloud.node.cluster.node.NodeData
 import de.polocloud.node.group.Group
+import de.polocloud.node.group.PropertyCodec
 import de.polocloud.node.group.TemplateCodec
 import de.polocloud.node.services.LocalService
 import de.polocloud.node.services.Service
@@ -14,9 +15,11 @@ import de.polocloud.node.services.factory.FactoryService
 import de.polocloud.node.services.factory.PlatformService
 import de.polocloud.proto.NodeState
 import de.polocloud.proto.ProtoServiceProcessData
+import de.polocloud.shared.property.Properties
 import de.polocloud.shared.service.ServiceState
 import org.junit.jupiter.api.AfterAll
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.BeforeAll
 import org.junit.jupiter.api.Test
@@ -401,4 +404,80 @@ class ServiceQueueEligibilityTest {
         // driven by remote players this node never pinged itself.
         assertEquals(listOf(3), q.queuedIndexes("lobby"))
     }
+
+    @Test
+    fun `a ready standby is promoted instead of queuing a cold start`() {
+        val self = node(selfId, "node-a")
+        val g = group(minOnline = 1)
+        val provider = ServiceProvider(nodeId = selfId.toString())
+        val standby = LocalService(
+            Service(UUID.randomUUID(), 1, "lobby", ServiceState.STARTING, "127.0.0.1", 30000, provider.nodeId)
+        )
+        standby.process = AliveProcess()
+        provider.standbyPool.reserve(standby, g)
+        provider.standbyPool.markReady(standby)
+
+        val q = queue(provider = provider, online = listOf(self), groups = listOf(g))
+        q.enqueueRequiredForTest()
+
+        assertTrue(q.queuedIndexes("lobby").isEmpty())
+        assertTrue(standby in provider.localServices)
+        assertEquals(ServiceState.RUNNING, standby.state)
+        assertEquals(1, provider.standbyPool.stats().single().hits)
+    }
+
+    @Test
+    fun `standby-count keeps that many standbys next to the running replicas`() {
+        val self = node(selfId, "node-a")
+        val g = group(minOnline = 1).copy(propertiesJson = PropertyCodec.encode(mapOf(Properties.STANDBY_COUNT to "2")))
+        val provider = ServiceProvider(nodeId = selfId.toString())
+        localService(provider, "lobby", 1, onlinePlayers = 0, maxPlayers = 60)
+
+        val q = queue(provider = provider, online = listOf(self), groups = listOf(g))
+        q.enqueueRequiredForTest()
+        q.enqueueRequiredForTest()
+
+        // Not queued as regular replicas, and the second pass doesn't add more.
+        assertTrue(q.queuedIndexes("lobby").isEmpty())
+        assertEquals(listOf(2, 3), provider.standbyPool.servicesOf("lobby").map { it.serviceIndex }.sorted())
+    }
+
+    @Test
+    fun `surplus standbys not started yet are stopped before booting and ready ones`() {
+        val self = node(selfId, "node-a")
+        val g = group(minOnline = 1).copy(propertiesJson = PropertyCodec.encode(mapOf(Properties.STANDBY_COUNT to "2")))
+        val provider = ServiceProvider(nodeId = selfId.toString())
+        localService(provider, "lobby", 1, onlinePlayers = 0, maxPlayers = 60)
+        fun standby(index: Int, started: Boolean) = LocalService(
+            Service(UUID.randomUUID(), index, "lobby", ServiceState.QUEUED, "127.0.0.1", -1, provider.nodeId)
+        ).also {
+            if (started) it.process = AliveProcess()
+            provider.standbyPool.reserve(it, g)
+        }
+        val ready = standby(2, started = true).also { provider.standbyPool.markReady(it) }
+        val booting = standby(3, started = true)
+        val queued = standby(4, started = false)
+
+        queue(provider = provider, online = listOf(self), groups = listOf(g)).enqueueRequiredForTest()
+
+        assertEquals(setOf(ready, booting), provider.standbyPool.servicesOf("lobby").toSet())
+        assertFalse(queued in provider.standbyPool)
+    }
+
+    @Test
+    fun `standbys of a group this node may no longer run are stopped`() {
+        val self = node(selfId, "node-a")
+        val peerA = node(peerAId, "node-b")
+        val g = group(minOnline = 1).copy(propertiesJson = PropertyCodec.encode(mapOf(Properties.STANDBY_COUNT to "1")))
+        val provider = ServiceProvider(nodeId = selfId.toString())
+
+        queue(provider = provider, online = listOf(self), groups = listOf(g)).enqueueRequiredForTest()
+        assertEquals(1, provider.standbyPool.servicesOf("lobby").size)
+
+        // Whitelisted to the peer only: the queue `continue`s before ever looking at the pool.
+        val moved = g.copy(nodesJson = TemplateCodec.encode(listOf(peerA.name())))
+        queue(provider = provider, online = listOf(self, peerA), groups = listOf(moved)).enqueueRequiredForTest()
+
+        assertTrue(provider.standbyPool.servicesOf("lobby").isEmpty())
+    }
 }
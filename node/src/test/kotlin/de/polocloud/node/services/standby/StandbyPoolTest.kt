@@ -0,0 +1,97 @@
+package de.polocloud.node.services.standby
+
+import de.polocloud.node.group.Group
+import de.polocloud.node.group.PropertyCodec
+import de.polocloud.node.services.LocalService
+import de.polocloud.node.services.Service
+import de.polocloud.shared.property.Properties
+import de.polocloud.shared.service.ServiceState
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.UUID
+
+class StandbyPoolTest {
+
+    private class AliveProcess : Process() {
+        override fun getOutputStream() = java.io.OutputStream.nullOutputStream()
+        override fun getInputStream() = java.io.InputStream.nullInputStream()
+        override fun getErrorStream() = java.io.InputStream.nullInputStream()
+        override fun waitFor() = 0
+        override fun exitValue() = throw IllegalThreadStateException()
+        override fun destroy() {}
+        override fun isAlive() = true
+    }
+
+    private fun group(standbyCount: Int = 1, version: String = "1.21") =
+        Group("lobby", 512, 0.0, 1, 10, "PAPER", version)
+            .copy(propertiesJson = PropertyCodec.encode(mapOf(Properties.STANDBY_COUNT to standbyCount.toString())))
+
+    private fun standby(pool: StandbyPool, index: Int, group: Group = group(), ready: Boolean = true): LocalService {
+        val service = LocalService(Service(UUID.randomUUID(), index, group.name, ServiceState.STARTING, "127.0.0.1", 30000 + index, "node"))
+        service.process = AliveProcess()
+        pool.reserve(service, group)
+        if (ready) pool.markReady(service)
+        return service
+    }
+
+    @Test
+    fun `only ready standbys are promoted, and only once`() {
+        val pool = StandbyPool()
+        standby(pool, 1, ready = false)
+        val ready = standby(pool, 2)
+        val activated = mutableListOf<LocalService>()
+
+        assertSame(ready, pool.promote(group(), emptySet()) { activated += it })
+        assertNull(pool.promote(group(), emptySet()) { activated += it })
+
+        assertEquals(listOf(ready), activated)
+        assertEquals(1, pool.servicesOf("lobby").size)
+    }
+
+    @Test
+    fun `hits, misses and promotion time are counted per group`() {
+        var now = 0L
+        val pool = StandbyPool(nanoTime = { now })
+        standby(pool, 1)
+
+        pool.promote(group(), emptySet()) { now += 4_000_000 }
+        pool.promote(group(), emptySet()) {}
+
+        val stats = pool.stats().single()
+        assertEquals(1, stats.hits)
+        assertEquals(1, stats.misses)
+        assertEquals(0.5, stats.hitRate)
+        assertEquals(4_000, stats.averagePromotionMicros)
+        assertEquals(4_000, stats.maxPromotionMicros)
+    }
+
+    @Test
+    fun `a group without standbys configured never counts a miss`() {
+        val pool = StandbyPool()
+
+        assertNull(pool.promote(group(standbyCount = 0), emptySet()) {})
+
+        assertTrue(pool.stats().isEmpty())
+    }
+
+    @Test
+    fun `a standby whose index was taken meanwhile is skipped`() {
+        val pool = StandbyPool()
+        standby(pool, 1)
+        val free = standby(pool, 2)
+
+        assertSame(free, pool.promote(group(), setOf(1)) {})
+    }
+
+    @Test
+    fun `standbys of another group version are outdated`() {
+        val pool = StandbyPool()
+        val old = standby(pool, 1, group = group(version = "1.20"))
+        standby(pool, 2)
+
+        assertEquals(listOf(old), pool.outdated(group()))
+    }
+}
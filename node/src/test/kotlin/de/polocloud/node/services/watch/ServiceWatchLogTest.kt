@@ -0,0 +1,143 @@
+package de.polocloud.node.services.watch
+
+import de.polocloud.proto.ServiceData
+import de.polocloud.proto.ServiceWatchEvent
+import de.polocloud.shared.event.Event
+import de.polocloud.shared.event.EventCodec
+import de.polocloud.shared.event.server.PlayerCountChangedEvent
+import de.polocloud.shared.event.server.ServerStoppedEvent
+import de.polocloud.shared.event.server.ServiceOnlineEvent
+import de.polocloud.shared.service.Service
+import de.polocloud.shared.service.ServiceState
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.time.Duration.Companion.hours
+
+class ServiceWatchLogTest {
+
+    private var listed = listOf(data("a", "lobby", 1), data("b", "survival", 1))
+
+    // Never reconciles on its own during a test: only the seed and explicit reconcile() calls list.
+    private val log = ServiceWatchLog(
+        listing = { listed },
+        retained = 8,
+        watcherCapacity = 4,
+        reconcileInterval = 1.hours,
+        observe = { AutoCloseable {} },
+    )
+
+    @AfterEach
+    fun close() = log.close()
+
+    private fun data(id: String, group: String, index: Int, players: Int = 0) =
+        ServiceData.newBuilder().setId(id).setGroup(group).setIndex(index).setState("RUNNING").setOnlinePlayers(players).build()
+
+    private fun service(id: String, group: String, index: Int, players: Int = 0) =
+        Service(id, index, group, ServiceState.RUNNING, 0, "", 0, onlinePlayers = players)
+
+    private fun fire(event: Event) {
+        val encoded = EventCodec.encode(event)
+        log.onEvent(encoded.name, encoded.data)
+    }
+
+    private fun ServiceWatchEvent.describe() =
+        if (hasSnapshot()) "snapshot" else "${delta.type} ${delta.service.id}"
+
+    private fun collect(epoch: String, fromVersion: Long, count: Int, group: String? = null) = runBlocking {
+        withTimeout(5_000) { log.watch(epoch, fromVersion, group).take(count).toList() }
+    }
+
+    private fun seed(): ServiceWatchEvent = runBlocking { withTimeout(5_000) { log.watch("", 0, null).first() } }
+
+    @Test
+    fun `a new watch starts with a snapshot`() {
+        val snapshot = seed()
+
+        assertTrue(snapshot.hasSnapshot())
+        assertEquals(log.epoch, snapshot.epoch)
+        assertEquals(setOf("a", "b"), snapshot.snapshot.servicesList.map { it.id }.toSet())
+    }
+
+    @Test
+    fun `lifecycle events become ordered, versioned deltas`() {
+        val snapshot = seed()
+
+        fire(ServiceOnlineEvent(service("c", "lobby", 2)))
+        fire(PlayerCountChangedEvent(service("a", "lobby", 1, players = 5)))
+        fire(ServerStoppedEvent(service("b", "survival", 1)))
+        // Already stopped: a late player count must not bring it back.
+        fire(PlayerCountChangedEvent(service("b", "survival", 1, players = 1)))
+
+        val deltas = collect(log.epoch, snapshot.version, 3)
+        assertEquals(listOf("ADDED c", "UPDATED a", "REMOVED b"), deltas.map { it.describe() })
+        assertEquals(listOf(snapshot.version + 1, snapshot.version + 2, snapshot.version + 3), deltas.map { it.version })
+        assertEquals(5, deltas[1].delta.service.onlinePlayers)
+        assertEquals(3, log.stats().version)
+    }
+
+    @Test
+    fun `a resume only replays what the client missed`() {
+        seed()
+        fire(ServiceOnlineEvent(service("c", "lobby", 2)))
+        fire(ServiceOnlineEvent(service("d", "lobby", 3)))
+
+        val resumed = collect(log.epoch, 1, 1)
+
+        assertEquals(listOf("ADDED d"), resumed.map { it.describe() })
+        assertEquals(1, log.stats().resumes)
+    }
+
+    @Test
+    fun `a foreign epoch or a version no longer retained gets a snapshot`() {
+        seed()
+        repeat(10) { fire(ServiceOnlineEvent(service("x$it", "lobby", 10 + it))) }
+
+        assertTrue(collect("other-node", 1, 1).single().hasSnapshot())
+        assertTrue(collect(log.epoch, 1, 1).single().hasSnapshot())
+        assertEquals(listOf("ADDED x9"), collect(log.epoch, 9, 1).map { it.describe() })
+    }
+
+    @Test
+    fun `reconcile emits what the events missed`() {
+        val snapshot = seed()
+        listed = listOf(data("a", "lobby", 1, players = 3), data("c", "lobby", 2))
+
+        runBlocking { log.reconcile() }
+
+        val deltas = collect(log.epoch, snapshot.version, 3).map { it.describe() }
+        assertEquals(listOf("REMOVED b", "UPDATED a", "ADDED c"), deltas)
+    }
+
+    @Test
+    fun `reconcile doesn't emit changed resource samples alone`() {
+        val snapshot = seed()
+        listed = listOf(
+            data("a", "lobby", 1).toBuilder().setCpuUsage(42.0).setUsedMemory(512.0).build(),
+            data("b", "survival", 1, players = 2).toBuilder().setCpuUsage(7.0).build(),
+        )
+
+        runBlocking { log.reconcile() }
+
+        assertEquals(listOf("UPDATED b"), collect(log.epoch, snapshot.version, 1).map { it.describe() })
+        assertEquals(snapshot.version + 1, log.stats().version)
+        val a = collect("", 0, 1).single().snapshot.servicesList.single { it.id == "a" }
+        assertEquals(42.0, a.cpuUsage)
+    }
+
+    @Test
+    fun `a group filter narrows the snapshot and the deltas`() {
+        val snapshot = runBlocking { withTimeout(5_000) { log.watch("", 0, "survival").first() } }
+        fire(ServiceOnlineEvent(service("c", "lobby", 2)))
+        fire(ServiceOnlineEvent(service("d", "survival", 2)))
+
+        assertEquals(listOf("b"), snapshot.snapshot.servicesList.map { it.id })
+        assertEquals(listOf("ADDED d"), collect(log.epoch, snapshot.version, 1, "SURVIVAL").map { it.describe() })
+    }
+}
@@ -30,4 +30,5 @@ include("addons:notify-addon")
 include("addons:proxy-addon")
 include("addons:server-mobs-addon")
 include("modules")
-include("modules:cloudflare-module")
\ No newline at end of file
+include("modules:cloudflare-module")
+include("benchmarks")
\ No newline at end of file
@@ -10,6 +10,8 @@ dependencies {
     // Event payloads are @Serializable and (de)serialized via the shared EventCodec.
     // Exposed so consumers (api, node) get the serialization runtime transitively.
     api(libs.kotlinx.serialization.json)
+    // Binary (CBOR) form of the same payloads, for subscribers that opt into it.
+    api(libs.kotlinx.serialization.cbor)
 
     testImplementation(libs.bundles.testing)
     testRuntimeOnly(libs.junit.platform.launcher)
@@ -1,7 +1,9 @@
 package de.polocloud.shared.event
 
+import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.InternalSerializationApi
 import kotlinx.serialization.KSerializer
+import kotlinx.serialization.cbor.Cbor
 import kotlinx.serialization.json.Json
 import kotlinx.serialization.serializer
 import java.util.concurrent.ConcurrentHashMap
@@ -11,7 +13,7 @@ data class EncodedEvent(val name: String, val data: String)
 
 /**
  * Serializes [Event]s to/from the `(eventName, eventData)` pair carried by
- * [de.polocloud.proto.EventContext].
+ * [de.polocloud.proto.EventContext], or to its binary CBOR `eventPayload`.
  *
  * Works for any `@Serializable` [Event], not just a hand-maintained set: the [KSerializer]
  * is resolved reflectively from the event's own runtime class rather than looked up in a
@@ -30,6 +32,12 @@ object EventCodec {
         encodeDefaults = true
     }
 
+    @OptIn(ExperimentalSerializationApi::class)
+    private val cbor = Cbor {
+        ignoreUnknownKeys = true
+        encodeDefaults = true
+    }
+
     // KClass.serializer() walks the class's generated Companion via reflection; cache the
     // result per class so hot events (e.g. player-count updates) don't pay for that repeatedly.
     private val serializers = ConcurrentHashMap<Class<out Event>, KSerializer<Event>>()
@@ -54,6 +62,32 @@ object EventCodec {
         return json.decodeFromString(serializerFor(type), data)
     }
 
+    /**
+     * Like [encode], but to CBOR: the same fields, keyed by name like JSON (so a field added
+     * to an event on one side is still skipped by an older reader on the other), without
+     * text number/string formatting on either end and in fewer bytes. Only ever sent to a
+     * subscriber that asked for it — JSON stays what every client understands.
+     */
+    @OptIn(ExperimentalSerializationApi::class)
+    fun encodeBinary(event: Event): ByteArray {
+        val type = event.javaClass
+        EventRegistry.register(type)
+        return cbor.encodeToByteArray(serializerFor(type), event)
+    }
+
+    /** Decodes a payload produced by [encodeBinary], or `null` if [name] is unregistered in this JVM. */
+    @OptIn(ExperimentalSerializationApi::class)
+    fun decodeBinary(name: String, payload: ByteArray): Event? {
+        val type = EventRegistry.classFor(name) ?: return null
+        return cbor.decodeFromByteArray(serializerFor(type), payload)
+    }
+
+    /**
+     * Re-encodes a JSON [data] payload as CBOR, or `null` if [name] is unregistered in this
+     * JVM — a custom event only its publisher and subscribers know can only travel as JSON.
+     */
+    fun toBinary(name: String, data: String): ByteArray? = decode(name, data)?.let(::encodeBinary)
+
     @Suppress("UNCHECKED_CAST")
     @OptIn(InternalSerializationApi::class)
     private fun serializerFor(type: Class<out Event>): KSerializer<Event> =
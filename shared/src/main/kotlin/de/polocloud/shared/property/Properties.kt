@@ -29,6 +29,13 @@ class Properties(
          */
         const val FALLBACK_PRIORITY = "fallback-priority"
 
+        /**
+         * Well-known group property: how many fully booted instances each eligible node
+         * keeps on standby — invisible to proxies and the API until the scaling queue
+         * promotes one. Groups without it (or `0`) keep none.
+         */
+        const val STANDBY_COUNT = "standby-count"
+
         /** Builds [Properties] from a plain map (e.g. decoded from protobuf). */
         fun of(map: Map<String, String>): Properties = Properties(LinkedHashMap(map))
     }
@@ -99,6 +99,34 @@ class EventSerializationTest {
         assertEquals("v", result.properties["k"])
     }
 
+    @Test
+    fun `PlayerCountChangedEvent round-trips through the binary codec`() {
+        val withPlayers = service.copy(onlinePlayers = 7, maxPlayers = 20)
+        val payload = EventCodec.encodeBinary(PlayerCountChangedEvent(withPlayers))
+
+        val decoded = EventCodec.decodeBinary("PlayerCountChangedEvent", payload)
+        val event = assertInstanceOf(PlayerCountChangedEvent::class.java, decoded)
+        assertEquals(withPlayers, event.service)
+        assertTrue(event.service.isFallback())
+    }
+
+    @Test
+    fun `a JSON payload transcodes to the same event in binary`() {
+        val event = ServerStartEvent(service)
+        val encoded = EventCodec.encode(event)
+
+        val payload = EventCodec.toBinary(encoded.name, encoded.data)
+
+        assertNotNull(payload)
+        assertTrue(payload!!.size < encoded.data.toByteArray().size)
+        assertEquals(event, EventCodec.decodeBinary(encoded.name, payload))
+    }
+
+    @Test
+    fun `toBinary returns null for an unregistered name`() {
+        assertNull(EventCodec.toBinary("NopeEvent", "{}"))
+    }
+
     @Test
     fun `decode returns null for an unregistered name`() {
         assertNull(EventCodec.decode("NopeEvent", "{}"))